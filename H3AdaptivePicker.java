@@ -50,6 +50,7 @@ public class H3AdaptivePicker
     {
 	m_numExaminedElements = 0;
 	m_numComputedPointsInEye = 0;
+	invalidatePickGrid();
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -77,6 +77,30 @@ public class H3AdaptiveRenderLoop
 	endRequest();
     }
 
+    // The transformer emits only visible elements to the render queue, so
+    // it must traverse the graph again before the display is refreshed.
+    public synchronized void refreshVisibility()
+    {
+	startRequest();
+	{
+	    if (DEBUG_PRINT)
+	    {
+		System.out.print("[" + Thread.currentThread().getName()
+				 + "]: ");
+		System.out.println("refreshing visibility ...");
+	    }
+
+	    m_transformer.updateVisibility();
+	    if (m_state == STATE_IDLE || m_state == STATE_COMPLETE)
+	    {
+		m_parameters.refresh();
+		m_parameters.installDepthCueing();
+		m_state = STATE_REFRESH;
+	    }
+	}
+	endRequest();
+    }
+
     public synchronized void resizeDisplay()
     {
 	startRequest();
@@ -681,7 +705,7 @@ public class H3AdaptiveRenderLoop
 	Matrix4d translation =
 	    H3Transform.buildTranslation(source, destination);
 
-	m_transformer.transform(translation);
+	m_transformer.transformCoherently(translation);
 	m_transformer.transformNode(m_translationNode, source);
 
 	if (DEBUG_PRINT)
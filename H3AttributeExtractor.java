@@ -0,0 +1,1005 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import org.caida.libsea.*;
+
+//
+// This class colors and selects the nodes and links of an H3Graph from
+// the values of attributes in the backing libsea Graph.
+//
+// Looking up the value of each node and link individually with
+// Graph.getNodeAttribute() and the like is slow, because a lookup throws
+// AttributeUnavailableException for every object lacking a value.
+// Instead, each pass walks an AttributesByAttributeIterator once, which
+// visits only the objects having values, and stores the values in arrays
+// indexed by the IDs of the objects in the backing graph.  These arrays
+// serve as the mapping from libsea IDs to H3Graph indices that would
+// otherwise be lacking.  The values are then transferred to the H3Graph
+// in chunks, in parallel if so configured.
+//
+// For a graph opened with H3StreamingGraphLoader there is no backing
+// graph, and passes given a null graph instead get their values from
+// a single pass over the graph file by H3AttributeValueLoader at the
+// start of run(), which retains nothing but the values requested.  The
+// values of node label attributes are read in the same pass when
+// requested with addNodeLabels().
+//
+// The passes are queued with the add*() methods, on the event-dispatch
+// thread if need be, and then carried out with run(), which may be
+// called from any thread.
+//
+
+public class H3AttributeExtractor
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3AttributeExtractor(H3Graph graph, int parallelism)
+    {
+	m_graph = graph;
+	m_parallelism = parallelism;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The file the H3Graph was loaded from by H3StreamingGraphLoader,
+    // for passes given no backing graph.
+    public void setGraphFile(File file)
+    {
+	m_graphFile = file;
+    }
+
+    // NOTE: Attribute must be of type int, float3, or double3.
+    public void addNodeColoring(Graph backingGraph, int attribute)
+    {
+	m_passes.add(new Pass(NODE_COLORING, backingGraph, attribute, false));
+    }
+
+    // NOTE: Attribute must be of type int, float3, or double3.
+    public void addLinkColoring(Graph backingGraph, int attribute,
+				boolean treeLink)
+    {
+	m_passes.add
+	    (new Pass(LINK_COLORING, backingGraph, attribute, treeLink));
+    }
+
+    // NOTE: Attribute must be of type boolean.
+    public void addNodeSelection(Graph backingGraph, int attribute)
+    {
+	m_passes.add
+	    (new Pass(NODE_SELECTION, backingGraph, attribute, false));
+    }
+
+    // NOTE: Attribute must be of type boolean.
+    public void addLinkSelection(Graph backingGraph, int attribute,
+				 boolean treeLink)
+    {
+	m_passes.add
+	    (new Pass(LINK_SELECTION, backingGraph, attribute, treeLink));
+    }
+
+    // Reads the values of the given node attributes from the graph file,
+    // to be obtained with getNodeLabels() after run().
+    public void addNodeLabels(int[] attributes)
+    {
+	m_nodeLabelAttributes = attributes;
+    }
+
+    public boolean isEmpty()
+    {
+	return m_passes.isEmpty() && m_nodeLabelAttributes == null;
+    }
+
+    // Returns the values read for addNodeLabels(), or null if none were
+    // requested.
+    public NodeLabels getNodeLabels()
+    {
+	return m_nodeLabels;
+    }
+
+    // Carries out the queued passes in order, and then clears the queue.
+    // Neither the H3Graph nor the backing graphs may be used elsewhere
+    // while this runs.  The listener, which may be null, is called on the
+    // calling thread.  A failure to read the graph file is reported with
+    // a RuntimeException, like any other failure.
+    public void run(ProgressListener listener)
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("extractAttributes.begin[" + startTime + "]");
+	}
+
+	m_listener = listener;
+	m_progress = 0;
+	m_progressMaximum = 0;
+	boolean readFile = (m_nodeLabelAttributes != null);
+	for (int i = 0; i < m_passes.size(); i++)
+	{
+	    Pass pass = (Pass)m_passes.get(i);
+	    m_progressMaximum += getNumObjects(pass) + getNumElements(pass);
+	    readFile |= (pass.backingGraph == null);
+	}
+	if (readFile)
+	{
+	    m_progressMaximum += (int)(m_graphFile.length() >>> 10);
+	}
+
+	ForkJoinPool pool =
+	    (m_parallelism > 1 ? new ForkJoinPool(m_parallelism) : null);
+	try
+	{
+	    if (readFile)
+	    {
+		readGraphFile();
+	    }
+
+	    for (int i = 0; i < m_passes.size(); i++)
+	    {
+		runPass((Pass)m_passes.get(i), pool);
+	    }
+	}
+	finally
+	{
+	    if (pool != null)
+	    {
+		pool.shutdown();
+	    }
+	    m_passes.clear();
+	    m_nodeLabelAttributes = null;
+	    m_listener = null;
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("extractAttributes.end[" + stopTime + "]");
+	    System.out.println("extractAttributes.time[" + duration + "]");
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC INTERFACES
+    ////////////////////////////////////////////////////////////////////////
+
+    public interface ProgressListener
+    {
+	// The progress runs from zero up to the maximum over one run().
+	void progressUpdated(String note, int progress, int maximum);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // The values of node label attributes, by node ID.  The value of a
+    // node lacking one is the default value of the attribute, or null if
+    // there's no default.  The value of a list type is a List of
+    // the values of the base type, which are a Boolean, Integer, Float,
+    // Double, String, float[3], double[3], or, for enumerations, the
+    // String name of the enumerator.
+    public static class NodeLabels
+    {
+	public NodeLabels(int[] attributes, int numNodes)
+	{
+	    m_attributes = attributes;
+	    m_types = new ValueType[attributes.length];
+	    m_values = new Object[attributes.length][numNodes];
+	    m_defaults = new Object[attributes.length];
+	}
+
+	public int[] getAttributes()
+	{
+	    return m_attributes;
+	}
+
+	// This is null if no node has a value.
+	public ValueType getType(int index)
+	{
+	    return m_types[index];
+	}
+
+	public Object getValue(int index, int node)
+	{
+	    Object retval = m_values[index][node];
+	    return (retval != null ? retval : m_defaults[index]);
+	}
+
+	private int[] m_attributes;
+	private ValueType[] m_types;
+	private Object[][] m_values;
+	private Object[] m_defaults;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Reads the values of the passes lacking a backing graph, and those
+    // of the node labels, in a single pass over the graph file.
+    private void readGraphFile()
+    {
+	String note = "Reading attribute values";
+	H3AttributeValueLoader loader = new H3AttributeValueLoader();
+	for (int i = 0; i < m_passes.size(); i++)
+	{
+	    Pass pass = (Pass)m_passes.get(i);
+	    if (pass.backingGraph == null)
+	    {
+		int idRange = getNumElements(pass);
+		pass.values = new int[idRange];
+		pass.hasValue = new long[(idRange + 63) >>> 6];
+
+		H3AttributeValueLoader.ValueCollector collector =
+		    new PassValueCollector(pass);
+		if (pass.kind == NODE_COLORING || pass.kind == NODE_SELECTION)
+		{
+		    loader.addNodeValueCollector(pass.attribute, collector);
+		}
+		else
+		{
+		    loader.addLinkValueCollector(pass.attribute, collector);
+		}
+	    }
+	}
+
+	m_nodeLabels = null;
+	if (m_nodeLabelAttributes != null)
+	{
+	    m_nodeLabels = new NodeLabels(m_nodeLabelAttributes,
+					  m_graph.getNumNodes());
+	    for (int i = 0; i < m_nodeLabelAttributes.length; i++)
+	    {
+		loader.addNodeValueCollector
+		    (m_nodeLabelAttributes[i],
+		     new LabelValueCollector(loader, i));
+	    }
+	}
+
+	int progressBase = m_progress;
+	reportProgress(note);
+	try
+	{
+	    Reader reader = new ASCIIInputStreamReader
+		(new ProgressInputStream(new FileInputStream(m_graphFile),
+					 progressBase, note));
+	    try
+	    {
+		GraphFileLexer lexer = new GraphFileLexer(reader);
+		GraphFileParser parser = new GraphFileParser(lexer);
+		parser.file(loader);
+		loader.addDefaultValues();
+	    }
+	    finally
+	    {
+		reader.close();
+	    }
+	}
+	catch (IOException e)
+	{
+	    String msg = "Attribute values could not be read from `"
+		+ m_graphFile.getPath() + "': " + e.getMessage();
+	    throw new RuntimeException(msg);
+	}
+	catch (antlr.ANTLRException e)
+	{
+	    String msg = "Error parsing file `" + m_graphFile.getPath()
+		+ "': " + e.toString();
+	    throw new RuntimeException(msg);
+	}
+	m_progress = progressBase + (int)(m_graphFile.length() >>> 10);
+	reportProgress(note);
+    }
+
+    private void runPass(Pass pass, ForkJoinPool pool)
+    {
+	boolean isNodePass = (pass.kind == NODE_COLORING
+			      || pass.kind == NODE_SELECTION);
+	boolean isColoringPass = (pass.kind == NODE_COLORING
+				  || pass.kind == LINK_COLORING);
+
+	String note = (isColoringPass ? "Reading colors of " : "Selecting ")
+	    + (isNodePass ? "nodes"
+	       : (pass.treeLink ? "tree links" : "nontree links"));
+
+	// The values of passes without a backing graph have already been
+	// read from the graph file.
+	if (pass.backingGraph != null)
+	{
+	    readBackingGraph(pass, isNodePass, isColoringPass, note);
+	}
+	int[] values = pass.values;
+	long[] hasValue = pass.hasValue;
+
+	// A selection pass deselects all its elements up front, so that
+	// the transfer need only reselect them.  This also has H3Graph
+	// allocate its selectivity bits before the transfer, leaving the
+	// tasks nothing to share but the words of these bits, which they
+	// do not share either, as explained with CHUNK_SIZE.
+	if (pass.kind == NODE_SELECTION)
+	{
+	    m_graph.setNodeSelectivity(false);
+	}
+	else if (pass.kind == LINK_SELECTION)
+	{
+	    m_graph.setLinkSelectivity(pass.treeLink, false);
+	}
+
+	int numElements = getNumElements(pass);
+	if (pool != null && numElements > CHUNK_SIZE)
+	{
+	    pool.invoke(new TransferTask(pass, values, hasValue,
+					 0, numElements));
+	}
+	else
+	{
+	    transfer(pass, values, hasValue, 0, numElements);
+	}
+	m_progress += numElements;
+	reportProgress(note);
+
+	pass.values = null;
+	pass.hasValue = null;
+    }
+
+    private void readBackingGraph(Pass pass, boolean isNodePass,
+				  boolean isColoringPass, String note)
+    {
+	int idRange = (isNodePass ? pass.backingGraph.getNodeIDRange()
+		       : pass.backingGraph.getLinkIDRange());
+
+	// Values by ID in the backing graph.  The value of a selection is
+	// one or zero.  Bit i of hasValue is set iff object i has a value.
+	int[] values = new int[idRange];
+	long[] hasValue = new long[(idRange + 63) >>> 6];
+
+	AttributeDefinitionIterator definition =
+	    pass.backingGraph.getAttributeDefinition(pass.attribute);
+	AttributesByAttributeIterator iterator =
+	    (isNodePass ? definition.getNodeAttributes()
+	     : definition.getLinkAttributes());
+
+	int progressBase = m_progress;
+	int numVisited = 0;
+	reportProgress(note);
+	while (!iterator.atEnd())
+	{
+	    ValueIterator valueIterator = iterator.getAttributeValues();
+	    if (!valueIterator.isEmpty())
+	    {
+		int id = iterator.getObjectID();
+		if (isColoringPass)
+		{
+		    values[id] = extractRGBColor(valueIterator);
+		}
+		else
+		{
+		    values[id] = (valueIterator.getBooleanValue() ? 1 : 0);
+		}
+		hasValue[id >>> 6] |= 1L << id;
+	    }
+
+	    if (++numVisited % PROGRESS_INTERVAL == 0)
+	    {
+		m_progress = progressBase + numVisited;
+		reportProgress(note);
+	    }
+	    iterator.advance();
+	}
+	m_progress = progressBase + getNumObjects(pass);
+	reportProgress(note);
+
+	pass.values = values;
+	pass.hasValue = hasValue;
+    }
+
+    private void transfer(Pass pass, int[] values, long[] hasValue,
+			  int start, int end)
+    {
+	switch (pass.kind)
+	{
+	case NODE_COLORING:
+	    for (int i = start; i < end; i++)
+	    {
+		int id = m_graph.getNodeID(i);
+		boolean found = (hasValue[id >>> 6] & (1L << id)) != 0L;
+		m_graph.setNodeColor(i, (found ? values[id] : DEFAULT_COLOR));
+	    }
+	    break;
+
+	case LINK_COLORING:
+	    for (int i = start; i < end; i++)
+	    {
+		if (m_graph.checkTreeLink(i) == pass.treeLink)
+		{
+		    int id = m_graph.getLinkID(i);
+		    boolean found = (hasValue[id >>> 6] & (1L << id)) != 0L;
+		    m_graph.setLinkColor
+			(i, (found ? values[id] : DEFAULT_COLOR));
+		}
+	    }
+	    break;
+
+	case NODE_SELECTION:
+	    for (int i = start; i < end; i++)
+	    {
+		// Objects without a value are assumed to be selected.
+		int id = m_graph.getNodeID(i);
+		boolean found = (hasValue[id >>> 6] & (1L << id)) != 0L;
+		if (!found || values[id] != 0)
+		{
+		    m_graph.setNodeSelectivity(i, true);
+		}
+	    }
+	    break;
+
+	case LINK_SELECTION:
+	    for (int i = start; i < end; i++)
+	    {
+		if (m_graph.checkTreeLink(i) == pass.treeLink)
+		{
+		    int id = m_graph.getLinkID(i);
+		    boolean found = (hasValue[id >>> 6] & (1L << id)) != 0L;
+		    if (!found || values[id] != 0)
+		    {
+			m_graph.setLinkSelectivity(i, true);
+		    }
+		}
+	    }
+	    break;
+
+	default: throw new RuntimeException();
+	}
+    }
+
+    // The number of objects in the backing graph that the attribute
+    // iterator of the pass may visit (none without a backing graph, whose
+    // progress is that of reading the graph file instead).
+    private int getNumObjects(Pass pass)
+    {
+	if (pass.backingGraph == null)
+	{
+	    return 0;
+	}
+	return (pass.kind == NODE_COLORING || pass.kind == NODE_SELECTION
+		? pass.backingGraph.getNumNodes()
+		: pass.backingGraph.getNumLinks());
+    }
+
+    // The number of elements of the H3Graph that the pass transfers
+    // values to (including, for links, those of the other type, which
+    // are skipped).  This is also the range of IDs in a graph loaded by
+    // H3StreamingGraphLoader.
+    private int getNumElements(Pass pass)
+    {
+	return (pass.kind == NODE_COLORING || pass.kind == NODE_SELECTION
+		? m_graph.getNumNodes() : m_graph.getTotalNumLinks());
+    }
+
+    private void reportProgress(String note)
+    {
+	if (m_listener != null)
+	{
+	    m_listener.progressUpdated(note, m_progress, m_progressMaximum);
+	}
+    }
+
+    //======================================================================
+
+    private int extractRGBColor(ValueIterator iterator)
+    {
+	int retval = 0;
+	switch (iterator.getType().getType())
+	{
+	case ValueType._INTEGER:
+	    retval = iterator.getIntegerValue();
+	    break;
+
+	case ValueType._FLOAT3:
+	    {
+		iterator.getFloat3Value(m_float3Temporary);
+		normalizeColorComponents(m_float3Temporary);
+		retval = makeColor(m_float3Temporary);
+	    }
+	    break;
+
+	case ValueType._DOUBLE3:
+	    {
+		iterator.getDouble3Value(m_double3Temporary);
+		normalizeColorComponents(m_double3Temporary);
+		retval = makeColor(m_double3Temporary);
+	    }
+	    break;
+
+	case ValueType._BOOLEAN:
+	    //FALLTHROUGH
+	case ValueType._FLOAT:
+	    //FALLTHROUGH
+	case ValueType._DOUBLE:
+	    //FALLTHROUGH
+	case ValueType._STRING:
+	    //FALLTHROUGH
+	case ValueType._ENUMERATION:
+	    //FALLTHROUGH
+	default: throw new RuntimeException();
+	}
+	return retval;
+    }
+
+    private void normalizeColorComponents(float[] color)
+    {
+	for (int i = 0; i < color.length; i++)
+	{
+	    float value = color[i];
+	    if (value < 0.0f)
+	    {
+		value = 0.0f;
+	    }
+	    else if (value > 1.0f)
+	    {
+		value = 1.0f;
+	    }
+	    color[i] = value;
+	}
+    }
+
+    private void normalizeColorComponents(double[] color)
+    {
+	for (int i = 0; i < color.length; i++)
+	{
+	    double value = color[i];
+	    if (value < 0.0)
+	    {
+		value = 0.0;
+	    }
+	    else if (value > 1.0)
+	    {
+		value = 1.0;
+	    }
+	    color[i] = value;
+	}
+    }
+
+    private int makeColor(float[] color)
+    {
+	int r = (int)(255.0f * color[0]);
+	int g = (int)(255.0f * color[1]);
+	int b = (int)(255.0f * color[2]);
+	return (r << 16) | (g << 8) | b;
+    }
+
+    private int makeColor(double[] color)
+    {
+	int r = (int)(255.0 * color[0]);
+	int g = (int)(255.0 * color[1]);
+	int b = (int)(255.0 * color[2]);
+	return (r << 16) | (g << 8) | b;
+    }
+
+    private int makeColor(float r, float g, float b)
+    {
+	m_float3Temporary[0] = r;
+	m_float3Temporary[1] = g;
+	m_float3Temporary[2] = b;
+	normalizeColorComponents(m_float3Temporary);
+	return makeColor(m_float3Temporary);
+    }
+
+    private int makeColor(double r, double g, double b)
+    {
+	m_double3Temporary[0] = r;
+	m_double3Temporary[1] = g;
+	m_double3Temporary[2] = b;
+	normalizeColorComponents(m_double3Temporary);
+	return makeColor(m_double3Temporary);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean DEBUG_PRINT = true;
+
+    private static final int NODE_COLORING = 0;
+    private static final int LINK_COLORING = 1;
+    private static final int NODE_SELECTION = 2;
+    private static final int LINK_SELECTION = 3;
+
+    private static final int DEFAULT_COLOR = Color.white.getRGB();
+
+    // The number of elements transferred by one task.  H3Graph keeps the
+    // selectivity of 64 consecutive elements in a single word, so the
+    // chunks start at multiples of 64 to keep tasks from writing to the
+    // same word.
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    // The number of objects visited between progress reports.
+    private static final int PROGRESS_INTERVAL = 16 * 1024;
+
+    // The number of bytes of the graph file read between progress
+    // reports, which are in units of kilobytes.
+    private static final int FILE_PROGRESS_INTERVAL = 1024 * 1024;
+
+    private final H3Graph m_graph;
+    private final int m_parallelism;
+    private File m_graphFile;
+    private List m_passes = new ArrayList();  // List<Pass>
+    private int[] m_nodeLabelAttributes;
+    private NodeLabels m_nodeLabels;
+
+    private ProgressListener m_listener;
+    private int m_progress;
+    private int m_progressMaximum;
+
+    private float[] m_float3Temporary = new float[3];
+    private double[] m_double3Temporary = new double[3];
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class Pass
+    {
+	public Pass(int kind, Graph backingGraph, int attribute,
+		    boolean treeLink)
+	{
+	    this.kind = kind;
+	    this.backingGraph = backingGraph;
+	    this.attribute = attribute;
+	    this.treeLink = treeLink;
+	}
+
+	public final int kind;
+	public final Graph backingGraph;
+	public final int attribute;
+	public final boolean treeLink;
+
+	// The values read for the pass, as described in runPass().
+	public int[] values;
+	public long[] hasValue;
+    }
+
+    //======================================================================
+
+    // Stores the values of a pass without a backing graph as they are
+    // read from the graph file.  Only the first value of an object is
+    // kept, as with ValueIterator in readBackingGraph().  The default
+    // value is stored for all objects lacking a value.
+    private class PassValueCollector
+	implements H3AttributeValueLoader.ValueCollector
+    {
+	public PassValueCollector(Pass pass)
+	{
+	    m_values = pass.values;
+	    m_hasValue = pass.hasValue;
+	}
+
+	public void startObject(int id, ValueType type)
+	{
+	    m_id = id;
+	}
+
+	public void startDefault(ValueType type)
+	{
+	    m_isDefault = true;
+	}
+
+	public void addBooleanValue(boolean value)
+	{
+	    setValue(value ? 1 : 0);
+	}
+
+	public void addIntegerValue(int value)
+	{
+	    setValue(value);
+	}
+
+	public void addFloat3Value(float x, float y, float z)
+	{
+	    setValue(makeColor(x, y, z));
+	}
+
+	public void addFloat3Value(float[] value)
+	{
+	    setValue(makeColor(value[0], value[1], value[2]));
+	}
+
+	public void addDouble3Value(double x, double y, double z)
+	{
+	    setValue(makeColor(x, y, z));
+	}
+
+	public void addDouble3Value(double[] value)
+	{
+	    setValue(makeColor(value[0], value[1], value[2]));
+	}
+
+	// Attributes of these types are never used for coloring or
+	// selecting.
+	public void addFloatValue(float value) {}
+	public void addDoubleValue(double value) {}
+	public void addStringValue(String value) {}
+	public void addEnumerationValue(String enumerator) {}
+	public void addEnumerationValue(int enumerator) {}
+
+	private void setValue(int value)
+	{
+	    if (m_isDefault)
+	    {
+		m_isDefault = false;
+		for (int id = 0; id < m_values.length; id++)
+		{
+		    if ((m_hasValue[id >>> 6] & (1L << id)) == 0L)
+		    {
+			m_values[id] = value;
+			m_hasValue[id >>> 6] |= 1L << id;
+		    }
+		}
+	    }
+	    else
+	    {
+		int id = m_id;
+		if ((m_hasValue[id >>> 6] & (1L << id)) == 0L)
+		{
+		    m_values[id] = value;
+		    m_hasValue[id >>> 6] |= 1L << id;
+		}
+	    }
+	}
+
+	private int[] m_values;
+	private long[] m_hasValue;
+	private int m_id;
+	private boolean m_isDefault = false;
+    }
+
+    //======================================================================
+
+    // Stores the values of a node label attribute in m_nodeLabels as they
+    // are read from the graph file.
+    private class LabelValueCollector
+	implements H3AttributeValueLoader.ValueCollector
+    {
+	public LabelValueCollector(H3AttributeValueLoader loader, int index)
+	{
+	    m_loader = loader;
+	    m_index = index;
+	    m_values = m_nodeLabels.m_values[index];
+	}
+
+	public void startObject(int id, ValueType type)
+	{
+	    m_id = id;
+	    m_isListType = type.isListType();
+	    m_nodeLabels.m_types[m_index] = type;
+	    if (m_isListType)
+	    {
+		m_values[id] = new ArrayList();
+	    }
+	}
+
+	public void startDefault(ValueType type)
+	{
+	    m_id = -1;
+	    m_isListType = type.isListType();
+	    m_nodeLabels.m_types[m_index] = type;
+	    if (m_isListType)
+	    {
+		m_nodeLabels.m_defaults[m_index] = new ArrayList();
+	    }
+	}
+
+	public void addBooleanValue(boolean value)
+	{
+	    addValue(Boolean.valueOf(value));
+	}
+
+	public void addIntegerValue(int value)
+	{
+	    addValue(Integer.valueOf(value));
+	}
+
+	public void addFloatValue(float value)
+	{
+	    addValue(Float.valueOf(value));
+	}
+
+	public void addDoubleValue(double value)
+	{
+	    addValue(Double.valueOf(value));
+	}
+
+	public void addStringValue(String value)
+	{
+	    addValue(value);
+	}
+
+	public void addFloat3Value(float x, float y, float z)
+	{
+	    addValue(new float[] { x, y, z });
+	}
+
+	public void addFloat3Value(float[] value)
+	{
+	    addValue(value.clone());
+	}
+
+	public void addDouble3Value(double x, double y, double z)
+	{
+	    addValue(new double[] { x, y, z });
+	}
+
+	public void addDouble3Value(double[] value)
+	{
+	    addValue(value.clone());
+	}
+
+	public void addEnumerationValue(String enumerator)
+	{
+	    addValue(enumerator);
+	}
+
+	public void addEnumerationValue(int enumerator)
+	{
+	    addValue(m_loader.getEnumeratorName(enumerator));
+	}
+
+	// The default value is stored with m_id == -1.
+	private void addValue(Object value)
+	{
+	    Object[] values = m_values;
+	    int index = m_id;
+	    if (index == -1)
+	    {
+		values = m_nodeLabels.m_defaults;
+		index = m_index;
+	    }
+
+	    if (m_isListType)
+	    {
+		((List)values[index]).add(value);
+	    }
+	    else
+	    {
+		values[index] = value;
+	    }
+	}
+
+	private H3AttributeValueLoader m_loader;
+	private int m_index;
+	private Object[] m_values;
+	private int m_id;
+	private boolean m_isListType;
+    }
+
+    //======================================================================
+
+    // Reports the progress of reading the graph file, in kilobytes.
+    private class ProgressInputStream
+	extends FilterInputStream
+    {
+	public ProgressInputStream(InputStream input, int progressBase,
+				   String note)
+	{
+	    super(input);
+	    m_progressBase = progressBase;
+	    m_note = note;
+	}
+
+	public int read()
+	    throws IOException
+	{
+	    int retval = super.read();
+	    if (retval >= 0)
+	    {
+		countBytes(1);
+	    }
+	    return retval;
+	}
+
+	public int read(byte[] buffer, int offset, int length)
+	    throws IOException
+	{
+	    int retval = super.read(buffer, offset, length);
+	    if (retval > 0)
+	    {
+		countBytes(retval);
+	    }
+	    return retval;
+	}
+
+	private void countBytes(int count)
+	{
+	    long previous = m_numBytesRead;
+	    m_numBytesRead += count;
+	    if (previous / FILE_PROGRESS_INTERVAL
+		!= m_numBytesRead / FILE_PROGRESS_INTERVAL)
+	    {
+		m_progress = m_progressBase + (int)(m_numBytesRead >>> 10);
+		reportProgress(m_note);
+	    }
+	}
+
+	private int m_progressBase;
+	private String m_note;
+	private long m_numBytesRead = 0;
+    }
+
+    //======================================================================
+
+    // Transfers the values of elements in [start, end), where start is a
+    // multiple of 64, splitting the range at multiples of 64 until it is
+    // no longer than CHUNK_SIZE.
+    private class TransferTask
+	extends RecursiveAction
+    {
+	public TransferTask(Pass pass, int[] values, long[] hasValue,
+			    int start, int end)
+	{
+	    m_pass = pass;
+	    m_values = values;
+	    m_hasValue = hasValue;
+	    m_start = start;
+	    m_end = end;
+	}
+
+	protected void compute()
+	{
+	    if (m_end - m_start <= CHUNK_SIZE)
+	    {
+		transfer(m_pass, m_values, m_hasValue, m_start, m_end);
+	    }
+	    else
+	    {
+		int middle = ((m_start + m_end) >>> 1) & ~63;
+		invokeAll(new TransferTask(m_pass, m_values, m_hasValue,
+					   m_start, middle),
+			  new TransferTask(m_pass, m_values, m_hasValue,
+					   middle, m_end));
+	    }
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private Pass m_pass;
+	private int[] m_values;
+	private long[] m_hasValue;
+	private int m_start;
+	private int m_end;
+    }
+}
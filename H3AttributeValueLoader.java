@@ -0,0 +1,473 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.caida.libsea.*;
+
+//
+// This class reads the values of a few attributes from a LibSea graph
+// file, for graphs opened with H3StreamingGraphLoader, which discards
+// them.  Like that class, it is passed to GraphFileParser in place of
+// the GraphBuilder of a libsea Graph, and it assigns the same IDs to
+// objects and attributes.
+//
+// The values of each requested attribute are handed to a ValueCollector
+// as they are parsed, and all other values are discarded, so that the
+// memory used is just what the collectors retain.  The links of the
+// graph aren't retained either, since the H3Graph already has them.
+//
+// The default value of an attribute, which a libsea Graph returns for
+// objects without an explicit value, is handed to the collectors by
+// addDefaultValues() once parsing has finished.  The expression giving
+// it is parsed by libsea itself, by defining the attribute in a graph
+// of a single node lacking a value.
+//
+
+public class H3AttributeValueLoader
+    extends H3StreamingGraphLoader
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3AttributeValueLoader() {}
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // These should be called before parsing begins.  The attribute IDs
+    // are those returned by H3StreamingGraphLoader.getAttributeID().
+    // Any number of collectors may be added for the same attribute.
+    public void addNodeValueCollector(int attribute,
+				      ValueCollector collector)
+    {
+	addValueCollector(m_nodeCollectors, attribute, collector);
+    }
+
+    public void addLinkValueCollector(int attribute,
+				      ValueCollector collector)
+    {
+	addValueCollector(m_linkCollectors, attribute, collector);
+    }
+
+    // Returns the name of an enumerator passed to a collector with
+    // AttributeCreator.addEnumerationValue(int).
+    public String getEnumeratorName(int enumerator)
+    {
+	return (String)m_enumeratorNames.get(enumerator);
+    }
+
+    // This should only be called after parsing has finished.
+    public void addDefaultValues()
+    {
+	for (int i = 0; i < m_defaults.size(); i++)
+	{
+	    DefaultValue value = (DefaultValue)m_defaults.get(i);
+	    Graph graph = makeDefaultValueGraph(value);
+	    try
+	    {
+		if (value.nodeCollector != null)
+		{
+		    value.nodeCollector.startDefault(value.type);
+		    addValues(graph.getNodeAttribute(0, 0),
+			      value.nodeCollector);
+		}
+		// The default value is the same for every type of object.
+		if (value.linkCollector != null)
+		{
+		    value.linkCollector.startDefault(value.type);
+		    addValues(graph.getNodeAttribute(0, 0),
+			      value.linkCollector);
+		}
+	    }
+	    catch (AttributeUnavailableException e)
+	    {
+		throw new RuntimeException("default value unavailable for "
+					   + "attribute `" + value.name + "'");
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC INTERFACES
+    ////////////////////////////////////////////////////////////////////////
+
+    public interface ValueCollector
+	extends AttributeCreator
+    {
+	// Called before the values of each object having a value, with
+	// the type of the attribute.  List values are passed as a sequence
+	// of calls to the AttributeCreator methods.
+	void startObject(int id, ValueType type);
+
+	// Called after parsing, before the default value of the attribute
+	// is passed like those of objects.  The default value applies to
+	// the objects that startObject() wasn't called for.
+	void startDefault(ValueType type);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // INTERFACE METHODS (GraphBuilder)
+    ////////////////////////////////////////////////////////////////////////
+
+    public void allocateLinks(int count) {}
+
+    public int addLink(int source, int destination)
+    {
+	return m_numLinksAdded++;
+    }
+
+    public EnumerationCreator addEnumeration(String name)
+    {
+	NameRecordingEnumerationCreator retval =
+	    new NameRecordingEnumerationCreator(m_enumerations.size(), name);
+	m_enumerations.add(retval);
+	return retval;
+    }
+
+    public int addAttributeDefinition(String name, ValueType type,
+				      int enumeration, String expr)
+	throws DuplicateObjectException
+    {
+	int retval = super.addAttributeDefinition(name, type, enumeration,
+						  expr);
+	Integer key = Integer.valueOf(retval);
+	m_currentType = type;
+	m_currentNodeCollector = (ValueCollector)m_nodeCollectors.get(key);
+	m_currentLinkCollector = (ValueCollector)m_linkCollectors.get(key);
+
+	if (expr != null && (m_currentNodeCollector != null
+			     || m_currentLinkCollector != null))
+	{
+	    m_defaults.add(new DefaultValue
+			   (name, type, enumeration, expr,
+			    m_currentNodeCollector, m_currentLinkCollector));
+	}
+	return retval;
+    }
+
+    // Unlike the superclass, this doesn't retain the values of boolean
+    // attributes; spanning trees aren't loaded from this class.
+    public AttributeCreator addObjectAttribute(ObjectType type, int id)
+    {
+	ValueCollector collector = null;
+	if (type == ObjectType.NODE)
+	{
+	    collector = m_currentNodeCollector;
+	}
+	else if (type == ObjectType.LINK)
+	{
+	    collector = m_currentLinkCollector;
+	}
+
+	if (collector == null)
+	{
+	    return m_ignoredAttributeCreator;
+	}
+
+	collector.startObject(id, m_currentType);
+	return collector;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private Graph makeDefaultValueGraph(DefaultValue value)
+    {
+	GraphBuilder builder = GraphFactory.makeImmutableGraph();
+	builder.allocateNodes(1);
+	builder.allocateLinks(0);
+	builder.allocatePaths(0);
+	builder.allocatePathLinks(0);
+	try
+	{
+	    // The enumerations are all defined anew, so that their IDs
+	    // and those of their enumerators are the same as in the file.
+	    for (int i = 0; i < m_enumerations.size(); i++)
+	    {
+		NameRecordingEnumerationCreator enumeration =
+		    (NameRecordingEnumerationCreator)m_enumerations.get(i);
+		EnumerationCreator creator =
+		    builder.addEnumeration(enumeration.name);
+		for (int j = 0; j < enumeration.enumerators.size(); j++)
+		{
+		    int enumerator = ((Integer)enumeration.enumerators.get(j))
+			.intValue();
+		    creator.addEnumerator
+			(getEnumeratorName(enumerator),
+			 ((Integer)enumeration.values.get(j)).intValue());
+		}
+	    }
+	    builder.addAttributeDefinition(value.name, value.type,
+					   value.enumeration, value.expr);
+	}
+	catch (DuplicateObjectException e)
+	{
+	    // This can't happen, since the file has already been parsed.
+	    throw new RuntimeException(e.toString());
+	}
+	return builder.endConstruction();
+    }
+
+    private void addValues(ValueIterator iterator, AttributeCreator creator)
+    {
+	while (!iterator.atEnd())
+	{
+	    switch (iterator.getType().getBaseType())
+	    {
+	    case ValueType._BOOLEAN:
+		creator.addBooleanValue(iterator.getBooleanValue());
+		break;
+
+	    case ValueType._INTEGER:
+		creator.addIntegerValue(iterator.getIntegerValue());
+		break;
+
+	    case ValueType._FLOAT:
+		creator.addFloatValue(iterator.getFloatValue());
+		break;
+
+	    case ValueType._DOUBLE:
+		creator.addDoubleValue(iterator.getDoubleValue());
+		break;
+
+	    case ValueType._STRING:
+		creator.addStringValue(iterator.getStringValue());
+		break;
+
+	    case ValueType._FLOAT3:
+		iterator.getFloat3Value(m_float3Temporary);
+		creator.addFloat3Value(m_float3Temporary);
+		break;
+
+	    case ValueType._DOUBLE3:
+		iterator.getDouble3Value(m_double3Temporary);
+		creator.addDouble3Value(m_double3Temporary);
+		break;
+
+	    case ValueType._ENUMERATION:
+		creator.addEnumerationValue(iterator.getEnumerationValue());
+		break;
+
+	    default: throw new RuntimeException();
+	    }
+	    iterator.advance();
+	}
+    }
+
+    private void addValueCollector(Map collectors, int attribute,
+				   ValueCollector collector)
+    {
+	Integer key = Integer.valueOf(attribute);
+	ValueCollector existing = (ValueCollector)collectors.get(key);
+	if (existing != null)
+	{
+	    collector = new CollectorPair(existing, collector);
+	}
+	collectors.put(key, collector);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private int m_numLinksAdded = 0;
+
+    private Map m_nodeCollectors = new HashMap(); // Map<Integer, collector>
+    private Map m_linkCollectors = new HashMap(); // Map<Integer, collector>
+    private List m_defaults = new ArrayList();  // List<DefaultValue>
+
+    // List<NameRecordingEnumerationCreator>
+    private List m_enumerations = new ArrayList();
+    private List m_enumeratorNames = new ArrayList();  // List<String>
+
+    // The type and collectors of the attribute being parsed.
+    private ValueType m_currentType;
+    private ValueCollector m_currentNodeCollector;
+    private ValueCollector m_currentLinkCollector;
+
+    private AttributeCreator m_ignoredAttributeCreator =
+	new IgnoredAttributeCreator();
+
+    private float[] m_float3Temporary = new float[3];
+    private double[] m_double3Temporary = new double[3];
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // A requested attribute having a default value.
+    private static class DefaultValue
+    {
+	public DefaultValue(String name, ValueType type, int enumeration,
+			    String expr, ValueCollector nodeCollector,
+			    ValueCollector linkCollector)
+	{
+	    this.name = name;
+	    this.type = type;
+	    this.enumeration = enumeration;
+	    this.expr = expr;
+	    this.nodeCollector = nodeCollector;
+	    this.linkCollector = linkCollector;
+	}
+
+	public final String name;
+	public final ValueType type;
+	public final int enumeration;
+	public final String expr;
+	public final ValueCollector nodeCollector;
+	public final ValueCollector linkCollector;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // The parser expects enumerators to be numbered consecutively across
+    // all enumerations, which also makes the numbers indices of the names.
+    private class NameRecordingEnumerationCreator
+	implements EnumerationCreator
+    {
+	public NameRecordingEnumerationCreator(int id, String name)
+	{
+	    m_id = id;
+	    this.name = name;
+	}
+
+	public int getEnumerationID()
+	{
+	    return m_id;
+	}
+
+	public int addEnumerator(String name, int value)
+	{
+	    m_enumeratorNames.add(name);
+	    int retval = m_enumeratorNames.size() - 1;
+	    enumerators.add(Integer.valueOf(retval));
+	    values.add(Integer.valueOf(value));
+	    return retval;
+	}
+
+	public final String name;
+	public List enumerators = new ArrayList();  // List<Integer>
+	public List values = new ArrayList();  // List<Integer>
+
+	private int m_id;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Passes the values of an attribute on to two collectors.
+    private static class CollectorPair
+	implements ValueCollector
+    {
+	public CollectorPair(ValueCollector first, ValueCollector second)
+	{
+	    m_first = first;
+	    m_second = second;
+	}
+
+	public void startObject(int id, ValueType type)
+	{
+	    m_first.startObject(id, type);
+	    m_second.startObject(id, type);
+	}
+
+	public void startDefault(ValueType type)
+	{
+	    m_first.startDefault(type);
+	    m_second.startDefault(type);
+	}
+
+	public void addBooleanValue(boolean value)
+	{
+	    m_first.addBooleanValue(value);
+	    m_second.addBooleanValue(value);
+	}
+
+	public void addIntegerValue(int value)
+	{
+	    m_first.addIntegerValue(value);
+	    m_second.addIntegerValue(value);
+	}
+
+	public void addFloatValue(float value)
+	{
+	    m_first.addFloatValue(value);
+	    m_second.addFloatValue(value);
+	}
+
+	public void addDoubleValue(double value)
+	{
+	    m_first.addDoubleValue(value);
+	    m_second.addDoubleValue(value);
+	}
+
+	public void addStringValue(String value)
+	{
+	    m_first.addStringValue(value);
+	    m_second.addStringValue(value);
+	}
+
+	public void addFloat3Value(float x, float y, float z)
+	{
+	    m_first.addFloat3Value(x, y, z);
+	    m_second.addFloat3Value(x, y, z);
+	}
+
+	public void addFloat3Value(float[] value)
+	{
+	    m_first.addFloat3Value(value);
+	    m_second.addFloat3Value(value);
+	}
+
+	public void addDouble3Value(double x, double y, double z)
+	{
+	    m_first.addDouble3Value(x, y, z);
+	    m_second.addDouble3Value(x, y, z);
+	}
+
+	public void addDouble3Value(double[] value)
+	{
+	    m_first.addDouble3Value(value);
+	    m_second.addDouble3Value(value);
+	}
+
+	public void addEnumerationValue(String enumerator)
+	{
+	    m_first.addEnumerationValue(enumerator);
+	    m_second.addEnumerationValue(enumerator);
+	}
+
+	public void addEnumerationValue(int enumerator)
+	{
+	    m_first.addEnumerationValue(enumerator);
+	    m_second.addEnumerationValue(enumerator);
+	}
+
+	private ValueCollector m_first;
+	private ValueCollector m_second;
+    }
+}
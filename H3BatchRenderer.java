@@ -0,0 +1,544 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// Renders a graph to PNG images without a display, for producing views
+// of graphs in batch jobs:
+//
+//   java -Djava.awt.headless=true H3BatchRenderer [options]
+//        graph-file output-prefix [views-file]
+//
+// The graph is loaded (from a LibSea graph file with H3StreamingGraphLoader,
+// or from an H3GraphSnapshot file with -snapshot), laid out unless the
+// snapshot includes a layout, and then transformed by H3Transformer and
+// drawn by H3ImageRenderList for each view, exactly as the adaptive
+// renderer of H3Main would transform it.  The images are written to
+// output-prefix0001.png, output-prefix0002.png, and so on.
+//
+// Each line of the views file describes one view, in the terms of an
+// H3DisplayPosition: the ID of the node to put at the center of the
+// display, optionally followed by rotations about the x, y, and z axes
+// (in degrees, applied in that order), and a magnification.
+//
+//   # node  x-angle  y-angle  z-angle  magnification
+//   0
+//   12345   30.0     -45.0    0.0      1.5
+//
+// Blank lines and lines starting with '#' are ignored.  Without a views
+// file, a single image of the root node at the center is drawn.
+//
+// Options:
+//
+//   -snapshot      the graph file is an H3GraphSnapshot file.
+//   -tree NAME     the spanning tree to use (default: the first, by name).
+//   -size WxH      the size of the images in pixels (default: 800x800).
+//   -nontree       draw the non-tree links.
+//   -nodepthcueing don't fade distant elements.
+//   -extended      lay the graph out again in double-double precision if
+//                  it can't be laid out in double precision.  Otherwise,
+//                  the nodes that couldn't be placed are put at the origin.
+//   -parallelism N lay out and transform with N threads.
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.*;
+import javax.imageio.ImageIO;
+import javax.vecmath.*;
+import org.caida.libsea.*;
+
+public class H3BatchRenderer
+{
+    public static void main(String[] args)
+    {
+	try
+	{
+	    new H3BatchRenderer(args).run();
+	}
+	catch (IllegalArgumentException e)
+	{
+	    System.err.println("H3BatchRenderer: " + e.getMessage());
+	    System.err.println(USAGE);
+	    System.exit(1);
+	}
+	catch (Exception e)
+	{
+	    System.err.println("H3BatchRenderer: " + e);
+	    System.exit(1);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3BatchRenderer(String[] args)
+    {
+	List files = new ArrayList();  // List<String>
+	for (int i = 0; i < args.length; i++)
+	{
+	    String arg = args[i];
+	    if (arg.equals("-snapshot"))
+	    {
+		m_isSnapshot = true;
+	    }
+	    else if (arg.equals("-nontree"))
+	    {
+		m_includeNontreeLinks = true;
+	    }
+	    else if (arg.equals("-nodepthcueing"))
+	    {
+		m_depthCueing = false;
+	    }
+	    else if (arg.equals("-extended"))
+	    {
+		m_useExtendedPrecision = true;
+	    }
+	    else if (arg.equals("-tree"))
+	    {
+		m_spanningTree = getValue(args, ++i, arg);
+	    }
+	    else if (arg.equals("-size"))
+	    {
+		parseSize(getValue(args, ++i, arg));
+	    }
+	    else if (arg.equals("-parallelism"))
+	    {
+		m_parallelism = parseInt(getValue(args, ++i, arg), arg);
+		if (m_parallelism < 1)
+		{
+		    throw new IllegalArgumentException
+			("-parallelism must be at least 1");
+		}
+	    }
+	    else if (arg.startsWith("-"))
+	    {
+		throw new IllegalArgumentException("unknown option " + arg);
+	    }
+	    else
+	    {
+		files.add(arg);
+	    }
+	}
+
+	if (files.size() < 2 || files.size() > 3)
+	{
+	    throw new IllegalArgumentException("wrong number of arguments");
+	}
+
+	m_graphFile = new File((String)files.get(0));
+	m_outputPrefix = (String)files.get(1);
+	if (files.size() == 3)
+	{
+	    m_viewsFile = new File((String)files.get(2));
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public void run()
+	throws IOException, H3GraphLoader.InvalidGraphDataException
+    {
+	long startTime = System.currentTimeMillis();
+
+	boolean needsLayout = true;
+	if (m_isSnapshot)
+	{
+	    needsLayout = !H3GraphSnapshot.checkLayoutSaved(m_graphFile);
+	    m_graph = H3GraphSnapshot.load(m_graphFile);
+	}
+	else
+	{
+	    m_graph = loadGraph();
+	}
+
+	if (needsLayout)
+	{
+	    layoutGraph();
+	}
+
+	List views = (m_viewsFile != null ? readViews() : defaultViews());
+
+	long loadTime = System.currentTimeMillis();
+	System.out.println("Loaded " + m_graph.getNumNodes() + " nodes in "
+			   + (loadTime - startTime) + " ms");
+
+	renderViews(views);
+
+	long stopTime = System.currentTimeMillis();
+	System.out.println("Rendered " + views.size() + " images in "
+			   + (stopTime - loadTime) + " ms");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3Graph loadGraph()
+	throws IOException, H3GraphLoader.InvalidGraphDataException
+    {
+	H3StreamingGraphLoader loader = new H3StreamingGraphLoader();
+
+	Reader reader =
+	    new ASCIIInputStreamReader(new FileInputStream(m_graphFile));
+	try
+	{
+	    GraphFileLexer lexer = new GraphFileLexer(reader);
+	    GraphFileParser parser = new GraphFileParser(lexer);
+	    parser.file(loader);
+	}
+	catch (antlr.ANTLRException e)
+	{
+	    String msg = "Error parsing file `" + m_graphFile.getPath()
+		+ "': " + e.toString();
+	    throw new IOException(msg);
+	}
+	finally
+	{
+	    reader.close();
+	}
+
+	String spanningTree = m_spanningTree;
+	if (spanningTree == null)
+	{
+	    List trees = loader.loadSpanningTreeQualifiers();
+	    if (trees.isEmpty())
+	    {
+		String msg = "no spanning tree in `"
+		    + m_graphFile.getPath() + "'";
+		throw new H3GraphLoader.InvalidGraphDataException(msg);
+	    }
+	    spanningTree = (String)trees.get(0);
+	}
+
+	return loader.load(spanningTree);
+    }
+
+    // Lays the graph out as H3Main.layoutGraph() does, but without asking
+    // what to do about nodes that couldn't be placed.
+    private void layoutGraph()
+    {
+	H3GraphLayout layout = new H3GraphLayout
+	    (m_useExtendedPrecision, m_parallelism,
+	     H3GraphLayout.EXTENDED_PRECISION_DOUBLE_DOUBLE);
+	layout.layoutHyperbolic(m_graph, false);
+
+	int numNodes = m_graph.getNumNodes();
+	int numGoodNodes = m_graph.checkLayoutCoordinates();
+	if (numGoodNodes < numNodes && m_useExtendedPrecision)
+	{
+	    layout.layoutHyperbolic(m_graph, true);
+	    numGoodNodes = m_graph.checkLayoutCoordinates();
+	}
+
+	if (numGoodNodes < numNodes)
+	{
+	    System.err.println("WARNING: Layout failed for "
+			       + (numNodes - numGoodNodes) + " of "
+			       + numNodes + " nodes; placing them at the"
+			       + " origin.");
+	    m_graph.sanitizeLayoutCoordinates();
+	}
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private void renderViews(List views)
+	throws IOException
+    {
+	int size = m_graph.getNumNodes() + m_graph.getTotalNumLinks();
+	H3RenderQueue queue = new H3RenderQueue(size);
+	H3Transformer transformer =
+	    new H3Transformer(m_graph, queue, m_includeNontreeLinks,
+			      m_parallelism);
+
+	H3ImageRenderList renderList =
+	    new H3ImageRenderList(m_graph, m_includeNontreeLinks);
+	renderList.setDepthCueingEnabled(m_depthCueing);
+
+	Thread thread = new Thread(transformer);
+	thread.setDaemon(true);
+	thread.start();
+	try
+	{
+	    BufferedImage image = null;
+	    long[] data = new long[ELEMENT_BATCH_SIZE];
+	    Point4d center = new Point4d();
+
+	    for (int i = 0; i < views.size(); i++)
+	    {
+		View view = (View)views.get(i);
+
+		// Translate the center node to the origin, as H3Main does
+		// when a node is picked, and then rotate the display.
+		m_graph.getNodeLayoutCoordinates(view.node, center);
+		H3Transformer.Position position = new H3Transformer.Position();
+		position.startingNode = view.node;
+		position.transform.set(H3Transform.buildTranslation
+				       (center, H3Transform.ORIGIN4));
+		transformer.setPosition(position);
+
+		renderList.setView(view.objectTransform, view.magnification,
+				   m_width, m_height);
+		if (image == null)
+		{
+		    image = renderList.createImage();
+		}
+
+		renderList.beginFrame();
+		int index = 0;
+		int n;
+		while ((n = queue.getRange(index, data.length, data)) > 0)
+		{
+		    renderList.addElements(data, n);
+		    index += n;
+		}
+		renderList.render(image);
+
+		File file = new File(makeOutputName(i + 1));
+		if (!ImageIO.write(image, "png", file))
+		{
+		    throw new IOException("no PNG image writer available");
+		}
+		System.out.println("Wrote " + file.getPath());
+	    }
+	}
+	finally
+	{
+	    transformer.shutdown();
+	}
+    }
+
+    private String makeOutputName(int number)
+    {
+	String digits = Integer.toString(number);
+	while (digits.length() < 4)
+	{
+	    digits = "0" + digits;
+	}
+	return m_outputPrefix + digits + ".png";
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private List defaultViews()
+    {
+	List retval = new ArrayList();  // List<View>
+	retval.add(new View(m_graph.getRootNode(), 0.0, 0.0, 0.0, 1.0));
+	return retval;
+    }
+
+    private List readViews()
+	throws IOException
+    {
+	// Node IDs are mapped to nodes only if they aren't the same.
+	Map nodes = null;  // Map<Integer, Integer>
+	int numNodes = m_graph.getNumNodes();
+	for (int i = 0; i < numNodes && nodes == null; i++)
+	{
+	    if (m_graph.getNodeID(i) != i)
+	    {
+		nodes = new HashMap();
+		for (int j = 0; j < numNodes; j++)
+		{
+		    nodes.put(Integer.valueOf(m_graph.getNodeID(j)),
+			      Integer.valueOf(j));
+		}
+	    }
+	}
+
+	List retval = new ArrayList();  // List<View>
+
+	BufferedReader reader =
+	    new BufferedReader(new FileReader(m_viewsFile));
+	try
+	{
+	    int lineNumber = 0;
+	    String line;
+	    while ((line = reader.readLine()) != null)
+	    {
+		++lineNumber;
+		line = line.trim();
+		if (line.length() == 0 || line.startsWith("#"))
+		{
+		    continue;
+		}
+
+		String where = m_viewsFile.getPath() + ":" + lineNumber;
+		StringTokenizer tokens = new StringTokenizer(line);
+		int numTokens = tokens.countTokens();
+		if (numTokens != 1 && numTokens != 4 && numTokens != 5)
+		{
+		    throw new IOException(where + ": expected a node ID,"
+					  + " three angles, and an optional"
+					  + " magnification");
+		}
+
+		double[] values = new double[5];
+		values[4] = 1.0;
+		for (int i = 0; i < numTokens; i++)
+		{
+		    String token = tokens.nextToken();
+		    try
+		    {
+			values[i] = Double.parseDouble(token);
+		    }
+		    catch (NumberFormatException e)
+		    {
+			throw new IOException(where + ": invalid number `"
+					      + token + "'");
+		    }
+		}
+
+		int id = (int)values[0];
+		int node = id;
+		if (nodes != null)
+		{
+		    Integer value = (Integer)nodes.get(Integer.valueOf(id));
+		    node = (value != null ? value.intValue() : -1);
+		}
+		if (id != values[0] || node < 0 || node >= numNodes)
+		{
+		    throw new IOException(where + ": no node with ID "
+					  + values[0]);
+		}
+		if (!(values[4] > 0.0))
+		{
+		    throw new IOException(where + ": magnification must be"
+					  + " positive");
+		}
+
+		retval.add(new View(node, values[1], values[2], values[3],
+				    values[4]));
+	    }
+	}
+	finally
+	{
+	    reader.close();
+	}
+
+	if (retval.isEmpty())
+	{
+	    throw new IOException("no views in `" + m_viewsFile.getPath()
+				  + "'");
+	}
+	return retval;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private static String getValue(String[] args, int index, String option)
+    {
+	if (index == args.length)
+	{
+	    throw new IllegalArgumentException("missing value for " + option);
+	}
+	return args[index];
+    }
+
+    private static int parseInt(String value, String option)
+    {
+	try
+	{
+	    return Integer.parseInt(value);
+	}
+	catch (NumberFormatException e)
+	{
+	    String msg = "invalid value for " + option + ": " + value;
+	    throw new IllegalArgumentException(msg);
+	}
+    }
+
+    private void parseSize(String value)
+    {
+	int x = value.indexOf('x');
+	if (x < 0)
+	{
+	    throw new IllegalArgumentException("-size must be WxH");
+	}
+
+	m_width = parseInt(value.substring(0, x), "-size");
+	m_height = parseInt(value.substring(x + 1), "-size");
+	if (m_width < 1 || m_height < 1)
+	{
+	    throw new IllegalArgumentException("-size must be positive");
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final String USAGE =
+	"usage: java H3BatchRenderer [-snapshot] [-tree NAME] [-size WxH]\n"
+	+ "           [-nontree] [-nodepthcueing] [-extended]"
+	+ " [-parallelism N]\n"
+	+ "           graph-file output-prefix [views-file]";
+
+    // The number of render queue elements fetched at a time.
+    private static final int ELEMENT_BATCH_SIZE = 1000;
+
+    private File m_graphFile;
+    private String m_outputPrefix;
+    private File m_viewsFile;
+
+    private boolean m_isSnapshot = false;
+    private String m_spanningTree;
+    private int m_width = 800;
+    private int m_height = 800;
+    private boolean m_includeNontreeLinks = false;
+    private boolean m_depthCueing = true;
+    private boolean m_useExtendedPrecision = false;
+    private int m_parallelism = 1;
+
+    private H3Graph m_graph;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // A view as given in the views file: the node to put at the center,
+    // and the object transform (see H3ViewParameters) to apply.
+    private static class View
+    {
+	public View(int node, double xAngle, double yAngle, double zAngle,
+		    double magnification)
+	{
+	    this.node = node;
+	    this.magnification = magnification;
+
+	    Matrix3d rotation = new Matrix3d();
+	    Matrix3d axisRotation = new Matrix3d();
+	    rotation.rotZ(Math.toRadians(zAngle));
+	    axisRotation.rotY(Math.toRadians(yAngle));
+	    rotation.mul(axisRotation);
+	    axisRotation.rotX(Math.toRadians(xAngle));
+	    rotation.mul(axisRotation);
+
+	    objectTransform.set(rotation, new Vector3d(), magnification);
+	}
+
+	public int node;
+	public double magnification;
+	public Matrix4d objectTransform = new Matrix4d();
+    }
+}
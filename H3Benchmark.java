@@ -0,0 +1,1054 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// Microbenchmarks of the layout, transformation, and rendering hot paths,
+// run on synthetic graphs.  Nothing here needs a display, a Canvas3D, or
+// a backing libsea graph, so the benchmarks can be run on a headless
+// machine:
+//
+//   java H3Benchmark [-nodes N] [-warmup N] [-iterations N]
+//                    [-parallelism N] [-mpnodes N] [name ...]
+//
+// Each benchmark is run on a graph of each shape (see makeGraph()).  A
+// name given on the command line selects the shapes or the benchmarks
+// whose names start with it.  If no shape is selected, all shapes are
+// run, and if no benchmark is selected, all benchmarks are run; for
+// example, "layout" runs the layout benchmarks on every shape, "star"
+// runs every benchmark on the star, and "star transformer" runs just the
+// transformer benchmarks on the star.
+//
+// A benchmark is run {-warmup} times untimed, to let the JIT compiler
+// settle, and then {-iterations} times timed.  The report gives the mean
+// and minimum time of an iteration and the rate of the unit of work that
+// the benchmark counts (nodes laid out, render queue elements produced,
+// picks made, and so on).
+
+import java.util.*;
+import javax.vecmath.*;
+
+public class H3Benchmark
+{
+    public static void main(String[] args)
+    {
+	List shapeNames = new ArrayList();  // List<String>
+	List benchmarkNames = new ArrayList();  // List<String>
+	for (int i = 0; i < args.length; i++)
+	{
+	    String arg = args[i];
+	    if (arg.startsWith("-"))
+	    {
+		if (i + 1 == args.length)
+		{
+		    usage("missing value for " + arg);
+		}
+
+		int value = parseCount(arg, args[++i]);
+		if (arg.equals("-nodes"))
+		{
+		    s_numNodes = value;
+		}
+		else if (arg.equals("-warmup"))
+		{
+		    s_numWarmupIterations = value;
+		}
+		else if (arg.equals("-iterations"))
+		{
+		    s_numIterations = value;
+		}
+		else if (arg.equals("-parallelism"))
+		{
+		    s_parallelism = value;
+		}
+		else if (arg.equals("-mpnodes"))
+		{
+		    s_numMPNodes = value;
+		}
+		else
+		{
+		    usage("unknown option " + arg);
+		}
+	    }
+	    else
+	    {
+		boolean isShape = checkPrefix(SHAPES, arg);
+		boolean isBenchmark = checkPrefix(BENCHMARKS, arg);
+		if (isShape && isBenchmark)
+		{
+		    usage("ambiguous name " + arg);
+		}
+		else if (isShape)
+		{
+		    shapeNames.add(arg);
+		}
+		else if (isBenchmark)
+		{
+		    benchmarkNames.add(arg);
+		}
+		else
+		{
+		    usage("unknown name " + arg);
+		}
+	    }
+	}
+
+	if (s_numNodes < 2 || s_numIterations < 1)
+	{
+	    usage("-nodes must be at least 2 and -iterations at least 1");
+	}
+	s_shapeNames =
+	    (String[])shapeNames.toArray(new String[shapeNames.size()]);
+	s_benchmarkNames = (String[])benchmarkNames.toArray
+	    (new String[benchmarkNames.size()]);
+
+	System.out.println("nodes=" + s_numNodes
+			   + " warmup=" + s_numWarmupIterations
+			   + " iterations=" + s_numIterations
+			   + " parallelism=" + s_parallelism
+			   + " mpnodes=" + s_numMPNodes);
+
+	for (int i = 0; i < SHAPES.length; i++)
+	{
+	    if (checkSelected(SHAPES[i], s_shapeNames))
+	    {
+		runShape(SHAPES[i]);
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static void runShape(String shape)
+    {
+	H3Graph graph = makeGraph(shape, s_numNodes);
+	H3Graph mpGraph =
+	    makeGraph(shape, Math.max(2, Math.min(s_numNodes, s_numMPNodes)));
+
+	// The benchmarks other than those of the layout itself need
+	// coordinates to work with.
+	new H3GraphLayout(false).layoutHyperbolic(graph, false);
+
+	System.out.println();
+	System.out.println(shape + ": " + graph.getNumNodes() + " nodes, "
+			   + graph.getNumTreeLinks() + " tree links, "
+			   + graph.getNumNontreeLinks() + " non-tree links");
+
+	Benchmark[] benchmarks = {
+	    new LayoutBenchmark("layout.double", graph, s_parallelism,
+				false, H3GraphLayout.EXTENDED_PRECISION_MP),
+	    new LayoutBenchmark
+		("layout.doubledouble", graph, s_parallelism,
+		 true, H3GraphLayout.EXTENDED_PRECISION_DOUBLE_DOUBLE),
+	    new LayoutBenchmark("layout.mp", mpGraph, 1,
+				true, H3GraphLayout.EXTENDED_PRECISION_MP),
+	    new TransformerBenchmark("transformer", graph, 1, false),
+	    new TransformerBenchmark("transformer.coherent", graph, 1, true),
+	    new TransformerBenchmark("transformer.parallel", graph,
+				     s_parallelism, false),
+	    new TransformBenchmark("transform.pernode", graph, false),
+	    new TransformBenchmark("transform.batch", graph, true),
+	    new TransformQueueBenchmark("transformqueue", graph),
+	    new RenderQueueBenchmark("renderqueue.get", graph, false),
+	    new RenderQueueBenchmark("renderqueue.getrange", graph, true),
+	    new VisibilityBenchmark("visibility", graph),
+	    new PickBenchmark("pick.grid", graph, true),
+	    new PickBenchmark("pick.linear", graph, false)
+	};
+
+	for (int i = 0; i < benchmarks.length; i++)
+	{
+	    Benchmark benchmark = benchmarks[i];
+	    if (checkSelected(benchmark.getName(), s_benchmarkNames))
+	    {
+		measure(benchmark);
+	    }
+	}
+    }
+
+    private static void measure(Benchmark benchmark)
+    {
+	benchmark.setUp();
+	try
+	{
+	    for (int i = 0; i < s_numWarmupIterations; i++)
+	    {
+		benchmark.run();
+	    }
+
+	    long totalTime = 0;
+	    long minTime = Long.MAX_VALUE;
+	    long numOperations = 0;
+	    for (int i = 0; i < s_numIterations; i++)
+	    {
+		long startTime = System.nanoTime();
+		numOperations += benchmark.run();
+		long duration = System.nanoTime() - startTime;
+
+		totalTime += duration;
+		minTime = Math.min(minTime, duration);
+	    }
+
+	    double meanMillis = totalTime / 1.0e6 / s_numIterations;
+	    double minMillis = minTime / 1.0e6;
+	    double rate = numOperations / (totalTime / 1.0e9);
+
+	    System.out.println(pad(benchmark.getName(), 24)
+			       + pad(format(meanMillis) + " ms", 14)
+			       + pad("(min " + format(minMillis) + " ms)", 20)
+			       + format(rate) + " "
+			       + benchmark.getUnits() + "/s");
+	}
+	finally
+	{
+	    benchmark.tearDown();
+	}
+    }
+
+    // Returns true if {name} starts with one of {prefixes}, or if no
+    // prefixes are given.
+    private static boolean checkSelected(String name, String[] prefixes)
+    {
+	if (prefixes.length == 0)
+	{
+	    return true;
+	}
+
+	for (int i = 0; i < prefixes.length; i++)
+	{
+	    if (name.startsWith(prefixes[i]))
+	    {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    // Returns true if one of {names} starts with {prefix}.
+    private static boolean checkPrefix(String[] names, String prefix)
+    {
+	for (int i = 0; i < names.length; i++)
+	{
+	    if (names[i].startsWith(prefix))
+	    {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // Builds a graph of {numNodes} nodes of the given shape:
+    //
+    //   balanced -- a complete tree with a branching factor of 4.
+    //   skewed   -- a random tree in which each node is attached to the
+    //               previous node half the time, which gives long,
+    //               unevenly branching paths.
+    //   star     -- every node is a child of the root.
+    //   chain    -- a single path; the worst case for the depth of the
+    //               tree and for the precision of the layout.
+    //   powerlaw -- a tree grown by preferential attachment, with about
+    //               half again as many non-tree links added the same way,
+    //               resembling the degree distribution of AS graphs.
+    //
+    // All shapes are generated from a fixed seed, so that runs are
+    // comparable.
+    private static H3Graph makeGraph(String shape, int numNodes)
+    {
+	Random random = new Random(SEED);
+
+	int[] parents = new int[numNodes];
+	int[] nontreeSources = new int[0];
+	int[] nontreeTargets = new int[0];
+
+	parents[0] = -1;
+	if (shape.equals("balanced"))
+	{
+	    for (int i = 1; i < numNodes; i++)
+	    {
+		parents[i] = (i - 1) / BRANCHING_FACTOR;
+	    }
+	}
+	else if (shape.equals("skewed"))
+	{
+	    for (int i = 1; i < numNodes; i++)
+	    {
+		boolean extendsPath = random.nextBoolean();
+		parents[i] = (extendsPath ? i - 1 : random.nextInt(i));
+	    }
+	}
+	else if (shape.equals("star"))
+	{
+	    for (int i = 1; i < numNodes; i++)
+	    {
+		parents[i] = 0;
+	    }
+	}
+	else if (shape.equals("chain"))
+	{
+	    for (int i = 1; i < numNodes; i++)
+	    {
+		parents[i] = i - 1;
+	    }
+	}
+	else if (shape.equals("powerlaw"))
+	{
+	    // Choosing a uniformly random endpoint of the links made so far
+	    // chooses a node with probability proportional to its degree.
+	    int numNontreeLinks = numNodes / 2;
+	    int[] endpoints = new int[2 * (numNodes + numNontreeLinks)];
+	    int numEndpoints = 0;
+
+	    endpoints[numEndpoints++] = 0;
+	    for (int i = 1; i < numNodes; i++)
+	    {
+		parents[i] = endpoints[random.nextInt(numEndpoints)];
+		endpoints[numEndpoints++] = parents[i];
+		endpoints[numEndpoints++] = i;
+	    }
+
+	    nontreeSources = new int[numNontreeLinks];
+	    nontreeTargets = new int[numNontreeLinks];
+	    for (int i = 0; i < numNontreeLinks; i++)
+	    {
+		int source = random.nextInt(numNodes);
+		int target = endpoints[random.nextInt(numEndpoints)];
+		if (target == source)
+		{
+		    target = (source + 1) % numNodes;
+		}
+
+		nontreeSources[i] = source;
+		nontreeTargets[i] = target;
+		endpoints[numEndpoints++] = nontreeSources[i];
+		endpoints[numEndpoints++] = nontreeTargets[i];
+	    }
+	}
+	else
+	{
+	    String msg = "unknown shape[" + shape + "]";
+	    throw new IllegalArgumentException(msg);
+	}
+
+	return buildGraph(parents, nontreeSources, nontreeTargets);
+    }
+
+    // The links of each node must be added together, so the children and
+    // non-tree links are first sorted by source node.
+    private static H3Graph buildGraph(int[] parents, int[] nontreeSources,
+				      int[] nontreeTargets)
+    {
+	int numNodes = parents.length;
+	int numNontreeLinks = nontreeSources.length;
+
+	int[] childStart = new int[numNodes + 1];
+	int[] nontreeStart = new int[numNodes + 1];
+	for (int i = 1; i < numNodes; i++)
+	{
+	    ++childStart[parents[i] + 1];
+	}
+	for (int i = 0; i < numNontreeLinks; i++)
+	{
+	    ++nontreeStart[nontreeSources[i] + 1];
+	}
+	for (int i = 0; i < numNodes; i++)
+	{
+	    childStart[i + 1] += childStart[i];
+	    nontreeStart[i + 1] += nontreeStart[i];
+	}
+
+	int[] children = new int[numNodes];
+	int[] nontreeTargetsBySource = new int[numNontreeLinks];
+	int[] next = childStart.clone();
+	for (int i = 1; i < numNodes; i++)
+	{
+	    children[next[parents[i]]++] = i;
+	}
+	next = nontreeStart.clone();
+	for (int i = 0; i < numNontreeLinks; i++)
+	{
+	    nontreeTargetsBySource[next[nontreeSources[i]]++] =
+		nontreeTargets[i];
+	}
+
+	H3Graph retval = new H3Graph(numNodes, numNodes - 1 + numNontreeLinks);
+	retval.setRootNode(0);
+
+	int linkID = 0;
+	for (int node = 0; node < numNodes; node++)
+	{
+	    retval.setNodeID(node, node);
+
+	    retval.startChildLinks(node);
+	    for (int i = childStart[node]; i < childStart[node + 1]; i++)
+	    {
+		retval.addChildLink(node, children[i], linkID++);
+	    }
+
+	    retval.startNontreeLinks(node);
+	    for (int i = nontreeStart[node]; i < nontreeStart[node + 1]; i++)
+	    {
+		retval.addNontreeLink(node, nontreeTargetsBySource[i],
+				      linkID++);
+	    }
+
+	    retval.endNodeLinks(node);
+	}
+
+	return retval;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private static int parseCount(String option, String value)
+    {
+	try
+	{
+	    int retval = Integer.parseInt(value);
+	    if (retval < 0)
+	    {
+		usage(option + " must not be negative");
+	    }
+	    return retval;
+	}
+	catch (NumberFormatException e)
+	{
+	    usage("invalid value for " + option + ": " + value);
+	    return 0;  // not reached
+	}
+    }
+
+    private static void usage(String message)
+    {
+	System.err.println("H3Benchmark: " + message);
+	System.err.println("usage: java H3Benchmark [-nodes N] [-warmup N]"
+			   + " [-iterations N]");
+	System.err.println("           [-parallelism N] [-mpnodes N]"
+			   + " [name ...]");
+	System.exit(1);
+    }
+
+    private static String format(double value)
+    {
+	if (value >= 100.0)
+	{
+	    return Long.toString(Math.round(value));
+	}
+	else
+	{
+	    return Double.toString(Math.round(value * 1000.0) / 1000.0);
+	}
+    }
+
+    private static String pad(String s, int width)
+    {
+	StringBuffer buffer = new StringBuffer(s);
+	do
+	{
+	    buffer.append(' ');
+	}
+	while (buffer.length() < width);
+	return buffer.toString();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final String[] SHAPES = {
+	"balanced", "skewed", "star", "chain", "powerlaw"
+    };
+
+    private static final String[] BENCHMARKS = {
+	"layout.double", "layout.doubledouble", "layout.mp",
+	"transformer", "transformer.coherent", "transformer.parallel",
+	"transform.pernode",
+	"transform.batch", "transformqueue",
+	"renderqueue.get", "renderqueue.getrange", "visibility",
+	"pick.grid", "pick.linear"
+    };
+
+    private static final long SEED = 20020101L;
+    private static final int BRANCHING_FACTOR = 4;
+
+    private static int s_numNodes = 100000;
+    private static int s_numWarmupIterations = 5;
+    private static int s_numIterations = 10;
+    private static int s_parallelism = 1;
+    private static int s_numMPNodes = 2000;
+    private static String[] s_shapeNames;
+    private static String[] s_benchmarkNames;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private abstract static class Benchmark
+    {
+	public Benchmark(String name, String units)
+	{
+	    m_name = name;
+	    m_units = units;
+	}
+
+	public String getName()
+	{
+	    return m_name;
+	}
+
+	public String getUnits()
+	{
+	    return m_units;
+	}
+
+	public void setUp()
+	{
+	}
+
+	// Returns the number of units of work done.
+	public abstract int run();
+
+	public void tearDown()
+	{
+	}
+
+	private String m_name;
+	private String m_units;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Lays out the graph from scratch.  With {useExtendedPrecision}, the
+    // coordinates are computed directly in extended precision, as they
+    // would be after a double-precision layout had failed.
+    private static class LayoutBenchmark
+	extends Benchmark
+    {
+	public LayoutBenchmark(String name, H3Graph graph, int parallelism,
+			       boolean useExtendedPrecision,
+			       int extendedPrecision)
+	{
+	    super(name, "nodes");
+	    m_graph = graph;
+	    m_useExtendedPrecision = useExtendedPrecision;
+	    m_layout = new H3GraphLayout(useExtendedPrecision, parallelism,
+					 extendedPrecision);
+	}
+
+	public int run()
+	{
+	    m_layout.layoutHyperbolic(m_graph, m_useExtendedPrecision);
+	    return m_graph.getNumNodes();
+	}
+
+	public void tearDown()
+	{
+	    // Leave double-precision coordinates behind for the benchmarks
+	    // that follow, as the other variants may leave them different.
+	    new H3GraphLayout(false).layoutHyperbolic(m_graph, false);
+	}
+
+	private H3Graph m_graph;
+	private boolean m_useExtendedPrecision;
+	private H3GraphLayout m_layout;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Measures the rate at which the transformer fills the render queue,
+    // as seen by a consumer draining the queue (as a render loop does).
+    // Each iteration rotates the view slightly, which restarts the
+    // transformation from scratch.  With {isCoherent}, each iteration
+    // instead translates the view slightly with
+    // H3Transformer.transformCoherently(), as in an animated translation.
+    private static class TransformerBenchmark
+	extends Benchmark
+    {
+	public TransformerBenchmark(String name, H3Graph graph,
+				    int parallelism, boolean isCoherent)
+	{
+	    super(name, "elements");
+	    m_graph = graph;
+	    m_parallelism = parallelism;
+	    m_isCoherent = isCoherent;
+	}
+
+	public void setUp()
+	{
+	    int size = m_graph.getNumNodes() + m_graph.getTotalNumLinks();
+	    m_renderQueue = new H3RenderQueue(size);
+	    m_transformer = new H3Transformer
+		(m_graph, m_renderQueue, true, m_parallelism);
+	    m_rotation.rotY(ROTATION_ANGLE);
+	    m_translation.set(H3Transform.buildTranslation
+			      (H3Transform.ORIGIN4, TRANSLATION_DESTINATION));
+
+	    Thread thread = new Thread(m_transformer);
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+
+	public int run()
+	{
+	    if (m_isCoherent)
+	    {
+		m_transformer.transformCoherently(m_translation);
+	    }
+	    else
+	    {
+		m_transformer.transform(m_rotation);
+	    }
+
+	    int retval = 0;
+	    int n;
+	    while ((n = m_renderQueue.getRange(retval, m_data.length, m_data))
+		   > 0)
+	    {
+		retval += n;
+	    }
+	    return retval;
+	}
+
+	public void tearDown()
+	{
+	    m_transformer.shutdown();
+	}
+
+	private static final double ROTATION_ANGLE = 0.01;
+	private static final Point4d TRANSLATION_DESTINATION =
+	    new Point4d(0.01, 0.0, 0.0, 1.0);
+
+	private H3Graph m_graph;
+	private int m_parallelism;
+	private boolean m_isCoherent;
+	private H3RenderQueue m_renderQueue;
+	private H3Transformer m_transformer;
+	private Matrix4d m_rotation = new Matrix4d();
+	private Matrix4d m_translation = new Matrix4d();
+	private long[] m_data = new long[1000];
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Transforms every node but the root to display coordinates and
+    // computes its radius, in blocks of the children of each node in turn,
+    // as H3Transformer does.  With {useBatch}, each block goes through
+    // H3Graph.transformNodes(Matrix4d, int[], int, double[]); otherwise,
+    // each node is transformed with a Point4d, as the transformer used to.
+    private static class TransformBenchmark
+	extends Benchmark
+    {
+	public TransformBenchmark(String name, H3Graph graph,
+				  boolean useBatch)
+	{
+	    super(name, "nodes");
+	    m_graph = graph;
+	    m_useBatch = useBatch;
+	}
+
+	public void setUp()
+	{
+	    int numNodes = m_graph.getNumNodes();
+	    m_children = new int[numNodes];
+	    m_numChildren = 0;
+	    for (int i = 0; i < numNodes; i++)
+	    {
+		int childIndex = m_graph.getNodeChildIndex(i);
+		int nontreeIndex = m_graph.getNodeNontreeIndex(i);
+		for (int j = childIndex; j < nontreeIndex; j++)
+		{
+		    m_children[m_numChildren++] = m_graph.getLinkDestination(j);
+		}
+	    }
+
+	    m_transform.rotY(ROTATION_ANGLE);
+	}
+
+	public int run()
+	{
+	    for (int i = 0; i < m_numChildren; i += BLOCK_SIZE)
+	    {
+		int count = Math.min(BLOCK_SIZE, m_numChildren - i);
+		System.arraycopy(m_children, i, m_block, 0, count);
+		if (m_useBatch)
+		{
+		    m_graph.transformNodes(m_transform, m_block, count,
+					   m_radii);
+		}
+		else
+		{
+		    for (int j = 0; j < count; j++)
+		    {
+			int node = m_block[j];
+			m_graph.getNodeLayoutCoordinates(node, m_coordinates);
+			m_transform.transform(m_coordinates);
+
+			double radius =
+			    H3Math.computeRadiusEuclidean(m_coordinates);
+			m_graph.setNodeRadius(node, radius);
+			m_graph.setNodeCoordinates(node, m_coordinates);
+			m_radii[j] = radius;
+		    }
+		}
+	    }
+	    return m_numChildren;
+	}
+
+	private static final double ROTATION_ANGLE = 0.01;
+	private static final int BLOCK_SIZE = 64;
+
+	private H3Graph m_graph;
+	private boolean m_useBatch;
+	private Matrix4d m_transform = new Matrix4d();
+	private int[] m_children;
+	private int m_numChildren;
+	private int[] m_block = new int[BLOCK_SIZE];
+	private double[] m_radii = new double[BLOCK_SIZE];
+	private Point4d m_coordinates = new Point4d();
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Enqueues every node with the radius it has in the initial view, and
+    // then dequeues them all.
+    private static class TransformQueueBenchmark
+	extends Benchmark
+    {
+	public TransformQueueBenchmark(String name, H3Graph graph)
+	{
+	    super(name, "operations");
+	    m_graph = graph;
+	}
+
+	public void setUp()
+	{
+	    int numNodes = m_graph.getNumNodes();
+	    m_queue = new H3TransformQueue(numNodes);
+	    m_radii = new double[numNodes];
+
+	    Point4d p = new Point4d();
+	    for (int i = 0; i < numNodes; i++)
+	    {
+		m_graph.getNodeLayoutCoordinates(i, p);
+		m_radii[i] = H3Math.computeRadiusEuclidean(p);
+	    }
+	}
+
+	public int run()
+	{
+	    int numNodes = m_radii.length;
+	    for (int i = 0; i < numNodes; i++)
+	    {
+		m_queue.enqueue(i, m_radii[i]);
+	    }
+
+	    while (!m_queue.isEmpty())
+	    {
+		m_queue.dequeue();
+	    }
+	    return 2 * numNodes;
+	}
+
+	private H3Graph m_graph;
+	private H3TransformQueue m_queue;
+	private double[] m_radii;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // A producer thread adds elements to the render queue in batches of
+    // the size the transformer uses, while this thread consumes them
+    // either one at a time with get() or in ranges with getRange().
+    private static class RenderQueueBenchmark
+	extends Benchmark
+    {
+	public RenderQueueBenchmark(String name, H3Graph graph,
+				    boolean useRange)
+	{
+	    super(name, "elements");
+	    m_numElements = graph.getNumNodes() + graph.getTotalNumLinks();
+	    m_useRange = useRange;
+	}
+
+	public void setUp()
+	{
+	    m_queue = new H3RenderQueue(m_numElements);
+	}
+
+	public int run()
+	{
+	    m_queue.clear();
+
+	    Thread producer = new Thread(new Runnable() {
+		    public void run()
+		    {
+			long[] data = new long[PRODUCER_BATCH_SIZE];
+			for (int i = 0; i < PRODUCER_BATCH_SIZE; i++)
+			{
+			    data[i] = i;
+			}
+
+			int numAdded = 0;
+			while (numAdded < m_numElements)
+			{
+			    int n = Math.min(PRODUCER_BATCH_SIZE,
+					     m_numElements - numAdded);
+			    m_queue.add(n, data);
+			    numAdded += n;
+			}
+			m_queue.end();
+		    }
+		});
+	    producer.start();
+
+	    int retval = 0;
+	    if (m_useRange)
+	    {
+		long[] data = new long[CONSUMER_BATCH_SIZE];
+		int n;
+		while ((n = m_queue.getRange(retval, data.length, data)) > 0)
+		{
+		    retval += n;
+		}
+	    }
+	    else
+	    {
+		H3RenderQueue.Element element = new H3RenderQueue.Element();
+		while (m_queue.get(retval, element))
+		{
+		    ++retval;
+		}
+	    }
+
+	    try
+	    {
+		producer.join();
+	    }
+	    catch (InterruptedException e)
+	    {
+		throw new RuntimeException("interrupted");
+	    }
+	    return retval;
+	}
+
+	// The same as H3Transformer.NUM_PER_ITERATION, the number of
+	// elements the transformer adds to the queue at a time.
+	private static final int PRODUCER_BATCH_SIZE = 100;
+
+	// The same as ELEMENTS_BATCH_SIZE of H3LineRenderer, the number of
+	// elements a renderer takes from the queue at a time.
+	private static final int CONSUMER_BATCH_SIZE = 1000;
+
+	private int m_numElements;
+	private boolean m_useRange;
+	private H3RenderQueue m_queue;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class VisibilityBenchmark
+	extends Benchmark
+    {
+	public VisibilityBenchmark(String name, H3Graph graph)
+	{
+	    super(name, "elements");
+	    m_graph = graph;
+	}
+
+	// With everything displayable and selected, computeVisibility()
+	// never allocates a bit vector and skips the gathering of nontree
+	// links, so prune a subtree and deselect a fraction of the nodes
+	// and links, as a user would, to time the general case.
+	public void setUp()
+	{
+	    Random random = new Random(SEED);
+	    int numNodes = m_graph.getNumNodes();
+	    int numLinks = m_graph.getTotalNumLinks();
+
+	    int node = random.nextInt(numNodes);
+	    if (node != m_graph.getRootNode())
+	    {
+		m_graph.pruneSubtreeVisibility(node);
+	    }
+
+	    for (int i = 0; i < numNodes / DESELECTED_FRACTION; i++)
+	    {
+		m_graph.setNodeSelectivity(random.nextInt(numNodes), false);
+	    }
+	    for (int i = 0; i < numLinks / DESELECTED_FRACTION; i++)
+	    {
+		m_graph.setLinkSelectivity(random.nextInt(numLinks), false);
+	    }
+	}
+
+	public int run()
+	{
+	    m_graph.computeVisibility();
+	    return m_graph.getNumNodes() + m_graph.getTotalNumLinks();
+	}
+
+	public void tearDown()
+	{
+	    m_graph.setNodeSelectivity(true);
+	    m_graph.setLinkSelectivity(true);
+	    m_graph.widenVisibility();
+	}
+
+	// One in this many nodes and links is deselected.
+	private static final int DESELECTED_FRACTION = 8;
+
+	private H3Graph m_graph;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Picks the node nearest to each of a fixed set of points, among the
+    // nodes projected onto the xy-plane (as seen from far away along the
+    // z-axis), the way H3PickerCommon does.  With {useGrid}, the
+    // projections are indexed with an H3PickGrid, and the grid is rebuilt
+    // on every iteration, as it would be after each change of view;
+    // otherwise, every projection is examined for each pick.
+    private static class PickBenchmark
+	extends Benchmark
+    {
+	public PickBenchmark(String name, H3Graph graph, boolean useGrid)
+	{
+	    super(name, "picks");
+	    m_graph = graph;
+	    m_useGrid = useGrid;
+	}
+
+	public void setUp()
+	{
+	    int numNodes = m_graph.getNumNodes();
+	    m_x = new double[numNodes];
+	    m_y = new double[numNodes];
+
+	    Point4d p = new Point4d();
+	    for (int i = 0; i < numNodes; i++)
+	    {
+		m_graph.getNodeLayoutCoordinates(i, p);
+		m_x[i] = p.x / p.w;
+		m_y[i] = p.y / p.w;
+	    }
+
+	    // Pick near the nodes, as a user would, rather than uniformly
+	    // over the display, where most picks would find nothing.
+	    Random random = new Random(SEED);
+	    m_pickX = new double[NUM_PICKS];
+	    m_pickY = new double[NUM_PICKS];
+	    for (int i = 0; i < NUM_PICKS; i++)
+	    {
+		int node = random.nextInt(numNodes);
+		m_pickX[i] = m_x[node] + (random.nextDouble() - 0.5) * RADIUS;
+		m_pickY[i] = m_y[node] + (random.nextDouble() - 0.5) * RADIUS;
+	    }
+
+	    if (m_useGrid)
+	    {
+		m_grid = new H3PickGrid(numNodes);
+	    }
+	}
+
+	public int run()
+	{
+	    if (m_useGrid)
+	    {
+		m_grid.clear(RADIUS);
+		for (int i = 0; i < m_x.length; i++)
+		{
+		    m_grid.add(m_x[i], m_y[i]);
+		}
+	    }
+
+	    int numFound = 0;
+	    for (int i = 0; i < NUM_PICKS; i++)
+	    {
+		if (pick(m_pickX[i], m_pickY[i]) >= 0)
+		{
+		    ++numFound;
+		}
+	    }
+
+	    // Keeps the picks from being optimized away.
+	    if (numFound > NUM_PICKS)
+	    {
+		throw new RuntimeException("impossible pick count");
+	    }
+	    return NUM_PICKS;
+	}
+
+	private int pick(double x, double y)
+	{
+	    int retval = -1;
+	    double closestDistanceSq = RADIUS * RADIUS;
+
+	    if (m_useGrid)
+	    {
+		m_grid.beginQuery(x, y, RADIUS);
+
+		int i;
+		while ((i = m_grid.nextCandidate()) >= 0)
+		{
+		    double dx = x - m_x[i];
+		    double dy = y - m_y[i];
+		    double distanceSq = dx * dx + dy * dy;
+		    if (distanceSq < closestDistanceSq)
+		    {
+			closestDistanceSq = distanceSq;
+			retval = i;
+		    }
+		}
+	    }
+	    else
+	    {
+		for (int i = 0; i < m_x.length; i++)
+		{
+		    double dx = x - m_x[i];
+		    double dy = y - m_y[i];
+		    double distanceSq = dx * dx + dy * dy;
+		    if (distanceSq < closestDistanceSq)
+		    {
+			closestDistanceSq = distanceSq;
+			retval = i;
+		    }
+		}
+	    }
+
+	    return retval;
+	}
+
+	private static final int NUM_PICKS = 1000;
+
+	// The same as H3PickerCommon.DEFAULT_PICK_GRID_CELL_SIZE.
+	private static final double RADIUS = 0.005;
+
+	private H3Graph m_graph;
+	private boolean m_useGrid;
+	private H3PickGrid m_grid;
+	private double[] m_x;
+	private double[] m_y;
+	private double[] m_pickX;
+	private double[] m_pickY;
+    }
+}
@@ -0,0 +1,158 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// A limited substitute for javax.vecmath.Matrix4d that uses double-double
+// arithmetic (see H3DoubleDouble).  This is the double-double counterpart
+// of H3Matrix4d.
+//
+// The element in row r and column c is held in hi[4*r + c] and
+// lo[4*r + c].  Each matrix carries its own scratch space, so that no
+// method allocates.  Consequently, a matrix must not be used by more
+// than one thread at a time.
+
+public final class H3DDMatrix4d
+{
+    public final double[] hi = new double[16];
+    public final double[] lo = new double[16];
+
+    public H3DDMatrix4d()
+    {
+    }
+
+    public void set(H3DDMatrix4d m1)
+    {
+	System.arraycopy(m1.hi, 0, hi, 0, 16);
+	System.arraycopy(m1.lo, 0, lo, 0, 16);
+    }
+
+    public void setIdentity()
+    {
+	for (int i = 0; i < 16; i++)
+	{
+	    hi[i] = 0.0;
+	    lo[i] = 0.0;
+	}
+	hi[0] = 1.0;  hi[5] = 1.0;  hi[10] = 1.0;  hi[15] = 1.0;
+    }
+
+    public void transform(H3DDPoint4d v)
+    {
+	for (int r = 0; r < 4; r++)
+	{
+	    int row = 4 * r;
+	    H3DoubleDouble sum = m_scratch[r];
+	    sum.mul(hi[row], lo[row], v.hi[0], v.lo[0]);
+	    sum.addProduct(hi[row + 1], lo[row + 1], v.hi[1], v.lo[1]);
+	    sum.addProduct(hi[row + 2], lo[row + 2], v.hi[2], v.lo[2]);
+	    sum.addProduct(hi[row + 3], lo[row + 3], v.hi[3], v.lo[3]);
+	}
+
+	for (int r = 0; r < 4; r++)
+	{
+	    v.hi[r] = m_scratch[r].hi;
+	    v.lo[r] = m_scratch[r].lo;
+	}
+    }
+
+    // this = this * m1, where m1 must not be this
+    public void mul(H3DDMatrix4d m1)
+    {
+	for (int r = 0; r < 4; r++)
+	{
+	    int row = 4 * r;
+	    for (int c = 0; c < 4; c++)
+	    {
+		H3DoubleDouble sum = m_scratch[c];
+		sum.mul(hi[row], lo[row], m1.hi[c], m1.lo[c]);
+		sum.addProduct(hi[row + 1], lo[row + 1],
+			       m1.hi[4 + c], m1.lo[4 + c]);
+		sum.addProduct(hi[row + 2], lo[row + 2],
+			       m1.hi[8 + c], m1.lo[8 + c]);
+		sum.addProduct(hi[row + 3], lo[row + 3],
+			       m1.hi[12 + c], m1.lo[12 + c]);
+	    }
+
+	    // Row r of this is no longer needed by later rows.
+	    for (int c = 0; c < 4; c++)
+	    {
+		hi[row + c] = m_scratch[c].hi;
+		lo[row + c] = m_scratch[c].lo;
+	    }
+	}
+    }
+
+    public void mul(H3DoubleDouble s)
+    {
+	H3DoubleDouble product = m_scratch[0];
+	for (int i = 0; i < 16; i++)
+	{
+	    product.mul(hi[i], lo[i], s.hi, s.lo);
+	    hi[i] = product.hi;
+	    lo[i] = product.lo;
+	}
+    }
+
+    // Sets this to a rotation about the x axis, given the cosine and sine
+    // of the angle.
+    public void rotX(H3DoubleDouble cos, H3DoubleDouble sin)
+    {
+	setIdentity();
+	hi[5] = cos.hi;    lo[5] = cos.lo;
+	hi[6] = -sin.hi;   lo[6] = -sin.lo;
+	hi[9] = sin.hi;    lo[9] = sin.lo;
+	hi[10] = cos.hi;   lo[10] = cos.lo;
+    }
+
+    // Sets this to a rotation about the z axis, given the cosine and sine
+    // of the angle.
+    public void rotZ(H3DoubleDouble cos, H3DoubleDouble sin)
+    {
+	setIdentity();
+	hi[0] = cos.hi;    lo[0] = cos.lo;
+	hi[1] = -sin.hi;   lo[1] = -sin.lo;
+	hi[4] = sin.hi;    lo[4] = sin.lo;
+	hi[5] = cos.hi;    lo[5] = cos.lo;
+    }
+
+    public void print()
+    {
+	System.out.println("--------------------------------------------");
+	for (int r = 0; r < 4; r++)
+	{
+	    int row = 4 * r;
+	    System.out.println((hi[row] + lo[row]) + "\t"
+			       + (hi[row + 1] + lo[row + 1]) + "\t"
+			       + (hi[row + 2] + lo[row + 2]) + "\t"
+			       + (hi[row + 3] + lo[row + 3]));
+	}
+	System.out.println("--------------------------------------------");
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private final H3DoubleDouble[] m_scratch = {
+	new H3DoubleDouble(), new H3DoubleDouble(),
+	new H3DoubleDouble(), new H3DoubleDouble()
+    };
+}
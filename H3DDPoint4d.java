@@ -0,0 +1,122 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// A limited substitute for javax.vecmath.Point4d that uses double-double
+// arithmetic (see H3DoubleDouble).  This is the double-double counterpart
+// of H3Point4d.
+//
+// The coordinates x, y, z, and w are held in hi[0..3] and lo[0..3].
+// Unlike H3Point4d, no method allocates; methods that return a scalar
+// store it into a caller-supplied H3DoubleDouble.
+
+import javax.vecmath.Point4d;
+
+public final class H3DDPoint4d
+{
+    public final double[] hi = new double[4];
+    public final double[] lo = new double[4];
+
+    public H3DDPoint4d()
+    {
+    }
+
+    public H3DDPoint4d(double x, double y, double z, double w)
+    {
+	set(x, y, z, w);
+    }
+
+    public void set(H3DDPoint4d t1)
+    {
+	System.arraycopy(t1.hi, 0, hi, 0, 4);
+	System.arraycopy(t1.lo, 0, lo, 0, 4);
+    }
+
+    public void set(Point4d t1)
+    {
+	set(t1.x, t1.y, t1.z, t1.w);
+    }
+
+    public void set(double x, double y, double z, double w)
+    {
+	hi[0] = x;  hi[1] = y;  hi[2] = z;  hi[3] = w;
+	lo[0] = 0.0;  lo[1] = 0.0;  lo[2] = 0.0;  lo[3] = 0.0;
+    }
+
+    public void get(Point4d t1)
+    {
+	t1.x = hi[0] + lo[0];
+	t1.y = hi[1] + lo[1];
+	t1.z = hi[2] + lo[2];
+	t1.w = hi[3] + lo[3];
+    }
+
+    // Sets this to the affine coordinates of p1 (x/w, y/w, z/w, 1).
+    // {scratch} must not be a coordinate of this or p1.
+    public void project(H3DDPoint4d p1, H3DoubleDouble scratch)
+    {
+	double whi = p1.hi[3];
+	double wlo = p1.lo[3];
+	for (int i = 0; i < 3; i++)
+	{
+	    scratch.div(p1.hi[i], p1.lo[i], whi, wlo);
+	    hi[i] = scratch.hi;
+	    lo[i] = scratch.lo;
+	}
+	hi[3] = 1.0;
+	lo[3] = 0.0;
+    }
+
+    // this = this - t1
+    public void sub(H3DDPoint4d t1, H3DoubleDouble scratch)
+    {
+	for (int i = 0; i < 4; i++)
+	{
+	    scratch.sub(hi[i], lo[i], t1.hi[i], t1.lo[i]);
+	    hi[i] = scratch.hi;
+	    lo[i] = scratch.lo;
+	}
+    }
+
+    // The usual vector dot product computed from x, y, and z only.
+    public void vectorDot3(H3DDPoint4d v1, H3DoubleDouble result)
+    {
+	result.mul(hi[0], lo[0], v1.hi[0], v1.lo[0]);
+	result.addProduct(hi[1], lo[1], v1.hi[1], v1.lo[1]);
+	result.addProduct(hi[2], lo[2], v1.hi[2], v1.lo[2]);
+    }
+
+    // The Minkowski inner product of this with v.
+    public void minkowski(H3DDPoint4d v, H3DoubleDouble result)
+    {
+	result.mul(hi[0], lo[0], v.hi[0], v.lo[0]);
+	result.addProduct(hi[1], lo[1], v.hi[1], v.lo[1]);
+	result.addProduct(hi[2], lo[2], v.hi[2], v.lo[2]);
+	result.addProduct(-hi[3], -lo[3], v.hi[3], v.lo[3]);
+    }
+
+    public void print()
+    {
+	System.out.println("[" + (hi[0] + lo[0]) + ", " + (hi[1] + lo[1])
+			   + ", " + (hi[2] + lo[2]) + ", "
+			   + (hi[3] + lo[3]) + "]");
+    }
+}
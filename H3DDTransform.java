@@ -0,0 +1,239 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// The double-double counterparts of the extended-precision routines of
+// H3Transform (buildCanonicalOrientation(), buildTranslation(), and
+// buildReflection()), which are transcriptions of the same formulas.
+//
+// Unlike H3Transform, the routines write their results into matrices
+// supplied by the caller, and use scratch objects held by this class,
+// so that they never allocate.  Hence, an instance must not be used by
+// more than one thread at a time; each thread should have its own.
+//
+// The only other difference is in buildCanonicalOrientation(), which
+// computes the sine and cosine of the final rotation angles directly
+// from the coordinates of the pole, rather than computing the angles
+// themselves with atan2() and acos() in double precision.
+
+public class H3DDTransform
+{
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    /* NOTE: The points a and b must not both be the origin. */
+    public void buildCanonicalOrientation(H3DDPoint4d a, H3DDPoint4d b,
+					  H3DDMatrix4d result)
+    {
+	/* local scratch variables; will be transformed */
+	m_pa.set(a);
+	m_pb.set(b);
+
+	findPivotPoint(m_pa, m_pb, m_pivot);
+
+	buildTranslation(ORIGIN4_DD, m_pivot, result);
+
+	buildTranslation(m_pivot, ORIGIN4_DD, m_translation);
+	m_translation.transform(m_pa);
+	m_translation.transform(m_pb);
+
+	buildTranslation(ORIGIN4_DD, m_pa, m_translation);
+	result.mul(m_translation);
+
+	buildTranslation(m_pa, ORIGIN4_DD, m_translation);
+	m_translation.transform(m_pa);
+	m_translation.transform(m_pb);
+
+	/* calculate spherical coordinates (rho, phi, theta) of pb */
+
+	// Projection to affine coordinates is necessary so that we can
+	// directly reference the x, y, and z components in the following
+	// calculations.
+	m_pb.project(m_pb, m_s);
+
+	double[] hi = m_pb.hi;
+	double[] lo = m_pb.lo;
+
+	// rho_yz = sqrt(y^2 + z^2), rho = sqrt(x^2 + y^2 + z^2)
+	m_rhoYZ.mul(hi[1], lo[1], hi[1], lo[1]);
+	m_rhoYZ.addProduct(hi[2], lo[2], hi[2], lo[2]);
+	m_rho.mul(hi[0], lo[0], hi[0], lo[0]);
+	m_rho.add(m_rho, m_rhoYZ);
+	m_rho.sqrt(m_rho);
+	m_rhoYZ.sqrt(m_rhoYZ);
+
+	double phi = Math.acos(m_pb.hi[0] / m_rho.hi);
+	if (!H3Math.epsilonZero(phi))
+	{
+	    /* rotate line to achieve alignment on positive x-axis */
+
+	    // theta = atan2(z, y)
+	    if (m_rhoYZ.hi == 0.0)
+	    {
+		m_cos.set(1.0, 0.0);
+		m_sin.set(0.0, 0.0);
+	    }
+	    else
+	    {
+		m_cos.div(hi[1], lo[1], m_rhoYZ.hi, m_rhoYZ.lo);
+		m_sin.div(hi[2], lo[2], m_rhoYZ.hi, m_rhoYZ.lo);
+	    }
+	    m_rotation.rotX(m_cos, m_sin);
+	    result.mul(m_rotation);
+
+	    // phi = acos(x / rho), which lies in [0, pi]
+	    m_cos.div(hi[0], lo[0], m_rho.hi, m_rho.lo);
+	    m_sin.div(m_rhoYZ, m_rho);
+	    m_rotation.rotZ(m_cos, m_sin);
+	    result.mul(m_rotation);
+	}
+    }
+
+    // Build a 4x4 matrix for hyperbolic translation from source point to
+    // dest point.  From p. 212 of Phillips and Gunn paper:
+    //   translate(source,dest)  =  reflect(midpoint) . reflect(source)
+    //
+    // {result} must not be the same object as either point.
+    public void buildTranslation(H3DDPoint4d source, H3DDPoint4d dest,
+				 H3DDMatrix4d result)
+    {
+	source.minkowski(source, m_aa);
+	dest.minkowski(dest, m_bb);
+	source.minkowski(dest, m_ab);
+
+	H3DoubleDouble sourceScale = m_bb;
+	sourceScale.mul(m_bb, m_ab);
+	sourceScale.sqrt(sourceScale);
+
+	H3DoubleDouble destScale = m_aa;
+	destScale.mul(m_aa, m_ab);
+	destScale.sqrt(destScale);
+
+	for (int i = 0; i < 4; i++)
+	{
+	    m_s.mul(sourceScale.hi, sourceScale.lo,
+		    source.hi[i], source.lo[i]);
+	    m_s.addProduct(destScale.hi, destScale.lo,
+			   dest.hi[i], dest.lo[i]);
+	    m_midpoint.hi[i] = m_s.hi;
+	    m_midpoint.lo[i] = m_s.lo;
+	}
+
+	buildReflection(m_midpoint, result);
+	buildReflection(source, m_reflection);
+	result.mul(m_reflection);
+    }
+
+    // Build a 4x4 matrix for hyperbolic reflection across point p.  From
+    // p. 211 of Phillips and Gunn paper:
+    //       reflect_p = I(4) - 2 * p . pT * I(3,1) / <p,p>_h
+    // where p . pT is the outer product of p with itself, <p,p>_h is the
+    // Minkowski inner product.
+    public void buildReflection(H3DDPoint4d p, H3DDMatrix4d result)
+    {
+	// scale = -2 / <p,p>_h
+	p.minkowski(p, m_s);
+	m_s.div(-2.0, 0.0, m_s.hi, m_s.lo);
+
+	for (int r = 0; r < 4; r++)
+	{
+	    for (int c = 0; c < 4; c++)
+	    {
+		// The last column of the outer product is negated by I(3,1).
+		double sign = (c == 3 ? -1.0 : 1.0);
+		m_t.mul(p.hi[r], p.lo[r], sign * p.hi[c], sign * p.lo[c]);
+		m_t.mul(m_t, m_s);
+		if (r == c)
+		{
+		    m_t.add(m_t.hi, m_t.lo, 1.0, 0.0);
+		}
+
+		result.hi[4 * r + c] = m_t.hi;
+		result.lo[4 * r + c] = m_t.lo;
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Find the point closest to the origin on the line in H3 passing
+    // through the points a and b.  See H3Transform.findPivotPoint() for
+    // the derivation.
+    private void findPivotPoint(H3DDPoint4d a4, H3DDPoint4d b4,
+				H3DDPoint4d result)
+    {
+	m_a.project(a4, m_s);
+	m_b.project(b4, m_s);
+
+	m_aMinusB.set(m_a);
+	m_aMinusB.sub(m_b, m_s);
+
+	m_a.vectorDot3(m_aMinusB, m_p);
+	m_b.vectorDot3(m_aMinusB, m_q);
+
+	for (int i = 0; i < 3; i++)
+	{
+	    m_s.mul(m_p.hi, m_p.lo, m_b.hi[i], m_b.lo[i]);
+	    m_t.mul(m_q.hi, m_q.lo, m_a.hi[i], m_a.lo[i]);
+	    m_s.sub(m_s, m_t);
+	    result.hi[i] = m_s.hi;
+	    result.lo[i] = m_s.lo;
+	}
+
+	m_aMinusB.vectorDot3(m_aMinusB, m_s);
+	result.hi[3] = m_s.hi;
+	result.lo[3] = m_s.lo;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final H3DDPoint4d ORIGIN4_DD =
+	new H3DDPoint4d(0.0, 0.0, 0.0, 1.0);
+
+    private final H3DDPoint4d m_pa = new H3DDPoint4d();
+    private final H3DDPoint4d m_pb = new H3DDPoint4d();
+    private final H3DDPoint4d m_pivot = new H3DDPoint4d();
+    private final H3DDPoint4d m_midpoint = new H3DDPoint4d();
+    private final H3DDPoint4d m_a = new H3DDPoint4d();
+    private final H3DDPoint4d m_b = new H3DDPoint4d();
+    private final H3DDPoint4d m_aMinusB = new H3DDPoint4d();
+
+    private final H3DDMatrix4d m_translation = new H3DDMatrix4d();
+    private final H3DDMatrix4d m_reflection = new H3DDMatrix4d();
+    private final H3DDMatrix4d m_rotation = new H3DDMatrix4d();
+
+    private final H3DoubleDouble m_aa = new H3DoubleDouble();
+    private final H3DoubleDouble m_bb = new H3DoubleDouble();
+    private final H3DoubleDouble m_ab = new H3DoubleDouble();
+    private final H3DoubleDouble m_p = new H3DoubleDouble();
+    private final H3DoubleDouble m_q = new H3DoubleDouble();
+    private final H3DoubleDouble m_s = new H3DoubleDouble();
+    private final H3DoubleDouble m_t = new H3DoubleDouble();
+    private final H3DoubleDouble m_rho = new H3DoubleDouble();
+    private final H3DoubleDouble m_rhoYZ = new H3DoubleDouble();
+    private final H3DoubleDouble m_cos = new H3DoubleDouble();
+    private final H3DoubleDouble m_sin = new H3DoubleDouble();
+}
@@ -0,0 +1,228 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// A mutable double-double number: an unevaluated sum hi + lo of two
+// doubles, with |lo| <= ulp(hi) / 2, giving about 106 bits (32 decimal
+// digits) of precision with the exponent range of a double.
+//
+// This serves as a fast alternative to the MPJava multi-precision classes
+// for laying out graphs that are too deep for double precision.  Unlike
+// MPReal, which is immutable, every operation overwrites {this} with the
+// result, so that arithmetic never allocates.  The operands may be given
+// either as H3DoubleDouble objects (which may be {this}) or as (hi, lo)
+// pairs of doubles.
+//
+// The algorithms are the standard ones of Dekker, Knuth, and Shewchuk,
+// as used in Bailey's QD library.
+
+public final class H3DoubleDouble
+{
+    public double hi;
+    public double lo;
+
+    public H3DoubleDouble()
+    {
+    }
+
+    public H3DoubleDouble(double hi, double lo)
+    {
+	this.hi = hi;
+	this.lo = lo;
+    }
+
+    public void set(double hi, double lo)
+    {
+	this.hi = hi;
+	this.lo = lo;
+    }
+
+    public void set(H3DoubleDouble a)
+    {
+	hi = a.hi;
+	lo = a.lo;
+    }
+
+    public double doubleValue()
+    {
+	return hi + lo;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // this = a + b
+    public void add(double ahi, double alo, double bhi, double blo)
+    {
+	double s = ahi + bhi;
+	double v = s - ahi;
+	double e = (ahi - (s - v)) + (bhi - v);
+
+	double t = alo + blo;
+	double w = t - alo;
+	double f = (alo - (t - w)) + (blo - w);
+
+	e += t;
+	double s2 = s + e;
+	e = e - (s2 - s);
+
+	e += f;
+	hi = s2 + e;
+	lo = e - (hi - s2);
+    }
+
+    public void add(H3DoubleDouble a, H3DoubleDouble b)
+    {
+	add(a.hi, a.lo, b.hi, b.lo);
+    }
+
+    // this = a - b
+    public void sub(double ahi, double alo, double bhi, double blo)
+    {
+	add(ahi, alo, -bhi, -blo);
+    }
+
+    public void sub(H3DoubleDouble a, H3DoubleDouble b)
+    {
+	add(a.hi, a.lo, -b.hi, -b.lo);
+    }
+
+    // this = a * b
+    public void mul(double ahi, double alo, double bhi, double blo)
+    {
+	double p = ahi * bhi;
+	double e = productError(ahi, bhi, p);
+	e += ahi * blo + alo * bhi;
+
+	hi = p + e;
+	lo = e - (hi - p);
+    }
+
+    public void mul(H3DoubleDouble a, H3DoubleDouble b)
+    {
+	mul(a.hi, a.lo, b.hi, b.lo);
+    }
+
+    // this = this + a * b
+    //
+    // This is the inner step of the dot products in matrix arithmetic.
+    public void addProduct(double ahi, double alo, double bhi, double blo)
+    {
+	double p = ahi * bhi;
+	double e = productError(ahi, bhi, p);
+	e += ahi * blo + alo * bhi;
+
+	double phi = p + e;
+	double plo = e - (phi - p);
+	add(hi, lo, phi, plo);
+    }
+
+    // this = a / b
+    public void div(double ahi, double alo, double bhi, double blo)
+    {
+	// Long division: q1 + q2 + q3, with the remainder computed exactly.
+	double q1 = ahi / bhi;
+	mul(bhi, blo, q1, 0.0);
+	sub(ahi, alo, hi, lo);
+	double rhi = hi;
+	double rlo = lo;
+
+	double q2 = rhi / bhi;
+	mul(bhi, blo, q2, 0.0);
+	sub(rhi, rlo, hi, lo);
+
+	double q3 = hi / bhi;
+
+	double s = q1 + q2;
+	double e = q2 - (s - q1);
+	add(s, e, q3, 0.0);
+    }
+
+    public void div(H3DoubleDouble a, H3DoubleDouble b)
+    {
+	div(a.hi, a.lo, b.hi, b.lo);
+    }
+
+    // this = sqrt(a)
+    public void sqrt(double ahi, double alo)
+    {
+	if (ahi <= 0.0)
+	{
+	    hi = (ahi == 0.0 ? 0.0 : Double.NaN);
+	    lo = 0.0;
+	    return;
+	}
+
+	// Karp's method: one Newton step from the double approximation.
+	double x = 1.0 / Math.sqrt(ahi);
+	double ax = ahi * x;
+
+	double p = ax * ax;
+	double e = productError(ax, ax, p);
+	sub(ahi, alo, p, e);
+	double correction = hi * (x * 0.5);
+
+	double s = ax + correction;
+	hi = s;
+	lo = correction - (s - ax);
+    }
+
+    public void sqrt(H3DoubleDouble a)
+    {
+	sqrt(a.hi, a.lo);
+    }
+
+    public void negate()
+    {
+	hi = -hi;
+	lo = -lo;
+    }
+
+    public String toString()
+    {
+	return "(" + hi + " + " + lo + ")";
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the rounding error of the product p = a * b, which is such
+    // that a * b = p + error exactly (Dekker's algorithm).
+    private static double productError(double a, double b, double p)
+    {
+	double t = SPLITTER * a;
+	double ahi = t - (t - a);
+	double alo = a - ahi;
+
+	t = SPLITTER * b;
+	double bhi = t - (t - b);
+	double blo = b - bhi;
+
+	return ((ahi * bhi - p) + ahi * blo + alo * bhi) + alo * blo;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // 2^27 + 1, for splitting a double into two 26-bit halves.
+    private static final double SPLITTER = 134217729.0;
+}
@@ -20,6 +20,10 @@
 // 
 
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.util.*;
 import javax.vecmath.*;
 
@@ -105,6 +109,19 @@ public class H3Graph
     ////////////////////////////////////////////////////////////////////////
 
     public H3Graph(int numNodes, int numLinks)
+    {
+	this(numNodes, numLinks, false);
+    }
+
+    // If {offHeap} is true, then the integer arrays describing the
+    // topology of the graph and the colors of nodes and links are
+    // allocated outside the Java heap, in direct buffers, rather than as
+    // int[]s.  For graphs of millions of nodes, this keeps the bulk of the
+    // graph out of the way of the garbage collector, whose full
+    // collections would otherwise have to scan it.  The amount of such
+    // memory available is limited by -XX:MaxDirectMemorySize, which
+    // defaults to the maximum heap size.
+    public H3Graph(int numNodes, int numLinks, boolean offHeap)
     {
 	// PRECONDITION: numNodes >= 0
 	// PRECONDITION: numLinks >= 0
@@ -112,8 +129,8 @@ public class H3Graph
 	m_numNodes = numNodes;
 	m_numLinks = numLinks;
 
-	m_nodes = new Nodes(numNodes);
-	m_links = new Links(numLinks);
+	m_nodes = new Nodes(numNodes, offHeap);
+	m_links = new Links(numLinks, offHeap);
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -145,9 +162,14 @@ public class H3Graph
 	return m_rootNode;
     }
 
+    public boolean hasCompactCoordinates()
+    {
+	return m_compactCoordinates;
+    }
+
     public int getNodeID(int node)
     {
-	return m_nodes.id[node];
+	return m_nodes.id.get(node);
     }
 
     public double getNodeRadius(int node)
@@ -157,22 +179,40 @@ public class H3Graph
 
     public void getNodeCoordinates(int node, Point3d point)
     {
-	point.x = m_nodes.x[node];
-	point.y = m_nodes.y[node];
-	point.z = m_nodes.z[node];
+	if (m_compactCoordinates)
+	{
+	    point.x = m_nodes.floatX[node];
+	    point.y = m_nodes.floatY[node];
+	    point.z = m_nodes.floatZ[node];
+	}
+	else
+	{
+	    point.x = m_nodes.x[node];
+	    point.y = m_nodes.y[node];
+	    point.z = m_nodes.z[node];
+	}
     }
 
     public void getNodeCoordinates(int node, Point4d point)
     {
-	point.x = m_nodes.x[node];
-	point.y = m_nodes.y[node];
-	point.z = m_nodes.z[node];
+	if (m_compactCoordinates)
+	{
+	    point.x = m_nodes.floatX[node];
+	    point.y = m_nodes.floatY[node];
+	    point.z = m_nodes.floatZ[node];
+	}
+	else
+	{
+	    point.x = m_nodes.x[node];
+	    point.y = m_nodes.y[node];
+	    point.z = m_nodes.z[node];
+	}
 	point.w = 1.0;
     }
 
     public void getNodeLayoutCoordinates(int node, Point3d point)
     {
-	double w = m_nodes.layoutW[node];
+	double w = getNodeLayoutW(node);
 	point.x = m_nodes.layoutX[node] / w;
 	point.y = m_nodes.layoutY[node] / w;
 	point.z = m_nodes.layoutZ[node] / w;
@@ -183,18 +223,71 @@ public class H3Graph
 	point.x = m_nodes.layoutX[node];
 	point.y = m_nodes.layoutY[node];
 	point.z = m_nodes.layoutZ[node];
-	point.w = m_nodes.layoutW[node];
+	point.w = getNodeLayoutW(node);
+    }
+
+    // Stores the display coordinates of every node, transformed by {t},
+    // into {x}, {y}, and {z}, which must each have room for all nodes.
+    // As with Matrix4d.transform(Point3d), only the upper three rows of
+    // {t} are used.  This is the bulk equivalent of calling
+    // getNodeCoordinates() and then transforming each point, but it runs
+    // as a simple loop over the coordinate arrays, with no per-node calls
+    // or objects.  The matrix elements are copied into locals so that
+    // the loops are free of field loads.
+    public void getTransformedNodeCoordinates(Matrix4d t, double[] x,
+					      double[] y, double[] z)
+    {
+	double m00 = t.m00, m01 = t.m01, m02 = t.m02, m03 = t.m03;
+	double m10 = t.m10, m11 = t.m11, m12 = t.m12, m13 = t.m13;
+	double m20 = t.m20, m21 = t.m21, m22 = t.m22, m23 = t.m23;
+
+	if (m_compactCoordinates)
+	{
+	    float[] px = m_nodes.floatX;
+	    float[] py = m_nodes.floatY;
+	    float[] pz = m_nodes.floatZ;
+	    for (int i = 0; i < m_numNodes; i++)
+	    {
+		x[i] = m00 * px[i] + m01 * py[i] + m02 * pz[i] + m03;
+		y[i] = m10 * px[i] + m11 * py[i] + m12 * pz[i] + m13;
+		z[i] = m20 * px[i] + m21 * py[i] + m22 * pz[i] + m23;
+	    }
+	}
+	else
+	{
+	    double[] px = m_nodes.x;
+	    double[] py = m_nodes.y;
+	    double[] pz = m_nodes.z;
+	    for (int i = 0; i < m_numNodes; i++)
+	    {
+		x[i] = m00 * px[i] + m01 * py[i] + m02 * pz[i] + m03;
+		y[i] = m10 * px[i] + m11 * py[i] + m12 * pz[i] + m13;
+		z[i] = m20 * px[i] + m21 * py[i] + m22 * pz[i] + m23;
+	    }
+	}
+    }
+
+    // Returns a number that changes whenever transformNodes() or
+    // setCompactCoordinates() changes the display coordinates of the
+    // nodes, so that cached values derived from the display coordinates
+    // can be checked for staleness.  It doesn't change when the display
+    // coordinates of individual nodes are set with setNodeCoordinates(),
+    // which is how H3Transformer updates them as it goes; users of its
+    // results follow H3RenderQueue instead.
+    public int getCoordinatesVersion()
+    {
+	return m_coordinatesVersion;
     }
 
     public int getNodeParent(int node)
     {
-	int i = m_nodes.parent[node];
-	return (i == -1 ? -1 : m_links.source[i]);
+	int i = m_nodes.parent.get(node);
+	return (i == -1 ? -1 : m_links.source.get(i));
     }
 
     public int getNodeParentLink(int node)
     {
-	return m_nodes.parent[node];
+	return m_nodes.parent.get(node);
     }
 
     public int getNodeNumChildren(int node)
@@ -226,22 +319,22 @@ public class H3Graph
 
     public int getNodeChildIndex(int node)
     {
-	return m_nodes.treeLinks[node];
+	return m_nodes.treeLinks.get(node);
     }
 
     public int getNodeNontreeIndex(int node)
     {
-	return m_nodes.nontreeLinks[node];
+	return m_nodes.nontreeLinks.get(node);
     }
 
     public int getNodeLinksEndIndex(int node)
     {
-	return m_nodes.linksEnd[node];
+	return m_nodes.linksEnd.get(node);
     }
 
     public int getNodeColor(int node)
     {
-	return m_nodes.color[node];
+	return m_nodes.color.get(node);
     }
 
     // Returns true iff all nodes are visible.
@@ -269,22 +362,22 @@ public class H3Graph
 
     public int getLinkID(int link)
     {
-	return m_links.id[link];
+	return m_links.id.get(link);
     }
 
     public int getLinkSource(int link)
     {
-	return m_links.source[link];
+	return m_links.source.get(link);
     }
 
     public int getLinkDestination(int link)
     {
-	return m_links.destination[link];
+	return m_links.destination.get(link);
     }
 
     public int getLinkColor(int link)
     {
-	return m_links.color[link];
+	return m_links.color.get(link);
     }
 
     public boolean checkTreeLink(int link)
@@ -318,34 +411,97 @@ public class H3Graph
     ////////////////////////////////////////////////////////////////////////
 
     // Computes new display coordinates for each node by transforming the
-    // layout coordinates of nodes with the supplied matrix.
+    // layout coordinates of nodes with the supplied matrix.  This also
+    // sets the radius of each node to its Euclidean radius (see
+    // H3Math.computeRadiusEuclidean()) at the new display coordinates.
     public void transformNodes(Matrix4d t)
     {
+	transformNodes(t, null, 0, m_numNodes, null);
+	++m_coordinatesVersion;
+    }
+
+    // Transforms the nodes nodes[0], ..., nodes[count - 1] as
+    // transformNodes(Matrix4d) transforms all nodes, and also stores the
+    // radius of nodes[i] in radii[i] if {radii} isn't null.  This is the
+    // batch equivalent of getting the layout coordinates of each node,
+    // transforming them with Matrix4d.transform(), and setting the display
+    // coordinates and radius of the node, but it works directly on the
+    // arrays of coordinates, with the elements of {t} in locals, and with
+    // no per-node calls or objects.
+    public void transformNodes(Matrix4d t, int[] nodes, int count,
+			       double[] radii)
+    {
+	transformNodes(t, nodes, 0, count, radii);
+    }
+
+    // Switches the storage of node coordinates between the default and
+    // a compact mode, which stores the coordinates of nodes after the
+    // view transformation (see setNodeCoordinates()) as floats, and which
+    // stores layout coordinates without the w component.  The layout
+    // coordinates are scaled to lie on the hyperboloid
+    //
+    //     x^2 + y^2 + z^2 - w^2 = -1,  w > 0,
+    //
+    // so that w can be recomputed from x, y, and z.  This scaling doesn't
+    // lose the precision of points near the sphere at infinity, as would
+    // storing affine coordinates (x/w, y/w, z/w) instead.  Layout
+    // coordinates that don't describe a point inside the sphere at
+    // infinity become NaN, and so are reported by checkLayoutCoordinates().
+    //
+    // The compact mode saves 20 of the 64 bytes of coordinates per node,
+    // and H3PointRenderList also stores coordinates as floats for a graph
+    // in this mode.  This should be called before the graph is laid out
+    // and rendered, since it discards the current display coordinates.
+    public void setCompactCoordinates(boolean compact)
+    {
+	if (compact == m_compactCoordinates)
+	{
+	    return;
+	}
+
 	Point4d p = new Point4d();
-	for (int i = 0; i < m_numNodes; i++)
+	if (compact)
 	{
-	    p.x = m_nodes.layoutX[i];
-	    p.y = m_nodes.layoutY[i];
-	    p.z = m_nodes.layoutZ[i];
-	    p.w = m_nodes.layoutW[i];
+	    for (int i = 0; i < m_numNodes; i++)
+	    {
+		getNodeLayoutCoordinates(i, p);
+		setNodeLayoutCoordinatesCompact(i, p.x, p.y, p.z, p.w);
+	    }
 
-	    t.transform(p);
+	    m_nodes.layoutW = null;
+	    m_nodes.x = m_nodes.y = m_nodes.z = null;
+	    m_nodes.floatX = new float[m_numNodes];
+	    m_nodes.floatY = new float[m_numNodes];
+	    m_nodes.floatZ = new float[m_numNodes];
+	    m_compactCoordinates = true;
+	}
+	else
+	{
+	    double[] layoutW = new double[m_numNodes];
+	    for (int i = 0; i < m_numNodes; i++)
+	    {
+		layoutW[i] = getNodeLayoutW(i);
+	    }
 
-	    m_nodes.x[i] = p.x / p.w;
-	    m_nodes.y[i] = p.y / p.w;
-	    m_nodes.z[i] = p.z / p.w;
+	    m_nodes.layoutW = layoutW;
+	    m_nodes.floatX = m_nodes.floatY = m_nodes.floatZ = null;
+	    m_nodes.x = new double[m_numNodes];
+	    m_nodes.y = new double[m_numNodes];
+	    m_nodes.z = new double[m_numNodes];
+	    m_compactCoordinates = false;
 	}
+	++m_coordinatesVersion;
     }
 
     public void setRootNode(int node)
     {
-	m_nodes.parent[node] = -1;
+	m_nodes.parent.set(node, -1);
 	m_rootNode = node;
     }
 
     public void setNodeID(int node, int id)
     {
-	m_nodes.id[node] = id;
+	m_nodes.id.set(node, id);
     }
 
     public void setNodeRadius(int node, double radius)
@@ -355,48 +511,54 @@ public class H3Graph
 
     public void setNodeCoordinates(int node, double x, double y, double z)
     {
-	m_nodes.x[node] = x;
-	m_nodes.y[node] = y;
-	m_nodes.z[node] = z;
+	if (m_compactCoordinates)
+	{
+	    m_nodes.floatX[node] = (float)x;
+	    m_nodes.floatY[node] = (float)y;
+	    m_nodes.floatZ[node] = (float)z;
+	}
+	else
+	{
+	    m_nodes.x[node] = x;
+	    m_nodes.y[node] = y;
+	    m_nodes.z[node] = z;
+	}
     }
 
     public void setNodeCoordinates(int node, Point3d p)
     {
-	m_nodes.x[node] = p.x;
-	m_nodes.y[node] = p.y;
-	m_nodes.z[node] = p.z;
+	setNodeCoordinates(node, p.x, p.y, p.z);
     }
 
     public void setNodeCoordinates(int node, Point4d p)
     {
-	m_nodes.x[node] = p.x / p.w;
-	m_nodes.y[node] = p.y / p.w;
-	m_nodes.z[node] = p.z / p.w;
+	setNodeCoordinates(node, p.x / p.w, p.y / p.w, p.z / p.w);
     }
 
     public void setNodeLayoutCoordinates(int node, double x, double y,
 					 double z, double w)
     {
-	m_nodes.layoutX[node] = x;
-	m_nodes.layoutY[node] = y;
-	m_nodes.layoutZ[node] = z;
-	m_nodes.layoutW[node] = w;
+	if (m_compactCoordinates)
+	{
+	    setNodeLayoutCoordinatesCompact(node, x, y, z, w);
+	}
+	else
+	{
+	    m_nodes.layoutX[node] = x;
+	    m_nodes.layoutY[node] = y;
+	    m_nodes.layoutZ[node] = z;
+	    m_nodes.layoutW[node] = w;
+	}
     }
 
     public void setNodeLayoutCoordinates(int node, Point3d p)
     {
-	m_nodes.layoutX[node] = p.x;
-	m_nodes.layoutY[node] = p.y;
-	m_nodes.layoutZ[node] = p.z;
-	m_nodes.layoutW[node] = 1.0;
+	setNodeLayoutCoordinates(node, p.x, p.y, p.z, 1.0);
     }
 
     public void setNodeLayoutCoordinates(int node, Point4d p)
     {
-	m_nodes.layoutX[node] = p.x;
-	m_nodes.layoutY[node] = p.y;
-	m_nodes.layoutZ[node] = p.z;
-	m_nodes.layoutW[node] = p.w;
+	setNodeLayoutCoordinates(node, p.x, p.y, p.z, p.w);
     }
 
     // The following two methods, addChildLink() and addNodeNontreeLink(),
@@ -417,7 +579,7 @@ public class H3Graph
 
     public void startChildLinks(int node)
     {
-	m_nodes.treeLinks[node] = m_links.nextIndex;
+	m_nodes.treeLinks.set(node, m_links.nextIndex);
     }
 
     // linkID is the ID of the corresponding link in the backing libsea graph
@@ -427,16 +589,16 @@ public class H3Graph
 	++m_numTreeLinks;
 
 	int link = m_links.nextIndex++;
-	m_nodes.parent[child] = link;
-	m_links.id[link] = linkID;
-	m_links.source[link] = node;
-	m_links.destination[link] = child;
+	m_nodes.parent.set(child, link);
+	m_links.id.set(link, linkID);
+	m_links.source.set(link, node);
+	m_links.destination.set(link, child);
 	m_links.isTreeLink.set(link);
     }
 
     public void startNontreeLinks(int node)
     {
-	m_nodes.nontreeLinks[node] = m_links.nextIndex;
+	m_nodes.nontreeLinks.set(node, m_links.nextIndex);
     }
 
     // linkID is the ID of the corresponding link in the backing libsea graph
@@ -446,31 +608,31 @@ public class H3Graph
 	++m_numNontreeLinks;
 
 	int link = m_links.nextIndex++;
-	m_links.id[link] = linkID;
-	m_links.source[link] = node;
-	m_links.destination[link] = target;
+	m_links.id.set(link, linkID);
+	m_links.source.set(link, node);
+	m_links.destination.set(link, target);
     }
 
     public void endNodeLinks(int node)
     {
-	m_nodes.linksEnd[node] = m_links.nextIndex;
+	m_nodes.linksEnd.set(node, m_links.nextIndex);
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     public void setNodeColor(int node, int color)
     {
-	m_nodes.color[node] = color;
+	m_nodes.color.set(node, color);
     }
 
     public void setNodeColor(int node, byte r, byte g, byte b)
     {
-	m_nodes.color[node] = (r << 16) | (g << 8) | b;
+	m_nodes.color.set(node, (r << 16) | (g << 8) | b);
     }
 
     public void setNodeDefaultColor(int color)
     {
-	Arrays.fill(m_nodes.color, color);
+	m_nodes.color.fill(color);
     }
 
     public void setNodeDefaultColor(byte r, byte g, byte b)
@@ -513,22 +675,22 @@ public class H3Graph
 
     public void setLinkID(int link, int id)
     {
-	m_links.id[link] = id;
+	m_links.id.set(link, id);
     }
 
     public void setLinkColor(int link, int color)
     {
-	m_links.color[link] = color;
+	m_links.color.set(link, color);
     }
 
     public void setLinkColor(int link, byte r, byte g, byte b)
     {
-	m_links.color[link] = (r << 16) | (g << 8) | b;
+	m_links.color.set(link, (r << 16) | (g << 8) | b);
     }
 
     public void setLinkDefaultColor(int color)
     {
-	Arrays.fill(m_links.color, color);
+	m_links.color.fill(color);
     }
 
     public void setLinkDefaultColor(byte r, byte g, byte b)
@@ -579,7 +741,7 @@ public class H3Graph
 
     public void setLinkSelectivity(boolean treeLink, boolean isSelected)
     {
-	m_links.isVisible.set(treeLink, isSelected);
+	m_links.isSelected.set(treeLink, isSelected);
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -597,7 +759,7 @@ public class H3Graph
 
     public void pruneVisibilityToNeighborhood(int node, int distance)
     {
-	setNeighborhoodDisplayability(node, 0, distance);
+	setNeighborhoodDisplayability(node, distance);
 	computeVisibility();
     }
 
@@ -680,80 +842,293 @@ public class H3Graph
     }
 
     ////////////////////////////////////////////////////////////////////////
-    // PRIVATE METHODS
+    // BULK TRANSFER METHODS
     ////////////////////////////////////////////////////////////////////////
 
-    // Assumes m_nodes.isVisible has been computed from m_nodes.isDisplayable
-    // and m_nodes.isSelected.  This adjusts m_links.isDisplayable but neither
-    // m_links.isSelected nor m_links.isVisible.  Thus, m_links.isVisible
-    // must be computed sometime after calling this method.
-    private void computeNontreeLinkDisplayability()
+    // The following methods give H3GraphSnapshot bulk access to the arrays
+    // making up the topology and the layout of the graph, so that a graph
+    // can be saved and restored without going through the per-element
+    // methods above.  Each method transfers its arrays in a fixed order,
+    // starting at the current position of the buffer, and advances the
+    // position past the transferred values.
+
+    // The number of int values transferred by {write,read}Topology().
+    public int getTopologySize()
     {
-	int node = 0;
-	int numNontreeLinksSeen = 0;
-	while (numNontreeLinksSeen < m_numNontreeLinks)
+	return 5 * m_numNodes + 3 * m_numLinks;
+    }
+
+    // The number of double values transferred by
+    // {write,read}LayoutCoordinates().
+    public int getLayoutCoordinatesSize()
+    {
+	return 4 * m_numNodes;
+    }
+
+    public void writeTopology(IntBuffer buffer)
+    {
+	m_nodes.id.write(buffer);
+	m_nodes.parent.write(buffer);
+	m_nodes.treeLinks.write(buffer);
+	m_nodes.nontreeLinks.write(buffer);
+	m_nodes.linksEnd.write(buffer);
+	m_links.id.write(buffer);
+	m_links.source.write(buffer);
+	m_links.destination.write(buffer);
+    }
+
+    // This replaces all links of the graph, and so it must be called on
+    // a freshly constructed instance in place of the usual calling
+    // sequence of startChildLinks(), addChildLink(), etc.  The root node
+    // must still be set with setRootNode() afterwards.
+    public void readTopology(IntBuffer buffer)
+    {
+	m_nodes.id.read(buffer);
+	m_nodes.parent.read(buffer);
+	m_nodes.treeLinks.read(buffer);
+	m_nodes.nontreeLinks.read(buffer);
+	m_nodes.linksEnd.read(buffer);
+	m_links.id.read(buffer);
+	m_links.source.read(buffer);
+	m_links.destination.read(buffer);
+
+	// The tree links of a node are exactly those in the range
+	// [treeLinks[i], nontreeLinks[i]), so the partitioning of links
+	// need not be stored separately.
+	m_numTreeLinks = 0;
+	m_links.isTreeLink.clear();
+	for (int i = 0; i < m_numNodes; i++)
 	{
-	    int nontreeStart = getNodeNontreeIndex(node);
-	    int end = getNodeLinksEndIndex(node);
+	    int start = m_nodes.treeLinks.get(i);
+	    int nontreeStart = m_nodes.nontreeLinks.get(i);
+	    if (start < nontreeStart)
+	    {
+		m_links.isTreeLink.set(start, nontreeStart);
+		m_numTreeLinks += nontreeStart - start;
+	    }
+	}
+
+	m_numNontreeLinks = m_numLinks - m_numTreeLinks;
+	m_links.nextIndex = m_numLinks;
+    }
 
-	    if (nontreeStart != end)
+    public void writeLayoutCoordinates(DoubleBuffer buffer)
+    {
+	buffer.put(m_nodes.layoutX);
+	buffer.put(m_nodes.layoutY);
+	buffer.put(m_nodes.layoutZ);
+	if (m_compactCoordinates)
+	{
+	    for (int i = 0; i < m_numNodes; i++)
 	    {
-		numNontreeLinksSeen += end - nontreeStart;
-		if (checkNodeVisible(node))
+		buffer.put(getNodeLayoutW(i));
+	    }
+	}
+	else
+	{
+	    buffer.put(m_nodes.layoutW);
+	}
+    }
+
+    public void readLayoutCoordinates(DoubleBuffer buffer)
+    {
+	buffer.get(m_nodes.layoutX);
+	buffer.get(m_nodes.layoutY);
+	buffer.get(m_nodes.layoutZ);
+	if (m_compactCoordinates)
+	{
+	    for (int i = 0; i < m_numNodes; i++)
+	    {
+		setNodeLayoutCoordinatesCompact
+		    (i, m_nodes.layoutX[i], m_nodes.layoutY[i],
+		     m_nodes.layoutZ[i], buffer.get());
+	    }
+	}
+	else
+	{
+	    buffer.get(m_nodes.layoutW);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The kernel of the transformNodes() methods.  The nodes transformed
+    // are nodes[i] for start <= i < end, or just i if {nodes} is null,
+    // and {radii}, if not null, is indexed by i.  The two loops differ
+    // only in the representation of coordinates (see
+    // setCompactCoordinates()).
+    private void transformNodes(Matrix4d t, int[] nodes, int start, int end,
+				double[] radii)
+    {
+	double m00 = t.m00, m01 = t.m01, m02 = t.m02, m03 = t.m03;
+	double m10 = t.m10, m11 = t.m11, m12 = t.m12, m13 = t.m13;
+	double m20 = t.m20, m21 = t.m21, m22 = t.m22, m23 = t.m23;
+	double m30 = t.m30, m31 = t.m31, m32 = t.m32, m33 = t.m33;
+
+	double[] lx = m_nodes.layoutX;
+	double[] ly = m_nodes.layoutY;
+	double[] lz = m_nodes.layoutZ;
+	double[] radius = m_nodes.radius;
+
+	if (m_compactCoordinates)
+	{
+	    float[] px = m_nodes.floatX;
+	    float[] py = m_nodes.floatY;
+	    float[] pz = m_nodes.floatZ;
+	    for (int i = start; i < end; i++)
+	    {
+		int node = (nodes == null ? i : nodes[i]);
+		double x = lx[node];
+		double y = ly[node];
+		double z = lz[node];
+		double w = Math.sqrt(1.0 + x * x + y * y + z * z);
+
+		double s = 1.0 / (m30 * x + m31 * y + m32 * z + m33 * w);
+		double tx = (m00 * x + m01 * y + m02 * z + m03 * w) * s;
+		double ty = (m10 * x + m11 * y + m12 * z + m13 * w) * s;
+		double tz = (m20 * x + m21 * y + m22 * z + m23 * w) * s;
+		double r = 1.0 - (tx * tx + ty * ty + tz * tz);
+
+		px[node] = (float)tx;
+		py[node] = (float)ty;
+		pz[node] = (float)tz;
+		radius[node] = r;
+		if (radii != null)
 		{
-		    for (int i = nontreeStart; i < end; i++)
-		    {
-			int destination = getLinkDestination(i);
-			boolean isDisplayable = checkNodeVisible(destination);
-			setLinkDisplayability(i, isDisplayable);
-		    }
+		    radii[i] = r;
 		}
-		else
+	    }
+	}
+	else
+	{
+	    double[] lw = m_nodes.layoutW;
+	    double[] px = m_nodes.x;
+	    double[] py = m_nodes.y;
+	    double[] pz = m_nodes.z;
+	    for (int i = start; i < end; i++)
+	    {
+		int node = (nodes == null ? i : nodes[i]);
+		double x = lx[node];
+		double y = ly[node];
+		double z = lz[node];
+		double w = lw[node];
+
+		double s = 1.0 / (m30 * x + m31 * y + m32 * z + m33 * w);
+		double tx = (m00 * x + m01 * y + m02 * z + m03 * w) * s;
+		double ty = (m10 * x + m11 * y + m12 * z + m13 * w) * s;
+		double tz = (m20 * x + m21 * y + m22 * z + m23 * w) * s;
+		double r = 1.0 - (tx * tx + ty * ty + tz * tz);
+
+		px[node] = tx;
+		py[node] = ty;
+		pz[node] = tz;
+		radius[node] = r;
+		if (radii != null)
 		{
-		    for (int i = nontreeStart; i < end; i++)
-		    {
-			setLinkDisplayability(i, false);
-		    }
+		    radii[i] = r;
 		}
 	    }
+	}
+    }
+
+    // See setCompactCoordinates() for the representation used here.
+    private double getNodeLayoutW(int node)
+    {
+	if (m_compactCoordinates)
+	{
+	    double x = m_nodes.layoutX[node];
+	    double y = m_nodes.layoutY[node];
+	    double z = m_nodes.layoutZ[node];
+	    return Math.sqrt(1.0 + x * x + y * y + z * z);
+	}
+	else
+	{
+	    return m_nodes.layoutW[node];
+	}
+    }
+
+    private void setNodeLayoutCoordinatesCompact(int node, double x, double y,
+						 double z, double w)
+    {
+	double ax = x / w;
+	double ay = y / w;
+	double az = z / w;
 
-	    ++node;
+	// This is NaN for points on or outside the sphere at infinity.
+	double scale = 1.0 / Math.sqrt(1.0 - (ax * ax + ay * ay + az * az));
+	if (Double.isInfinite(scale))
+	{
+	    scale = Double.NaN;
 	}
+
+	m_nodes.layoutX[node] = ax * scale;
+	m_nodes.layoutY[node] = ay * scale;
+	m_nodes.layoutZ[node] = az * scale;
+    }
+
+    // Assumes m_nodes.isVisible has been computed from m_nodes.isDisplayable
+    // and m_nodes.isSelected.  This adjusts m_links.isDisplayable but neither
+    // m_links.isSelected nor m_links.isVisible.  Thus, m_links.isVisible
+    // must be computed sometime after calling this method.
+    private void computeNontreeLinkDisplayability()
+    {
+	m_links.isDisplayable.gatherNontree
+	    (m_links.source, m_links.destination, m_nodes.isVisible);
     }
 
     // The input node itself is assumed to have been taken care of.
     private void setSubtreeDisplayability(int node, boolean isDisplayable)
     {
-	int start = getNodeChildIndex(node);
-	int end = getNodeLinksEndIndex(node);
-	int nontreeStart = getNodeNontreeIndex(node);
-    
-	for (int i = start; i < nontreeStart; i++)
+	H3TreeWalker walker = getTreeWalker();
+	walker.start(node);
+	while (!walker.isDone())
 	{
-	    int child = getLinkDestination(i);
-            setNodeDisplayability(child, isDisplayable);
-            setLinkDisplayability(i, isDisplayable);
-	    setSubtreeDisplayability(child, isDisplayable);
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		setNodeDisplayability(child, isDisplayable);
+		setLinkDisplayability(walker.getChildLink(), isDisplayable);
+		walker.push(child);
+	    }
+	    else
+	    {
+		walker.pop();
+	    }
 	}
     }
 
     // The input node itself is assumed to have been taken care of.
-    private void setNeighborhoodDisplayability
-	(int node, int distance, int maxDistance)
+    // The children of the input node are at distance 1 from it.
+    private void setNeighborhoodDisplayability(int node, int maxDistance)
     {
-	boolean isDisplayable = (distance < maxDistance);
+	H3TreeWalker walker = getTreeWalker();
+	walker.start(node);
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		boolean isDisplayable = (walker.getDepth() < maxDistance);
+		setNodeDisplayability(child, isDisplayable);
+		setLinkDisplayability(walker.getChildLink(), isDisplayable);
+		walker.push(child);
+	    }
+	    else
+	    {
+		walker.pop();
+	    }
+	}
+    }
 
-	int start = getNodeChildIndex(node);
-	int end = getNodeLinksEndIndex(node);
-	int nontreeStart = getNodeNontreeIndex(node);
-    
-	for (int i = start; i < nontreeStart; i++)
+    private H3TreeWalker getTreeWalker()
+    {
+	if (m_treeWalker == null)
 	{
-	    int child = getLinkDestination(i);
-	    setNodeDisplayability(child, isDisplayable);
-	    setLinkDisplayability(i, isDisplayable);
-	    setNeighborhoodDisplayability(child, distance + 1, maxDistance);
+	    m_treeWalker = new H3TreeWalker(this);
 	}
+	return m_treeWalker;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -770,15 +1145,25 @@ public class H3Graph
     private Nodes m_nodes;
     private Links m_links;
 
+    // See setCompactCoordinates().
+    private boolean m_compactCoordinates = false;
+
+    // See getCoordinatesVersion().
+    private volatile int m_coordinatesVersion = 0;
+
+    // Shared by the traversals of the spanning tree done by this class,
+    // none of which are reentrant.  Created on first use.
+    private H3TreeWalker m_treeWalker;
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE CLASSES
     ////////////////////////////////////////////////////////////////////////
 
     private static class Nodes
     {
-	public Nodes(int numNodes)
+	public Nodes(int numNodes, boolean offHeap)
 	{
-	    id = new int[numNodes];
+	    id = IntArray.allocate(numNodes, offHeap);
 	    radius = new double[numNodes];
 	    x = new double[numNodes];
 	    y = new double[numNodes];
@@ -787,17 +1172,17 @@ public class H3Graph
 	    layoutY = new double[numNodes];
 	    layoutZ = new double[numNodes];
 	    layoutW = new double[numNodes];
-	    parent = new int[numNodes];
+	    parent = IntArray.allocate(numNodes, offHeap);
 
 	    // The automatic initialization of these arrays to zero is
 	    // important in giving consistent values for nodes without
 	    // child or non-tree links (e.g., when startChildLinks() et al.
 	    // are not called for them).
-	    treeLinks = new int[numNodes];
-	    nontreeLinks = new int[numNodes];
-	    linksEnd = new int[numNodes];
+	    treeLinks = IntArray.allocate(numNodes, offHeap);
+	    nontreeLinks = IntArray.allocate(numNodes, offHeap);
+	    linksEnd = IntArray.allocate(numNodes, offHeap);
 
-	    color = new int[numNodes];
+	    color = IntArray.allocate(numNodes, offHeap);
 	    isVisible = new NodeProperty(numNodes);
 	    isDisplayable = new NodeProperty(numNodes);
 	    isSelected = new NodeProperty(numNodes);
@@ -810,7 +1195,7 @@ public class H3Graph
 	// The ID of the node in the backing org.caida.libsea.Graph.
 	// This mapping is necessary since the IDs in the backing graph
 	// need not form a contiguous block starting at zero.
-	public int[] id;
+	public IntArray id;
 
 	// The radius of the nodes as determined solely by their position.
 	// This is inversely proportional to the distance from the origin to
@@ -818,11 +1203,18 @@ public class H3Graph
 	public double[] radius;
 
 	// The coordinates of nodes after hyperbolic view transformation.
+	// These are null in the compact mode of H3Graph.
 	public double[] x;
 	public double[] y;
 	public double[] z;
 
-	// The coordinates of nodes in initial layout.
+	// The above in the compact mode, and null otherwise.
+	public float[] floatX;
+	public float[] floatY;
+	public float[] floatZ;
+
+	// The coordinates of nodes in initial layout.  layoutW is null in
+	// the compact mode of H3Graph.
 	public double[] layoutX;
 	public double[] layoutY;
 	public double[] layoutZ;
@@ -832,7 +1224,7 @@ public class H3Graph
 	// connects the parent to that node.  Hence the source of the parent
 	// link gives the parent node and the destination gives the child node.
 	// The root node of the graph has a parent link value of -1.
-	public int[] parent;
+	public IntArray parent;
 
 	// The following arrays give indices into the array of links where
 	// the links of a node appear.  All the links of a node appear in
@@ -850,16 +1242,16 @@ public class H3Graph
 	//
 	// If a node has no links, then all the values will equal some
 	// arbitrary value.
-	public int[] treeLinks;
-	public int[] nontreeLinks;
-	public int[] linksEnd;
+	public IntArray treeLinks;
+	public IntArray nontreeLinks;
+	public IntArray linksEnd;
 
 	////////////////////////////////////////////////////////////////////
 	// INESSENTIAL NODE ATTRIBUTES
 	////////////////////////////////////////////////////////////////////
 
 	// Color in packed RGB format (R, G, and B in the lower three octets).
-	public int[] color;
+	public IntArray color;
 
 	// Whether a node should be drawn.
 	// This is usually the logical AND of isDisplayable and isSelected.
@@ -877,13 +1269,13 @@ public class H3Graph
 
     public static class Links
     {
-	public Links(int numLinks)
+	public Links(int numLinks, boolean offHeap)
 	{
-	    id = new int[numLinks];
-	    source = new int[numLinks];
-	    destination = new int[numLinks];
+	    id = IntArray.allocate(numLinks, offHeap);
+	    source = IntArray.allocate(numLinks, offHeap);
+	    destination = IntArray.allocate(numLinks, offHeap);
 	    isTreeLink = new BitSet(numLinks);
-	    color = new int[numLinks];
+	    color = IntArray.allocate(numLinks, offHeap);
 	    isVisible = new LinkProperty(numLinks, isTreeLink);
 	    isDisplayable = new LinkProperty(numLinks, isTreeLink);
 	    isSelected = new LinkProperty(numLinks, isTreeLink);
@@ -898,11 +1290,11 @@ public class H3Graph
 	// The ID of the link in the backing org.caida.libsea.Graph.
 	// This mapping is necessary since the IDs in the backing graph
 	// need not form a contiguous block starting at zero.
-	public int[] id;
+	public IntArray id;
 
 	// The indices of nodes.
-	public int[] source;
-	public int[] destination;
+	public IntArray source;
+	public IntArray destination;
 
 	// Whether a link is a tree link or a nontree link.
 	public BitSet isTreeLink;
@@ -912,7 +1304,7 @@ public class H3Graph
 	////////////////////////////////////////////////////////////////////
 
 	// Color in packed RGB format (R, G, and B in the lower three octets).
-	public int[] color;
+	public IntArray color;
 
 	// Whether a link should be drawn.
 	// This is usually the logical AND of isDisplayable and isSelected.
@@ -928,8 +1320,141 @@ public class H3Graph
 
     ////////////////////////////////////////////////////////////////////////
 
-    // This implementation uses inverted logic because BitSet is created
-    // with all its bits cleared.
+    // An array of ints kept either on the Java heap or in a direct buffer.
+    // Normally only one of the implementations is used in a given run, in
+    // which case the JIT compiler can inline calls to these methods.
+    private abstract static class IntArray
+    {
+	public static IntArray allocate(int length, boolean offHeap)
+	{
+	    return (offHeap
+		    ? (IntArray)new DirectIntArray(length)
+		    : (IntArray)new HeapIntArray(length));
+	}
+
+	public abstract int length();
+	public abstract int get(int index);
+	public abstract void set(int index, int value);
+	public abstract void fill(int value);
+
+	// These transfer the entire array to or from {buffer}, starting at
+	// its current position, which is advanced past the data.
+	public abstract void write(IntBuffer buffer);
+	public abstract void read(IntBuffer buffer);
+    }
+
+    private static final class HeapIntArray
+	extends IntArray
+    {
+	public HeapIntArray(int length)
+	{
+	    m_array = new int[length];
+	}
+
+	public int length()
+	{
+	    return m_array.length;
+	}
+
+	public int get(int index)
+	{
+	    return m_array[index];
+	}
+
+	public void set(int index, int value)
+	{
+	    m_array[index] = value;
+	}
+
+	public void fill(int value)
+	{
+	    Arrays.fill(m_array, value);
+	}
+
+	public void write(IntBuffer buffer)
+	{
+	    buffer.put(m_array);
+	}
+
+	public void read(IntBuffer buffer)
+	{
+	    buffer.get(m_array);
+	}
+
+	private int[] m_array;
+    }
+
+    // The memory of a direct buffer is zeroed on allocation, just like
+    // that of an int[].
+    private static final class DirectIntArray
+	extends IntArray
+    {
+	public DirectIntArray(int length)
+	{
+	    if (length > Integer.MAX_VALUE / 4)
+	    {
+		String msg = "too many elements for a direct buffer: "
+		    + length;
+		throw new RuntimeException(msg);
+	    }
+
+	    m_buffer = ByteBuffer.allocateDirect(4 * length)
+		.order(ByteOrder.nativeOrder()).asIntBuffer();
+	}
+
+	public int length()
+	{
+	    return m_buffer.capacity();
+	}
+
+	public int get(int index)
+	{
+	    return m_buffer.get(index);
+	}
+
+	public void set(int index, int value)
+	{
+	    m_buffer.put(index, value);
+	}
+
+	public void fill(int value)
+	{
+	    int length = m_buffer.capacity();
+	    for (int i = 0; i < length; i++)
+	    {
+		m_buffer.put(i, value);
+	    }
+	}
+
+	public void write(IntBuffer buffer)
+	{
+	    IntBuffer source = m_buffer.duplicate();
+	    source.clear();
+	    buffer.put(source);
+	}
+
+	public void read(IntBuffer buffer)
+	{
+	    IntBuffer source = buffer.slice();
+	    source.limit(m_buffer.capacity());
+
+	    IntBuffer destination = m_buffer.duplicate();
+	    destination.clear();
+	    destination.put(source);
+
+	    buffer.position(buffer.position() + m_buffer.capacity());
+	}
+
+	private IntBuffer m_buffer;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // These implementations use inverted logic because a long[] is created
+    // with all its bits cleared: a set bit means the property is false for
+    // that element, and a null m_property means it is true for all
+    // elements.  Bits past the last element are always left cleared, so
+    // count(), check(), and conjunction() can work a whole word at a time.
     private static final class NodeProperty
     {
 	public NodeProperty(int numNodes)
@@ -939,30 +1464,18 @@ public class H3Graph
 
 	public int count()
 	{
-	    int retval = m_numNodes;
-	    if (m_property != null)
-	    {
-		int length = m_property.length();
-		for (int i = 0; i < length; i++)
-		{
-		    if (m_property.get(i))
-		    {
-			--retval;
-		    }
-		}
-	    }
-	    return retval;
+	    return m_numNodes - BitWords.count(m_property);
 	}
 
 	// Returns true iff all nodes are visible.
 	public boolean check()
 	{
-	    return (m_property == null || m_property.length() == 0);
+	    return BitWords.isEmpty(m_property);
 	}
 
 	public boolean check(int node)
 	{
-	    return (m_property == null || !m_property.get(node));
+	    return (m_property == null || !BitWords.get(m_property, node));
 	}
 
 	public void set(int node, boolean value)
@@ -971,13 +1484,13 @@ public class H3Graph
 	    {
 		if (m_property != null)
 		{
-		    m_property.clear(node);
+		    BitWords.set(m_property, node, false);
 		}
 	    }
 	    else
 	    {
 		ensureAllocated();
-		m_property.set(node);
+		BitWords.set(m_property, node, true);
 	    }
 	}
 
@@ -991,10 +1504,7 @@ public class H3Graph
 	    else
 	    {
 		ensureAllocated();
-		for (int i = 0; i < m_numNodes; i++)
-		{
-		    m_property.set(i);
-		}
+		BitWords.setRange(m_property, 0, m_numNodes, true);
 	    }
 	}
 
@@ -1004,41 +1514,24 @@ public class H3Graph
 	// (that is, ~R = ~P | ~Q implies R = P & Q).
 	public void conjunction(NodeProperty p1, NodeProperty p2)
 	{
-	    if (p1.m_property == null && p2.m_property == null)
-	    {
-		m_property = null;
-	    }
-	    else if (p1.m_property == null && p2.m_property != null)
-	    {
-		m_property = (BitSet)p2.m_property.clone();
-	    }
-	    else if (p1.m_property != null && p2.m_property == null)
-	    {
-		m_property = (BitSet)p1.m_property.clone();
-	    }
-	    else
-	    {
-		m_property = (BitSet)p1.m_property.clone();
-		m_property.or(p2.m_property);
-	    }
+	    m_property = BitWords.or(p1.m_property, p2.m_property, m_property);
 	}
 
 	private void ensureAllocated()
 	{
 	    if (m_property == null)
 	    {
-		m_property = new BitSet(m_numNodes);
+		m_property = BitWords.allocate(m_numNodes);
 	    }
 	}
 
 	private int m_numNodes;
-	private BitSet m_property;
+	private long[] m_property;
     }
 
     ////////////////////////////////////////////////////////////////////////
 
-    // This implementation uses inverted logic because BitSet is created
-    // with all its bits cleared.
+    // See NodeProperty for the representation used here.
     private static final class LinkProperty
     {
 	public LinkProperty(int numLinks, BitSet isTreeLink)
@@ -1049,30 +1542,18 @@ public class H3Graph
 
 	public int count()
 	{
-	    int retval = m_numLinks;
-	    if (m_property != null)
-	    {
-		int length = m_property.length();
-		for (int i = 0; i < length; i++)
-		{
-		    if (m_property.get(i))
-		    {
-			--retval;
-		    }
-		}
-	    }
-	    return retval;
+	    return m_numLinks - BitWords.count(m_property);
 	}
 
 	// Returns true iff all links are visible.
 	public boolean check()
 	{
-	    return (m_property == null || m_property.length() == 0);
+	    return BitWords.isEmpty(m_property);
 	}
 
 	public boolean check(int link)
 	{
-	    return (m_property == null || !m_property.get(link));
+	    return (m_property == null || !BitWords.get(m_property, link));
 	}
 
 	public void set(int link, boolean value)
@@ -1081,13 +1562,13 @@ public class H3Graph
 	    {
 		if (m_property != null)
 		{
-		    m_property.clear(link);
+		    BitWords.set(m_property, link, false);
 		}
 	    }
 	    else
 	    {
 		ensureAllocated();
-		m_property.set(link);
+		BitWords.set(m_property, link, true);
 	    }
 	}
 
@@ -1101,51 +1582,95 @@ public class H3Graph
 	    else
 	    {
 		ensureAllocated();
-		for (int i = 0; i < m_numLinks; i++)
-		{
-		    m_property.set(i);
-		}
+		BitWords.setRange(m_property, 0, m_numLinks, true);
 	    }
 	}
 
 	// Set value for all links of the specified type.
 	public void set(boolean treeLink, boolean value)
 	{
+	    if (value && m_property == null)
+	    {
+		return;
+	    }
+
+	    ensureAllocated();
+
+	    // BitSet.toLongArray() omits the words past the last set bit.
+	    long[] isTreeLink = m_isTreeLink.toLongArray();
+	    int numWords = m_property.length;
+	    for (int i = 0; i < numWords; i++)
+	    {
+		long mask = (i < isTreeLink.length ? isTreeLink[i] : 0L);
+		if (!treeLink)
+		{
+		    mask = ~mask;
+		}
+
+		if (value)
+		{
+		    m_property[i] &= ~mask;
+		}
+		else
+		{
+		    m_property[i] |= mask;
+		}
+	    }
+
 	    if (value)
 	    {
-		if (m_property != null)
+		if (BitWords.isEmpty(m_property))
 		{
-		    setBits(treeLink, false);
-		    if (m_property.length() == 0)
-		    {
-			m_property = null;
-		    }
+		    m_property = null;
 		}
 	    }
 	    else
 	    {
-		ensureAllocated();
-		setBits(treeLink, true);
+		BitWords.setRange(m_property, m_numLinks, numWords << 6,
+				  false);
 	    }
 	}
 
-	// Assumes m_property != null.
-	private void setBits(boolean treeLink, boolean value)
+	// Sets the value of each nontree link to the logical AND of the values
+	// of nodeProperty for its source and destination nodes.  The nontree
+	// links are found a word at a time from m_isTreeLink, and the values
+	// are gathered straight out of the words of nodeProperty.
+	public void gatherNontree(IntArray source, IntArray destination,
+				  NodeProperty nodeProperty)
 	{
-	    int length = m_property.length();
-	    for (int i = 0; i < length; i++)
+	    long[] nodeWords = nodeProperty.m_property;
+	    if (nodeWords == null)
+	    {
+		set(false, true);
+		return;
+	    }
+
+	    ensureAllocated();
+
+	    long[] isTreeLink = m_isTreeLink.toLongArray();
+	    int numWords = m_property.length;
+	    for (int i = 0; i < numWords; i++)
 	    {
-		if (m_isTreeLink.get(i) == treeLink)
+		long mask = ~(i < isTreeLink.length ? isTreeLink[i] : 0L);
+		if (i == numWords - 1)
 		{
-		    if (value)
-		    {
-			m_property.set(i);
-		    }
-		    else
-		    {
-			m_property.clear(i);
-		    }
+		    mask &= -1L >>> -m_numLinks;
 		}
+
+		// Inverted logic turns the AND into an OR here as well.
+		long bits = 0L;
+		for (long rest = mask; rest != 0L; rest &= rest - 1L)
+		{
+		    int bit = Long.numberOfTrailingZeros(rest);
+		    int link = (i << 6) + bit;
+		    int s = source.get(link);
+		    int d = destination.get(link);
+		    long value = (nodeWords[s >>> 6] >>> s)
+			| (nodeWords[d >>> 6] >>> d);
+		    bits |= (value & 1L) << bit;
+		}
+
+		m_property[i] = (m_property[i] & ~mask) | bits;
 	    }
 	}
 
@@ -1155,36 +1680,152 @@ public class H3Graph
 	// (that is, ~R = ~P | ~Q implies R = P & Q).
 	public void conjunction(LinkProperty p1, LinkProperty p2)
 	{
-	    if (p1.m_property == null && p2.m_property == null)
+	    m_property = BitWords.or(p1.m_property, p2.m_property, m_property);
+	}
+
+	private void ensureAllocated()
+	{
+	    if (m_property == null)
 	    {
-		m_property = null;
+		m_property = BitWords.allocate(m_numLinks);
 	    }
-	    else if (p1.m_property == null && p2.m_property != null)
+	}
+
+	private int m_numLinks;
+	private BitSet m_isTreeLink;
+	private long[] m_property;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // Bit vectors for NodeProperty and LinkProperty.  Bit i of a vector is
+    // bit (i % 64) of word (i / 64), as in java.util.BitSet, but the words
+    // are exposed so that whole vectors can be combined a word at a time.
+    private static final class BitWords
+    {
+	public static long[] allocate(int numBits)
+	{
+	    return new long[(numBits + 63) >>> 6];
+	}
+
+	public static boolean get(long[] words, int i)
+	{
+	    return (words[i >>> 6] & (1L << i)) != 0L;
+	}
+
+	public static void set(long[] words, int i, boolean value)
+	{
+	    if (value)
 	    {
-		m_property = (BitSet)p2.m_property.clone();
+		words[i >>> 6] |= 1L << i;
 	    }
-	    else if (p1.m_property != null && p2.m_property == null)
+	    else
 	    {
-		m_property = (BitSet)p1.m_property.clone();
+		words[i >>> 6] &= ~(1L << i);
+	    }
+	}
+
+	// Sets the bits in the range [start, end), which must lie within
+	// the words of the vector.
+	public static void setRange(long[] words, int start, int end,
+				    boolean value)
+	{
+	    if (start >= end)
+	    {
+		return;
+	    }
+
+	    int first = start >>> 6;
+	    int last = (end - 1) >>> 6;
+	    long firstMask = -1L << start;
+	    long lastMask = -1L >>> -end;
+
+	    if (first == last)
+	    {
+		setMasked(words, first, firstMask & lastMask, value);
 	    }
 	    else
 	    {
-		m_property = (BitSet)p1.m_property.clone();
-		m_property.or(p2.m_property);
+		setMasked(words, first, firstMask, value);
+		long fill = (value ? -1L : 0L);
+		for (int i = first + 1; i < last; i++)
+		{
+		    words[i] = fill;
+		}
+		setMasked(words, last, lastMask, value);
 	    }
 	}
 
-	private void ensureAllocated()
+	// A null vector counts as empty.
+	public static int count(long[] words)
 	{
-	    if (m_property == null)
+	    int retval = 0;
+	    if (words != null)
+	    {
+		for (int i = 0; i < words.length; i++)
+		{
+		    retval += Long.bitCount(words[i]);
+		}
+	    }
+	    return retval;
+	}
+
+	// A null vector counts as empty.
+	public static boolean isEmpty(long[] words)
+	{
+	    if (words != null)
 	    {
-		m_property = new BitSet(m_numLinks);
+		for (int i = 0; i < words.length; i++)
+		{
+		    if (words[i] != 0L)
+		    {
+			return false;
+		    }
+		}
 	    }
+	    return true;
 	}
 
-	private int m_numLinks;
-	private BitSet m_isTreeLink;
-	private BitSet m_property;
+	// Returns the bitwise OR of p1 and p2, where null stands for an empty
+	// vector, and an empty result is returned as null.  The result is
+	// stored in the words of retval when these can be reused.
+	public static long[] or(long[] p1, long[] p2, long[] retval)
+	{
+	    if (p1 == null && p2 == null)
+	    {
+		return null;
+	    }
+
+	    long[] other = (p1 == null ? p2 : p1);
+	    if (retval == null || retval == p1 || retval == p2
+		|| retval.length != other.length)
+	    {
+		retval = new long[other.length];
+	    }
+
+	    long nonzero = 0L;
+	    for (int i = 0; i < retval.length; i++)
+	    {
+		long word = (p1 == null ? 0L : p1[i])
+		    | (p2 == null ? 0L : p2[i]);
+		retval[i] = word;
+		nonzero |= word;
+	    }
+	    return (nonzero == 0L ? null : retval);
+	}
+
+	private static void setMasked(long[] words, int i, long mask,
+				      boolean value)
+	{
+	    if (value)
+	    {
+		words[i] |= mask;
+	    }
+	    else
+	    {
+		words[i] &= ~mask;
+	    }
+	}
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -1233,30 +1874,29 @@ public class H3Graph
     public int checkSpanningTree()
     {
 	BitSet visited = new BitSet();
-	return checkSpanningTree(visited, m_rootNode);
-    }
-
-    private int checkSpanningTree(BitSet visited, int node)
-    {
-	if (visited.get(node))
-	{
-	    return -1;
-	}
-	visited.set(node);
-
-	int start = getNodeChildIndex(node);
-	int nontreeStart = getNodeNontreeIndex(node);
+	visited.set(m_rootNode);
 
 	int retval = 1;
-	for (int i = start; i < nontreeStart; i++)
+
+	H3TreeWalker walker = getTreeWalker();
+	walker.start(m_rootNode);
+	while (!walker.isDone())
 	{
-	    int child = getLinkDestination(i);
-	    int numReachable = checkSpanningTree(visited, child);
-	    if (numReachable == -1)
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (visited.get(child))
+		{
+		    return -1;
+		}
+		visited.set(child);
+		++retval;
+		walker.push(child);
+	    }
+	    else
 	    {
-		return -1;
+		walker.pop();
 	    }
-	    retval += numReachable;
 	}
 
 	return retval;
@@ -1300,24 +1940,33 @@ public class H3Graph
     private int checkReachability(BitSet visited, int node)
     {
 	int retval = 1;
-
-	if (visited.get(node))
-	{
-	    String msg = "ERROR: Encountered node " + node
-		+ " more than once in the spanning tree; there could be"
-		+ " cycles or parallel links.";
-	    System.out.println(msg);
-	    return 0;
-	}
 	visited.set(node);
 
-	int treeLinks = m_nodes.treeLinks[node];
-	int nontreeLinks = m_nodes.nontreeLinks[node];
-
-	while (treeLinks < nontreeLinks)
+	H3TreeWalker walker = getTreeWalker();
+	walker.start(node);
+	while (!walker.isDone())
 	{
-	    int child = m_links.destination[treeLinks++];
-	    retval += checkReachability(visited, child);
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (visited.get(child))
+		{
+		    String msg = "ERROR: Encountered node " + child
+			+ " more than once in the spanning tree; there could"
+			+ " be cycles or parallel links.";
+		    System.out.println(msg);
+		}
+		else
+		{
+		    visited.set(child);
+		    ++retval;
+		    walker.push(child);
+		}
+	    }
+	    else
+	    {
+		walker.pop();
+	    }
 	}
 
 	return retval;
@@ -1334,43 +1983,43 @@ public class H3Graph
 	System.out.println("\tnextIndex: " + m_links.nextIndex);
 	
 	System.out.println("\nParent:\n");
-	for (int i = 0; i < m_nodes.parent.length; i++)
+	for (int i = 0; i < m_nodes.parent.length(); i++)
 	{
 	    if (i == m_numNodes)
 	    {
 		System.out.println("- - - - - - - - - - - - - - - - - - - -");
 	    }
-	    System.out.println(i + " => " + m_nodes.parent[i]);
+	    System.out.println(i + " => " + m_nodes.parent.get(i));
 	}
 
 	System.out.println("\nLinksStart:\n");
-	for (int i = 0; i < m_nodes.treeLinks.length; i++)
+	for (int i = 0; i < m_nodes.treeLinks.length(); i++)
 	{
 	    if (i == m_numNodes)
 	    {
 		System.out.println("- - - - - - - - - - - - - - - - - - - -");
 	    }
-	    System.out.println(i + " => " + m_nodes.treeLinks[i]);
+	    System.out.println(i + " => " + m_nodes.treeLinks.get(i));
 	}
 
 	System.out.println("\nNontreeLinksStart:\n");
-	for (int i = 0; i < m_nodes.nontreeLinks.length; i++)
+	for (int i = 0; i < m_nodes.nontreeLinks.length(); i++)
 	{
 	    if (i == m_numNodes)
 	    {
 		System.out.println("- - - - - - - - - - - - - - - - - - - -");
 	    }
-	    System.out.println(i + " => " + m_nodes.nontreeLinks[i]);
+	    System.out.println(i + " => " + m_nodes.nontreeLinks.get(i));
 	}
 
 	System.out.println("\nLinksEnd:\n");
-	for (int i = 0; i < m_nodes.linksEnd.length; i++)
+	for (int i = 0; i < m_nodes.linksEnd.length(); i++)
 	{
 	    if (i == m_numNodes)
 	    {
 		System.out.println("- - - - - - - - - - - - - - - - - - - -");
 	    }
-	    System.out.println(i + " => " + m_nodes.linksEnd[i]);
+	    System.out.println(i + " => " + m_nodes.linksEnd.get(i));
 	}
     }
 
@@ -1387,14 +2036,15 @@ public class H3Graph
 	for (int i = 0; i < m_numNodes; i++)
 	{
 	    System.out.println("Node " + i + ":");
-	    System.out.println("\tparent link: " + m_nodes.parent[i]);
+	    int parentLink = m_nodes.parent.get(i);
+	    System.out.println("\tparent link: " + parentLink);
 	    System.out.println("\tparent node: "
-			       + (m_nodes.parent[i] >= 0
-				  ? m_links.source[m_nodes.parent[i]] : -1));
+			       + (parentLink >= 0
+				  ? m_links.source.get(parentLink) : -1));
 
-	    int treeLinks = m_nodes.treeLinks[i];
-	    int nontreeLinks = m_nodes.nontreeLinks[i];
-	    int linksEnd = m_nodes.linksEnd[i];
+	    int treeLinks = m_nodes.treeLinks.get(i);
+	    int nontreeLinks = m_nodes.nontreeLinks.get(i);
+	    int linksEnd = m_nodes.linksEnd.get(i);
 
 	    System.out.println("\ttreeLinks: " + treeLinks);
 	    System.out.println("\tnontreeLinks: " + nontreeLinks);
@@ -1408,8 +2058,8 @@ public class H3Graph
 		}
 
 		System.out.println("\t\t" + j + ": "
-				   + m_links.source[j] + " => "
-				   + m_links.destination[j]);
+				   + m_links.source.get(j) + " => "
+				   + m_links.destination.get(j));
 	    }
 	}
     }
@@ -20,7 +20,11 @@
 // 
 
 
+import java.nio.DoubleBuffer;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import javax.vecmath.*;
 import mpfun.*;
 
@@ -32,13 +36,44 @@ public class H3GraphLayout
 
     public interface LayoutState {}
 
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC CONSTANTS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The kinds of extended-precision arithmetic that can be used to
+    // compute coordinates when double precision is insufficient.
+    //
+    // EXTENDED_PRECISION_MP uses the MPJava classes at 30 digits, and is
+    // very slow.  EXTENDED_PRECISION_DOUBLE_DOUBLE uses double-double
+    // arithmetic (about 32 digits), which is much faster and can be done
+    // in parallel.
+    public static final int EXTENDED_PRECISION_MP = 0;
+    public static final int EXTENDED_PRECISION_DOUBLE_DOUBLE = 1;
+
     ////////////////////////////////////////////////////////////////////////
     // CONSTRUCTORS
     ////////////////////////////////////////////////////////////////////////
 
     public H3GraphLayout(boolean attemptExtended)
+    {
+	this(attemptExtended, 1);
+    }
+
+    // If {parallelism} is greater than one, then the hyperbolic layout is
+    // computed by that many threads, with independent subtrees being laid
+    // out in parallel.  The result is identical to a sequential layout.
+    public H3GraphLayout(boolean attemptExtended, int parallelism)
+    {
+	this(attemptExtended, parallelism, EXTENDED_PRECISION_MP);
+    }
+
+    // {extendedPrecision} is one of the EXTENDED_PRECISION_* constants.
+    public H3GraphLayout(boolean attemptExtended, int parallelism,
+			 int extendedPrecision)
     {
 	ATTEMPT_EXTENDED = attemptExtended;
+	PARALLELISM = parallelism;
+	EXTENDED_PRECISION = extendedPrecision;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -61,16 +96,23 @@ public class H3GraphLayout
 	if (numNodes > 0)
 	{
 	    retval = new HyperbolicLayout(numNodes);
-	    computeRadii(graph, retval);
-	    computeAngles(graph, retval);
-
-	    if (useExtendedPrecision)
+	    if (PARALLELISM > 1)
 	    {
-		computeCoordinatesMP(graph, retval);
+		layoutHyperbolicParallel(graph, retval, useExtendedPrecision);
 	    }
 	    else
 	    {
-		computeCoordinates(graph, retval);
+		computeRadii(graph, retval);
+		computeAngles(graph, retval);
+
+		if (useExtendedPrecision)
+		{
+		    computeCoordinatesExtended(graph, retval, null);
+		}
+		else
+		{
+		    computeCoordinates(graph, retval);
+		}
 	    }
 	}
 
@@ -99,7 +141,22 @@ public class H3GraphLayout
 	if (graph.getNumNodes() > 0)
 	{
 	    HyperbolicLayout layout = (HyperbolicLayout)state;
-	    computeCoordinatesMP(graph, layout);
+	    if (PARALLELISM > 1)
+	    {
+		ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+		try
+		{
+		    computeCoordinatesExtended(graph, layout, pool);
+		}
+		finally
+		{
+		    pool.shutdown();
+		}
+	    }
+	    else
+	    {
+		computeCoordinatesExtended(graph, layout, null);
+	    }
 	}
 
 	if (DEBUG_PRINT)
@@ -111,6 +168,124 @@ public class H3GraphLayout
 	}
     }
 
+    // Lays out {graph} again so that only the displayable nodes (see
+    // H3Graph.checkNodeDisplayable()) take up space, which gives the space
+    // of pruned subtrees to the rest of the tree, and spreads out the nodes
+    // left by narrowing.  A node is left out of the layout if it or any of
+    // its ancestors isn't displayable, and it then stays where it was.
+    // {state} must have been returned by layoutHyperbolic() for the graph,
+    // and it is updated to describe the new layout.
+    //
+    // The radius of a node depends only on its subtree, and the angles of
+    // the children of a node only on their radii and the radius of the
+    // node.  So only the nodes on the paths from the root to the subtrees
+    // whose displayability has changed since the layout was last computed
+    // need their radii and the angles of their children recomputed, and
+    // this reuses those of all other nodes.  The coordinates of the nodes
+    // in the layout are all recomputed, since a change in the radius of
+    // the root moves every subtree, but that is cheap in comparison when
+    // a large part of the graph is hidden.
+    //
+    // When every node is displayable again, the layout is identical to the
+    // one computed by layoutHyperbolic().
+    public void relayoutHyperbolic(H3Graph graph, LayoutState state)
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("relayoutHyperbolic.begin[" + startTime +"]");
+	}
+
+	if (graph.getNumNodes() > 0)
+	{
+	    HyperbolicLayout layout = (HyperbolicLayout)state;
+	    BitSet dirty = updateExcludedNodes(graph, layout);
+	    if (!dirty.isEmpty())
+	    {
+		updateRadii(graph, layout, dirty);
+		updateAngles(graph, layout, dirty);
+
+		int rootNode = graph.getRootNode();
+		graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
+		if (PARALLELISM > 1)
+		{
+		    ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+		    try
+		    {
+			pool.invoke(new CoordinatesTask
+				    (graph, layout, H3Transform.I4,
+				     rootNode, 0));
+		    }
+		    finally
+		    {
+			pool.shutdown();
+		    }
+		}
+		else
+		{
+		    computeCoordinatesSubtree(graph, layout, H3Transform.I4,
+					      rootNode, NO_FORKING);
+		}
+	    }
+
+	    if (DEBUG_PRINT)
+	    {
+		System.out.println("relayoutHyperbolic.numDirtyNodes["
+				   + dirty.cardinality() + "]");
+	    }
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("relayoutHyperbolic.end[" + stopTime + "]");
+	    System.out.println("relayoutHyperbolic.time[" + duration + "]");
+	}
+    }
+
+    // Returns true iff {state} describes a layout of every node of the
+    // graph, rather than one restricted to the displayable nodes by
+    // relayoutHyperbolic().
+    public boolean checkLayoutComplete(LayoutState state)
+    {
+	HyperbolicLayout layout = (HyperbolicLayout)state;
+	return layout.excluded == null || layout.excluded.isEmpty();
+    }
+
+    // The following methods let H3LayoutCache save and restore the state
+    // returned by layoutHyperbolic(), so that retryHyperbolicLayout() can
+    // be used on a graph whose layout was read from the cache.  Each
+    // method transfers the radii, thetas, and phis of the nodes, in that
+    // order, starting at the current position of the buffer.  Only the
+    // state of a complete layout (see checkLayoutComplete()) should be
+    // saved, since the set of nodes excluded by relayoutHyperbolic() isn't
+    // transferred.
+
+    // The number of double values transferred by {write,read}LayoutState().
+    public static int getLayoutStateSize(int numNodes)
+    {
+	return 3 * numNodes;
+    }
+
+    public void writeLayoutState(LayoutState state, DoubleBuffer buffer)
+    {
+	HyperbolicLayout layout = (HyperbolicLayout)state;
+	buffer.put(layout.radius);
+	buffer.put(layout.theta);
+	buffer.put(layout.phi);
+    }
+
+    public LayoutState readLayoutState(int numNodes, DoubleBuffer buffer)
+    {
+	HyperbolicLayout retval = new HyperbolicLayout(numNodes);
+	buffer.get(retval.radius);
+	buffer.get(retval.theta);
+	buffer.get(retval.phi);
+	return retval;
+    }
+
     public void layoutRandom(H3Graph graph)
     {
 	Random random = new Random();
@@ -128,12 +303,67 @@ public class H3GraphLayout
 
     private void computeRadii(H3Graph graph, HyperbolicLayout layout)
     {
-	computeRadiiSubtree(graph, layout, graph.getRootNode());
+	computeRadiiSubtree(graph, layout, graph.getRootNode(), NO_FORKING);
     }
 
+    // The radius of a node depends on the radii of its children, so the
+    // nodes are handled in postorder.  In a parallel layout, some subtrees
+    // may be forked off as separate tasks (see shouldFork()), each of which
+    // is joined before the radius of the parent of its root is computed.
     private void computeRadiiSubtree(H3Graph graph,
 				     HyperbolicLayout layout,
-				     int node)
+				     int node, int forkDepth)
+    {
+	List tasks = new ArrayList();  // List<RadiiTask>
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(node);
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (shouldFork(graph, walker, forkDepth))
+		{
+		    RadiiTask task =
+			new RadiiTask(graph, layout, child, forkDepth + 1);
+		    task.fork();
+		    tasks.add(task);
+		}
+		else
+		{
+		    walker.push(child);
+		}
+	    }
+	    else
+	    {
+		int current = walker.getNode();
+
+		// Tasks are forked in preorder, so those of the children of
+		// {current} are at the end of the list.
+		int numTasks = tasks.size();
+		while (numTasks > 0)
+		{
+		    RadiiTask task = (RadiiTask)tasks.get(numTasks - 1);
+		    if (graph.getNodeParent(task.getNode()) != current)
+		    {
+			break;
+		    }
+		    task.join();
+		    tasks.remove(--numTasks);
+		}
+
+		computeRadiusNode(graph, layout, current);
+		walker.pop();
+	    }
+	}
+    }
+
+    // The radii of the children of {node}, if any, must already have been
+    // computed.
+    private void computeRadiusNode(H3Graph graph,
+				   HyperbolicLayout layout,
+				   int node)
     {
 	int childIndex = graph.getNodeChildIndex(node);
 	int nontreeIndex = graph.getNodeNontreeIndex(node);
@@ -142,17 +372,28 @@ public class H3GraphLayout
 	{
 	    double HA_p = 0.0;
 
+	    int numIncluded = 0;
 	    while (childIndex < nontreeIndex)
 	    {
 		int child = graph.getLinkDestination(childIndex);
-		computeRadiiSubtree(graph, layout, child);
-		HA_p += computeCircleArea(layout.radius[child]);
+		if (!isExcluded(layout, child))
+		{
+		    HA_p += computeCircleArea(layout.radius[child]);
+		    ++numIncluded;
+		}
 
 		++childIndex;
 	    }
 
-	    HA_p *= HEMISPHERE_AREA_SCALE;
-	    layout.radius[node] = computeRadius(HA_p);
+	    if (numIncluded > 0)
+	    {
+		HA_p *= HEMISPHERE_AREA_SCALE;
+		layout.radius[node] = computeRadius(HA_p);
+	    }
+	    else
+	    {
+		layout.radius[node] = LEAF_RADIUS;
+	    }
 	}
 	else
 	{
@@ -160,6 +401,18 @@ public class H3GraphLayout
 	}
     }
 
+    // Whether relayoutHyperbolic() has left {node} out of the layout.
+    private static boolean isExcluded(HyperbolicLayout layout, int node)
+    {
+	return layout.excluded != null && layout.excluded.get(node);
+    }
+
+    // Unlike H3Graph.getNodeNumChildren(), this ignores nontree links.
+    private static boolean hasChildren(H3Graph graph, int node)
+    {
+	return graph.getNodeChildIndex(node) < graph.getNodeNontreeIndex(node);
+    }
+
     private static double computeCircleArea(double r)
     {
 	return H3Math.TWO_PI * (H3Math.cosh(r / K) - 1.0);
@@ -175,42 +428,95 @@ public class H3GraphLayout
     private void computeAngles(H3Graph graph, HyperbolicLayout layout)
     {
 	Children children = new Children();
-	computeAnglesSubtree(graph, layout, children, graph.getRootNode(), 0);
+	TernaryTreeLayout ternaryLayout = new TernaryTreeLayout();
+	computeAnglesSubtree(graph, layout, children, ternaryLayout,
+			     graph.getRootNode(), 0, NO_FORKING);
     }
 
+    // The angles of the children of a node depend only on the radii of
+    // the children, so the nodes can be handled in preorder.  {level} is
+    // the depth of {node} in the whole tree.
     private void computeAnglesSubtree(H3Graph graph,
 				      HyperbolicLayout layout,
 				      Children children,
-				      int node, int level)
+				      TernaryTreeLayout ternaryLayout,
+				      int node, int level, int forkDepth)
     {
-	int childIndex = graph.getNodeChildIndex(node);
-	int nontreeIndex = graph.getNodeNontreeIndex(node);
+	List tasks = new ArrayList();  // List<AnglesTask>
 
-	if (childIndex < nontreeIndex)
+	if (hasChildren(graph, node))
 	{
-	    // We must handle all the children first (or last), so that
-	    // there won't be any contention over the use of {children}.
+	    computeAnglesChildren(graph, layout, children, ternaryLayout,
+				  node, level);
+	}
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(node);
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
 	    {
-		for (int i = childIndex; i < nontreeIndex; i++)
+		int childLevel = level + walker.getDepth() + 1;
+		if (shouldFork(graph, walker, forkDepth))
 		{
-		    int child = graph.getLinkDestination(i);
-		    computeAnglesSubtree
-			(graph, layout, children, child, level + 1);
+		    AnglesTask task = new AnglesTask
+			(graph, layout, child, childLevel, forkDepth + 1);
+		    task.fork();
+		    tasks.add(task);
+		}
+		else
+		{
+		    if (hasChildren(graph, child))
+		    {
+			computeAnglesChildren(graph, layout, children,
+					      ternaryLayout, child,
+					      childLevel);
+			walker.push(child);
+		    }
 		}
 	    }
+	    else
+	    {
+		walker.pop();
+	    }
+	}
 
-	    children.clear();
+	joinTasks(tasks);
+    }
+
+    // Computes the angles of the children of the given node, which must
+    // have at least one child.  This only depends on the radii of the
+    // children, so the angles can be computed for nodes in any order.
+    // Excluded children are skipped, and keep their previous angles.
+    private void computeAnglesChildren(H3Graph graph,
+				       HyperbolicLayout layout,
+				       Children children,
+				       TernaryTreeLayout ternaryLayout,
+				       int node, int level)
+    {
+	int childIndex = graph.getNodeChildIndex(node);
+	int nontreeIndex = graph.getNodeNontreeIndex(node);
+
+	children.clear();
+	{
+	    for (int i = childIndex; i < nontreeIndex; i++)
 	    {
-		for (int i = childIndex; i < nontreeIndex; i++)
+		int child = graph.getLinkDestination(i);
+		if (!isExcluded(layout, child))
 		{
-		    int child = graph.getLinkDestination(i);
 		    children.add(child, layout.radius[child]);
 		}
 	    }
+	}
+
+	if (children.getNumChildren() > 0)
+	{
 	    children.sort();
 
 	    //computeAnglesNode(graph, layout, children, node);
-	    computeAnglesNode2(graph, layout, children, node, level);
+	    computeAnglesNode2(graph, layout, children, ternaryLayout,
+			       node, level);
 	}
     }
 
@@ -274,6 +580,7 @@ public class H3GraphLayout
     private void computeAnglesNode2(H3Graph graph,
 				    HyperbolicLayout layout,
 				    Children children,
+				    TernaryTreeLayout ternaryLayout,
 				    int node, int level)
     {
 	final boolean SUBTREE_3_AVG = false;
@@ -348,17 +655,17 @@ public class H3GraphLayout
 	    Children.Child second = children.getChild(1);
 	    Children.Child third = children.getChild(2);
 
-	    m_ternaryLayout.computeLayout(rp, first.radius, second.radius,
-					  third.radius);
+	    ternaryLayout.computeLayout(rp, first.radius, second.radius,
+					third.radius);
 
-	    layout.theta[first.node] = m_ternaryLayout.getThetaA();
-	    layout.phi[first.node] = m_ternaryLayout.getPhiA();
+	    layout.theta[first.node] = ternaryLayout.getThetaA();
+	    layout.phi[first.node] = ternaryLayout.getPhiA();
 
-	    layout.theta[second.node] = m_ternaryLayout.getThetaB();
-	    layout.phi[second.node] = m_ternaryLayout.getPhiB();
+	    layout.theta[second.node] = ternaryLayout.getThetaB();
+	    layout.phi[second.node] = ternaryLayout.getPhiB();
 
-	    layout.theta[third.node] = m_ternaryLayout.getThetaC();
-	    layout.phi[third.node] = m_ternaryLayout.getPhiC();
+	    layout.theta[third.node] = ternaryLayout.getThetaC();
+	    layout.phi[third.node] = ternaryLayout.getPhiC();
 	}
 	else if (numChildren == 4)
 	{
@@ -449,17 +756,17 @@ public class H3GraphLayout
 		Children.Child second = children.getChild(1);
 		Children.Child third = children.getChild(2);
 
-		m_ternaryLayout.computeLayout(rp, first.radius, second.radius,
-					      third.radius);
+		ternaryLayout.computeLayout(rp, first.radius, second.radius,
+					    third.radius);
 
-		layout.theta[first.node] = m_ternaryLayout.getThetaA();
-		layout.phi[first.node] = m_ternaryLayout.getPhiA();
+		layout.theta[first.node] = ternaryLayout.getThetaA();
+		layout.phi[first.node] = ternaryLayout.getPhiA();
 
-		layout.theta[second.node] = m_ternaryLayout.getThetaB();
-		layout.phi[second.node] = m_ternaryLayout.getPhiB();
+		layout.theta[second.node] = ternaryLayout.getThetaB();
+		layout.phi[second.node] = ternaryLayout.getPhiB();
 
-		layout.theta[third.node] = m_ternaryLayout.getThetaC();
-		layout.phi[third.node] = m_ternaryLayout.getPhiC();
+		layout.theta[third.node] = ternaryLayout.getThetaC();
+		layout.phi[third.node] = ternaryLayout.getPhiC();
 
 		double dp1 = computeDeltaPhi(first.radius, rp);
 		double dp2 = computeDeltaPhi(second.radius, rp);
@@ -642,45 +949,276 @@ public class H3GraphLayout
 	// The root node is always positioned at the origin.
 	int rootNode = graph.getRootNode();
 	graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
-	computeCoordinatesSubtree(graph, layout, H3Transform.I4, rootNode);
+	computeCoordinatesSubtree(graph, layout, H3Transform.I4, rootNode,
+				  NO_FORKING);
     }
 
     private void computeCoordinatesSubtree(H3Graph graph,
 					   HyperbolicLayout layout,
 					   Matrix4d parentTransform,
-					   int parent)
+					   int parent, int forkDepth)
     {
-	int childIndex = graph.getNodeChildIndex(parent);
-	int nontreeIndex = graph.getNodeNontreeIndex(parent);
+	List tasks = new ArrayList();  // List<CoordinatesTask>
+	List frames = new ArrayList();  // List<CoordinatesFrame>
 
-	if (childIndex < nontreeIndex)
+	Point4d childCenterAbsolute = new Point4d();
+	Point4d childPoleAbsolute = new Point4d();
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(parent);
+	pushCoordinatesFrame(frames, 0, parentTransform);
+	while (!walker.isDone())
 	{
-	    double parentRadiusE =
-		H3Math.euclideanDistance(layout.radius[parent]);
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (isExcluded(layout, child))
+		{
+		    continue;
+		}
+
+		CoordinatesFrame frame =
+		    (CoordinatesFrame)frames.get(walker.getDepth());
 
-	    double lastPhi = 0.0; 
-	    Matrix4d rotPhi = H3Transform.I4;
+		double childPhi = layout.phi[child];
+		if (childPhi != frame.lastPhi)
+		{
+		    frame.lastPhi = childPhi;
+		    frame.rotPhi = H3Transform.buildZRotation(childPhi);
+		}
 
-	    Point4d childCenterAbsolute = new Point4d();
-	    Point4d childPoleAbsolute = new Point4d();
+		Matrix4d childTransform = computeChildCoordinates
+		    (graph, layout, frame.transform, frame.rotPhi,
+		     walker.getNode(), child,
+		     childCenterAbsolute, childPoleAbsolute);
 
-	    for (int i = childIndex; i < nontreeIndex; i++)
+		if (!hasChildren(graph, child))
+		{
+		    continue;  // leaf
+		}
+
+		if (!ATTEMPT_EXTENDED || H3Math.isFinite(childTransform))
+		{
+		    if (shouldFork(graph, walker, forkDepth))
+		    {
+			CoordinatesTask task = new CoordinatesTask
+			    (graph, layout, childTransform, child,
+			     forkDepth + 1);
+			task.fork();
+			tasks.add(task);
+		    }
+		    else
+		    {
+			walker.push(child);
+			pushCoordinatesFrame(frames, walker.getDepth(),
+					     childTransform);
+		    }
+		}
+		else
+		{
+		    computeCoordinatesSubtreeExtended
+			(graph, layout, childCenterAbsolute,
+			 childPoleAbsolute, child, forkDepth);
+		}
+	    }
+	    else
 	    {
-		int child = graph.getLinkDestination(i);
+		walker.pop();
+	    }
+	}
 
-		double childRadiusE =
-		    H3Math.euclideanDistance(layout.radius[child]);
+	joinTasks(tasks);
+    }
 
-		double childPhi = layout.phi[child];
-		if (childPhi != lastPhi)
+    // The frames are reused between subtrees at the same depth.
+    private CoordinatesFrame pushCoordinatesFrame(List frames, int depth,
+						  Matrix4d transform)
+    {
+	if (depth == frames.size())
+	{
+	    frames.add(new CoordinatesFrame());
+	}
+
+	CoordinatesFrame frame = (CoordinatesFrame)frames.get(depth);
+	frame.transform = transform;
+	frame.transformMP = null;
+	frame.transformDD = null;
+	frame.lastPhi = 0.0;
+	frame.rotPhi = H3Transform.I4;
+	return frame;
+    }
+
+    // Computes and stores the coordinates of {child}, and returns the
+    // transform of the coordinate system of the subtree rooted at {child}.
+    // The absolute center and pole of {child} are returned in
+    // {childCenterAbsolute} and {childPoleAbsolute}.
+    private Matrix4d computeChildCoordinates(H3Graph graph,
+					     HyperbolicLayout layout,
+					     Matrix4d parentTransform,
+					     Matrix4d rotPhi,
+					     int parent, int child,
+					     Point4d childCenterAbsolute,
+					     Point4d childPoleAbsolute)
+    {
+	double parentRadiusE = H3Math.euclideanDistance(layout.radius[parent]);
+
+	Matrix4d rot = H3Transform.buildXRotation(layout.theta[child]);
+
+	rot.mul(rotPhi);
+
+	// compute child's center relative to parent's coord system
+	childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
+	rot.transform(childCenterAbsolute);
+
+	// compute child's pole relative to parent's coordinate system
+	double childPoleE =
+	    H3Math.euclideanDistance(layout.radius[parent]
+				     + layout.radius[child]);
+
+	childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
+	rot.transform(childPoleAbsolute);
+
+	parentTransform.transform(childCenterAbsolute);
+	parentTransform.transform(childPoleAbsolute);
+
+	graph.setNodeLayoutCoordinates(child, childCenterAbsolute);
+
+	return H3Transform.buildCanonicalOrientation(childCenterAbsolute,
+						     childPoleAbsolute);
+    }
+
+    private void computeCoordinatesSubtreeExtended(H3Graph graph,
+						   HyperbolicLayout layout,
+						   Point4d childCenterAbsolute,
+						   Point4d childPoleAbsolute,
+						   int child, int forkDepth)
+    {
+	System.out.println("Switching to extended precision"
+			   + " for subtree at node " + child);
+
+	if (EXTENDED_PRECISION == EXTENDED_PRECISION_DOUBLE_DOUBLE)
+	{
+	    H3DDPoint4d childCenterAbsoluteDD = new H3DDPoint4d();
+	    H3DDPoint4d childPoleAbsoluteDD = new H3DDPoint4d();
+	    childCenterAbsoluteDD.set(childCenterAbsolute);
+	    childPoleAbsoluteDD.set(childPoleAbsolute);
+
+	    H3DDMatrix4d childTransformDD = new H3DDMatrix4d();
+	    new H3DDTransform().buildCanonicalOrientation
+		(childCenterAbsoluteDD, childPoleAbsoluteDD, childTransformDD);
+
+	    computeCoordinatesSubtreeDD(graph, layout, childTransformDD,
+					child, forkDepth);
+	}
+	else
+	{
+	    // The extended-precision library keeps global state,
+	    // so only one subtree is laid out with it at a time.
+	    synchronized (MP_LOCK)
+	    {
+		H3Point4d childCenterAbsoluteMP =
+		    new H3Point4d(childCenterAbsolute);
+		H3Point4d childPoleAbsoluteMP =
+		    new H3Point4d(childPoleAbsolute);
+
+		H3Matrix4d childTransformMP = H3Transform
+		    .buildCanonicalOrientation(childCenterAbsoluteMP,
+					       childPoleAbsoluteMP);
+
+		computeCoordinatesSubtreeMP(graph, layout,
+					    childTransformMP, child);
+	    }
+	}
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // Computes the coordinates of all nodes with the configured kind of
+    // extended precision.  Double-double coordinates are computed in
+    // parallel if {pool} is non-null.
+    private void computeCoordinatesExtended(H3Graph graph,
+					    HyperbolicLayout layout,
+					    ForkJoinPool pool)
+    {
+	if (EXTENDED_PRECISION == EXTENDED_PRECISION_DOUBLE_DOUBLE)
+	{
+	    // The root node is always positioned at the origin.
+	    int rootNode = graph.getRootNode();
+	    graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
+
+	    H3DDMatrix4d rootTransform = new H3DDMatrix4d();
+	    rootTransform.setIdentity();
+
+	    if (pool == null)
+	    {
+		computeCoordinatesSubtreeDD(graph, layout, rootTransform,
+					    rootNode, NO_FORKING);
+	    }
+	    else
+	    {
+		pool.invoke(new CoordinatesDDTask(graph, layout,
+						  rootTransform, rootNode, 0));
+	    }
+	}
+	else
+	{
+	    computeCoordinatesMP(graph, layout);
+	}
+    }
+
+    // The double-double counterpart of computeCoordinatesSubtreeMP().
+    // This allocates nothing per node: the transforms of the nodes on the
+    // stack are held in matrices that are reused between subtrees at the
+    // same depth, and only forked subtrees get a matrix of their own.
+    //
+    // {parentTransform} is owned by this call and is not modified.
+    private void computeCoordinatesSubtreeDD(H3Graph graph,
+					     HyperbolicLayout layout,
+					     H3DDMatrix4d parentTransform,
+					     int parent, int forkDepth)
+    {
+	List tasks = new ArrayList();  // List<CoordinatesDDTask>
+	List frames = new ArrayList();  // List<CoordinatesFrame>
+
+	H3DDTransform transformer = new H3DDTransform();
+	Matrix4d rot = new Matrix4d();
+
+	Point4d childCenterAbsolute = new Point4d();
+	Point4d childPoleAbsolute = new Point4d();
+
+	H3DDPoint4d childCenterAbsoluteDD = new H3DDPoint4d();
+	H3DDPoint4d childPoleAbsoluteDD = new H3DDPoint4d();
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(parent);
+	pushCoordinatesFrame(frames, 0, null).transformDD = parentTransform;
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (isExcluded(layout, child))
 		{
-		    lastPhi = childPhi;
-		    rotPhi = H3Transform.buildZRotation(childPhi);
+		    continue;
 		}
 
-		Matrix4d rot = H3Transform.buildXRotation(layout.theta[child]);
+		int current = walker.getNode();
+		CoordinatesFrame frame =
+		    (CoordinatesFrame)frames.get(walker.getDepth());
 
-		rot.mul(rotPhi);
+		double parentRadiusE =
+		    H3Math.euclideanDistance(layout.radius[current]);
+
+		double childPhi = layout.phi[child];
+		if (childPhi != frame.lastPhi)
+		{
+		    frame.lastPhi = childPhi;
+		    frame.ownRotPhi.rotZ(childPhi);
+		    frame.rotPhi = frame.ownRotPhi;
+		}
+
+		rot.rotX(layout.theta[child]);
+		rot.mul(frame.rotPhi);
 
 		// compute child's center relative to parent's coord system
 		childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
@@ -688,45 +1226,61 @@ public class H3GraphLayout
 
 		// compute child's pole relative to parent's coordinate system
 		double childPoleE =
-		    H3Math.euclideanDistance(layout.radius[parent]
+		    H3Math.euclideanDistance(layout.radius[current]
 					     + layout.radius[child]);
 
 		childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
 		rot.transform(childPoleAbsolute);
 
-		parentTransform.transform(childCenterAbsolute);
-		parentTransform.transform(childPoleAbsolute);
+		childCenterAbsoluteDD.set(childCenterAbsolute);
+		childPoleAbsoluteDD.set(childPoleAbsolute);
+
+		frame.transformDD.transform(childCenterAbsoluteDD);
+		frame.transformDD.transform(childPoleAbsoluteDD);
 
+		childCenterAbsoluteDD.get(childCenterAbsolute);
 		graph.setNodeLayoutCoordinates(child, childCenterAbsolute);
 
-		Matrix4d childTransform = H3Transform
-		    .buildCanonicalOrientation(childCenterAbsolute,
-					       childPoleAbsolute);
+		if (!hasChildren(graph, child))
+		{
+		    continue;  // leaf
+		}
 
-		if (!ATTEMPT_EXTENDED || H3Math.isFinite(childTransform))
+		if (shouldFork(graph, walker, forkDepth))
 		{
-		    computeCoordinatesSubtree(graph, layout,
-					      childTransform, child);
+		    H3DDMatrix4d childTransform = new H3DDMatrix4d();
+		    transformer.buildCanonicalOrientation
+			(childCenterAbsoluteDD, childPoleAbsoluteDD,
+			 childTransform);
+
+		    CoordinatesDDTask task = new CoordinatesDDTask
+			(graph, layout, childTransform, child, forkDepth + 1);
+		    task.fork();
+		    tasks.add(task);
 		}
 		else
 		{
-		    System.out.println("Switching to extended precision"
-				       + " for subtree at node " + child);
-
-		    H3Point4d childCenterAbsoluteMP =
-			new H3Point4d(childCenterAbsolute);
-		    H3Point4d childPoleAbsoluteMP =
-			new H3Point4d(childPoleAbsolute);
-
-		    H3Matrix4d childTransformMP = H3Transform
-			.buildCanonicalOrientation(childCenterAbsoluteMP,
-						   childPoleAbsoluteMP);
-
-		    computeCoordinatesSubtreeMP(graph, layout,
-						childTransformMP, child);
+		    walker.push(child);
+		    CoordinatesFrame childFrame =
+			pushCoordinatesFrame(frames, walker.getDepth(), null);
+		    if (childFrame.ownTransformDD == null)
+		    {
+			childFrame.ownTransformDD = new H3DDMatrix4d();
+		    }
+		    childFrame.transformDD = childFrame.ownTransformDD;
+
+		    transformer.buildCanonicalOrientation
+			(childCenterAbsoluteDD, childPoleAbsoluteDD,
+			 childFrame.transformDD);
 		}
 	    }
+	    else
+	    {
+		walker.pop();
+	    }
 	}
+
+	joinTasks(tasks);
     }
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
@@ -748,40 +1302,44 @@ public class H3GraphLayout
 					     H3Matrix4d parentTransform,
 					     int parent)
     {
-	int childIndex = graph.getNodeChildIndex(parent);
-	int nontreeIndex = graph.getNodeNontreeIndex(parent);
+	List frames = new ArrayList();  // List<CoordinatesFrame>
 
-	if (childIndex < nontreeIndex)
-	{
-	    double parentRadiusE =
-		H3Math.euclideanDistance(layout.radius[parent]);
-
-	    double lastPhi = 0.0;
-	    Matrix4d rotPhi = H3Transform.I4;
-
-	    Point4d childCenterAbsolute = new Point4d();
-	    Point4d childPoleAbsolute = new Point4d();
-	    Point4d p = new Point4d();
+	Point4d childCenterAbsolute = new Point4d();
+	Point4d childPoleAbsolute = new Point4d();
+	Point4d p = new Point4d();
 
-	    H3Point4d childCenterAbsoluteMP = new H3Point4d();
-	    H3Point4d childPoleAbsoluteMP = new H3Point4d();
+	H3Point4d childCenterAbsoluteMP = new H3Point4d();
+	H3Point4d childPoleAbsoluteMP = new H3Point4d();
 
-	    for (int i = childIndex; i < nontreeIndex; i++)
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(parent);
+	pushCoordinatesFrame(frames, 0, null).transformMP = parentTransform;
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
 	    {
-		int child = graph.getLinkDestination(i);
+		if (isExcluded(layout, child))
+		{
+		    continue;
+		}
 
-		double childRadiusE =
-		    H3Math.euclideanDistance(layout.radius[child]);
+		int current = walker.getNode();
+		CoordinatesFrame frame =
+		    (CoordinatesFrame)frames.get(walker.getDepth());
+
+		double parentRadiusE =
+		    H3Math.euclideanDistance(layout.radius[current]);
 
 		double childPhi = layout.phi[child];
-		if (childPhi != lastPhi)
+		if (childPhi != frame.lastPhi)
 		{
-		    lastPhi = childPhi;
-		    rotPhi = H3Transform.buildZRotation(childPhi);
+		    frame.lastPhi = childPhi;
+		    frame.rotPhi = H3Transform.buildZRotation(childPhi);
 		}
 
 		Matrix4d rot = H3Transform.buildXRotation(layout.theta[child]);
-		rot.mul(rotPhi);
+		rot.mul(frame.rotPhi);
 
 		// compute child's center relative to parent's coord system
 		childCenterAbsolute.set(parentRadiusE, 0.0, 0.0, 1.0);
@@ -789,7 +1347,7 @@ public class H3GraphLayout
 
 		// compute child's pole relative to parent's coordinate system
 		double childPoleE =
-		    H3Math.euclideanDistance(layout.radius[parent]
+		    H3Math.euclideanDistance(layout.radius[current]
 					     + layout.radius[child]);
 
 		childPoleAbsolute.set(childPoleE, 0.0, 0.0, 1.0);
@@ -798,18 +1356,26 @@ public class H3GraphLayout
 		childCenterAbsoluteMP.set(childCenterAbsolute);
 		childPoleAbsoluteMP.set(childPoleAbsolute);
 
-		parentTransform.transform(childCenterAbsoluteMP);
-		parentTransform.transform(childPoleAbsoluteMP);
+		frame.transformMP.transform(childCenterAbsoluteMP);
+		frame.transformMP.transform(childPoleAbsoluteMP);
 
 		convertToDoubleCoordinates(p, childCenterAbsoluteMP);
 		graph.setNodeLayoutCoordinates(child, p);
 
-		H3Matrix4d childTransform = H3Transform
-		    .buildCanonicalOrientation(childCenterAbsoluteMP,
-					       childPoleAbsoluteMP);
+		if (hasChildren(graph, child))
+		{
+		    H3Matrix4d childTransform = H3Transform
+			.buildCanonicalOrientation(childCenterAbsoluteMP,
+						   childPoleAbsoluteMP);
 
-		computeCoordinatesSubtreeMP(graph, layout,
-					    childTransform, child);
+		    walker.push(child);
+		    pushCoordinatesFrame(frames, walker.getDepth(), null)
+			.transformMP = childTransform;
+		}
+	    }
+	    else
+	    {
+		walker.pop();
 	    }
 	}
     }
@@ -822,6 +1388,230 @@ public class H3GraphLayout
 	lhs.w = rhs.w.doubleValue();
     }
 
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (incremental hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Makes the excluded nodes of {layout} those that aren't displayable,
+    // or that have an ancestor that isn't, and returns the included nodes
+    // whose radii are affected: those that have become included, the
+    // parents of those that have become excluded, and all their ancestors.
+    // The parent of every node in the returned set, other than the root,
+    // is thus also in the set.  The root is never excluded.
+    //
+    // Subtrees that were and remain excluded aren't visited, so this takes
+    // time proportional to the number of nodes included before and after.
+    private BitSet updateExcludedNodes(H3Graph graph,
+				       HyperbolicLayout layout)
+    {
+	int numNodes = graph.getNumNodes();
+	if (layout.excluded == null)
+	{
+	    layout.excluded = new BitSet(numNodes);
+	}
+
+	BitSet retval = new BitSet(numNodes);
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(graph.getRootNode());
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		int parent = walker.getNode();
+		boolean wasExcluded = layout.excluded.get(child);
+		boolean isExcluded = (layout.excluded.get(parent)
+				      || !graph.checkNodeDisplayable(child));
+
+		if (isExcluded != wasExcluded)
+		{
+		    layout.excluded.set(child, isExcluded);
+		    if (!isExcluded)
+		    {
+			markAncestors(graph, retval, child);
+		    }
+		    else if (!layout.excluded.get(parent))
+		    {
+			markAncestors(graph, retval, parent);
+		    }
+		}
+
+		if (!(isExcluded && wasExcluded))
+		{
+		    walker.push(child);
+		}
+	    }
+	    else
+	    {
+		walker.pop();
+	    }
+	}
+
+	return retval;
+    }
+
+    // Adds {node} and its ancestors to {nodes}, stopping at the first one
+    // already there, whose ancestors must be there too.
+    private void markAncestors(H3Graph graph, BitSet nodes, int node)
+    {
+	while (node != -1 && !nodes.get(node))
+	{
+	    nodes.set(node);
+	    node = graph.getNodeParent(node);
+	}
+    }
+
+    // Recomputes the radii of the nodes in {dirty}, which must be closed
+    // under taking parents, in postorder.  The radii of the other children
+    // of these nodes are unchanged.
+    private void updateRadii(H3Graph graph, HyperbolicLayout layout,
+			     BitSet dirty)
+    {
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(graph.getRootNode());
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (dirty.get(child))
+		{
+		    walker.push(child);
+		}
+	    }
+	    else
+	    {
+		computeRadiusNode(graph, layout, walker.getNode());
+		walker.pop();
+	    }
+	}
+    }
+
+    // Recomputes the angles of the children of the nodes in {dirty}, which
+    // must be closed under taking parents.  These are the only nodes whose
+    // radii, or the radii of whose children, may have changed.
+    private void updateAngles(H3Graph graph, HyperbolicLayout layout,
+			      BitSet dirty)
+    {
+	Children children = new Children();
+	TernaryTreeLayout ternaryLayout = new TernaryTreeLayout();
+
+	int rootNode = graph.getRootNode();
+	if (hasChildren(graph, rootNode))
+	{
+	    computeAnglesChildren(graph, layout, children, ternaryLayout,
+				  rootNode, 0);
+	}
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(rootNode);
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		if (dirty.get(child))
+		{
+		    if (hasChildren(graph, child))
+		    {
+			computeAnglesChildren(graph, layout, children,
+					      ternaryLayout, child,
+					      walker.getDepth() + 1);
+		    }
+		    walker.push(child);
+		}
+	    }
+	    else
+	    {
+		walker.pop();
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (parallel hyperbolic layout)
+    ////////////////////////////////////////////////////////////////////////
+
+    // The parallel layout performs the same three passes as the sequential
+    // layout, but each pass forks off tasks for subtrees of sufficient size
+    // while there are idle threads to execute them.  Subtrees are otherwise
+    // handled inline, exactly as in the sequential layout.
+    //
+    // The passes are independent of the order in which subtrees are
+    // processed, except for the summing of the areas of children in
+    // computeRadiusNode(), which is always done in the order of the
+    // children after all forked subtrees have been joined.  Hence, the
+    // parallel layout is bit-for-bit identical to the sequential layout.
+    //
+    // The mutable scratch objects used by the sequential layout (Children
+    // and TernaryTreeLayout) are allocated per task rather than shared.
+
+    private void layoutHyperbolicParallel(H3Graph graph,
+					  HyperbolicLayout layout,
+					  boolean useExtendedPrecision)
+    {
+	int rootNode = graph.getRootNode();
+
+	ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+	try
+	{
+	    pool.invoke(new RadiiTask(graph, layout, rootNode, 0));
+	    pool.invoke(new AnglesTask(graph, layout, rootNode, 0, 0));
+
+	    if (useExtendedPrecision)
+	    {
+		computeCoordinatesExtended(graph, layout, pool);
+	    }
+	    else
+	    {
+		graph.setNodeLayoutCoordinates(rootNode, H3Transform.ORIGIN4);
+		pool.invoke(new CoordinatesTask(graph, layout,
+						H3Transform.I4, rootNode, 0));
+	    }
+	}
+	finally
+	{
+	    pool.shutdown();
+	}
+    }
+
+
+    // Determines whether the subtree rooted at the child just returned by
+    // walker.nextChild() should be forked off as a separate task by a task
+    // at the given depth of nesting of forked tasks.  A child is only
+    // forked if it has children, if it isn't the last child (which is
+    // better handled by the current task), if there are idle threads that
+    // are likely to steal it, and if the nesting isn't too deep.  The last
+    // two conditions limit the depth of the Java stack, since a thread may
+    // execute other tasks while waiting to join its own.
+    //
+    // This must only be called from within a ForkJoinPool, unless
+    // {forkDepth} is NO_FORKING.
+    private static boolean shouldFork(H3Graph graph, H3TreeWalker walker,
+				      int forkDepth)
+    {
+	if (forkDepth >= MAX_FORK_DEPTH)
+	{
+	    return false;
+	}
+
+	int link = walker.getChildLink();
+	int node = walker.getNode();
+	return link + 1 < graph.getNodeNontreeIndex(node)
+	    && hasChildren(graph, graph.getLinkDestination(link))
+	    && ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS_TASK_LIMIT;
+    }
+
+    private void joinTasks(List tasks)  // List<ForkJoinTask>
+    {
+	for (int i = tasks.size() - 1; i >= 0; i--)
+	{
+	    ForkJoinTask task = (ForkJoinTask)tasks.get(i);
+	    task.join();
+	}
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS (random layout)
     ////////////////////////////////////////////////////////////////////////
@@ -853,6 +1643,18 @@ public class H3GraphLayout
     // Whether extended precision calculations should be tried automatically
     // when needed.  This value is set in the constructor.
     private final boolean ATTEMPT_EXTENDED;
+    private final int PARALLELISM;
+    private final int EXTENDED_PRECISION;
+
+    // A task for a subtree is only forked if no more than this many tasks
+    // are already queued up by the current thread and waiting to be stolen,
+    // and if it would be nested within fewer than MAX_FORK_DEPTH other
+    // forked tasks.  The sequential layout passes NO_FORKING as the depth.
+    private static final int SURPLUS_TASK_LIMIT = 3;
+    private static final int MAX_FORK_DEPTH = 16;
+    private static final int NO_FORKING = MAX_FORK_DEPTH;
+
+    private static final Object MP_LOCK = new Object();
 
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE FIELDS (hyperbolic layout)
@@ -870,12 +1672,154 @@ public class H3GraphLayout
     private static final double LEAF_AREA = 0.005;
     private static final double LEAF_RADIUS = computeRadius(LEAF_AREA);
 
-    private TernaryTreeLayout m_ternaryLayout = new TernaryTreeLayout();
-
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE CLASSES (hyperbolic layout)
     ////////////////////////////////////////////////////////////////////////
 
+    private class RadiiTask
+	extends RecursiveAction
+    {
+	public RadiiTask(H3Graph graph, HyperbolicLayout layout,
+			 int node, int forkDepth)
+	{
+	    m_graph = graph;
+	    m_layout = layout;
+	    m_node = node;
+	    m_forkDepth = forkDepth;
+	}
+
+	protected void compute()
+	{
+	    computeRadiiSubtree(m_graph, m_layout, m_node, m_forkDepth);
+	}
+
+	public int getNode()
+	{
+	    return m_node;
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private H3Graph m_graph;
+	private HyperbolicLayout m_layout;
+	private int m_node;
+	private int m_forkDepth;
+    }
+
+    //======================================================================
+
+    private class AnglesTask
+	extends RecursiveAction
+    {
+	public AnglesTask(H3Graph graph, HyperbolicLayout layout,
+			  int node, int level, int forkDepth)
+	{
+	    m_graph = graph;
+	    m_layout = layout;
+	    m_node = node;
+	    m_level = level;
+	    m_forkDepth = forkDepth;
+	}
+
+	protected void compute()
+	{
+	    computeAnglesSubtree(m_graph, m_layout, new Children(),
+				 new TernaryTreeLayout(), m_node, m_level,
+				 m_forkDepth);
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private H3Graph m_graph;
+	private HyperbolicLayout m_layout;
+	private int m_node;
+	private int m_level;
+	private int m_forkDepth;
+    }
+
+    //======================================================================
+
+    private class CoordinatesTask
+	extends RecursiveAction
+    {
+	public CoordinatesTask(H3Graph graph, HyperbolicLayout layout,
+			       Matrix4d transform, int node, int forkDepth)
+	{
+	    m_graph = graph;
+	    m_layout = layout;
+	    m_transform = transform;
+	    m_node = node;
+	    m_forkDepth = forkDepth;
+	}
+
+	protected void compute()
+	{
+	    computeCoordinatesSubtree(m_graph, m_layout,
+				      m_transform, m_node, m_forkDepth);
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private H3Graph m_graph;
+	private HyperbolicLayout m_layout;
+	private Matrix4d m_transform;
+	private int m_node;
+	private int m_forkDepth;
+    }
+
+    //======================================================================
+
+    private class CoordinatesDDTask
+	extends RecursiveAction
+    {
+	public CoordinatesDDTask(H3Graph graph, HyperbolicLayout layout,
+				 H3DDMatrix4d transform, int node,
+				 int forkDepth)
+	{
+	    m_graph = graph;
+	    m_layout = layout;
+	    m_transform = transform;
+	    m_node = node;
+	    m_forkDepth = forkDepth;
+	}
+
+	protected void compute()
+	{
+	    computeCoordinatesSubtreeDD(m_graph, m_layout,
+					m_transform, m_node, m_forkDepth);
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private H3Graph m_graph;
+	private HyperbolicLayout m_layout;
+	private H3DDMatrix4d m_transform;
+	private int m_node;
+	private int m_forkDepth;
+    }
+
+    //======================================================================
+
+    // The state of one level of the traversal in computeCoordinatesSubtree()
+    // and its extended-precision counterparts.  {transform} (or
+    // {transformMP} or {transformDD}) is the transform of the coordinate
+    // system of the node at this level, and {rotPhi} is the rotation for
+    // the last distinct phi of its children.  {ownTransformDD} and
+    // {ownRotPhi} are storage for {transformDD} and {rotPhi} that is
+    // reused from node to node by computeCoordinatesSubtreeDD().
+    private static class CoordinatesFrame
+    {
+	public Matrix4d transform;
+	public H3Matrix4d transformMP;
+	public H3DDMatrix4d transformDD;
+	public H3DDMatrix4d ownTransformDD;
+	public double lastPhi;
+	public Matrix4d rotPhi;
+	public Matrix4d ownRotPhi = new Matrix4d();
+    }
+
+    //======================================================================
+
     private class TernaryTreeLayout
     {
 	public void computeLayout(double rp, double rA, double rB, double rC)
@@ -1057,6 +2001,10 @@ public class H3GraphLayout
 	public double[] radius;
 	public double[] theta;
 	public double[] phi;
+
+	// The nodes left out of the layout by relayoutHyperbolic(), or null
+	// if none have been.
+	public BitSet excluded;
     }
 
     //======================================================================
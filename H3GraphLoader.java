@@ -49,13 +49,20 @@ public class H3GraphLoader
     // PUBLIC METHODS
     ////////////////////////////////////////////////////////////////////////
 
+    // Whether load() should create graphs with off-heap storage.
+    // See H3Graph(int, int, boolean).
+    public void setOffHeapStorage(boolean offHeap)
+    {
+	m_offHeapStorage = offHeap;
+    }
+
     public H3Graph load(Graph graph, String spanningTree)
 	throws InvalidGraphDataException
     {
 	int numNodes = graph.getNumNodes();
 	int numLinks = graph.getNumLinks();
 
-	H3Graph retval = new H3Graph(numNodes, numLinks);
+	H3Graph retval = new H3Graph(numNodes, numLinks, m_offHeapStorage);
 
 	IDMap map = populateNodeIDs(retval, graph);
 	findSpanningTreeQualifierAttributes(graph, spanningTree);
@@ -327,6 +334,8 @@ public class H3GraphLoader
     private int m_rootAttribute;
     private int m_treeLinkAttribute;
 
+    private boolean m_offHeapStorage = false;
+
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC CLASSES
     ////////////////////////////////////////////////////////////////////////
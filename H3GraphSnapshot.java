@@ -0,0 +1,429 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+//
+// This class saves an H3Graph to, and restores an H3Graph from, a compact
+// binary snapshot file.
+//
+// Building an H3Graph from a LibSea graph file is slow for large graphs,
+// since the text must first be parsed into a backing graph, and the
+// topology must then be copied into H3Graph with a lookup for every node
+// and link ID.  A snapshot, in contrast, is simply an image of the arrays
+// held by H3Graph, and it is loaded by memory mapping the file and doing
+// a bulk transfer of each array.  A snapshot may optionally include the
+// layout coordinates of nodes, in which case the graph needn't be laid
+// out again after loading.
+//
+// The format of a snapshot is as follows:
+//
+//    header:     MAGIC, VERSION, numNodes, numLinks, rootNode, flags,
+//                and two reserved words (all ints)
+//    topology:   H3Graph.getTopologySize() ints
+//    padding:    zero or one int, to align the following doubles
+//    layout:     H3Graph.getLayoutCoordinatesSize() doubles
+//                (only present if flags & FLAG_LAYOUT)
+//
+// The values are written in the native byte order of the machine that
+// created the snapshot, since that makes the bulk transfers cheapest.
+// The byte order is recognized when loading by examining MAGIC, so that
+// snapshots can still be moved between machines.
+//
+// A snapshot only holds what H3Graph itself holds.  In particular, node
+// and link colors, and visibility, are not saved, since these are always
+// recomputed from the attributes in the backing graph.
+//
+
+public class H3GraphSnapshot
+{
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static void save(H3Graph graph, File file, boolean saveLayout)
+	throws IOException
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("H3GraphSnapshot.save.begin[" + startTime +"]");
+	}
+
+	long topologyBytes = 4L * graph.getTopologySize();
+	long layoutStart = alignLayoutStart(HEADER_BYTES + topologyBytes);
+	long layoutBytes = (saveLayout
+			    ? 8L * graph.getLayoutCoordinatesSize() : 0L);
+	checkMappable(topologyBytes);
+	checkMappable(layoutBytes);
+
+	RandomAccessFile output = new RandomAccessFile(file, "rw");
+	try
+	{
+	    output.setLength(layoutStart + layoutBytes);
+	    FileChannel channel = output.getChannel();
+
+	    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+	    header.order(ByteOrder.nativeOrder());
+	    header.putInt(MAGIC);
+	    header.putInt(VERSION);
+	    header.putInt(graph.getNumNodes());
+	    header.putInt(graph.getTotalNumLinks());
+	    header.putInt(graph.getRootNode());
+	    header.putInt(saveLayout ? FLAG_LAYOUT : 0);
+	    header.putInt(0);
+	    header.putInt(0);
+	    header.flip();
+	    while (header.hasRemaining())
+	    {
+		channel.write(header, header.position());
+	    }
+
+	    MappedByteBuffer topology = channel.map
+		(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, topologyBytes);
+	    topology.order(ByteOrder.nativeOrder());
+	    graph.writeTopology(topology.asIntBuffer());
+	    topology.force();
+
+	    if (saveLayout)
+	    {
+		MappedByteBuffer layout = channel.map
+		    (FileChannel.MapMode.READ_WRITE, layoutStart, layoutBytes);
+		layout.order(ByteOrder.nativeOrder());
+		graph.writeLayoutCoordinates(layout.asDoubleBuffer());
+		layout.force();
+	    }
+	}
+	finally
+	{
+	    output.close();
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("H3GraphSnapshot.save.end[" + stopTime + "]");
+	    System.out.println("H3GraphSnapshot.save.time[" + duration + "]");
+	}
+    }
+
+    // Returns true iff the given snapshot file includes layout coordinates.
+    // If so, the graph returned by load() will have valid layout
+    // coordinates, and it needn't be laid out again.
+    public static boolean checkLayoutSaved(File file)
+	throws IOException
+    {
+	FileInputStream input = new FileInputStream(file);
+	try
+	{
+	    Header header = readHeader(input.getChannel(), file);
+	    return (header.flags & FLAG_LAYOUT) != 0;
+	}
+	finally
+	{
+	    input.close();
+	}
+    }
+
+    public static H3Graph load(File file)
+	throws IOException
+    {
+	return load(file, false);
+    }
+
+    // See H3Graph(int, int, boolean) regarding {offHeap}.
+    public static H3Graph load(File file, boolean offHeap)
+	throws IOException
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("H3GraphSnapshot.load.begin[" + startTime +"]");
+	}
+
+	H3Graph retval = null;
+
+	FileInputStream input = new FileInputStream(file);
+	try
+	{
+	    FileChannel channel = input.getChannel();
+	    Header header = readHeader(channel, file);
+
+	    retval = new H3Graph(header.numNodes, header.numLinks, offHeap);
+
+	    long topologyBytes = 4L * retval.getTopologySize();
+	    long layoutStart = alignLayoutStart(HEADER_BYTES + topologyBytes);
+	    long layoutBytes = 8L * retval.getLayoutCoordinatesSize();
+	    boolean hasLayout = (header.flags & FLAG_LAYOUT) != 0;
+
+	    long expectedLength = (hasLayout
+				   ? layoutStart + layoutBytes
+				   : HEADER_BYTES + topologyBytes);
+	    if (channel.size() < expectedLength)
+	    {
+		String msg = "truncated graph snapshot `" + file.getPath()
+		    + "' (expected " + expectedLength + " bytes, found "
+		    + channel.size() + ")";
+		throw new IOException(msg);
+	    }
+
+	    checkMappable(topologyBytes);
+	    MappedByteBuffer topology = channel.map
+		(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, topologyBytes);
+	    topology.order(header.order);
+	    IntBuffer topologyInts = topology.asIntBuffer();
+	    checkTopology(topologyInts, header, file);
+	    retval.readTopology(topologyInts);
+	    retval.setRootNode(header.rootNode);
+
+	    if (hasLayout)
+	    {
+		checkMappable(layoutBytes);
+		MappedByteBuffer layout = channel.map
+		    (FileChannel.MapMode.READ_ONLY, layoutStart, layoutBytes);
+		layout.order(header.order);
+		retval.readLayoutCoordinates(layout.asDoubleBuffer());
+	    }
+	}
+	finally
+	{
+	    input.close();
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("H3GraphSnapshot.load.end[" + stopTime + "]");
+	    System.out.println("H3GraphSnapshot.load.time[" + duration + "]");
+	}
+
+	return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static Header readHeader(FileChannel channel, File file)
+	throws IOException
+    {
+	ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+	while (buffer.hasRemaining())
+	{
+	    if (channel.read(buffer, buffer.position()) < 0)
+	    {
+		String msg = "truncated header in graph snapshot `"
+		    + file.getPath() + "'";
+		throw new IOException(msg);
+	    }
+	}
+	buffer.flip();
+
+	// Determine the byte order the snapshot was written in.
+	buffer.order(ByteOrder.BIG_ENDIAN);
+	if (buffer.getInt(0) != MAGIC)
+	{
+	    buffer.order(ByteOrder.LITTLE_ENDIAN);
+	    if (buffer.getInt(0) != MAGIC)
+	    {
+		String msg = "`" + file.getPath()
+		    + "' is not a Walrus graph snapshot";
+		throw new IOException(msg);
+	    }
+	}
+
+	Header retval = new Header();
+	retval.order = buffer.order();
+	buffer.getInt();  // MAGIC
+
+	int version = buffer.getInt();
+	if (version != VERSION)
+	{
+	    String msg = "unsupported version " + version
+		+ " of graph snapshot `" + file.getPath() + "'";
+	    throw new IOException(msg);
+	}
+
+	retval.numNodes = buffer.getInt();
+	retval.numLinks = buffer.getInt();
+	retval.rootNode = buffer.getInt();
+	retval.flags = buffer.getInt();
+
+	if (retval.numNodes < 0 || retval.numLinks < 0
+	    || (retval.numNodes > 0
+		&& (retval.rootNode < 0
+		    || retval.rootNode >= retval.numNodes)))
+	{
+	    String msg = "corrupt header in graph snapshot `"
+		+ file.getPath() + "'";
+	    throw new IOException(msg);
+	}
+
+	return retval;
+    }
+
+    // Checks that the topology section describes a well-formed graph, so
+    // that a corrupt snapshot is reported here, just as a corrupt header
+    // is, rather than failing in H3Graph.readTopology() or later in the
+    // layout or transformer.  The links of each node must be a range
+    // [treeLinks, linksEnd) within [0, numLinks), split by nontreeLinks,
+    // of links whose source is the node, with the ranges of all nodes
+    // together covering every link once.  The parent of each node must be
+    // the tree link to it, or -1 for the root alone.
+    //
+    // The arrays are laid out in the order of H3Graph.writeTopology(), and
+    // are read here with absolute gets, which leave the buffer as is.
+    private static void checkTopology(IntBuffer buffer, Header header,
+				      File file)
+	throws IOException
+    {
+	int numNodes = header.numNodes;
+	int numLinks = header.numLinks;
+
+	int parentStart = numNodes;
+	int treeLinksStart = 2 * numNodes;
+	int nontreeLinksStart = 3 * numNodes;
+	int linksEndStart = 4 * numNodes;
+	int sourceStart = 5 * numNodes + numLinks;
+	int destinationStart = 5 * numNodes + 2 * numLinks;
+
+	long numCoveredLinks = 0;
+	int numTreeLinks = 0;
+	for (int i = 0; i < numNodes; i++)
+	{
+	    int start = buffer.get(treeLinksStart + i);
+	    int nontreeStart = buffer.get(nontreeLinksStart + i);
+	    int end = buffer.get(linksEndStart + i);
+	    if (start < 0 || start > nontreeStart || nontreeStart > end
+		|| end > numLinks)
+	    {
+		throwCorruptTopology(file, "links of node " + i);
+	    }
+
+	    for (int j = start; j < end; j++)
+	    {
+		if (buffer.get(sourceStart + j) != i)
+		{
+		    throwCorruptTopology(file, "source of link " + j);
+		}
+
+		int destination = buffer.get(destinationStart + j);
+		if (destination < 0 || destination >= numNodes)
+		{
+		    throwCorruptTopology(file, "destination of link " + j);
+		}
+
+		if (j < nontreeStart
+		    && buffer.get(parentStart + destination) != j)
+		{
+		    throwCorruptTopology(file, "parent of node " + destination);
+		}
+	    }
+
+	    numCoveredLinks += end - start;
+	    numTreeLinks += nontreeStart - start;
+	}
+
+	if (numCoveredLinks != numLinks)
+	{
+	    throwCorruptTopology(file, "links of nodes");
+	}
+
+	// Every tree link is the parent of its destination, by the above,
+	// so the nodes with parents are exactly the destinations of tree
+	// links if their numbers agree.
+	int numParents = 0;
+	for (int i = 0; i < numNodes; i++)
+	{
+	    if (buffer.get(parentStart + i) != -1)
+	    {
+		++numParents;
+	    }
+	}
+
+	if (numParents != numTreeLinks
+	    || (numNodes > 0
+		&& buffer.get(parentStart + header.rootNode) != -1))
+	{
+	    throwCorruptTopology(file, "parents of nodes");
+	}
+    }
+
+    private static void throwCorruptTopology(File file, String what)
+	throws IOException
+    {
+	String msg = "corrupt topology in graph snapshot `" + file.getPath()
+	    + "' (" + what + ")";
+	throw new IOException(msg);
+    }
+
+    // The doubles of the layout section are aligned to an 8-byte boundary.
+    private static long alignLayoutStart(long offset)
+    {
+	return (offset + 7L) & ~7L;
+    }
+
+    // A single mapping is limited to Integer.MAX_VALUE bytes.
+    private static void checkMappable(long numBytes)
+	throws IOException
+    {
+	if (numBytes > Integer.MAX_VALUE)
+	{
+	    String msg = "graph too large for snapshot (section of "
+		+ numBytes + " bytes)";
+	    throw new IOException(msg);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean DEBUG_PRINT = true;
+
+    // "H3GS" in ASCII.
+    private static final int MAGIC = 0x48334753;
+    private static final int VERSION = 1;
+
+    private static final int FLAG_LAYOUT = 0x1;
+
+    private static final int HEADER_BYTES = 8 * 4;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class Header
+    {
+	public ByteOrder order;
+	public int numNodes;
+	public int numLinks;
+	public int rootNode;
+	public int flags;
+    }
+}
@@ -0,0 +1,566 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// A software counterpart of H3PointRenderList, which draws into a
+// BufferedImage rather than through a GraphicsContext3D, and hence needs
+// neither a Canvas3D nor a display.  It is used by H3BatchRenderer.
+//
+// Elements are added in the same way as to H3PointRenderList (typically
+// from the render queue filled by H3Transformer), and nodes are sorted
+// into the same near, middle, and far groups by their visible size, each
+// drawn with the point size that H3ViewParameters gives the group.
+// Elements are projected as they are added, so only screen coordinates
+// and colors are retained.
+//
+// The projection reproduces the view set up by H3Main: a SimpleUniverse
+// with the nominal viewing transform, which puts the eye on the z-axis
+// at the distance from which the field of view (45 degrees, horizontally)
+// just takes in the unit sphere.  The object transform (the rotation and
+// magnification of H3ViewParameters) is applied before the projection.
+// Depth cueing is imitated by fading elements toward the background
+// color with their distance from the eye, using the fog distances that
+// H3ViewParameters uses at the default magnification.  The distance is
+// measured as if the display weren't magnified, which keeps magnified
+// views as bright as unmagnified ones; this is what the empirically
+// adjusted fog distances of H3ViewParameters.updateDepthCueing() aim
+// at on a Canvas3D.
+//
+// There is no depth buffer.  Instead, the non-tree links are drawn first,
+// then the tree links, and then the far, middle, and near nodes, so that
+// nodes are never hidden by links and larger nodes are drawn over smaller
+// ones.
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import javax.vecmath.*;
+
+public class H3ImageRenderList
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3ImageRenderList(H3Graph graph, boolean includeNontreeLinks)
+    {
+	m_graph = graph;
+	INCLUDE_NONTREE_LINKS =
+	    includeNontreeLinks && graph.getNumNontreeLinks() > 0;
+
+	int numNodes = graph.getNumNodes();
+	m_nearNodes = new Points(numNodes);
+	m_middleNodes = new Points(numNodes);
+	m_farNodes = new Points(numNodes);
+	m_treeLinks = new Lines(graph.getNumTreeLinks());
+	if (INCLUDE_NONTREE_LINKS)
+	{
+	    m_nontreeLinks = new Lines(graph.getNumNontreeLinks());
+	}
+
+	setView(new Matrix4d(H3Transform.I4), 1.0, 1, 1);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Sets the view for the elements added after the next beginFrame().
+    // {objectTransform} takes the display coordinates of the nodes (as
+    // set by H3Transformer) to virtual world coordinates, as the object
+    // transform of H3ViewParameters does, and {magnification} is the
+    // magnification included in it.  The image is {width} by {height}
+    // pixels, and the field of view spans its width.
+    public void setView(Matrix4d objectTransform, double magnification,
+			int width, int height)
+    {
+	if (width <= 0 || height <= 0)
+	{
+	    String msg = "invalid image size [" + width + "x" + height + "]";
+	    throw new IllegalArgumentException(msg);
+	}
+
+	m_objectTransform.set(objectTransform);
+	m_magnification = magnification;
+	m_width = width;
+	m_height = height;
+    }
+
+    public void setDepthCueingEnabled(boolean enable)
+    {
+	m_depthCueingEnabled = enable;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    public void beginFrame()
+    {
+	m_nearNodes.clear();
+	m_middleNodes.clear();
+	m_farNodes.clear();
+	m_treeLinks.clear();
+	if (INCLUDE_NONTREE_LINKS)
+	{
+	    m_nontreeLinks.clear();
+	}
+    }
+
+    public void addNode(int node)
+    {
+	if (m_graph.checkNodeVisible(node))
+	{
+	    m_graph.getNodeCoordinates(node, m_source);
+	    if (project(m_source))
+	    {
+		int color = fade(NODE_COLOR, m_source.z);
+
+		double radius = m_graph.getNodeRadius(node);
+		if (radius < FAR_NODES_THRESHOLD)
+		{
+		    m_farNodes.add(m_source.x, m_source.y, color);
+		}
+		else if (radius < MIDDLE_NODES_THRESHOLD)
+		{
+		    m_middleNodes.add(m_source.x, m_source.y, color);
+		}
+		else
+		{
+		    m_nearNodes.add(m_source.x, m_source.y, color);
+		}
+	    }
+	}
+    }
+
+    public void addTreeLink(int link)
+    {
+	if (m_graph.checkLinkVisible(link))
+	{
+	    addLink(m_treeLinks, link, TREE_LINK_COLOR);
+	}
+    }
+
+    public void addNontreeLink(int link)
+    {
+	if (INCLUDE_NONTREE_LINKS && m_graph.checkLinkVisible(link))
+	{
+	    addLink(m_nontreeLinks, link, NONTREE_LINK_COLOR);
+	}
+    }
+
+    // See comments for m_transformedData in H3Transformer.java for details
+    // about the encoding of {data}.
+    public void addElements(long[] data, int n)
+    {
+	for (int i = 0; i < n; i++)
+	{
+	    int type = (int)(data[i] >> 32);
+	    int element = (int)data[i];
+
+	    if (type == H3RenderQueue.Element.TYPE_NODE)
+	    {
+		addNode(element);
+	    }
+	    else if (type == H3RenderQueue.Element.TYPE_TREE_LINK)
+	    {
+		addTreeLink(element);
+	    }
+	    else //(type == H3RenderQueue.Element.TYPE_NONTREE_LINK)
+	    {
+		addNontreeLink(element);
+	    }
+	}
+    }
+
+    // Draws the elements added since beginFrame() into {image}, which
+    // must be a TYPE_INT_RGB image of the size given to setView().
+    public void render(BufferedImage image)
+    {
+	if (image.getType() != BufferedImage.TYPE_INT_RGB
+	    || image.getWidth() != m_width || image.getHeight() != m_height)
+	{
+	    String msg = "image must be of TYPE_INT_RGB and of size "
+		+ m_width + "x" + m_height;
+	    throw new IllegalArgumentException(msg);
+	}
+
+	int[] pixels =
+	    ((DataBufferInt)image.getRaster().getDataBuffer()).getData();
+	java.util.Arrays.fill(pixels, BACKGROUND_COLOR);
+
+	if (INCLUDE_NONTREE_LINKS)
+	{
+	    drawLines(pixels, m_nontreeLinks);
+	}
+	drawLines(pixels, m_treeLinks);
+
+	drawPoints(pixels, m_farNodes, NODE_FAR_POINT_SIZE);
+	drawPoints(pixels, m_middleNodes, NODE_MIDDLE_POINT_SIZE);
+	drawPoints(pixels, m_nearNodes, NODE_NEAR_POINT_SIZE);
+    }
+
+    public BufferedImage createImage()
+    {
+	return new BufferedImage(m_width, m_height,
+				 BufferedImage.TYPE_INT_RGB);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private void addLink(Lines lines, int link, int color)
+    {
+	int sourceNode = m_graph.getLinkSource(link);
+	int targetNode = m_graph.getLinkDestination(link);
+
+	if (SHOW_LINKS_OF_HIDDEN_NODES
+	    || (m_graph.checkNodeVisible(sourceNode)
+		&& m_graph.checkNodeVisible(targetNode)))
+	{
+	    m_graph.getNodeCoordinates(sourceNode, m_source);
+	    m_graph.getNodeCoordinates(targetNode, m_target);
+	    if (project(m_source) && project(m_target))
+	    {
+		double depth = 0.5 * (m_source.z + m_target.z);
+		lines.add(m_source.x, m_source.y, m_target.x, m_target.y,
+			  fade(color, depth));
+	    }
+	}
+    }
+
+    // Replaces {p} with its position on the image, in pixels, in x and y,
+    // and in z, its distance from the eye along the line of sight at the
+    // default magnification (for depth cueing).
+    // Returns false if {p} should not be drawn, because it lies in front
+    // of the front clipping plane (or is NaN).
+    private boolean project(Point3d p)
+    {
+	m_objectTransform.transform(p);
+
+	double distance = EYE_DISTANCE - p.z;
+	if (!(distance > FRONT_CLIP_DISTANCE))
+	{
+	    return false;
+	}
+
+	double scale = 0.5 * m_width * EYE_DISTANCE / distance;
+	p.x = 0.5 * m_width + p.x * scale;
+	p.y = 0.5 * m_height - p.y * scale;
+	p.z = EYE_DISTANCE - p.z / m_magnification;
+
+	// Points just beyond the front clipping plane can project almost
+	// anywhere, and are dropped when they go too far to be held safely
+	// in the float (and, after clipping, int) coordinates of the lists.
+	return Math.abs(p.x) < MAX_IMAGE_COORDINATE
+	    && Math.abs(p.y) < MAX_IMAGE_COORDINATE;
+    }
+
+    // Scales {color} toward black (the background) according to the
+    // distance of the element from the eye, as linear fog does.
+    private int fade(int color, double distance)
+    {
+	if (!m_depthCueingEnabled || distance <= DEPTH_CUEING_FRONT)
+	{
+	    return color;
+	}
+
+	double f = (DEPTH_CUEING_BACK - distance)
+	    / (DEPTH_CUEING_BACK - DEPTH_CUEING_FRONT);
+	if (!(f > 0.0))
+	{
+	    return BACKGROUND_COLOR;
+	}
+
+	int r = (int)(((color >> 16) & 0xff) * f);
+	int g = (int)(((color >> 8) & 0xff) * f);
+	int b = (int)((color & 0xff) * f);
+	return (r << 16) | (g << 8) | b;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // Draws each point as a square of {size} pixels on a side, as Java3D
+    // draws unantialiased points.
+    private void drawPoints(int[] pixels, Points points, int size)
+    {
+	int before = (size - 1) / 2;
+	for (int i = 0; i < points.count; i++)
+	{
+	    double x = points.x[i];
+	    double y = points.y[i];
+	    if (x < -size || x > m_width + size
+		|| y < -size || y > m_height + size)
+	    {
+		continue;
+	    }
+
+	    int x0 = Math.max(0, (int)Math.floor(x) - before);
+	    int y0 = Math.max(0, (int)Math.floor(y) - before);
+	    int x1 = Math.min(m_width, (int)Math.floor(x) - before + size);
+	    int y1 = Math.min(m_height, (int)Math.floor(y) - before + size);
+
+	    int color = points.color[i];
+	    for (int py = y0; py < y1; py++)
+	    {
+		int row = py * m_width;
+		for (int px = x0; px < x1; px++)
+		{
+		    pixels[row + px] = color;
+		}
+	    }
+	}
+    }
+
+    private void drawLines(int[] pixels, Lines lines)
+    {
+	for (int i = 0; i < lines.count; i++)
+	{
+	    int j = 2 * i;
+	    if (clipLine(lines.x[j], lines.y[j],
+			 lines.x[j + 1], lines.y[j + 1]))
+	    {
+		drawLine(pixels, toPixel(m_clipped[0], m_width),
+			 toPixel(m_clipped[1], m_height),
+			 toPixel(m_clipped[2], m_width),
+			 toPixel(m_clipped[3], m_height), lines.color[i]);
+	    }
+	}
+    }
+
+    // Rounds a clipped coordinate down to a pixel index.  Rounding in
+    // clipLine() can leave a coordinate a hair outside [0, limit), so the
+    // index is clamped as well.
+    private static int toPixel(double coordinate, int limit)
+    {
+	return Math.max(0, Math.min(limit - 1, (int)Math.floor(coordinate)));
+    }
+
+    // Clips the line from (x0, y0) to (x1, y1) to the image with the
+    // Liang-Barsky algorithm, leaving the endpoints of the visible part in
+    // m_clipped.  Returns false if no part of the line is visible.
+    private boolean clipLine(double x0, double y0, double x1, double y1)
+    {
+	double dx = x1 - x0;
+	double dy = y1 - y0;
+
+	// The bounds are kept just inside the image on every side, so that
+	// the rounded endpoints are valid pixels.
+	double minX = CLIP_MARGIN;
+	double minY = CLIP_MARGIN;
+	double maxX = m_width - CLIP_MARGIN;
+	double maxY = m_height - CLIP_MARGIN;
+
+	m_t0 = 0.0;
+	m_t1 = 1.0;
+	if (clipEdge(-dx, x0 - minX) && clipEdge(dx, maxX - x0)
+	    && clipEdge(-dy, y0 - minY) && clipEdge(dy, maxY - y0))
+	{
+	    m_clipped[0] = x0 + m_t0 * dx;
+	    m_clipped[1] = y0 + m_t0 * dy;
+	    m_clipped[2] = x0 + m_t1 * dx;
+	    m_clipped[3] = y0 + m_t1 * dy;
+	    return true;
+	}
+	return false;
+    }
+
+    // One step of clipLine(), for the edge on which p*t <= q.
+    private boolean clipEdge(double p, double q)
+    {
+	if (p == 0.0)
+	{
+	    return q >= 0.0;
+	}
+
+	double t = q / p;
+	if (p < 0.0)
+	{
+	    if (t > m_t1)
+	    {
+		return false;
+	    }
+	    m_t0 = Math.max(m_t0, t);
+	}
+	else
+	{
+	    if (t < m_t0)
+	    {
+		return false;
+	    }
+	    m_t1 = Math.min(m_t1, t);
+	}
+	return true;
+    }
+
+    // Bresenham's algorithm.  Both endpoints must lie within the image.
+    private void drawLine(int[] pixels, int x0, int y0, int x1, int y1,
+			  int color)
+    {
+	int dx = Math.abs(x1 - x0);
+	int dy = -Math.abs(y1 - y0);
+	int sx = (x0 < x1 ? 1 : -1);
+	int sy = (y0 < y1 ? 1 : -1);
+	int error = dx + dy;
+
+	while (true)
+	{
+	    pixels[y0 * m_width + x0] = color;
+	    if (x0 == x1 && y0 == y1)
+	    {
+		break;
+	    }
+
+	    int e2 = 2 * error;
+	    if (e2 >= dy)
+	    {
+		error += dy;
+		x0 += sx;
+	    }
+	    if (e2 <= dx)
+	    {
+		error += dx;
+		y0 += sy;
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean SHOW_LINKS_OF_HIDDEN_NODES = true;
+
+    // The same as in H3PointRenderList.
+    private static final double MIDDLE_NODES_THRESHOLD = 0.5;
+    private static final double FAR_NODES_THRESHOLD = 0.2;
+
+    // The same as in H3ViewParameters.
+    private static final int NODE_NEAR_POINT_SIZE = 5;
+    private static final int NODE_MIDDLE_POINT_SIZE = 3;
+    private static final int NODE_FAR_POINT_SIZE = 1;
+    private static final double DEPTH_CUEING_FRONT = 1.8;
+    private static final double DEPTH_CUEING_BACK = 3.5;
+
+    // The colors of the node and link appearances of H3ViewParameters.
+    private static final int BACKGROUND_COLOR = 0x000000;
+    private static final int NODE_COLOR = 0xFFFF00;
+    private static final int TREE_LINK_COLOR = 0x1E9619;
+    private static final int NONTREE_LINK_COLOR = 0xB3B3B3;
+
+    // The distance of the eye from the origin under the nominal viewing
+    // transform, 1 / tan(PI / 8), and the default front clip distance of
+    // a Java3D View.
+    private static final double EYE_DISTANCE = 1.0 / Math.tan(Math.PI / 8.0);
+    private static final double FRONT_CLIP_DISTANCE = 0.1;
+
+    private static final double MAX_IMAGE_COORDINATE = 1.0e6;
+    private static final double CLIP_MARGIN = 1.0e-6;
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    private H3Graph m_graph;
+
+    // Set in the constructor.
+    private final boolean INCLUDE_NONTREE_LINKS;
+
+    private Matrix4d m_objectTransform = new Matrix4d();
+    private double m_magnification;
+    private int m_width;
+    private int m_height;
+    private boolean m_depthCueingEnabled = true;
+
+    private Points m_nearNodes;
+    private Points m_middleNodes;
+    private Points m_farNodes;
+    private Lines m_treeLinks;
+    private Lines m_nontreeLinks;
+
+    private Point3d m_source = new Point3d();  // scratch variable
+    private Point3d m_target = new Point3d();  // scratch variable
+
+    // The state of clipLine().
+    private double m_t0;
+    private double m_t1;
+    private double[] m_clipped = new double[4];
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class Points
+    {
+	public Points(int capacity)
+	{
+	    x = new float[capacity];
+	    y = new float[capacity];
+	    color = new int[capacity];
+	}
+
+	public void clear()
+	{
+	    count = 0;
+	}
+
+	public void add(double px, double py, int c)
+	{
+	    x[count] = (float)px;
+	    y[count] = (float)py;
+	    color[count] = c;
+	    ++count;
+	}
+
+	public int count;
+	public float[] x;
+	public float[] y;
+	public int[] color;
+    }
+
+    // The endpoints of line i are at indices 2*i and 2*i + 1.
+    private static class Lines
+    {
+	public Lines(int capacity)
+	{
+	    x = new float[2 * capacity];
+	    y = new float[2 * capacity];
+	    color = new int[capacity];
+	}
+
+	public void clear()
+	{
+	    count = 0;
+	}
+
+	public void add(double x0, double y0, double x1, double y1, int c)
+	{
+	    int i = 2 * count;
+	    x[i] = (float)x0;
+	    y[i] = (float)y0;
+	    x[i + 1] = (float)x1;
+	    y[i + 1] = (float)y1;
+	    color[count] = c;
+	    ++count;
+	}
+
+	public int count;
+	public float[] x;
+	public float[] y;
+	public int[] color;
+    }
+}
@@ -0,0 +1,440 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+//
+// This class keeps the layouts of graphs in a directory on disk, so that
+// a graph that has been laid out before can be rendered again without
+// repeating the layout.
+//
+// Each entry holds the layout coordinates of the nodes, and the layout
+// state (the radii and angles of the nodes) returned by
+// H3GraphLayout.layoutHyperbolic(), which lets the coordinates be
+// recomputed in extended precision with retryHyperbolicLayout() rather
+// than by laying out the graph from scratch.  An entry is keyed by a
+// SHA-1 digest of the topology of the H3Graph.  The topology includes
+// the node and link IDs and the partitioning of the links into tree and
+// nontree links, so the same graph file with a different spanning tree
+// has a different key.
+//
+// The total size of the entries is bounded.  When storing an entry
+// would exceed the bound, the least recently used entries are deleted,
+// where the last-modified time of an entry file serves as the time it
+// was last used.
+//
+// The format of an entry is as follows:
+//
+//    header:     MAGIC, VERSION, numNodes, numLinks, rootNode, and three
+//                reserved words (all ints)
+//    layout:     H3Graph.getLayoutCoordinatesSize() doubles
+//    state:      H3GraphLayout.getLayoutStateSize() doubles
+//
+// The values are written in the native byte order, since a cache is
+// only ever read on the machine that wrote it.  An entry that cannot be
+// used (because it is from another version of Walrus, for example) is
+// simply deleted when it is looked up.
+//
+
+public class H3LayoutCache
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // {maxBytes} is the bound on the total size of the entries.  The most
+    // recently stored entry is always kept, even if it alone exceeds the
+    // bound.
+    public H3LayoutCache(File directory, long maxBytes)
+    {
+	m_directory = directory;
+	m_maxBytes = maxBytes;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public static File getDefaultDirectory()
+    {
+	File walrusDirectory =
+	    new File(System.getProperty("user.home"), ".walrus");
+	return new File(walrusDirectory, "layout-cache");
+    }
+
+    // Returns the key identifying the layout of {graph}, which depends only
+    // on the topology (including the spanning tree) of the graph.  This
+    // takes time proportional to the size of the graph, and so the key
+    // should be computed once and passed to both load() and save().
+    public static String computeKey(H3Graph graph)
+	throws IOException
+    {
+	long numBytes = 4L * graph.getTopologySize();
+	checkMappable(numBytes);
+
+	ByteBuffer header = ByteBuffer.allocate(3 * 4);
+	header.putInt(graph.getNumNodes());
+	header.putInt(graph.getTotalNumLinks());
+	header.putInt(graph.getRootNode());
+	header.flip();
+
+	ByteBuffer topology = ByteBuffer.allocate((int)numBytes);
+	graph.writeTopology(topology.asIntBuffer());
+
+	MessageDigest digest = createDigest();
+	digest.update(header);
+	digest.update(topology);
+
+	byte[] hash = digest.digest();
+	StringBuffer retval = new StringBuffer(2 * hash.length);
+	for (int i = 0; i < hash.length; i++)
+	{
+	    retval.append(HEX_DIGITS[(hash[i] >> 4) & 0xF]);
+	    retval.append(HEX_DIGITS[hash[i] & 0xF]);
+	}
+	return retval.toString();
+    }
+
+    // Restores the layout coordinates of {graph} from the entry with the
+    // given key, and returns the saved layout state, which can be passed
+    // to {layout}.retryHyperbolicLayout().  Returns null, leaving the
+    // graph unchanged, if there is no usable entry.
+    public H3GraphLayout.LayoutState load
+	(String key, H3Graph graph, H3GraphLayout layout)
+	throws IOException
+    {
+	File file = getEntryFile(key);
+	if (!file.isFile())
+	{
+	    return null;
+	}
+
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("H3LayoutCache.load.begin[" + startTime +"]");
+	}
+
+	H3GraphLayout.LayoutState retval = null;
+
+	int numNodes = graph.getNumNodes();
+	long layoutBytes = 8L * graph.getLayoutCoordinatesSize();
+	long stateBytes = 8L * H3GraphLayout.getLayoutStateSize(numNodes);
+
+	FileInputStream input = new FileInputStream(file);
+	try
+	{
+	    FileChannel channel = input.getChannel();
+	    if (checkHeader(channel, graph)
+		&& channel.size() == HEADER_BYTES + layoutBytes + stateBytes)
+	    {
+		checkMappable(layoutBytes);
+		checkMappable(stateBytes);
+
+		// The state is read first, so that the graph is left
+		// unchanged should it fail.
+		MappedByteBuffer state = channel.map
+		    (FileChannel.MapMode.READ_ONLY,
+		     HEADER_BYTES + layoutBytes, stateBytes);
+		state.order(ByteOrder.nativeOrder());
+		retval = layout.readLayoutState(numNodes,
+						state.asDoubleBuffer());
+
+		MappedByteBuffer coordinates = channel.map
+		    (FileChannel.MapMode.READ_ONLY, HEADER_BYTES, layoutBytes);
+		coordinates.order(ByteOrder.nativeOrder());
+		graph.readLayoutCoordinates(coordinates.asDoubleBuffer());
+	    }
+	}
+	finally
+	{
+	    input.close();
+	}
+
+	if (retval != null)
+	{
+	    // Mark the entry as the most recently used.
+	    file.setLastModified(System.currentTimeMillis());
+	}
+	else
+	{
+	    file.delete();
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("H3LayoutCache.load.end[" + stopTime + "]");
+	    System.out.println("H3LayoutCache.load.time[" + duration + "]");
+	    System.out.println("H3LayoutCache.load.hit[" + (retval != null)
+			       + "]");
+	}
+
+	return retval;
+    }
+
+    // Stores the layout coordinates of {graph}, and the {state} returned
+    // by {layout} for the graph, under the given key, replacing any
+    // existing entry.  Least recently used entries are then deleted as
+    // necessary to bring the size of the cache within bounds.
+    public void save(String key, H3Graph graph, H3GraphLayout layout,
+		     H3GraphLayout.LayoutState state)
+	throws IOException
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("H3LayoutCache.save.begin[" + startTime +"]");
+	}
+
+	int numNodes = graph.getNumNodes();
+	long layoutBytes = 8L * graph.getLayoutCoordinatesSize();
+	long stateBytes = 8L * H3GraphLayout.getLayoutStateSize(numNodes);
+	checkMappable(layoutBytes);
+	checkMappable(stateBytes);
+
+	if (!m_directory.isDirectory() && !m_directory.mkdirs())
+	{
+	    String msg = "couldn't create layout cache directory `"
+		+ m_directory.getPath() + "'";
+	    throw new IOException(msg);
+	}
+
+	// The entry is written to a temporary file that is then renamed, so
+	// that another instance of Walrus never sees a partial entry.  The
+	// sections are written from heap buffers rather than through a
+	// mapping, since a mapped file can't be renamed on some platforms
+	// until the mapping has been garbage collected.
+	File file = getEntryFile(key);
+	File tempFile = File.createTempFile("entry", ".tmp", m_directory);
+	try
+	{
+	    RandomAccessFile output = new RandomAccessFile(tempFile, "rw");
+	    try
+	    {
+		FileChannel channel = output.getChannel();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.order(ByteOrder.nativeOrder());
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(numNodes);
+		header.putInt(graph.getTotalNumLinks());
+		header.putInt(graph.getRootNode());
+		header.putInt(0);
+		header.putInt(0);
+		header.putInt(0);
+		header.flip();
+		writeFully(channel, header);
+
+		ByteBuffer coordinates = ByteBuffer.allocate((int)layoutBytes);
+		coordinates.order(ByteOrder.nativeOrder());
+		graph.writeLayoutCoordinates(coordinates.asDoubleBuffer());
+		writeFully(channel, coordinates);
+		coordinates = null;
+
+		ByteBuffer buffer = ByteBuffer.allocate((int)stateBytes);
+		buffer.order(ByteOrder.nativeOrder());
+		layout.writeLayoutState(state, buffer.asDoubleBuffer());
+		writeFully(channel, buffer);
+	    }
+	    finally
+	    {
+		output.close();
+	    }
+
+	    if (!tempFile.renameTo(file))
+	    {
+		file.delete();
+		if (!tempFile.renameTo(file))
+		{
+		    String msg = "couldn't rename `" + tempFile.getPath()
+			+ "' to `" + file.getPath() + "'";
+		    throw new IOException(msg);
+		}
+	    }
+	}
+	finally
+	{
+	    tempFile.delete();
+	}
+
+	evictEntries(file);
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("H3LayoutCache.save.end[" + stopTime + "]");
+	    System.out.println("H3LayoutCache.save.time[" + duration + "]");
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private File getEntryFile(String key)
+    {
+	return new File(m_directory, key + ENTRY_SUFFIX);
+    }
+
+    // Returns true iff the header of the entry is from this version of the
+    // cache and describes a graph of the same size as {graph}.
+    private boolean checkHeader(FileChannel channel, H3Graph graph)
+	throws IOException
+    {
+	ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+	while (buffer.hasRemaining())
+	{
+	    if (channel.read(buffer, buffer.position()) < 0)
+	    {
+		return false;
+	    }
+	}
+	buffer.flip();
+	buffer.order(ByteOrder.nativeOrder());
+
+	return buffer.getInt() == MAGIC
+	    && buffer.getInt() == VERSION
+	    && buffer.getInt() == graph.getNumNodes()
+	    && buffer.getInt() == graph.getTotalNumLinks()
+	    && buffer.getInt() == graph.getRootNode();
+    }
+
+    // Deletes the least recently used entries until the total size of the
+    // entries is within bounds, but never deletes {newestEntry}.
+    private void evictEntries(File newestEntry)
+    {
+	File[] files = m_directory.listFiles();
+	if (files == null)
+	{
+	    return;
+	}
+
+	List entries = new ArrayList();  // List<File>
+	long totalBytes = 0;
+	for (int i = 0; i < files.length; i++)
+	{
+	    if (files[i].getName().endsWith(ENTRY_SUFFIX))
+	    {
+		entries.add(files[i]);
+		totalBytes += files[i].length();
+	    }
+	}
+
+	if (totalBytes <= m_maxBytes)
+	{
+	    return;
+	}
+
+	Collections.sort(entries, new Comparator() {
+		public int compare(Object o1, Object o2)
+		{
+		    long t1 = ((File)o1).lastModified();
+		    long t2 = ((File)o2).lastModified();
+		    return (t1 < t2 ? -1 : (t1 == t2 ? 0 : 1));
+		}
+	    });
+
+	Iterator iterator = entries.iterator();
+	while (totalBytes > m_maxBytes && iterator.hasNext())
+	{
+	    File file = (File)iterator.next();
+	    if (!file.equals(newestEntry))
+	    {
+		long length = file.length();
+		if (file.delete())
+		{
+		    totalBytes -= length;
+
+		    if (DEBUG_PRINT)
+		    {
+			System.out.println("H3LayoutCache.evict["
+					   + file.getName() + "]");
+		    }
+		}
+	    }
+	}
+    }
+
+    private static MessageDigest createDigest()
+    {
+	try
+	{
+	    return MessageDigest.getInstance("SHA-1");
+	}
+	catch (NoSuchAlgorithmException e)
+	{
+	    // Every Java platform is required to support SHA-1.
+	    throw new RuntimeException("SHA-1 digest unavailable");
+	}
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer)
+	throws IOException
+    {
+	while (buffer.hasRemaining())
+	{
+	    channel.write(buffer);
+	}
+    }
+
+    // A single mapping or buffer is limited to Integer.MAX_VALUE bytes.
+    private static void checkMappable(long numBytes)
+	throws IOException
+    {
+	if (numBytes > Integer.MAX_VALUE)
+	{
+	    String msg = "graph too large for layout cache (section of "
+		+ numBytes + " bytes)";
+	    throw new IOException(msg);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean DEBUG_PRINT = true;
+
+    // "H3LC" in ASCII.
+    private static final int MAGIC = 0x48334C43;
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 8 * 4;
+
+    private static final String ENTRY_SUFFIX = ".layout";
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private File m_directory;
+    private long m_maxBytes;
+}
@@ -144,32 +144,20 @@ public class H3LineRenderer
 
 	m_numDisplayedElements = index;
 
-	H3RenderQueue.Element element = new H3RenderQueue.Element();
-
-	boolean more = true;
-	while (more && count-- > 0)
+	while (retval && count > 0)
 	{
-	    if (m_renderQueue.get(m_numDisplayedElements, element))
+	    int n = m_renderQueue.getRange
+		(m_numDisplayedElements, Math.min(count, m_elements.length),
+		 m_elements);
+	    if (n > 0)
 	    {
-		++m_numDisplayedElements;
-
-		if (element.type == H3RenderQueue.Element.TYPE_NODE)
-		{
-		    m_renderList.addNode(element.data);
-		}
-		else if (element.type == H3RenderQueue.Element.TYPE_TREE_LINK)
-		{
-		    m_renderList.addTreeLink(element.data);
-		}
-		else //(type == H3RenderQueue.Element.TYPE_NONTREE_LINK)
-		{
-		    m_renderList.addNontreeLink(element.data);
-		}
+		m_renderList.addElements(m_elements, n);
+		m_numDisplayedElements += n;
+		count -= n;
 	    }
 	    else
 	    {
 		retval = false;
-		more = false;
 	    }
 	}
 
@@ -182,6 +170,7 @@ public class H3LineRenderer
 
     private static final boolean DEBUG_PRINT = false;
     private static final int NUM_PER_ITERATION = 25;
+    private static final int ELEMENTS_BATCH_SIZE = 1000;
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
@@ -192,4 +181,10 @@ public class H3LineRenderer
     private H3RenderList m_renderList;
 
     private int m_numDisplayedElements = 0;
+
+    // Elements are copied out of the render queue in batches of up to this
+    // many.  The batches are smaller in practice when refining the display,
+    // since they're limited to NUM_PER_ITERATION elements at a time so that
+    // the time limit can be checked between them.
+    private long[] m_elements = new long[ELEMENTS_BATCH_SIZE];
 }
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.ListIterator;
+import java.util.Arrays;
 import javax.swing.*;
 import com.sun.j3d.utils.universe.*;
 import org.caida.libsea.*;
@@ -86,7 +87,7 @@ public class H3Main
 	m_frame.setSize(DEFAULT_FRAME_WIDTH, DEFAULT_FRAME_HEIGHT);
 	m_frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-        java.net.URL url = H3Main.class.getResource(SPLASH_ICON_PATH);
+	java.net.URL url = H3Main.class.getResource(SPLASH_ICON_PATH);
 	if (url != null)
 	{
 	    m_splashLabel = new JLabel(new ImageIcon(url));
@@ -125,7 +126,16 @@ public class H3Main
 		ASCIIInputStreamReader reader =
 		    new ASCIIInputStreamReader(new FileInputStream(file));
 
-		Graph backingGraph = loadGraph(file, reader);
+		Graph backingGraph = null;
+		H3StreamingGraphLoader streamingLoader = null;
+		if (m_streamingLoadMenuItem.isSelected())
+		{
+		    streamingLoader = loadGraphStreaming(file, reader);
+		}
+		else
+		{
+		    backingGraph = loadGraph(file, reader);
+		}
 
 		if (DEBUG_PRINT_LOAD_MEMORY) { m_memoryUsage.gatherAtPeak(); }
 		if (DEBUG_PRINT_LOAD_MEMORY)
@@ -134,11 +144,20 @@ public class H3Main
 		    m_memoryUsage.printUsage();
 		}
 
-		if (backingGraph != null)
+		if (backingGraph != null || streamingLoader != null)
 		{
-		    populateMenus(backingGraph);
+		    if (streamingLoader != null)
+		    {
+			populateMenus(streamingLoader);
+		    }
+		    else
+		    {
+			populateMenus(backingGraph);
+		    }
 
 		    m_backingGraph = backingGraph;
+		    m_streamingLoader = streamingLoader;
+		    m_graphFile = file;
 		    m_viewParameters.resetObjectTransform();
 
 		    m_frame.setTitle(WALRUS_TITLE + " -- " + file.getPath());
@@ -156,7 +175,7 @@ public class H3Main
 					 JOptionPane.ERROR_MESSAGE);
 	    }
 
-	    if (m_backingGraph == null)
+	    if (m_graphFile == null)
 	    {
 		m_statusBar.setText(MSG_NO_GRAPH_LOADED);
 	    }
@@ -165,6 +184,85 @@ public class H3Main
 	System.out.println("Finished handleOpenFileRequest()");
     }
 
+    // Opens a snapshot written by handleSaveSnapshotRequest().  Only the
+    // header is read here, just as only the attributes are read when a
+    // graph file is opened; the graph itself is loaded in setupRendering().
+    // A snapshot holds no attributes, so it offers only the spanning tree
+    // it was saved with and the colorings that need no attributes.
+    private void handleOpenSnapshotRequest()
+    {
+	File file = askUserForFile();
+	if (file != null)
+	{
+	    handleCloseFileRequest();
+	    m_statusBar.setText(MSG_LOADING_GRAPH);
+
+	    try
+	    {
+		H3GraphSnapshot.checkLayoutSaved(file);
+
+		List spanningTreeQualifiers = new ArrayList(); // List<String>
+		spanningTreeQualifiers.add(SNAPSHOT_SPANNING_TREE);
+		populateMenus(spanningTreeQualifiers, new ArrayList(), null);
+
+		m_isSnapshotOpen = true;
+		m_graphFile = file;
+		m_viewParameters.resetObjectTransform();
+
+		m_frame.setTitle(WALRUS_TITLE + " -- " + file.getPath());
+		m_statusBar.setText(MSG_GRAPH_LOADED);
+
+		m_closeMenuItem.setEnabled(true);
+		m_startMenuItem.setEnabled(true);
+	    }
+	    catch (IOException e)
+	    {
+		String msg = "Snapshot could not be opened: " + e.getMessage();
+		JOptionPane dialog = new JOptionPane();
+		dialog.showMessageDialog(null, msg, "Open Snapshot Failed",
+					 JOptionPane.ERROR_MESSAGE);
+	    }
+
+	    if (m_graphFile == null)
+	    {
+		m_statusBar.setText(MSG_NO_GRAPH_LOADED);
+	    }
+	}
+
+	System.out.println("Finished handleOpenSnapshotRequest()");
+    }
+
+    // Saves m_graph, as built for the current spanning tree, to a snapshot
+    // (see H3GraphSnapshot), which File->Open Snapshot loads far faster
+    // than the graph file itself can be loaded.  The layout coordinates
+    // are included if they are those of a layout of every node, so that
+    // the graph needn't be laid out again either.
+    private void handleSaveSnapshotRequest()
+    {
+	File file = askUserForSaveFile();
+	if (file != null)
+	{
+	    String savedStatus = m_statusBar.getText();
+	    m_statusBar.setText(MSG_SAVING_SNAPSHOT);
+	    try
+	    {
+		boolean saveLayout = (m_renderingConfiguration != null
+				      && checkLayoutComplete());
+		H3GraphSnapshot.save(m_graph, file, saveLayout);
+	    }
+	    catch (IOException e)
+	    {
+		String msg = "Snapshot could not be saved: " + e.getMessage();
+		JOptionPane dialog = new JOptionPane();
+		dialog.showMessageDialog(null, msg, "Save Snapshot Failed",
+					 JOptionPane.ERROR_MESSAGE);
+	    }
+	    m_statusBar.setText(savedStatus);
+	}
+
+	System.out.println("Finished handleSaveSnapshotRequest()");
+    }
+
     ///////////////////////////////////////////////////////////////////////
 
     private RenderingConfiguration createRenderingConfigurationSnapshot()
@@ -190,6 +288,15 @@ public class H3Main
 	retval.automaticRefresh = m_automaticRefreshMenuItem.isSelected();
 	retval.automaticExtendedPrecision =
 	    m_automaticExtendedPrecisionMenuItem.isSelected();
+	retval.parallelLayout = m_parallelLayoutMenuItem.isSelected();
+	retval.layoutCache = m_layoutCacheMenuItem.isSelected();
+	retval.doubleDoublePrecision =
+	    m_doubleDoublePrecisionMenuItem.isSelected();
+	retval.parallelTransformer =
+	    m_parallelTransformerMenuItem.isSelected();
+	retval.nonadaptiveCulling = m_nonadaptiveCullingMenuItem.isSelected();
+	retval.matrixTranslation = m_matrixTranslationMenuItem.isSelected();
+	retval.levelOfDetail = m_levelOfDetailMenuItem.isSelected();
 	retval.nodeColor =
 	    m_colorSchemeMenu.createNodeColorConfigurationSnapshot();
 	retval.treeLinkColor =
@@ -209,14 +316,7 @@ public class H3Main
 	    if (menuItem != null && menuItem.isSelected())
 	    {
 		String name = menuItem.getText();
-		AttributeDefinitionIterator iterator =
-		    m_backingGraph.getAttributeDefinition(name);
-		if (iterator.atEnd())
-		{
-		    String msg = "no attribute named `" + name + "' found";
-		    throw new RuntimeException(msg);
-		}
-		retval.nodeLabelAttributes[numAdded] = iterator.getID();
+		retval.nodeLabelAttributes[numAdded] = findAttributeID(name);
 		retval.nodeLabelAttributeNames[numAdded] = name;
 		++numAdded;
 	    }
@@ -227,10 +327,53 @@ public class H3Main
 
     ///////////////////////////////////////////////////////////////////////
 
+    private int findAttributeID(String name)
+    {
+	int retval = -1;
+	if (m_streamingLoader != null)
+	{
+	    retval = m_streamingLoader.getAttributeID(name);
+	}
+	else
+	{
+	    AttributeDefinitionIterator iterator =
+		m_backingGraph.getAttributeDefinition(name);
+	    if (!iterator.atEnd())
+	    {
+		retval = iterator.getID();
+	    }
+	}
+
+	if (retval == -1)
+	{
+	    String msg = "no attribute named `" + name + "' found";
+	    throw new RuntimeException(msg);
+	}
+	return retval;
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
     private void populateMenus(Graph graph)
     {
-	m_spanningTreeQualifiers =
-	    m_graphLoader.loadSpanningTreeQualifiers(graph);
+	populateMenus(m_graphLoader.loadSpanningTreeQualifiers(graph),
+		      m_graphLoader.loadAttributes
+		      (graph, m_allAttributeTypeMatcher),
+		      new AttributeCache(m_graphLoader, graph));
+    }
+
+    private void populateMenus(H3StreamingGraphLoader loader)
+    {
+	populateMenus(loader.loadSpanningTreeQualifiers(),
+		      loader.loadAttributes(m_allAttributeTypeMatcher),
+		      new AttributeCache(loader));
+    }
+
+    private void populateMenus(List spanningTreeQualifiers,
+			       List nodeLabelAttributes,
+			       AttributeCache attributeCache)
+    {
+	m_spanningTreeQualifiers = spanningTreeQualifiers;
 	{
 	    m_spanningTreeButtonGroup = new ButtonGroup();
 	    ListIterator iterator = m_spanningTreeQualifiers.listIterator();
@@ -249,8 +392,7 @@ public class H3Main
 	    }
 	}
 
-	m_nodeLabelAttributes = m_graphLoader.loadAttributes
-	    (graph, m_allAttributeTypeMatcher);
+	m_nodeLabelAttributes = nodeLabelAttributes;
 	{
 	    ListIterator iterator = m_nodeLabelAttributes.listIterator();
 	    while (iterator.hasNext())
@@ -261,7 +403,11 @@ public class H3Main
 	    }
 	}
 
-	m_colorSchemeMenu.populateAttributeMenus(m_graphLoader, graph);
+	// A snapshot has no attributes, and so no attribute cache.
+	if (attributeCache != null)
+	{
+	    m_colorSchemeMenu.populateAttributeMenus(attributeCache);
+	}
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -278,7 +424,13 @@ public class H3Main
 	m_currentNode = -1;
 	m_previousNode = -1;
 	m_backingGraph = null;
+	m_streamingLoader = null;
+	m_nodeLabels = null;
+	m_isSnapshotOpen = false;
+	m_graphFile = null;
 	m_graph = null;
+	m_layoutState = null;
+	m_layoutCacheKey = null;
 	m_displayPosition = null;
 	m_savedDisplayPosition = null;
 	m_isDisplayNarrowed = false;
@@ -291,6 +443,7 @@ public class H3Main
 	// File menu.
 	m_saveWithLayoutMenuItem.setEnabled(false);
 	m_saveWithLayoutAsMenuItem.setEnabled(false);
+	m_saveSnapshotMenuItem.setEnabled(false);
 	m_closeMenuItem.setEnabled(false);
 
 	// Rendering menu.
@@ -353,7 +506,8 @@ public class H3Main
 
     ///////////////////////////////////////////////////////////////////////
 
-    private void colorNodes(ColorConfiguration configuration)
+    private void colorNodes(ColorConfiguration configuration,
+			    H3AttributeExtractor extractor)
     {
 	System.out.print("(colorNodes) ");
 	configuration.print();
@@ -398,7 +552,7 @@ public class H3Main
 	    throw new RuntimeException("NOT IMPLEMENTED");
 
 	case ColorConfiguration.RGB:
-	    colorNodesRGB(configuration.colorAttribute);
+	    colorNodesRGB(configuration.colorAttribute, extractor);
 	    break;
 
 	default: throw new RuntimeException();
@@ -420,7 +574,8 @@ public class H3Main
 	    .setTransparencyAttributes(attributes);
     }
 
-    private void colorTreeLinks(ColorConfiguration configuration)
+    private void colorTreeLinks(ColorConfiguration configuration,
+				H3AttributeExtractor extractor)
     {
 	System.out.print("(colorTreeLinks) ");
 	configuration.print();
@@ -454,7 +609,7 @@ public class H3Main
 	    throw new RuntimeException("NOT IMPLEMENTED");
 
 	case ColorConfiguration.RGB:
-	    colorLinksRGB(configuration.colorAttribute, true);
+	    colorLinksRGB(configuration.colorAttribute, true, extractor);
 	    break;
 
 	default: throw new RuntimeException();
@@ -470,7 +625,8 @@ public class H3Main
 	    .setTransparencyAttributes(attributes);
     }
 
-    private void colorNontreeLinks(ColorConfiguration configuration)
+    private void colorNontreeLinks(ColorConfiguration configuration,
+				   H3AttributeExtractor extractor)
     {
 	System.out.print("(colorNontreeLinks) ");
 	configuration.print();
@@ -504,7 +660,7 @@ public class H3Main
 	    throw new RuntimeException("NOT IMPLEMENTED");
 
 	case ColorConfiguration.RGB:
-	    colorLinksRGB(configuration.colorAttribute, false);
+	    colorLinksRGB(configuration.colorAttribute, false, extractor);
 	    break;
 
 	default: throw new RuntimeException();
@@ -520,186 +676,26 @@ public class H3Main
 	    .setTransparencyAttributes(attributes);
     }
 
-    // Performance Note:
-    //
-    //   There is a possibility for poor performance in the following methods
-    //   that color nodes and links.  It turns out that exceptions are not
-    //   lightweight in Java, and so an extensive use of exceptions can
-    //   dramatically slow down a program.  The weakness of the following
-    //   methods is exactly in their potentially extensive use of exceptions.
-    //   Exceptions will be thrown whenever a node or link does not have a
-    //   value for a coloring attribute.  Ordinarily, the creator of a graph
-    //   will supply attribute values for all objects, but they are not
-    //   required to do so.  A realistic scenario where they may not supply
-    //   all values is when these values result from measurements, and there
-    //   are gaps in the measurement data.  In such situations, it would be
-    //   best if the graph creator were to add a default value to the coloring
-    //   attribute, so that all objects effectively have some value.  Some
-    //   out-of-range value indicating "unknown" would be the best approach.
-    //
-    //   Owing to the fact that IDs of nodes and links in H3Graph need not
-    //   necessarily match the IDs used in the backing libsea Graph, we
-    //   cannot simply eliminate this undesirable trait by accessing the
-    //   attributes in a different way.  Specifically, we could theoretically
-    //   avoid exceptions altogether by using AttributesByAttributeIterator,
-    //   which iterates over only the objects that have values.  What makes
-    //   this approach impracticable is its reliance on some way of mapping
-    //   IDs of objects in the backing libsea Graph to IDs used in H3Graph.
-    //   It is not impossible to set up such mappings, either in H3Graph or
-    //   in libsea.  For example, we could do so in the latter by adding an
-    //   internal attribute to all the objects which gives the ID.  Then
-    //   we could simply use the mechanisms already in place for accessing
-    //   attributes to carry out the mapping.  To set up a mapping in H3Graph,
-    //   on the other hand, would require something like a hash table or
-    //   binary search on a sorted array.  There are drawbacks, however, to
-    //   either approach.  I've therefore avoided relying on such mappings,
-    //   and used instead an approach which will work well in typical cases.
-    //   If the graph creator is careful, this approach will in fact work
-    //   well in all cases.
+    // The following methods only queue the extraction of attribute values
+    // on {extractor}, which is then run with runAttributeExtractor().
+    // See H3AttributeExtractor for the approach taken.  After a streaming
+    // load, m_backingGraph is null, and the extractor reads the values
+    // from the graph file instead.
 
     // NOTE: Attribute must be of type int, float3, or double3.
-    private void colorNodesRGB(String colorAttribute)
+    private void colorNodesRGB(String colorAttribute,
+			       H3AttributeExtractor extractor)
     {
-	int attribute =
-	    m_backingGraph.getAttributeDefinition(colorAttribute).getID();
-
-	int defaultColor = Color.white.getRGB();
-	int numNodes = m_graph.getNumNodes();
-	for (int i = 0; i < numNodes; i++)
-	{
-	    int color = defaultColor;
-	    try
-	    {
-		int nodeID = m_graph.getNodeID(i);
-		ValueIterator iterator =
-		    m_backingGraph.getNodeAttribute(nodeID, attribute);
-		color = extractRGBColor(iterator);
-	    }
-	    catch (AttributeUnavailableException e)
-	    {
-		// Nothing to do--simply use the default color.
-	    }
-	    m_graph.setNodeColor(i, color);
-	}
+	int attribute = findAttributeID(colorAttribute);
+	extractor.addNodeColoring(m_backingGraph, attribute);
     }
 
     // NOTE: Attribute must be of type int, float3, or double3.
-    private void colorLinksRGB(String colorAttribute, boolean treeLink)
-    {
-	int attribute =
-	    m_backingGraph.getAttributeDefinition(colorAttribute).getID();
-
-	int defaultColor = Color.white.getRGB();
-	int numLinks = m_graph.getTotalNumLinks();
-	for (int i = 0; i < numLinks; i++)
-	{
-	    if (m_graph.checkTreeLink(i) == treeLink)
-	    {
-		int color = defaultColor;
-		try
-		{
-		    int linkID = m_graph.getLinkID(i);
-		    ValueIterator iterator =
-			m_backingGraph.getLinkAttribute(linkID, attribute);
-		    color = extractRGBColor(iterator);
-		}
-		catch (AttributeUnavailableException e)
-		{
-		    // Nothing to do--simply use the default color.
-		}
-		m_graph.setLinkColor(i, color);
-	    }
-	}
-    }
-
-    private int extractRGBColor(ValueIterator iterator)
-    {
-	int retval = 0;
-	switch (iterator.getType().getType())
-	{
-	case ValueType._INTEGER:
-	    retval = iterator.getIntegerValue();
-	    break;
-
-	case ValueType._FLOAT3:
-	    {
-		iterator.getFloat3Value(m_float3Temporary);
-		normalizeColorComponents(m_float3Temporary);
-		retval = makeColor(m_float3Temporary);
-	    }
-	    break;
-
-	case ValueType._DOUBLE3:
-	    {
-		iterator.getDouble3Value(m_double3Temporary);
-		normalizeColorComponents(m_double3Temporary);
-		retval = makeColor(m_double3Temporary);
-	    }
-	    break;
-
-	case ValueType._BOOLEAN:
-	    //FALLTHROUGH
-	case ValueType._FLOAT:
-	    //FALLTHROUGH
-	case ValueType._DOUBLE:
-	    //FALLTHROUGH
-	case ValueType._STRING:
-	    //FALLTHROUGH
-	case ValueType._ENUMERATION:
-	    //FALLTHROUGH
-	default: throw new RuntimeException();
-	}
-	return retval;
-    }
-
-    private void normalizeColorComponents(float[] color)
-    {
-	for (int i = 0; i < color.length; i++)
-	{
-	    float value = color[i];
-	    if (value < 0.0f)
-	    {
-		value = 0.0f;
-	    }
-	    else if (value > 1.0f)
-	    {
-		value = 1.0f;
-	    }
-	    color[i] = value;
-	}
-    }
-
-    private void normalizeColorComponents(double[] color)
+    private void colorLinksRGB(String colorAttribute, boolean treeLink,
+			       H3AttributeExtractor extractor)
     {
-	for (int i = 0; i < color.length; i++)
-	{
-	    double value = color[i];
-	    if (value < 0.0)
-	    {
-		value = 0.0;
-	    }
-	    else if (value > 1.0)
-	    {
-		value = 1.0;
-	    }
-	    color[i] = value;
-	}
-    }
-
-    private int makeColor(float[] color)
-    {
-	int r = (int)(255.0f * color[0]);
-	int g = (int)(255.0f * color[1]);
-	int b = (int)(255.0f * color[2]);
-	return (r << 16) | (g << 8) | b;
-    }
-
-    private int makeColor(double[] color)
-    {
-	int r = (int)(255.0 * color[0]);
-	int g = (int)(255.0 * color[1]);
-	int b = (int)(255.0 * color[2]);
-	return (r << 16) | (g << 8) | b;
+	int attribute = findAttributeID(colorAttribute);
+	extractor.addLinkColoring(m_backingGraph, attribute, treeLink);
     }
 
     private ColoringAttributes makeColoringAttributes(int color)
@@ -713,7 +709,8 @@ public class H3Main
 
     ///////////////////////////////////////////////////////////////////////
 
-    private void selectNodes(ColorConfiguration configuration)
+    private void selectNodes(ColorConfiguration configuration,
+			     H3AttributeExtractor extractor)
     {
 	if (configuration.selectionAttribute == null)
 	{
@@ -721,32 +718,16 @@ public class H3Main
 	}
 	else
 	{
-	    int attribute = m_backingGraph.getAttributeDefinition
-		(configuration.selectionAttribute).getID();
-
-	    int numNodes = m_graph.getNumNodes();
-	    for (int i = 0; i < numNodes; i++)
-	    {
-		boolean isSelected = true;
-		try
-		{
-		    int nodeID = m_graph.getNodeID(i);
-		    isSelected = m_backingGraph.getBooleanAttribute
-			(ObjectType.NODE, nodeID, attribute);
-		}
-		catch (AttributeUnavailableException e)
-		{
-		    // Assume selected.
-		}
-		m_graph.setNodeSelectivity(i, isSelected);
-	    }
+	    int attribute = findAttributeID(configuration.selectionAttribute);
+	    extractor.addNodeSelection(m_backingGraph, attribute);
 	}
     }
 
     ///////////////////////////////////////////////////////////////////////
 
     private void selectLinks
-	(ColorConfiguration configuration, boolean treeLink)
+	(ColorConfiguration configuration, boolean treeLink,
+	 H3AttributeExtractor extractor)
     {
 	if (configuration.selectionAttribute == null)
 	{
@@ -754,28 +735,121 @@ public class H3Main
 	}
 	else
 	{
-	    int attribute = m_backingGraph.getAttributeDefinition
-		(configuration.selectionAttribute).getID();
+	    int attribute = findAttributeID(configuration.selectionAttribute);
+	    extractor.addLinkSelection(m_backingGraph, attribute, treeLink);
+	}
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    // After a streaming load, there is no backing graph to look up the
+    // values of node labels in, so {extractor} reads them from the graph
+    // file, and they're kept in m_nodeLabels until other attributes are
+    // chosen.
+    private void readNodeLabels(RenderingConfiguration renderingConfiguration,
+				H3AttributeExtractor extractor)
+    {
+	int[] attributes = renderingConfiguration.nodeLabelAttributes;
+	if (m_streamingLoader != null && attributes.length > 0
+	    && (m_nodeLabels == null
+		|| !Arrays.equals(attributes, m_nodeLabels.getAttributes())))
+	{
+	    extractor.addNodeLabels(attributes);
+	}
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    // Runs the queued passes of {extractor} on a separate thread, so that
+    // the event-dispatch thread can go on repainting the window while a
+    // modal dialog reports the progress and keeps the user from changing
+    // the graph in the meantime.
+    private void runAttributeExtractor(final H3AttributeExtractor extractor)
+    {
+	if (extractor.isEmpty())
+	{
+	    return;
+	}
+
+	final JProgressBar progressBar = new JProgressBar();
+	progressBar.setStringPainted(true);
+	progressBar.setString("");
 
-	    int numLinks = m_graph.getTotalNumLinks();
-	    for (int i = 0; i < numLinks; i++)
+	final JDialog dialog = new JDialog(m_frame, "Applying Attributes",
+					   true);
+	dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+	dialog.getContentPane().add(progressBar, BorderLayout.CENTER);
+	dialog.setSize(PROGRESS_DIALOG_WIDTH, PROGRESS_DIALOG_HEIGHT);
+	dialog.setLocationRelativeTo(m_frame);
+
+	final H3AttributeExtractor.ProgressListener listener =
+	    new H3AttributeExtractor.ProgressListener()
 	    {
-		if (m_graph.checkTreeLink(i) == treeLink)
+		public void progressUpdated(final String note,
+					    final int progress,
+					    final int maximum)
+		{
+		    SwingUtilities.invokeLater(new Runnable()
+			{
+			    public void run()
+			    {
+				progressBar.setMaximum(maximum);
+				progressBar.setValue(progress);
+				progressBar.setString(note);
+			    }
+			});
+		}
+	    };
+
+	final RuntimeException[] failure = new RuntimeException[1];
+	Thread thread = new Thread(new Runnable()
+	    {
+		public void run()
 		{
-		    boolean isSelected = true;
 		    try
 		    {
-			int linkID = m_graph.getLinkID(i);
-			isSelected = m_backingGraph.getBooleanAttribute
-			    (ObjectType.LINK, linkID, attribute);
+			extractor.run(listener);
 		    }
-		    catch (AttributeUnavailableException e)
+		    catch (RuntimeException e)
 		    {
-			// Assume selected.
+			failure[0] = e;
+		    }
+		    finally
+		    {
+			// The event-dispatch thread only gets to this
+			// once the dialog is showing, so the dialog
+			// cannot be left open.
+			SwingUtilities.invokeLater(new Runnable()
+			    {
+				public void run()
+				{
+				    dialog.dispose();
+				}
+			    });
 		    }
-		    m_graph.setLinkSelectivity(i, isSelected);
 		}
-	    }
+	    });
+
+	thread.start();
+	dialog.setVisible(true);  // Blocks until the dialog is disposed.
+
+	try
+	{
+	    thread.join();
+	}
+	catch (InterruptedException e)
+	{
+	    Thread.currentThread().interrupt();
+	}
+
+	if (failure[0] != null)
+	{
+	    throw failure[0];
+	}
+
+	if (extractor.getNodeLabels() != null)
+	{
+	    m_nodeLabels = extractor.getNodeLabels();
 	}
     }
 
@@ -828,6 +902,16 @@ public class H3Main
 	m_graph.setLinkDisplayability(true);
 	m_graph.computeVisibility();
 
+	if (m_layoutState != null)
+	{
+	    H3GraphLayout layout =
+		createGraphLayout(m_renderingConfiguration);
+	    if (!layout.checkLayoutComplete(m_layoutState))
+	    {
+		layout.relayoutHyperbolic(m_graph, m_layoutState);
+	    }
+	}
+
 	m_graph.transformNodes(H3Transform.I4);
 	m_viewParameters.resetObjectTransform();
 
@@ -876,7 +960,7 @@ public class H3Main
 
     private void handleNarrowToSubtreeRequest(int node)
     {
-	m_graph.narrowVisibility(node);
+	m_graph.narrowVisibility(toGraphNode(node));
 	updateDisplayNarrowingMenusAndRefresh();
     }
 
@@ -884,7 +968,7 @@ public class H3Main
 
     private void handleWidenSubtreeRequest(int node)
     {
-	m_graph.widenSubtreeVisibility(node);
+	m_graph.widenSubtreeVisibility(toGraphNode(node));
 	updateDisplayNarrowingMenusAndRefresh();
     }
 
@@ -892,7 +976,7 @@ public class H3Main
 
     private void handleWidenTowardRootRequest(int node)
     {
-	m_graph.widenVisibilityTowardRoot(node);
+	m_graph.widenVisibilityTowardRoot(toGraphNode(node));
 	updateDisplayNarrowingMenusAndRefresh();
     }
 
@@ -908,7 +992,7 @@ public class H3Main
 
     private void handlePruneSubtreeRequest(int node)
     {
-	m_graph.pruneSubtreeVisibility(node);
+	m_graph.pruneSubtreeVisibility(toGraphNode(node));
 	updateDisplayNarrowingMenusAndRefresh();
     }
 
@@ -916,7 +1000,7 @@ public class H3Main
 
     private void handlePruneToNeighborhoodRequest(int node, int distance)
     {
-	m_graph.pruneVisibilityToNeighborhood(node, distance);
+	m_graph.pruneVisibilityToNeighborhood(toGraphNode(node), distance);
 	updateDisplayNarrowingMenusAndRefresh();
     }
 
@@ -925,8 +1009,142 @@ public class H3Main
     private void updateDisplayNarrowingMenusAndRefresh()
     {
 	setupDisplayNarrowingMenus(!m_graph.checkNodesVisible());
-	m_eventHandler.forceIdleState();
-	m_eventHandler.refreshDisplay();
+
+	// Once compacted, the layout must follow every change in the
+	// displayed nodes, or nodes shown again by widening would overlap
+	// the rest, so compaction only stops when the graph is fully shown.
+	// Likewise, a compact graph of the shown nodes is built again on
+	// every change (see startRendering()).
+	H3GraphLayout layout = createGraphLayout(m_renderingConfiguration);
+	boolean relayout = (m_layoutState != null
+			    && (m_compactLayoutMenuItem.isSelected()
+				|| !layout.checkLayoutComplete(m_layoutState)));
+	if (relayout || m_compactGraphMenuItem.isSelected()
+	    || m_visibleSubgraph != null)
+	{
+	    stopRendering();
+	    if (relayout)
+	    {
+		relayoutGraph(layout);
+	    }
+	    startRendering(m_renderingConfiguration);
+	}
+	else
+	{
+	    m_eventHandler.forceIdleState();
+	    m_eventHandler.refreshVisibility();
+	}
+    }
+
+    // Lays out just the displayable nodes again (see
+    // H3GraphLayout.relayoutHyperbolic()), and keeps the node at the
+    // center of the display, if any, centered.  Rendering must be stopped.
+    private void relayoutGraph(H3GraphLayout layout)
+    {
+	layout.relayoutHyperbolic(m_graph, m_layoutState);
+
+	int numNodes = m_graph.getNumNodes();
+	int numGoodNodes = m_graph.checkLayoutCoordinates();
+	if (numGoodNodes < numNodes)
+	{
+	    System.err.println("WARNING: Layout failed for "
+			       + (numNodes - numGoodNodes) + " of "
+			       + numNodes + " nodes; placing them at the"
+			       + " origin.");
+	    m_graph.sanitizeLayoutCoordinates();
+	}
+
+	m_displayPosition = recenterDisplayPosition(m_displayPosition);
+	m_savedDisplayPosition =
+	    recenterDisplayPosition(m_savedDisplayPosition);
+    }
+
+    // The translation of a display position is computed from the layout
+    // coordinates of its center node, and so it must be recomputed when
+    // the graph is laid out again.  A center node that is no longer
+    // displayed is replaced by the root node.
+    private H3DisplayPosition recenterDisplayPosition
+	(H3DisplayPosition position)
+    {
+	H3DisplayPosition retval = null;
+	if (position != null)
+	{
+	    int centerNode = position.getCenterNode();
+	    if (!m_graph.checkNodeDisplayable(centerNode))
+	    {
+		centerNode = m_graph.getRootNode();
+	    }
+
+	    retval = centerDisplayPosition
+		(m_graph, centerNode, position.getRotation());
+	}
+	return retval;
+    }
+
+    private H3DisplayPosition centerDisplayPosition
+	(H3Graph graph, int centerNode, Transform3D rotation)
+    {
+	Point4d center = new Point4d();
+	graph.getNodeLayoutCoordinates(centerNode, center);
+
+	Matrix4d translation =
+	    H3Transform.buildTranslation(center, H3Transform.ORIGIN4);
+	return new H3DisplayPosition(centerNode, rotation, translation);
+    }
+
+    ///////////////////////////////////////////////////////////////////////
+
+    // The following map nodes and display positions between m_graph and
+    // the graph being rendered, which differ while the compact graph of
+    // a narrowed display is rendered (see startRendering()).  A node
+    // left out of the compact graph is replaced by its root.
+
+    private int toRenderedNode(int node)
+    {
+	return (m_visibleSubgraph == null
+		? node : m_visibleSubgraph.getCompactNodeOrRoot(node));
+    }
+
+    private int toGraphNode(int node)
+    {
+	return (m_visibleSubgraph == null
+		? node : m_visibleSubgraph.getOriginalNode(node));
+    }
+
+    private H3DisplayPosition toRenderedPosition(H3DisplayPosition position)
+    {
+	H3DisplayPosition retval = position;
+	if (position != null && m_visibleSubgraph != null)
+	{
+	    int centerNode =
+		m_visibleSubgraph.getCompactNode(position.getCenterNode());
+	    if (centerNode >= 0)
+	    {
+		retval = new H3DisplayPosition
+		    (centerNode, position.getRotation(),
+		     position.getTranslation());
+	    }
+	    else
+	    {
+		H3Graph graph = m_visibleSubgraph.getGraph();
+		retval = centerDisplayPosition
+		    (graph, graph.getRootNode(), position.getRotation());
+	    }
+	}
+	return retval;
+    }
+
+    private H3DisplayPosition toGraphPosition(H3DisplayPosition position)
+    {
+	H3DisplayPosition retval = position;
+	if (position != null && m_visibleSubgraph != null)
+	{
+	    int centerNode = toGraphNode(position.getCenterNode());
+	    retval = new H3DisplayPosition
+		(centerNode, position.getRotation(),
+		 position.getTranslation());
+	}
+	return retval;
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -954,14 +1172,40 @@ public class H3Main
 		m_displayPosition = null;
 		m_savedDisplayPosition = null;
 		m_isDisplayNarrowed = false;
+		m_saveSnapshotMenuItem.setEnabled(false);
 
-		m_graph = m_graphLoader.load
-		    (m_backingGraph, renderingConfiguration.spanningTree);
+		boolean offHeap = m_offHeapStorageMenuItem.isSelected();
+		boolean isLayoutSaved = false;
+		if (m_isSnapshotOpen)
+		{
+		    m_graph = H3GraphSnapshot.load(m_graphFile, offHeap);
+		    isLayoutSaved =
+			H3GraphSnapshot.checkLayoutSaved(m_graphFile);
+		}
+		else if (m_streamingLoader != null)
+		{
+		    m_streamingLoader.setOffHeapStorage(offHeap);
+		    m_graph = m_streamingLoader.load
+			(renderingConfiguration.spanningTree);
+		}
+		else
+		{
+		    m_graphLoader.setOffHeapStorage(offHeap);
+		    m_graph = m_graphLoader.load
+			(m_backingGraph, renderingConfiguration.spanningTree);
+		}
+
+		// This precedes the layout so that the layout coordinates
+		// are stored in compact form to begin with.
+		m_graph.setCompactCoordinates
+		    (m_compactCoordinatesMenuItem.isSelected());
 
 		m_rootNode = m_graph.getRootNode();
 		m_currentNode = m_previousNode = m_rootNode;
+		m_layoutState = null;
+		m_layoutCacheKey = null;
 
-		if (DEBUG_CHECK_ID_MAPPINGS)
+		if (DEBUG_CHECK_ID_MAPPINGS && m_backingGraph != null)
 		{
 		    checkGraphIDMappings(m_graph, m_backingGraph);
 		}
@@ -972,20 +1216,31 @@ public class H3Main
 		int numReachable = m_graph.checkSpanningTree();
 		if (numReachable == numNodes)
 		{
-		    if (layoutGraph(renderingConfiguration, false))
+		    if (isLayoutSaved
+			|| layoutGraph(renderingConfiguration, false))
 		    {
 			retval = true;
 
-			colorNodes(renderingConfiguration.nodeColor);
-			colorTreeLinks(renderingConfiguration.treeLinkColor);
+			H3AttributeExtractor extractor =
+			    createAttributeExtractor(renderingConfiguration);
+
+			colorNodes(renderingConfiguration.nodeColor,
+				   extractor);
+			colorTreeLinks(renderingConfiguration.treeLinkColor,
+				       extractor);
 			colorNontreeLinks
-			    (renderingConfiguration.nontreeLinkColor);
+			    (renderingConfiguration.nontreeLinkColor,
+			     extractor);
 
-			selectNodes(renderingConfiguration.nodeColor);
-			selectLinks
-			    (renderingConfiguration.treeLinkColor, true);
-			selectLinks
-			    (renderingConfiguration.nontreeLinkColor, false);
+			selectNodes(renderingConfiguration.nodeColor,
+				    extractor);
+			selectLinks(renderingConfiguration.treeLinkColor,
+				    true, extractor);
+			selectLinks(renderingConfiguration.nontreeLinkColor,
+				    false, extractor);
+
+			readNodeLabels(renderingConfiguration, extractor);
+			runAttributeExtractor(extractor);
 
 			m_graph.setNodeDisplayability(true);
 			m_graph.setLinkDisplayability(true);
@@ -1019,31 +1274,40 @@ public class H3Main
 	    else
 	    {
 		boolean visibilityChanged = false;
+		H3AttributeExtractor extractor =
+		    createAttributeExtractor(renderingConfiguration);
 
 		if (!renderingConfiguration.nodeColor
 		    .equalColoring(m_renderingConfiguration.nodeColor))
 		{
 		    visibilityChanged = true;
-		    colorNodes(renderingConfiguration.nodeColor);
-		    selectNodes(renderingConfiguration.nodeColor);
+		    colorNodes(renderingConfiguration.nodeColor, extractor);
+		    selectNodes(renderingConfiguration.nodeColor, extractor);
 		}
 
 		if (!renderingConfiguration.treeLinkColor
 		    .equalColoring(m_renderingConfiguration.treeLinkColor))
 		{
 		    visibilityChanged = true;
-		    colorTreeLinks(renderingConfiguration.treeLinkColor);
-		    selectLinks(renderingConfiguration.treeLinkColor, true);
+		    colorTreeLinks(renderingConfiguration.treeLinkColor,
+				   extractor);
+		    selectLinks(renderingConfiguration.treeLinkColor, true,
+				extractor);
 		}
 
 		if (!renderingConfiguration.nontreeLinkColor
 		    .equalColoring(m_renderingConfiguration.nontreeLinkColor))
 		{
 		    visibilityChanged = true;
-		    colorNontreeLinks(renderingConfiguration.nontreeLinkColor);
-		    selectLinks(renderingConfiguration.nontreeLinkColor,false);
+		    colorNontreeLinks(renderingConfiguration.nontreeLinkColor,
+				      extractor);
+		    selectLinks(renderingConfiguration.nontreeLinkColor, false,
+				extractor);
 		}
 
+		readNodeLabels(renderingConfiguration, extractor);
+		runAttributeExtractor(extractor);
+
 		if (visibilityChanged)
 		{
 		    if (!m_isDisplayNarrowed)
@@ -1059,6 +1323,7 @@ public class H3Main
 	    if (retval)
 	    {
 		m_renderingConfiguration = renderingConfiguration;
+		m_saveSnapshotMenuItem.setEnabled(true);
 	    }
 	}
 	catch (H3GraphLoader.InvalidGraphDataException e)
@@ -1069,24 +1334,100 @@ public class H3Main
 	    dialog.showMessageDialog(null, msg, "Rendering Setup Failed",
 				     JOptionPane.ERROR_MESSAGE);
 	}
+	catch (IOException e)
+	{
+	    retval = false;
+	    String msg = "Snapshot could not be loaded: " + e.getMessage();
+	    JOptionPane dialog = new JOptionPane();
+	    dialog.showMessageDialog(null, msg, "Rendering Setup Failed",
+				     JOptionPane.ERROR_MESSAGE);
+	}
+	return retval;
+    }
+
+    // Whether the layout coordinates of m_graph are those of a layout of
+    // every node, rather than of just the displayable nodes (see
+    // relayoutGraph()).  A layout restored from a snapshot has no layout
+    // state, and is always complete.
+    private boolean checkLayoutComplete()
+    {
+	return m_layoutState == null
+	    || createGraphLayout(m_renderingConfiguration)
+	    .checkLayoutComplete(m_layoutState);
+    }
+
+    // Extracting attribute values is part of preparing a graph for
+    // rendering, like the layout, and so it follows the same setting for
+    // parallelism.
+    private H3AttributeExtractor createAttributeExtractor
+	(RenderingConfiguration renderingConfiguration)
+    {
+	int parallelism = (renderingConfiguration.parallelLayout
+			   ? Runtime.getRuntime().availableProcessors() : 1);
+	H3AttributeExtractor retval =
+	    new H3AttributeExtractor(m_graph, parallelism);
+	if (m_streamingLoader != null)
+	{
+	    retval.setGraphFile(m_graphFile);
+	}
 	return retval;
     }
 
+    private H3GraphLayout createGraphLayout
+	(RenderingConfiguration renderingConfiguration)
+    {
+	int parallelism = (renderingConfiguration.parallelLayout
+			   ? Runtime.getRuntime().availableProcessors() : 1);
+	int extendedPrecision =
+	    (renderingConfiguration.doubleDoublePrecision
+	     ? H3GraphLayout.EXTENDED_PRECISION_DOUBLE_DOUBLE
+	     : H3GraphLayout.EXTENDED_PRECISION_MP);
+	return new H3GraphLayout
+	    (renderingConfiguration.automaticExtendedPrecision, parallelism,
+	     extendedPrecision);
+    }
+
     private boolean layoutGraph
 	(RenderingConfiguration renderingConfiguration,
 	 boolean useExtendedPrecision)
     {
-	H3GraphLayout layout = new H3GraphLayout
-	    (renderingConfiguration.automaticExtendedPrecision);
+	H3GraphLayout layout = createGraphLayout(renderingConfiguration);
 
-	H3GraphLayout.LayoutState layoutState =
-	    layout.layoutHyperbolic(m_graph, useExtendedPrecision);
+	boolean useCache = (renderingConfiguration.layoutCache
+			    && m_graph.getNumNodes() > 0);
+	boolean isCached = false;
+
+	if (useExtendedPrecision && m_layoutState != null)
+	{
+	    // The radii and angles of nodes don't depend on the precision,
+	    // so only the coordinates need be recomputed.
+	    layout.retryHyperbolicLayout(m_graph, m_layoutState);
+	}
+	else if (useCache && !useExtendedPrecision
+		 && loadCachedLayout(layout))
+	{
+	    // The cache only holds layouts that succeeded for all nodes.
+	    isCached = true;
+	}
+	else
+	{
+	    m_layoutState =
+		layout.layoutHyperbolic(m_graph, useExtendedPrecision);
+	}
 
 	int numNodes = m_graph.getNumNodes();
 	int numGoodNodes = m_graph.checkLayoutCoordinates();
 
 	boolean retval = (numGoodNodes == numNodes);
-	if (!retval)
+	if (retval)
+	{
+	    if (useCache && !isCached
+		&& layout.checkLayoutComplete(m_layoutState))
+	    {
+		saveCachedLayout(layout);
+	    }
+	}
+	else
 	{
 	    int numBadNodes = numNodes - numGoodNodes;
 
@@ -1115,7 +1456,8 @@ public class H3Main
 		    + "Layout failed for "  + numBadNodes
 		    + " of " + numNodes + " nodes.\n\n"
 		    + "You may retry using extended precision arithmetic,"
-		    + " but layout can take several hours for large graphs.\n"
+		    + " but layout can take several hours for large graphs\n"
+		    + " unless double-double extended precision is enabled.\n"
 		    + "Or you may proceed by arbitrarily placing the"
 		    + " problematic nodes at the origin.\n"
 		    + "Or you may cancel the layout attempt and not render"
@@ -1145,6 +1487,47 @@ public class H3Main
 	return retval;
     }
 
+    // Restores the layout of m_graph from the layout cache, returning true
+    // on success.  Problems with the cache are reported but not treated as
+    // errors, since the graph can always be laid out again.
+    private boolean loadCachedLayout(H3GraphLayout layout)
+    {
+	m_layoutState = null;
+	try
+	{
+	    if (m_layoutCacheKey == null)
+	    {
+		m_layoutCacheKey = H3LayoutCache.computeKey(m_graph);
+	    }
+	    m_layoutState =
+		m_layoutCache.load(m_layoutCacheKey, m_graph, layout);
+	}
+	catch (IOException e)
+	{
+	    System.err.println("WARNING: Couldn't read layout cache: "
+			       + e.getMessage());
+	}
+	return m_layoutState != null;
+    }
+
+    private void saveCachedLayout(H3GraphLayout layout)
+    {
+	try
+	{
+	    if (m_layoutCacheKey == null)
+	    {
+		m_layoutCacheKey = H3LayoutCache.computeKey(m_graph);
+	    }
+	    m_layoutCache.save(m_layoutCacheKey, m_graph, layout,
+			       m_layoutState);
+	}
+	catch (IOException e)
+	{
+	    System.err.println("WARNING: Couldn't write layout cache: "
+			       + e.getMessage());
+	}
+    }
+
     // Debugging routine.
     // XXX: Only works for ImmutableGraph at the moment.
     private void checkGraphIDMappings(H3Graph graph, Graph backingGraph)
@@ -1196,9 +1579,21 @@ public class H3Main
 
     private void startRendering(RenderingConfiguration renderingConfiguration)
     {
-	System.out.println("numNodes = " + m_graph.getNumNodes());
-	System.out.println("numTreeLinks = " + m_graph.getNumTreeLinks());
-	System.out.println("numNontreeLinks = " +m_graph.getNumNontreeLinks());
+	// Narrowing leaves every structure used in rendering sized by the
+	// whole graph, so a narrowed display may instead be rendered from
+	// a compact graph of just the shown nodes.  This graph is a
+	// snapshot, and so it is built again on each start.
+	H3Graph graph = m_graph;
+	m_visibleSubgraph = null;
+	if (m_compactGraphMenuItem.isSelected() && !m_graph.checkNodesVisible())
+	{
+	    m_visibleSubgraph = new H3VisibleSubgraph(m_graph);
+	    graph = m_visibleSubgraph.getGraph();
+	}
+
+	System.out.println("numNodes = " + graph.getNumNodes());
+	System.out.println("numTreeLinks = " + graph.getNumTreeLinks());
+	System.out.println("numNontreeLinks = " +graph.getNumNontreeLinks());
 
 	m_viewParameters.setDepthCueingEnabled
 	    (renderingConfiguration.depthCueing);
@@ -1221,7 +1616,7 @@ public class H3Main
 	    (renderingConfiguration.nontreeLinkColor);
 
 	H3PointRenderList renderList = new H3PointRenderList
-	    (m_graph, useNodeSizes,
+	    (graph, useNodeSizes,
 	     includeNodes, includeNodeColor,
 	     includeTreeLinks, includeTreeLinkColor,
 	     includeNontreeLinks, includeNontreeLinkColor);
@@ -1241,15 +1636,38 @@ public class H3Main
 
 	if (renderingConfiguration.adaptiveRendering)
 	{
-	    int queueSize = m_graph.getNumNodes() + m_graph.getTotalNumLinks();
+	    int queueSize = graph.getNumNodes() + graph.getTotalNumLinks();
 	    H3RenderQueue queue = new H3RenderQueue(queueSize);
 
 	    boolean processNontreeLinks =
 		(renderingConfiguration.nontreeLinkColor.scheme
 		 != ColorConfiguration.INVISIBLE);
 
-	    H3Transformer transformer =
-		new H3Transformer(m_graph, queue, processNontreeLinks);
+	    // One processor is left for the renderer, which consumes the
+	    // output of the transformer concurrently.
+	    int parallelism = (renderingConfiguration.parallelTransformer
+			       ? Runtime.getRuntime().availableProcessors() - 1
+			       : 1);
+
+	    H3Transformer transformer = new H3Transformer
+		(graph, queue, processNontreeLinks, parallelism);
+
+	    if (renderingConfiguration.levelOfDetail)
+	    {
+		// Subtrees narrower than a pixel are drawn as their root
+		// nodes alone.  The width of a pixel in the Klein model is
+		// taken at the default magnification, and ignoring
+		// perspective, which is good enough for this purpose.
+		final double MIN_SUBTREE_EXTENT_PIXELS = 1.0;
+
+		double scale =
+		    m_viewParameters.getObjectToEyeTransform().getScale();
+		double minExtent = MIN_SUBTREE_EXTENT_PIXELS
+		    * m_viewParameters.getPixelToMeterScale() / scale;
+
+		transformer.setLevelOfDetail
+		    (new H3SubtreeBounds(graph), minExtent);
+	    }
 
 	    new Thread(transformer).start();
 
@@ -1261,7 +1679,7 @@ public class H3Main
 
 	    if (true)
 	    {
-		renderer = new H3LineRenderer(m_graph, queue, renderList);
+		renderer = new H3LineRenderer(graph, queue, renderList);
 	    }
 	    else
 	    {
@@ -1278,13 +1696,13 @@ public class H3Main
 		// serves as an example of how the architecture supports
 		// variation in the rendering of nodes.
 		renderer = new H3CircleRenderer
-		    (m_graph, m_viewParameters, queue, renderList);
+		    (graph, m_viewParameters, queue, renderList);
 	    }
 
 	    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - 
 
 	    H3AdaptiveRenderLoop adaptive = new H3AdaptiveRenderLoop
-		(m_graph, m_canvas, m_viewParameters,
+		(graph, m_canvas, m_viewParameters,
 		 transformer, queue, renderer);
 
 	    new Thread(adaptive).start();
@@ -1299,7 +1717,7 @@ public class H3Main
 	    // There is no upper bound on the frame rate given a sufficiently
 	    // powerful computer.  The following only specifies the lower
 	    // bound.
-            final int DURATION = 50; // in milliseconds
+	    final int DURATION = 50; // in milliseconds
 	    adaptive.setMaxRotationDuration(DURATION);
 	    adaptive.setMaxTranslationDuration(DURATION);
 	    adaptive.setMaxCompletionDuration(DURATION);
@@ -1308,15 +1726,24 @@ public class H3Main
 	}
 	else
 	{
-	    m_graph.transformNodes(H3Transform.I4);
+	    graph.transformNodes(H3Transform.I4);
 
 	    H3NonadaptiveRenderLoop nonadaptive = new H3NonadaptiveRenderLoop
-		(m_graph, m_canvas, m_viewParameters,
+		(graph, m_canvas, m_viewParameters,
 		 renderList, useNodeSizes);
 
 	    new Thread(nonadaptive).start();
 	    m_renderLoop = nonadaptive;
 
+	    // Nodes spanning less than a pixel are culled, and the frame
+	    // budget during motion is the same as for adaptive rendering.
+	    final double CULLING_THRESHOLD = 1.0; // in pixels
+	    final int DURATION = 50; // in milliseconds
+	    nonadaptive.setCulling(renderingConfiguration.nonadaptiveCulling,
+				   CULLING_THRESHOLD, DURATION);
+	    nonadaptive.setMatrixTranslation
+		(renderingConfiguration.matrixTranslation);
+
 	    System.out.println("Started H3NonadaptiveRenderLoop.");
 	}
 
@@ -1344,8 +1771,9 @@ public class H3Main
 	m_eventHandler = new EventHandler
 	    (m_viewParameters, m_canvas, m_renderLoop,
 	     narrowingHandler,
-	     m_rootNode, m_currentNode, m_previousNode,
-	     m_graph, m_backingGraph,
+	     toRenderedNode(m_rootNode), toRenderedNode(m_currentNode),
+	     toRenderedNode(m_previousNode),
+	     graph, m_backingGraph, m_nodeLabels,
 	     renderingConfiguration.nodeLabelAttributes,
 	     renderingConfiguration.nodeLabelAttributeNames,
 	     m_statusBar,
@@ -1356,7 +1784,8 @@ public class H3Main
 
 	if (m_displayPosition != null)
 	{
-	    m_renderLoop.setDisplayPosition(m_displayPosition);
+	    m_renderLoop.setDisplayPosition
+		(toRenderedPosition(m_displayPosition));
 	}
 
 	System.out.println("Rendering started.");
@@ -1382,9 +1811,10 @@ public class H3Main
     private void stopRendering()
     {
 	m_eventHandler.forceIdleState();
-	m_currentNode = m_eventHandler.getCurrentNode();
-	m_previousNode = m_eventHandler.getPreviousNode();
-	m_displayPosition = m_renderLoop.getDisplayPosition();
+	m_currentNode = toGraphNode(m_eventHandler.getCurrentNode());
+	m_previousNode = toGraphNode(m_eventHandler.getPreviousNode());
+	m_displayPosition = toGraphPosition(m_renderLoop.getDisplayPosition());
+	m_visibleSubgraph = null;
 
 	m_eventHandler.dispose();
 	m_eventHandler = null;
@@ -1418,7 +1848,23 @@ public class H3Main
 
     private Graph loadGraph(File file, Reader reader)
     {
-	Graph retval = null;
+	GraphBuilder builder = GraphFactory.makeImmutableGraph();
+	return (parseGraph(file, reader, builder)
+		? builder.endConstruction() : null);
+    }
+
+    // Loads just the data needed for rendering, without constructing a
+    // libsea Graph.  See H3StreamingGraphLoader.
+    private H3StreamingGraphLoader loadGraphStreaming(File file,
+						      Reader reader)
+    {
+	H3StreamingGraphLoader loader = new H3StreamingGraphLoader();
+	return (parseGraph(file, reader, loader) ? loader : null);
+    }
+
+    private boolean parseGraph(File file, Reader reader, GraphBuilder builder)
+    {
+	boolean retval = false;
 
 	if (DEBUG_PRINT_LOAD_MEMORY) { m_memoryUsage.startGathering(); }
 
@@ -1431,13 +1877,11 @@ public class H3Main
 
 	try
 	{
-	    GraphBuilder builder = GraphFactory.makeImmutableGraph();
-
 	    GraphFileLexer lexer = new GraphFileLexer(reader);
 	    GraphFileParser parser = new GraphFileParser(lexer);
 	    parser.file(builder);
 
-	    retval = builder.endConstruction();
+	    retval = true;
 
 	    if (DEBUG_PRINT_LOAD_MEMORY)
 	    { m_memoryUsage.gatherAfterBufferLoaded(); }
@@ -1494,6 +1938,29 @@ public class H3Main
 	return retval;
     }
 
+    private File askUserForSaveFile()
+    {
+	File retval = null;
+	int result = m_fileChooser.showSaveDialog(m_frame);
+	if (result == JFileChooser.APPROVE_OPTION)
+	{
+	    retval = m_fileChooser.getSelectedFile();
+	    if (retval.exists())
+	    {
+		String msg = "Replace the existing file " + retval.getPath()
+		    + "?";
+		JOptionPane dialog = new JOptionPane();
+		int response = dialog.showConfirmDialog
+		    (null, msg, "File Exists", JOptionPane.YES_NO_OPTION);
+		if (response != JOptionPane.YES_OPTION)
+		{
+		    retval = null;
+		}
+	    }
+	}
+	return retval;
+    }
+
     ///////////////////////////////////////////////////////////////////////
 
     private void reinstateCanvasContentPane()
@@ -1617,6 +2084,15 @@ public class H3Main
 		}
 	    });
 
+	JMenuItem openSnapshotMenuItem = new JMenuItem("Open Snapshot");
+	openSnapshotMenuItem.setMnemonic(KeyEvent.VK_N);
+	openSnapshotMenuItem.addActionListener(new ActionListener() {
+		public void actionPerformed(ActionEvent e)
+		{
+		    handleOpenSnapshotRequest();
+		}
+	    });
+
 	m_saveWithLayoutMenuItem = new JMenuItem("Save With Layout");
 	m_saveWithLayoutMenuItem.setMnemonic(KeyEvent.VK_S);
 	m_saveWithLayoutMenuItem.setAccelerator
@@ -1627,6 +2103,16 @@ public class H3Main
 	m_saveWithLayoutAsMenuItem.setMnemonic(KeyEvent.VK_A);
 	m_saveWithLayoutAsMenuItem.setEnabled(false);
 
+	m_saveSnapshotMenuItem = new JMenuItem("Save Snapshot");
+	m_saveSnapshotMenuItem.setMnemonic(KeyEvent.VK_T);
+	m_saveSnapshotMenuItem.setEnabled(false);
+	m_saveSnapshotMenuItem.addActionListener(new ActionListener() {
+		public void actionPerformed(ActionEvent e)
+		{
+		    handleSaveSnapshotRequest();
+		}
+	    });
+
 	m_closeMenuItem = new JMenuItem("Close");
 	m_closeMenuItem.setEnabled(false);
 	m_closeMenuItem.setMnemonic(KeyEvent.VK_C);
@@ -1640,6 +2126,21 @@ public class H3Main
 		}
 	    });
 
+	m_streamingLoadMenuItem =
+	    new JCheckBoxMenuItem("Streaming Load (Load Attributes Lazily)");
+	m_streamingLoadMenuItem.setMnemonic(KeyEvent.VK_L);
+	m_streamingLoadMenuItem.setSelected(false);
+
+	m_compactCoordinatesMenuItem =
+	    new JCheckBoxMenuItem("Compact Coordinates (Single Precision)");
+	m_compactCoordinatesMenuItem.setMnemonic(KeyEvent.VK_P);
+	m_compactCoordinatesMenuItem.setSelected(false);
+
+	m_offHeapStorageMenuItem =
+	    new JCheckBoxMenuItem("Off-Heap Graph Storage");
+	m_offHeapStorageMenuItem.setMnemonic(KeyEvent.VK_H);
+	m_offHeapStorageMenuItem.setSelected(false);
+
 	JMenuItem preferencesMenuItem = new JMenuItem("Preferences");
 	preferencesMenuItem.setMnemonic(KeyEvent.VK_R);
 	preferencesMenuItem.setEnabled(false);
@@ -1658,10 +2159,15 @@ public class H3Main
 	m_fileMenu = new JMenu("File");
 	m_fileMenu.setMnemonic(KeyEvent.VK_F);
 	m_fileMenu.add(openMenuItem);
+	m_fileMenu.add(openSnapshotMenuItem);
 	m_fileMenu.add(m_saveWithLayoutMenuItem);
 	m_fileMenu.add(m_saveWithLayoutAsMenuItem);
+	m_fileMenu.add(m_saveSnapshotMenuItem);
 	m_fileMenu.add(m_closeMenuItem);
 	m_fileMenu.addSeparator();
+	m_fileMenu.add(m_streamingLoadMenuItem);
+	m_fileMenu.add(m_compactCoordinatesMenuItem);
+	m_fileMenu.add(m_offHeapStorageMenuItem);
 	m_fileMenu.add(preferencesMenuItem);
 	m_fileMenu.addSeparator();
 	m_fileMenu.add(exitMenuItem);
@@ -1754,6 +2260,39 @@ public class H3Main
 	m_automaticExtendedPrecisionMenuItem.setMnemonic(KeyEvent.VK_E);
 	m_automaticExtendedPrecisionMenuItem.setSelected(true);
 
+	m_parallelLayoutMenuItem = new JCheckBoxMenuItem("Parallel Layout");
+	m_parallelLayoutMenuItem.setMnemonic(KeyEvent.VK_Y);
+	m_parallelLayoutMenuItem.setSelected(true);
+
+	m_layoutCacheMenuItem = new JCheckBoxMenuItem("Cache Layouts");
+	m_layoutCacheMenuItem.setMnemonic(KeyEvent.VK_H);
+	m_layoutCacheMenuItem.setSelected(true);
+
+	m_doubleDoublePrecisionMenuItem
+	    = new JCheckBoxMenuItem("Double-Double Extended Precision");
+	m_doubleDoublePrecisionMenuItem.setMnemonic(KeyEvent.VK_B);
+	m_doubleDoublePrecisionMenuItem.setSelected(true);
+
+	m_parallelTransformerMenuItem
+	    = new JCheckBoxMenuItem("Parallel Transformer");
+	m_parallelTransformerMenuItem.setMnemonic(KeyEvent.VK_N);
+	m_parallelTransformerMenuItem.setSelected(true);
+
+	m_nonadaptiveCullingMenuItem
+	    = new JCheckBoxMenuItem("Nonadaptive Culling");
+	m_nonadaptiveCullingMenuItem.setMnemonic(KeyEvent.VK_C);
+	m_nonadaptiveCullingMenuItem.setSelected(false);
+
+	m_matrixTranslationMenuItem
+	    = new JCheckBoxMenuItem("Nonadaptive Matrix Translation");
+	m_matrixTranslationMenuItem.setMnemonic(KeyEvent.VK_I);
+	m_matrixTranslationMenuItem.setSelected(false);
+
+	m_levelOfDetailMenuItem
+	    = new JCheckBoxMenuItem("Level Of Detail (Subtree Impostors)");
+	m_levelOfDetailMenuItem.setMnemonic(KeyEvent.VK_O);
+	m_levelOfDetailMenuItem.setSelected(false);
+
 	m_renderingMenu = new JMenu("Rendering");
 	m_renderingMenu.setMnemonic(KeyEvent.VK_R);
 	m_renderingMenu.add(m_startMenuItem);
@@ -1770,6 +2309,13 @@ public class H3Main
 	m_renderingMenu.add(m_onScreenLabelsMenuItem);
 	m_renderingMenu.add(m_automaticRefreshMenuItem);
 	m_renderingMenu.add(m_automaticExtendedPrecisionMenuItem);
+	m_renderingMenu.add(m_parallelLayoutMenuItem);
+	m_renderingMenu.add(m_layoutCacheMenuItem);
+	m_renderingMenu.add(m_doubleDoublePrecisionMenuItem);
+	m_renderingMenu.add(m_parallelTransformerMenuItem);
+	m_renderingMenu.add(m_nonadaptiveCullingMenuItem);
+	m_renderingMenu.add(m_matrixTranslationMenuItem);
+	m_renderingMenu.add(m_levelOfDetailMenuItem);
 
 	// Create "Display" menu. ------------------------------------------
 
@@ -1947,7 +2493,8 @@ public class H3Main
 		public void actionPerformed(ActionEvent e)
 		{
 		    m_eventHandler.forceIdleState();
-		    m_savedDisplayPosition = m_eventHandler.savePosition();
+		    m_savedDisplayPosition =
+			toGraphPosition(m_eventHandler.savePosition());
 		    m_restorePositionMenuItem.setEnabled(true);
 		}
 	    });
@@ -1959,7 +2506,28 @@ public class H3Main
 		public void actionPerformed(ActionEvent e)
 		{
 		    m_eventHandler.forceIdleState();
-		    m_eventHandler.restorePosition(m_savedDisplayPosition);
+		    m_eventHandler.restorePosition
+			(toRenderedPosition(m_savedDisplayPosition));
+		}
+	    });
+
+	m_compactLayoutMenuItem =
+	    new JCheckBoxMenuItem("Compact Layout When Narrowing");
+	m_compactLayoutMenuItem.setMnemonic(KeyEvent.VK_L);
+	m_compactLayoutMenuItem.setSelected(false);
+
+	m_compactGraphMenuItem =
+	    new JCheckBoxMenuItem("Compact Graph When Narrowing");
+	m_compactGraphMenuItem.setMnemonic(KeyEvent.VK_M);
+	m_compactGraphMenuItem.setSelected(false);
+	m_compactGraphMenuItem.addActionListener(new ActionListener() {
+		public void actionPerformed(ActionEvent e)
+		{
+		    if (m_renderLoop != null && m_isDisplayNarrowed)
+		    {
+			stopRendering();
+			startRendering(m_renderingConfiguration);
+		    }
 		}
 	    });
 
@@ -1972,6 +2540,8 @@ public class H3Main
 	m_displayMenu.add(m_pruneSubtreeMenuItem);
 	m_displayMenu.add(m_pruneToChildrenMenuItem);
 	m_displayMenu.add(m_pruneToNeighborhoodMenu);
+	m_displayMenu.add(m_compactLayoutMenuItem);
+	m_displayMenu.add(m_compactGraphMenuItem);
 	m_displayMenu.addSeparator();
 	m_displayMenu.add(m_zoomInMenuItem);
 	m_displayMenu.add(m_zoomOutMenuItem);
@@ -2070,11 +2640,22 @@ public class H3Main
     private static final int DEFAULT_FRAME_WIDTH = 900;
     private static final int DEFAULT_FRAME_HEIGHT = 1000;
 
+    private static final int PROGRESS_DIALOG_WIDTH = 400;
+    private static final int PROGRESS_DIALOG_HEIGHT = 80;
+
+    // The bound on the total size of the layout cache.
+    private static final long LAYOUT_CACHE_MAX_BYTES = 512L * 1024 * 1024;
+
     private static final String WALRUS_TITLE = "Walrus 0.6.3";
+
+    // The name of the only spanning tree of a snapshot, which holds the
+    // graph just as built for the spanning tree it was saved with.
+    private static final String SNAPSHOT_SPANNING_TREE = "Saved Spanning Tree";
     private static final String SPLASH_ICON_PATH = "walrus-splash.jpg";
     private static final String MSG_NO_GRAPH_LOADED = "No graph loaded.";
     private static final String MSG_GRAPH_LOADED = "Graph loaded.";
     private static final String MSG_LOADING_GRAPH = "Loading graph...";
+    private static final String MSG_SAVING_SNAPSHOT = "Saving snapshot...";
     private static final String SPLASH_HTML_LABEL = "<html><table border=0><tr><td align=center><b><i><font color=#CAFF70 size=+4>Walrus 0.6.3 -- Graph Visualization</font></i></b></td></tr><tr><td align=center><font color=#1E9619 size=+2>Copyright (c) 2000,2001,2002 CAIDA/UCSD</font></td></tr></table></html>";
 
     ///////////////////////////////////////////////////////////////////////
@@ -2085,8 +2666,13 @@ public class H3Main
     private int m_rootNode;
     private int m_currentNode;
     private int m_previousNode;
-    private Graph m_backingGraph;  // Will be non-null if a graph is open.
+    private File m_graphFile;  // Will be non-null if a graph is open.
+    private Graph m_backingGraph;  // ...non-null if open, unless streamed.
+    private H3StreamingGraphLoader m_streamingLoader; // ...non-null if so.
+    private H3AttributeExtractor.NodeLabels m_nodeLabels; // ...if streamed.
+    private boolean m_isSnapshotOpen;  // ...true if m_graphFile is one.
     private H3Graph m_graph;  // ...non-null when a graph is being rendered.
+    private H3VisibleSubgraph m_visibleSubgraph; // ...non-null if rendered.
     private H3DisplayPosition m_displayPosition; // Saved while updating disp..
     private H3DisplayPosition m_savedDisplayPosition; // Saved by user...
     private boolean m_isDisplayNarrowed;
@@ -2097,6 +2683,16 @@ public class H3Main
     private MemoryUsage m_memoryUsage = new MemoryUsage();
     private H3GraphLoader m_graphLoader = new H3GraphLoader();
 
+    // The state of the hyperbolic layout of m_graph, if it has been laid
+    // out, which allows the layout to be recomputed in extended precision
+    // without recomputing the radii and angles of nodes.
+    private H3GraphLayout.LayoutState m_layoutState;
+
+    // The key of m_graph in m_layoutCache, computed on first use.
+    private String m_layoutCacheKey;
+    private H3LayoutCache m_layoutCache = new H3LayoutCache
+	(H3LayoutCache.getDefaultDirectory(), LAYOUT_CACHE_MAX_BYTES);
+
     private JFrame m_frame;
     private JTextField m_statusBar;
     private JLabel m_splashLabel;
@@ -2105,7 +2701,11 @@ public class H3Main
     private JMenu m_fileMenu;
     private JMenuItem m_saveWithLayoutMenuItem;
     private JMenuItem m_saveWithLayoutAsMenuItem;
+    private JMenuItem m_saveSnapshotMenuItem;
     private JMenuItem m_closeMenuItem;
+    private JCheckBoxMenuItem m_streamingLoadMenuItem;
+    private JCheckBoxMenuItem m_compactCoordinatesMenuItem;
+    private JCheckBoxMenuItem m_offHeapStorageMenuItem;
 
     private JMenu m_renderingMenu;
     private JMenuItem m_startMenuItem;
@@ -2120,6 +2720,13 @@ public class H3Main
     private JCheckBoxMenuItem m_onScreenLabelsMenuItem;
     private JCheckBoxMenuItem m_automaticRefreshMenuItem;
     private JCheckBoxMenuItem m_automaticExtendedPrecisionMenuItem;
+    private JCheckBoxMenuItem m_parallelLayoutMenuItem;
+    private JCheckBoxMenuItem m_layoutCacheMenuItem;
+    private JCheckBoxMenuItem m_doubleDoublePrecisionMenuItem;
+    private JCheckBoxMenuItem m_parallelTransformerMenuItem;
+    private JCheckBoxMenuItem m_nonadaptiveCullingMenuItem;
+    private JCheckBoxMenuItem m_matrixTranslationMenuItem;
+    private JCheckBoxMenuItem m_levelOfDetailMenuItem;
 
     private JMenu m_displayMenu;
     private JMenuItem m_narrowToSubtreeMenuItem;
@@ -2129,6 +2736,8 @@ public class H3Main
     private JMenuItem m_pruneSubtreeMenuItem;
     private JMenuItem m_pruneToChildrenMenuItem;
     private JMenu m_pruneToNeighborhoodMenu;
+    private JCheckBoxMenuItem m_compactLayoutMenuItem;
+    private JCheckBoxMenuItem m_compactGraphMenuItem;
     private JMenuItem m_zoomInMenuItem;
     private JMenuItem m_zoomOutMenuItem;
     private JMenuItem m_zoomResetMenuItem;
@@ -2152,9 +2761,6 @@ public class H3Main
     private H3GraphLoader.AttributeTypeMatcher
 	m_allAttributeTypeMatcher = new AllAttributeTypeMatcher();
 
-    private float[] m_float3Temporary = new float[3];
-    private double[] m_double3Temporary = new double[3];
-
     ///////////////////////////////////////////////////////////////////////
     // PRIVATE CLASSES
     ///////////////////////////////////////////////////////////////////////
@@ -2191,6 +2797,7 @@ public class H3Main
 	     NarrowingEventHandler narrowingHandler,
 	     int rootNode, int currentNode, int previousNode,
 	     H3Graph graph, Graph backingGraph,
+	     H3AttributeExtractor.NodeLabels nodeLabels,
 	     int[] nodeLabelAttributes, String[] nodeLabelAttributeNames,
 	     JTextField statusBar,
 	     boolean onScreenLabels, boolean automaticRefresh)
@@ -2208,13 +2815,12 @@ public class H3Main
 	    m_previousNode = previousNode;
 
 	    m_graph = graph;
-	    m_backingGraph = backingGraph;
 	    m_nodeLabelAttributes = nodeLabelAttributes;
 	    m_nodeLabelAttributeNames = nodeLabelAttributeNames;
 	    m_statusBar = statusBar;
 	    m_onScreenLabels = onScreenLabels;
-	    m_labelConstructor =
-		new NodeLabelConstructor(backingGraph, nodeLabelAttributes);
+	    m_labelConstructor = new NodeLabelConstructor
+		(backingGraph, nodeLabels, nodeLabelAttributes);
 
 	    // This is a tradeoff between seeing flicker and having to
 	    // manually refresh the display in some cases.  There's some
@@ -2312,6 +2918,15 @@ public class H3Main
 	    }
 	}
 
+	// The render loop must learn of a change in visibility even if the
+	// display can't be refreshed right now, so this doesn't check the
+	// state as refreshDisplay() does.
+	public void refreshVisibility()
+	{
+	    m_labelZOffsetCounter = 0;
+	    m_renderLoop.refreshVisibility();
+	}
+
 	public void startWobbling(CancellationListener listener)
 	{
 	    if (m_state == STATE_IDLE) 
@@ -2542,7 +3157,7 @@ public class H3Main
 		    else if (checkModifiers(modifiers, InputEvent.CTRL_MASK))
 		    {
 			m_labelZOffsetCounter = 0;
-		        m_renderLoop.translate(swapCenterNodes());
+			m_renderLoop.translate(swapCenterNodes());
 		    }
 		    else
 		    {
@@ -2953,7 +3568,7 @@ public class H3Main
 	    // The following equation was empirically derived.
 	    // It's an arctan translated into the upper-right (positive x
 	    // and positive y) quadrant such that the bottom leg crosses
-            // the origin (it looks like an oblique S in the upper-right
+	    // the origin (it looks like an oblique S in the upper-right
 	    // quadrant).  The curve lies entirely underneath y=x.
 	    //
 	    // There were two goals: 1) make it possible to easily specify
@@ -3060,7 +3675,6 @@ public class H3Main
 	private int m_previousNode;
 
 	private H3Graph m_graph;
-	private Graph m_backingGraph;
 	private int[] m_nodeLabelAttributes;
 	private String[] m_nodeLabelAttributeNames;
 	private JTextField m_statusBar;
@@ -3136,10 +3750,15 @@ public class H3Main
 
     private static class NodeLabelConstructor
     {
+	// The values are looked up in {backingGraph} if it is non-null, and
+	// otherwise in {nodeLabels}, which holds the values read from the
+	// graph file after a streaming load.
 	public NodeLabelConstructor
-	    (Graph backingGraph, int[] nodeLabelAttributes)
+	    (Graph backingGraph, H3AttributeExtractor.NodeLabels nodeLabels,
+	     int[] nodeLabelAttributes)
 	{
 	    m_backingGraph = backingGraph;
+	    m_nodeLabels = nodeLabels;
 	    m_nodeLabelAttributes = nodeLabelAttributes;
 	}
 
@@ -3154,103 +3773,137 @@ public class H3Main
 	    {
 		StringBuffer buffer = new StringBuffer();
 
-		try
+		if (m_backingGraph != null)
+		{
+		    addBackingGraphValues(buffer, node, i, quoteStrings);
+		}
+		else
+		{
+		    addNodeLabelsValues(buffer, node, i, quoteStrings);
+		}
+
+		retval[i] = buffer.toString();
+	    }
+
+	    return retval;
+	}
+
+	private void addBackingGraphValues
+	    (StringBuffer buffer, int node, int index, boolean quoteStrings)
+	{
+	    try
+	    {
+		int attribute = m_nodeLabelAttributes[index];
+		ValueIterator iterator =
+		    m_backingGraph.getNodeAttribute(node, attribute);
+
+		boolean isListType = iterator.getType().isListType();
+		if (isListType)
 		{
-		    int attribute = m_nodeLabelAttributes[i];
-		    ValueIterator iterator =
-			m_backingGraph.getNodeAttribute(node, attribute);
+		    buffer.append('[');
+		}
 
-		    boolean isListType = iterator.getType().isListType();
-		    if (isListType)
+		int baseType = iterator.getType().getBaseType();
+		int k = 0;
+		while (!iterator.atEnd())
+		{
+		    if (k++ > 0)
 		    {
-			buffer.append('[');
+			buffer.append(", ");
 		    }
+		    addAttributeValue(buffer, baseType,
+				      extractAttributeValue(iterator),
+				      quoteStrings);
+		    iterator.advance();
+		}
 
-		    int k = 0;
-		    while (!iterator.atEnd())
+		if (isListType)
+		{
+		    buffer.append(']');
+		}
+	    }
+	    catch (AttributeUnavailableException e)
+	    {
+		buffer.append("<<unavailable>>");
+	    }
+	}
+
+	private void addNodeLabelsValues
+	    (StringBuffer buffer, int node, int index, boolean quoteStrings)
+	{
+	    Object value = (m_nodeLabels == null
+			    ? null : m_nodeLabels.getValue(index, node));
+	    if (value == null)
+	    {
+		buffer.append("<<unavailable>>");
+	    }
+	    else
+	    {
+		ValueType type = m_nodeLabels.getType(index);
+		int baseType = type.getBaseType();
+		if (type.isListType())
+		{
+		    List values = (List)value;
+		    buffer.append('[');
+		    for (int k = 0; k < values.size(); k++)
 		    {
-			if (k++ > 0)
+			if (k > 0)
 			{
 			    buffer.append(", ");
 			}
-			addAttributeValue(buffer, iterator, quoteStrings);
-			iterator.advance();
-		    }
-
-		    if (isListType)
-		    {
-			buffer.append(']');
+			addAttributeValue(buffer, baseType, values.get(k),
+					  quoteStrings);
 		    }
+		    buffer.append(']');
 		}
-		catch (AttributeUnavailableException e)
+		else
 		{
-		    buffer.append("<<unavailable>>");
+		    addAttributeValue(buffer, baseType, value, quoteStrings);
 		}
-
-		retval[i] = buffer.toString();
 	    }
-
-	    return retval;
 	}
 
-	private void addAttributeValue
-	    (StringBuffer buffer, ValueIterator iterator,
-	     boolean quoteStrings)
+	// Returns the current value of {iterator} in the form described
+	// for H3AttributeExtractor.NodeLabels.
+	private Object extractAttributeValue(ValueIterator iterator)
 	{
+	    Object retval = null;
 	    switch (iterator.getType().getBaseType())
 	    {
 	    case ValueType._BOOLEAN:
-		buffer.append(iterator.getBooleanValue() ? 'T' : 'F');
+		retval = Boolean.valueOf(iterator.getBooleanValue());
 		break;
 
 	    case ValueType._INTEGER:
-		buffer.append(iterator.getIntegerValue());
+		retval = Integer.valueOf(iterator.getIntegerValue());
 		break;
 
 	    case ValueType._FLOAT:
-		buffer.append(iterator.getFloatValue());
+		retval = Float.valueOf(iterator.getFloatValue());
 		break;
 
 	    case ValueType._DOUBLE:
-		buffer.append(iterator.getDoubleValue());
+		retval = Double.valueOf(iterator.getDoubleValue());
 		break;
 
 	    case ValueType._STRING:
-		{
-		    String value = iterator.getStringValue();
-		    if (quoteStrings)
-		    {
-			buffer.append('"');
-			buffer.append(value);
-			buffer.append('"');
-		    }
-		    else
-		    {
-			buffer.append(value);
-		    }
-		}
+		retval = iterator.getStringValue();
 		break;
 
 	    case ValueType._FLOAT3:
-		iterator.getFloat3Value(m_float3LabelData);
-		buffer.append('{');
-		buffer.append(m_float3LabelData[0]);
-		buffer.append(", ");
-		buffer.append(m_float3LabelData[1]);
-		buffer.append(", ");
-		buffer.append(m_float3LabelData[2]);
-		buffer.append('}');
+		{
+		    float[] value = new float[3];
+		    iterator.getFloat3Value(value);
+		    retval = value;
+		}
 		break;
 
 	    case ValueType._DOUBLE3:
-		iterator.getDouble3Value(m_double3LabelData);
-		buffer.append('{');
-		buffer.append(m_double3LabelData[0]);
-		buffer.append(", ");
-		buffer.append(m_double3LabelData[1]);
-		buffer.append(", ");
-		buffer.append(m_double3LabelData[2]);
-		buffer.append('}');
+		{
+		    double[] value = new double[3];
+		    iterator.getDouble3Value(value);
+		    retval = value;
+		}
 		break;
 
 	    case ValueType._ENUMERATION:
@@ -3258,18 +3911,83 @@ public class H3Main
 		    int value = iterator.getEnumerationValue();
 		    ReadOnlyEnumeratorIterator enumerator =
 			m_backingGraph.getEnumerator(value);
-		    buffer.append(enumerator.getName());
+		    retval = enumerator.getName();
 		}
 		break;
 
 	    default: throw new RuntimeException();
 	    }
+	    return retval;
+	}
+
+	private void addAttributeValue
+	    (StringBuffer buffer, int baseType, Object value,
+	     boolean quoteStrings)
+	{
+	    switch (baseType)
+	    {
+	    case ValueType._BOOLEAN:
+		buffer.append(((Boolean)value).booleanValue() ? 'T' : 'F');
+		break;
+
+	    case ValueType._INTEGER:
+		//FALLTHROUGH
+	    case ValueType._FLOAT:
+		//FALLTHROUGH
+	    case ValueType._DOUBLE:
+		buffer.append(value);
+		break;
+
+	    case ValueType._STRING:
+		if (quoteStrings)
+		{
+		    buffer.append('"');
+		    buffer.append(value);
+		    buffer.append('"');
+		}
+		else
+		{
+		    buffer.append(value);
+		}
+		break;
+
+	    case ValueType._FLOAT3:
+		{
+		    float[] data = (float[])value;
+		    buffer.append('{');
+		    buffer.append(data[0]);
+		    buffer.append(", ");
+		    buffer.append(data[1]);
+		    buffer.append(", ");
+		    buffer.append(data[2]);
+		    buffer.append('}');
+		}
+		break;
+
+	    case ValueType._DOUBLE3:
+		{
+		    double[] data = (double[])value;
+		    buffer.append('{');
+		    buffer.append(data[0]);
+		    buffer.append(", ");
+		    buffer.append(data[1]);
+		    buffer.append(", ");
+		    buffer.append(data[2]);
+		    buffer.append('}');
+		}
+		break;
+
+	    case ValueType._ENUMERATION:
+		buffer.append(value);
+		break;
+
+	    default: throw new RuntimeException();
+	    }
 	}
 
 	private Graph m_backingGraph;
+	private H3AttributeExtractor.NodeLabels m_nodeLabels;
 	private int[] m_nodeLabelAttributes;
-	private float[] m_float3LabelData = new float[3];
-	private double[] m_double3LabelData = new double[3];
     }
 
     ///////////////////////////////////////////////////////////////////////
@@ -3285,21 +4003,21 @@ public class H3Main
 	    createFixedColors();
 
 	    Map<String, JMenuItem> nodeMenuMap =
-          new HashMap<String, JMenuItem>();
+	  new HashMap<String, JMenuItem>();
 	    m_nodeColorMenu = new JMenu("Node Color");
 	    m_nodeColorMenu.setMnemonic(KeyEvent.VK_N);
 	    m_nodeColorSelection = new ColorSelection
 		(m_nodeColorMenu, nodeMenuMap, m_fixedColors);
 
 	    Map<String, JMenuItem> treeLinkMenuMap =
-          new HashMap<String, JMenuItem>();
+	  new HashMap<String, JMenuItem>();
 	    m_treeLinkColorMenu = new JMenu("Tree Link Color");
 	    m_treeLinkColorMenu.setMnemonic(KeyEvent.VK_T);
 	    m_treeLinkColorSelection = new ColorSelection
 		(m_treeLinkColorMenu, treeLinkMenuMap, m_fixedColors);
 
 	    Map<String, JMenuItem> nontreeLinkMenuMap =
-          new HashMap<String, JMenuItem>();
+	  new HashMap<String, JMenuItem>();
 	    m_nontreeLinkColorMenu = new JMenu("Nontree Link Color");
 	    m_nontreeLinkColorMenu.setMnemonic(KeyEvent.VK_E);
 	    m_nontreeLinkColorSelection = new ColorSelection
@@ -3340,10 +4058,9 @@ public class H3Main
 	    return m_colorSchemeMenu;
 	}
 
-	public void populateAttributeMenus(H3GraphLoader graphLoader,
-					   Graph graph)
+	public void populateAttributeMenus(AttributeCache attributeCache)
 	{
-	    m_attributeCache = new AttributeCache(graphLoader, graph);
+	    m_attributeCache = attributeCache;
 	    m_nodeColorSelection.populateAttributeMenus(m_attributeCache);
 	    m_treeLinkColorSelection.populateAttributeMenus(m_attributeCache);
 	    m_nontreeLinkColorSelection.populateAttributeMenus
@@ -4168,7 +4885,7 @@ public class H3Main
 	// removing all color attributes, for example).  This must point
 	// to a menu item for a fixed color or the invisible choice.
 	// By doing so, we ensure that this menu item is selectable in
-        // all situations (such as just after a graph is unloaded).
+	// all situations (such as just after a graph is unloaded).
 	private JMenuItem m_defaultSelection;
 
 	// The following ButtonGroup and JRadioButtonMenuItem instances
@@ -4220,6 +4937,13 @@ public class H3Main
 	public boolean onScreenLabels;
 	public boolean automaticRefresh;
 	public boolean automaticExtendedPrecision;
+	public boolean parallelLayout;
+	public boolean layoutCache;
+	public boolean doubleDoublePrecision;
+	public boolean parallelTransformer;
+	public boolean nonadaptiveCulling;
+	public boolean matrixTranslation;
+	public boolean levelOfDetail;
 
 	public ColorConfiguration nodeColor;
 	public ColorConfiguration treeLinkColor;
@@ -4241,6 +4965,17 @@ public class H3Main
 	    System.out.println("\tautomaticRefresh = " + automaticRefresh);
 	    System.out.println("\tautomaticExtendedPrecision = "
 			       + automaticExtendedPrecision);
+	    System.out.println("\tparallelLayout = " + parallelLayout);
+	    System.out.println("\tlayoutCache = " + layoutCache);
+	    System.out.println("\tdoubleDoublePrecision = "
+			       + doubleDoublePrecision);
+	    System.out.println("\tparallelTransformer = "
+			       + parallelTransformer);
+	    System.out.println("\tnonadaptiveCulling = "
+			       + nonadaptiveCulling);
+	    System.out.println("\tmatrixTranslation = "
+			       + matrixTranslation);
+	    System.out.println("\tlevelOfDetail = " + levelOfDetail);
 
 	    System.out.print("(Node) ");
 	    nodeColor.print();
@@ -4340,6 +5075,16 @@ public class H3Main
 		(graph, m_selectionAttributeTypeMatcher);
 	}
 
+	public AttributeCache(H3StreamingGraphLoader graphLoader)
+	{
+	    m_scalarColorAttributes = graphLoader.loadAttributes
+		(m_scalarColorAttributeTypeMatcher);
+	    m_RGBColorAttributes = graphLoader.loadAttributes
+		(m_RGBColorAttributeTypeMatcher);
+	    m_selectionAttributes = graphLoader.loadAttributes
+		(m_selectionAttributeTypeMatcher);
+	}
+
 	public List getScalarColorAttributes()
 	{
 	    return m_scalarColorAttributes;
@@ -42,33 +42,39 @@ public class H3NonadaptivePicker
     // INTERFACE METHODS (H3Picker)
     ////////////////////////////////////////////////////////////////////////
 
+    // The points in the eye are computed lazily and cached, and they are
+    // recomputed only when they actually change (see
+    // computePointsInEye()), so there is nothing to do here.  In
+    // particular, the picks made by hovering over an unchanging display
+    // cost only a lookup in the grid of H3PickerCommon.
     public void reset()
     {
-	m_computedPointsInEye = false;
     }
 
     ////////////////////////////////////////////////////////////////////////
     // PROTECTED METHODS (abstract in H3PickerCommon)
     ////////////////////////////////////////////////////////////////////////
 
+    // The points in the eye depend only on the display coordinates of the
+    // nodes and on the object-to-eye transform, which combines the object
+    // transform of H3ViewParameters with the view of the canvas.  The
+    // cached points are reused as long as neither has changed.
     protected void computePointsInEye()
     {
-	if (!m_computedPointsInEye)
+	m_parameters.getObjectToEyeTransform().get(m_transform);
+	int coordinatesVersion = m_graph.getCoordinatesVersion();
+
+	if (!m_computedPointsInEye
+	    || coordinatesVersion != m_coordinatesVersion
+	    || !m_transform.equals(m_computedTransform))
 	{
 	    m_computedPointsInEye = true;
+	    m_coordinatesVersion = coordinatesVersion;
+	    m_computedTransform.set(m_transform);
 
-	    Transform3D transform = m_parameters.getObjectToEyeTransform();
-
-	    Point3d p = new Point3d();
-	    for (int i = 0; i < m_numNodes; i++)
-	    {
-		m_graph.getNodeCoordinates(i, p);
-		transform.transform(p);
-
-		m_pointsInEyeX[i] = p.x;
-		m_pointsInEyeY[i] = p.y;
-		m_pointsInEyeZ[i] = p.z;
-	    }
+	    m_graph.getTransformedNodeCoordinates
+		(m_transform, m_pointsInEyeX, m_pointsInEyeY, m_pointsInEyeZ);
+	    invalidatePickGrid();
 	}
     }
 
@@ -88,4 +94,10 @@ public class H3NonadaptivePicker
 
     private int m_numNodes;
     private boolean m_computedPointsInEye = false;
+
+    // The state from which the current points in the eye were computed.
+    private int m_coordinatesVersion;
+    private Matrix4d m_computedTransform = new Matrix4d();
+
+    private Matrix4d m_transform = new Matrix4d();  // scratch
 }
@@ -46,6 +46,8 @@ public class H3NonadaptiveRenderLoop
 
 	m_picker = new H3NonadaptivePicker(graph, canvas, parameters);
 	m_translation.setIdentity();
+	m_pendingTranslation.setIdentity();
+	m_cullCodes = new byte[m_numNodes];
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -77,6 +79,12 @@ public class H3NonadaptiveRenderLoop
 	endRequest();
     }
 
+    // This draws all visible nodes on every refresh anyway.
+    public synchronized void refreshVisibility()
+    {
+	refreshDisplay();
+    }
+
     public synchronized void resizeDisplay()
     {
 	startRequest();
@@ -194,7 +202,7 @@ public class H3NonadaptiveRenderLoop
 
 	    m_parameters.restoreObjectTransform();
 	    m_translation.set(m_savedTranslation);
-	    m_graph.transformNodes(m_translation);
+	    transformNodes();
 
 	    m_state = STATE_REFRESH;
 	}
@@ -222,7 +230,7 @@ public class H3NonadaptiveRenderLoop
 
 	    m_parameters.setObjectTransform(position.getRotation());
 	    m_translation.set(position.getTranslation());
-	    m_graph.transformNodes(m_translation);
+	    transformNodes();
 
 	    m_state = STATE_REFRESH;
 	}
@@ -249,6 +257,55 @@ public class H3NonadaptiveRenderLoop
 	}
     }
 
+    // Culling omits from the display the nodes that lie outside the view
+    // or that are too small to be seen, along with the links between
+    // such nodes (see computeCullCodes()).  The nodes culled for their
+    // size are those whose (Euclidean) radius, as would be computed for
+    // rendering nodes at multiple sizes, spans fewer than {threshold}
+    // pixels on the screen.
+    //
+    // If {maxDuration} is positive, then the threshold is further raised
+    // during rotations and translations whenever drawing a frame takes
+    // longer than {maxDuration} milliseconds, and lowered again as frames
+    // get faster.  The display is redrawn with the original threshold
+    // once the motion ends.
+    public synchronized void setCulling(boolean enable, double threshold,
+					long maxDuration)
+    {
+	startRequest();
+	{
+	    m_isCullingEnabled = enable;
+	    m_minCullingThreshold = threshold;
+	    m_cullingThreshold = threshold;
+	    m_maxFrameDuration = maxDuration;
+	}
+	endRequest();
+    }
+
+    // With matrix translation, the display coordinates of nodes aren't
+    // updated on each frame of a translation.  The render list keeps
+    // drawing the display coordinates from the start of the translation,
+    // and the translation since then is passed to the rendering pipeline
+    // in the model transform.  Only the radii of nodes, if needed, are
+    // computed for each frame.  The display coordinates are brought up
+    // to date once the translation ends, for picking.
+    //
+    // The translation is applied to the display coordinates rather than
+    // to the layout coordinates, since the rendering pipeline may work
+    // in single precision, and the Klein coordinates of nodes near the
+    // sphere at infinity lose too much precision in floats to be
+    // translated to the center of the display.  The depth cueing of
+    // nodes away from the center of the display can differ slightly,
+    // since fog is computed from eye coordinates before the w-divide.
+    public synchronized void setMatrixTranslation(boolean enable)
+    {
+	startRequest();
+	{
+	    m_isMatrixTranslationEnabled = enable;
+	}
+	endRequest();
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // INTERFACE METHODS (Runnable)
     ////////////////////////////////////////////////////////////////////////
@@ -370,6 +427,7 @@ public class H3NonadaptiveRenderLoop
 	    rotate(rot);
 	}
 
+	refreshIfDegraded();
 	m_state = STATE_IDLE;
     }
 
@@ -383,7 +441,7 @@ public class H3NonadaptiveRenderLoop
 	boolean more = true;
 	while (more)
 	{
-	    m_graph.getNodeCoordinates(m_translationNode, source);
+	    getNodeCoordinates(m_translationNode, source);
 	    double sourceLength = H3Math.vectorLength(source);
 
 	    if (sourceLength > TRANSLATION_THRESHOLD)
@@ -420,6 +478,13 @@ public class H3NonadaptiveRenderLoop
 	    translate(source, destination);
 	}
 
+	if (m_isMatrixTranslationEnabled)
+	{
+	    transformNodes();
+	}
+
+	refreshIfDegraded();
+
 	if (DEBUG_PRINT)
 	{
 	    m_graph.getNodeCoordinates(m_translationNode, source);
@@ -451,17 +516,21 @@ public class H3NonadaptiveRenderLoop
 	    System.out.println("rotate.begin[" + startTime +"]");
 	}
 
+	long frameStartTime = System.currentTimeMillis();
+
 	m_parameters.extendObjectTransform(rot);
 
 	GraphicsContext3D gc = m_canvas.getGraphicsContext3D();
 	gc.clear();
 	{
 	    m_parameters.drawAxes(gc);
-	    m_parameters.putModelTransform(gc);
+	    putModelTransform(gc);
 	    render(gc);
 	}
 	m_canvas.swap();
 
+	adjustCullingThreshold(System.currentTimeMillis() - frameStartTime);
+
 	if (DEBUG_PRINT)
 	{
 	    long stopTime = System.currentTimeMillis();
@@ -482,23 +551,36 @@ public class H3NonadaptiveRenderLoop
 	    System.out.println("translate.begin[" + startTime +"]");
 	}
 
+	long frameStartTime = System.currentTimeMillis();
+
 	Matrix4d translation =
 	    H3Transform.buildTranslation(source, destination);
 
+	if (m_isMatrixTranslationEnabled)
+	{
+	    m_pendingTranslation.mul(translation, m_pendingTranslation);
+	    m_areRadiiCurrent = false;
+	}
+
 	translation.mul(m_translation);
 	m_translation.set(translation);
 
-	m_graph.transformNodes(m_translation);
+	if (!m_isMatrixTranslationEnabled)
+	{
+	    transformNodes();
+	}
 
 	GraphicsContext3D gc = m_canvas.getGraphicsContext3D();
 	gc.clear();
 	{
 	    m_parameters.drawAxes(gc);
-	    m_parameters.putModelTransform(gc);
+	    putModelTransform(gc);
 	    render(gc);
 	}
 	m_canvas.swap();
 
+	adjustCullingThreshold(System.currentTimeMillis() - frameStartTime);
+
 	if (DEBUG_PRINT)
 	{
 	    long stopTime = System.currentTimeMillis();
@@ -523,7 +605,7 @@ public class H3NonadaptiveRenderLoop
 	gc.clear();
 	{
 	    m_parameters.drawAxes(gc);
-	    m_parameters.putModelTransform(gc);
+	    putModelTransform(gc);
 	    render(gc);
 	}
 	m_canvas.swap();
@@ -541,16 +623,29 @@ public class H3NonadaptiveRenderLoop
 
     private void render(GraphicsContext3D gc)
     {
+	if (m_isCullingEnabled)
+	{
+	    computeCullCodes();
+	}
+
 	m_renderList.beginFrame();
 	{
 	    for (int i = 0; i < m_numNodes; i++)
 	    {
-		if (USE_NODE_SIZES)
+		int code = 0;
+		if (m_isCullingEnabled)
+		{
+		    code = m_cullCodes[i];
+		}
+		else if (USE_NODE_SIZES && !m_areRadiiCurrent)
 		{
 		    computeNodeRadius(i);
 		}
 
-		m_renderList.addNode(i);
+		if (code == 0)
+		{
+		    m_renderList.addNode(i);
+		}
 
 		int childIndex = m_graph.getNodeChildIndex(i);
 		int nontreeIndex = m_graph.getNodeNontreeIndex(i);
@@ -558,12 +653,18 @@ public class H3NonadaptiveRenderLoop
 
 		for (int j = childIndex; j < nontreeIndex; j++)
 		{
-		    m_renderList.addTreeLink(j);
+		    if (code == 0 || !checkLinkCulled(code, j))
+		    {
+			m_renderList.addTreeLink(j);
+		    }
 		}
 
 		for (int j = nontreeIndex; j < endIndex; j++)
 		{
-		    m_renderList.addNontreeLink(j);
+		    if (code == 0 || !checkLinkCulled(code, j))
+		    {
+			m_renderList.addNontreeLink(j);
+		    }
 		}
 	    }
 	}
@@ -571,18 +672,193 @@ public class H3NonadaptiveRenderLoop
 	m_renderList.render(gc);
     }
 
-    // The same radius calculation is done in
-    // H3Transformer.transformNode(int node).
+    // Computes m_cullCodes for all nodes.  The code of a node is zero if
+    // the node should be displayed; otherwise, it has the CULL_SMALL bit
+    // set if the node is too small to be seen, and a CULL_{LEFT,RIGHT,
+    // BOTTOM,TOP} bit set for each side of the view that the node lies
+    // beyond.  As in Cohen-Sutherland line clipping, a link can only be
+    // visible if the codes of its endpoints have no bits in common (see
+    // checkLinkCulled()).
+    //
+    // This also computes the radii of nodes, if USE_NODE_SIZES is true,
+    // since it needs them anyway.
+    private void computeCullCodes()
+    {
+	// The following is done in the (translated) image plate coordinates
+	// of H3ViewParameters.getObjectToEyeTransform(), in which the eye
+	// lies on the z-axis, as for picking.
+	Transform3D transform = m_parameters.getObjectToEyeTransform();
+	transform.get(m_objectToEye);
+	double scale = transform.getScale();
+
+	Point3d eye = m_parameters.getEye();
+	double pixelToMeterScale = m_parameters.getPixelToMeterScale();
+
+	// The lower-left and upper-right corners of the canvas.  Neither
+	// need coincide with the origin of the image plate, which is the
+	// lower-left corner of the screen rather than of the canvas.
+	m_canvas.getPixelLocationInImagePlate(0, m_canvas.getHeight(),
+					      m_canvasLowerCorner);
+	m_canvas.getPixelLocationInImagePlate(m_canvas.getWidth(), 0,
+					      m_canvasCorner);
+
+	double margin = CULLING_MARGIN_PIXELS * pixelToMeterScale;
+	double minX = m_canvasLowerCorner.x - eye.x - margin;
+	double maxX = m_canvasCorner.x - eye.x + margin;
+	double minY = m_canvasLowerCorner.y - eye.y - margin;
+	double maxY = m_canvasCorner.y - eye.y + margin;
+
+	// A node of radius r at (x, y, z) spans r * scale / (1 - z/eye.z)
+	// meters on the image plate.
+	double minRadius =
+	    m_cullingThreshold * pixelToMeterScale / scale;
+
+	Matrix4d t = m_objectToEye;
+	for (int i = 0; i < m_numNodes; i++)
+	{
+	    getNodeCoordinates(i, m_nodeCoordinates);
+	    double radius = H3Math.computeRadiusEuclidean(m_nodeCoordinates);
+	    if (USE_NODE_SIZES)
+	    {
+		m_graph.setNodeRadius(i, radius);
+	    }
+
+	    double px = m_nodeCoordinates.x;
+	    double py = m_nodeCoordinates.y;
+	    double pz = m_nodeCoordinates.z;
+	    double z = t.m20 * px + t.m21 * py + t.m22 * pz + t.m23;
+
+	    // Nodes at or behind the eye are never culled, since the
+	    // projection isn't meaningful for them.
+	    int code = 0;
+	    double inversePerspectiveScale = 1.0 - z / eye.z;
+	    if (inversePerspectiveScale > 0.0)
+	    {
+		double x = t.m00 * px + t.m01 * py + t.m02 * pz + t.m03;
+		double y = t.m10 * px + t.m11 * py + t.m12 * pz + t.m13;
+		x /= inversePerspectiveScale;
+		y /= inversePerspectiveScale;
+
+		if (x < minX)
+		{
+		    code |= CULL_LEFT;
+		}
+		else if (x > maxX)
+		{
+		    code |= CULL_RIGHT;
+		}
+
+		if (y < minY)
+		{
+		    code |= CULL_BOTTOM;
+		}
+		else if (y > maxY)
+		{
+		    code |= CULL_TOP;
+		}
+
+		if (radius < minRadius * inversePerspectiveScale)
+		{
+		    code |= CULL_SMALL;
+		}
+	    }
+
+	    m_cullCodes[i] = (byte)code;
+	}
+    }
+
+    // {code} is the cull code of the source node of {link}.  A link is
+    // culled if both endpoints are too small to be seen, or if both lie
+    // beyond the same side of the view.
+    private boolean checkLinkCulled(int code, int link)
+    {
+	int target = m_graph.getLinkDestination(link);
+	return (code & m_cullCodes[target]) != 0;
+    }
+
+    // Raises the culling threshold if the last frame, which took
+    // {duration} milliseconds to draw, exceeded the frame budget, and
+    // lowers it (but never below the configured threshold) if the frame
+    // took less than half the budget.
+    private void adjustCullingThreshold(long duration)
+    {
+	if (m_isCullingEnabled && m_maxFrameDuration > 0)
+	{
+	    if (duration > m_maxFrameDuration)
+	    {
+		m_cullingThreshold = Math.min(2.0 * m_cullingThreshold,
+					      MAX_CULLING_THRESHOLD);
+	    }
+	    else if (duration < m_maxFrameDuration / 2)
+	    {
+		m_cullingThreshold = Math.max(0.5 * m_cullingThreshold,
+					      m_minCullingThreshold);
+	    }
+	}
+    }
+
+    // Redraws the display at full quality if adjustCullingThreshold()
+    // has raised the culling threshold during the preceding motion.
+    private void refreshIfDegraded()
+    {
+	if (m_cullingThreshold > m_minCullingThreshold)
+	{
+	    m_cullingThreshold = m_minCullingThreshold;
+	    refresh();
+	}
+    }
+
+    // The same radius calculation is done in H3Graph.transformNodes(),
+    // which H3Transformer uses.
     // The two methods should be kept in sync to ensure a consistent display
     // when the user turns adaptive rendering on/off.
     private void computeNodeRadius(int node)
     {
-	m_graph.getNodeCoordinates(node, m_nodeCoordinates);
+	getNodeCoordinates(node, m_nodeCoordinates);
 
 	double radius = H3Math.computeRadiusEuclidean(m_nodeCoordinates);
 	m_graph.setNodeRadius(node, radius);
     }
 
+    // Brings the display coordinates of nodes up to date with
+    // m_translation.  H3Graph.transformNodes() computes the radii of
+    // nodes in the same pass, so render() needn't.
+    private void transformNodes()
+    {
+	m_graph.transformNodes(m_translation);
+	m_pendingTranslation.setIdentity();
+	m_areRadiiCurrent = true;
+    }
+
+    // Gets the current display coordinates of {node}, with w = 1.  With
+    // matrix translation, the coordinates in the graph may lag behind
+    // by m_pendingTranslation.
+    private void getNodeCoordinates(int node, Point4d p)
+    {
+	if (m_isMatrixTranslationEnabled)
+	{
+	    m_graph.getNodeCoordinates(node, p);
+	    m_pendingTranslation.transform(p);
+	    p.project(p);
+	}
+	else
+	{
+	    m_graph.getNodeCoordinates(node, p);
+	}
+    }
+
+    private void putModelTransform(GraphicsContext3D gc)
+    {
+	if (m_isMatrixTranslationEnabled)
+	{
+	    m_parameters.putModelTransform(gc, m_pendingTranslation);
+	}
+	else
+	{
+	    m_parameters.putModelTransform(gc);
+	}
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS (request synchronization)
     ////////////////////////////////////////////////////////////////////////
@@ -670,6 +946,32 @@ public class H3NonadaptiveRenderLoop
 
     //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
+    // See computeCullCodes().
+    private static final int CULL_LEFT = 1;
+    private static final int CULL_RIGHT = 2;
+    private static final int CULL_BOTTOM = 4;
+    private static final int CULL_TOP = 8;
+    private static final int CULL_SMALL = 16;
+
+    // Nodes are drawn as points several pixels wide, so nodes this close
+    // to the edges of the view are kept in case part of them shows.
+    private static final double CULLING_MARGIN_PIXELS = 8.0;
+
+    // The culling threshold (in pixels) is never raised beyond this.
+    private static final double MAX_CULLING_THRESHOLD = 16.0;
+
+    private boolean m_isCullingEnabled = false;
+    private double m_minCullingThreshold = 0.0;  // as configured
+    private double m_cullingThreshold = 0.0;  // in effect
+    private long m_maxFrameDuration = 0;
+
+    private byte[] m_cullCodes;
+    private Matrix4d m_objectToEye = new Matrix4d(); // scratch variable
+    private Point3d m_canvasLowerCorner = new Point3d(); // scratch variable
+    private Point3d m_canvasCorner = new Point3d(); // scratch variable
+
+    //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
     private static final double TRANSLATION_STEP_DISTANCE = 0.05;
     private static final double TRANSLATION_THRESHOLD =
 	1.0 - TRANSLATION_STEP_DISTANCE;
@@ -677,6 +979,16 @@ public class H3NonadaptiveRenderLoop
     private int m_translationNode;
     private Matrix4d m_translation = new Matrix4d();
 
+    // See setMatrixTranslation().  The display coordinates of nodes in
+    // m_graph are as of m_translation, except for the part of it in
+    // m_pendingTranslation, which is instead applied in rendering.
+    private boolean m_isMatrixTranslationEnabled = false;
+    private Matrix4d m_pendingTranslation = new Matrix4d();
+
+    // Whether the radii of nodes in m_graph are those at the current
+    // display coordinates (see transformNodes()).
+    private boolean m_areRadiiCurrent = false;
+
     //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private Matrix4d m_savedTranslation = new Matrix4d();
@@ -0,0 +1,344 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// A uniform grid over points in the plane, used by H3PickerCommon to
+// find the projected nodes near a pick point without examining every
+// displayed node.
+//
+// Points are numbered consecutively in the order they are added, and
+// they can only be added, not removed, until the grid is cleared.  This
+// suits the adaptive picker, which indexes the nodes of the render queue
+// as they appear.  Only the occupied cells are stored (in an open
+// addressing hash table keyed on the cell coordinates), and the points
+// of a cell are chained together through m_nextInCell, so the grid
+// needs no allocation per point.  Points too far from the origin to have
+// a cell (including those with infinite or NaN coordinates) are kept on
+// a separate list that every query returns in full.
+//
+// A query returns a superset of the points lying within a given radius
+// of the query point: namely, all points in the cells overlapping the
+// bounding square of the query circle.  The caller must do the exact
+// distance test.  A query is a cursor over the grid: beginQuery()
+// followed by calls to nextCandidate() until it returns -1.  Hence, a
+// grid must not be used by more than one thread at a time.
+
+public class H3PickGrid
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    // {capacity} is the maximum number of points the grid can hold.
+    public H3PickGrid(int capacity)
+    {
+	m_x = new double[capacity];
+	m_y = new double[capacity];
+	m_nextInCell = new int[capacity];
+
+	allocateTable(INITIAL_TABLE_SIZE);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Removes all points and sets the size of the (square) cells.
+    // The cell size should be about the radius of typical queries.
+    public void clear(double cellSize)
+    {
+	if (!(cellSize > 0.0))
+	{
+	    String msg = "cellSize[" + cellSize + "] must be positive";
+	    throw new IllegalArgumentException(msg);
+	}
+
+	m_cellSize = cellSize;
+	m_numPoints = 0;
+	m_outliers = -1;
+
+	if (m_numCells > 0)
+	{
+	    m_numCells = 0;
+	    fillTable();
+	}
+    }
+
+    public double getCellSize()
+    {
+	return m_cellSize;
+    }
+
+    public int getNumPoints()
+    {
+	return m_numPoints;
+    }
+
+    public double getX(int index)
+    {
+	return m_x[index];
+    }
+
+    public double getY(int index)
+    {
+	return m_y[index];
+    }
+
+    // Adds the point (x, y), returning its index.
+    public int add(double x, double y)
+    {
+	if (m_numPoints == m_x.length)
+	{
+	    String msg = "grid is full [capacity=" + m_x.length + "]";
+	    throw new RuntimeException(msg);
+	}
+
+	int index = m_numPoints++;
+	m_x[index] = x;
+	m_y[index] = y;
+
+	double cx = Math.floor(x / m_cellSize);
+	double cy = Math.floor(y / m_cellSize);
+	if (Math.abs(cx) <= MAX_CELL && Math.abs(cy) <= MAX_CELL)
+	{
+	    long key = makeKey((int)cx, (int)cy);
+	    int slot = findSlot(key);
+	    if (m_heads[slot] < 0)
+	    {
+		m_keys[slot] = key;
+		++m_numCells;
+	    }
+	    m_nextInCell[index] = m_heads[slot];
+	    m_heads[slot] = index;
+
+	    if (m_numCells * 2 > m_keys.length)
+	    {
+		growTable();
+	    }
+	}
+	else
+	{
+	    m_nextInCell[index] = m_outliers;
+	    m_outliers = index;
+	}
+
+	return index;
+    }
+
+    // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // Starts a query for the points within {radius} of (x, y).
+    // The radius may be infinite.
+    public void beginQuery(double x, double y, double radius)
+    {
+	m_queryMinX = clampCell(Math.floor((x - radius) / m_cellSize));
+	m_queryMaxX = clampCell(Math.floor((x + radius) / m_cellSize));
+	m_queryMinY = clampCell(Math.floor((y - radius) / m_cellSize));
+	m_queryMaxY = clampCell(Math.floor((y + radius) / m_cellSize));
+
+	// When the query covers more cells than are occupied, it is
+	// cheaper to go through the occupied cells than to look up
+	// every covered cell.
+	long numQueryCells = ((long)m_queryMaxX - m_queryMinX + 1)
+	    * ((long)m_queryMaxY - m_queryMinY + 1);
+	m_queryScansTable = (numQueryCells > m_numCells);
+
+	m_queryCellX = m_queryMinX;
+	m_queryCellY = m_queryMinY - 1;
+	m_querySlot = -1;
+	m_queryPoint = m_outliers;
+    }
+
+    // Returns the index of the next candidate point of the current query,
+    // or -1 if there are no more.
+    public int nextCandidate()
+    {
+	while (m_queryPoint < 0)
+	{
+	    if (!(m_queryScansTable ? advanceQuerySlot() : advanceQueryCell()))
+	    {
+		return -1;
+	    }
+	}
+
+	int retval = m_queryPoint;
+	m_queryPoint = m_nextInCell[retval];
+	return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Moves the query to the next covered cell, and sets m_queryPoint to
+    // the first point in that cell (or to -1 if the cell is empty).
+    private boolean advanceQueryCell()
+    {
+	if (m_queryCellY < m_queryMaxY)
+	{
+	    ++m_queryCellY;
+	}
+	else if (m_queryCellX < m_queryMaxX)
+	{
+	    ++m_queryCellX;
+	    m_queryCellY = m_queryMinY;
+	}
+	else
+	{
+	    return false;
+	}
+
+	int slot = findSlot(makeKey(m_queryCellX, m_queryCellY));
+	m_queryPoint = m_heads[slot];
+	return true;
+    }
+
+    // Moves the query to the next occupied slot of the hash table, and
+    // sets m_queryPoint to the first point in the corresponding cell if
+    // the cell is covered by the query (otherwise, to -1).
+    private boolean advanceQuerySlot()
+    {
+	if (++m_querySlot == m_keys.length)
+	{
+	    return false;
+	}
+
+	m_queryPoint = -1;
+	if (m_heads[m_querySlot] >= 0)
+	{
+	    long key = m_keys[m_querySlot];
+	    int cx = (int)(key >> 32);
+	    int cy = (int)key;
+	    if (cx >= m_queryMinX && cx <= m_queryMaxX
+		&& cy >= m_queryMinY && cy <= m_queryMaxY)
+	    {
+		m_queryPoint = m_heads[m_querySlot];
+	    }
+	}
+	return true;
+    }
+
+    private int clampCell(double c)
+    {
+	if (c < -MAX_CELL)
+	{
+	    return -MAX_CELL;
+	}
+	else if (c > MAX_CELL)
+	{
+	    return MAX_CELL;
+	}
+	else if (c == c)
+	{
+	    return (int)c;
+	}
+	else
+	{
+	    // A NaN query point lies in no cell, but the query still
+	    // returns the outliers.
+	    return MAX_CELL + 1;
+	}
+    }
+
+    private static long makeKey(int cx, int cy)
+    {
+	return ((long)cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    // Returns the slot holding {key}, or the empty slot where it belongs.
+    private int findSlot(long key)
+    {
+	int mask = m_keys.length - 1;
+	long h = key * 0x9E3779B97F4A7C15L;
+	int slot = (int)(h >>> 32) & mask;
+	while (m_heads[slot] >= 0 && m_keys[slot] != key)
+	{
+	    slot = (slot + 1) & mask;
+	}
+	return slot;
+    }
+
+    private void allocateTable(int size)
+    {
+	m_keys = new long[size];
+	m_heads = new int[size];
+	fillTable();
+    }
+
+    private void fillTable()
+    {
+	for (int i = 0; i < m_heads.length; i++)
+	{
+	    m_heads[i] = -1;
+	}
+    }
+
+    private void growTable()
+    {
+	long[] oldKeys = m_keys;
+	int[] oldHeads = m_heads;
+
+	allocateTable(oldKeys.length * 2);
+	for (int i = 0; i < oldKeys.length; i++)
+	{
+	    if (oldHeads[i] >= 0)
+	    {
+		int slot = findSlot(oldKeys[i]);
+		m_keys[slot] = oldKeys[i];
+		m_heads[slot] = oldHeads[i];
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Must be a power of two.
+    private static final int INITIAL_TABLE_SIZE = 1024;
+
+    // Points whose cell coordinates exceed this in magnitude are outliers.
+    private static final int MAX_CELL = 1 << 30;
+
+    private double m_cellSize = 1.0;
+    private int m_numPoints = 0;
+
+    private double[] m_x;
+    private double[] m_y;
+    private int[] m_nextInCell;  // -1 terminates a chain
+    private int m_outliers = -1;  // head of chain of outliers
+
+    // The hash table of occupied cells.  An empty slot has m_heads < 0.
+    private long[] m_keys;
+    private int[] m_heads;
+    private int m_numCells = 0;
+
+    // The state of the current query.
+    private int m_queryMinX;
+    private int m_queryMaxX;
+    private int m_queryMinY;
+    private int m_queryMaxY;
+    private boolean m_queryScansTable;
+    private int m_queryCellX;
+    private int m_queryCellY;
+    private int m_querySlot;
+    private int m_queryPoint;
+}
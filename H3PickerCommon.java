@@ -41,6 +41,7 @@ public abstract class H3PickerCommon
 	m_pointsInEyeX = new double[numNodes];
 	m_pointsInEyeY = new double[numNodes];
 	m_pointsInEyeZ = new double[numNodes];
+	m_pickGrid = new H3PickGrid(numNodes);
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -144,6 +145,13 @@ public abstract class H3PickerCommon
 	gc.setFrontBufferRendering(state);
     }
 
+    // Subclasses must call this whenever previously computed points in
+    // the eye become invalid (that is, in reset()).
+    protected void invalidatePickGrid()
+    {
+	m_isPickGridValid = false;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE METHODS
     ////////////////////////////////////////////////////////////////////////
@@ -181,8 +189,18 @@ public abstract class H3PickerCommon
 	double closestEyeDistanceSq = Double.MAX_VALUE;
 
 	computePointsInEye();
-	int numComputedPointsInEye = getNumComputedPointsInEye();
-	for (int i = 0; i < numComputedPointsInEye; i++)
+	updatePickGrid(eye.z, pickRadius);
+
+	// Only the nodes whose projections lie in the grid cells around
+	// the pick point can fall within {pickRadius}.  With node radii
+	// taken into account, however, there is no fixed bound on the
+	// pick distance, and every node must be examined.
+	double queryRadius =
+	    (USE_NODE_RADIUS ? Double.POSITIVE_INFINITY : pickRadius);
+	m_pickGrid.beginQuery(pickX, pickY, queryRadius);
+
+	int i;
+	while ((i = m_pickGrid.nextCandidate()) >= 0)
 	{
 	    int node = getNodeInEye(i);
 	    if (!m_graph.checkNodeVisible(node))
@@ -190,16 +208,8 @@ public abstract class H3PickerCommon
 		continue;
 	    }
 
-	    double pX = m_pointsInEyeX[i];
-	    double pY = m_pointsInEyeY[i];
-	    double pZ = m_pointsInEyeZ[i];
-
-	    double perspectiveScale = 1.0 / (1.0 - pZ / eye.z);
-	    double ppX = pX * perspectiveScale;
-	    double ppY = pY * perspectiveScale;
-
-	    double dx = pickX - ppX;
-	    double dy = pickY - ppY;
+	    double dx = pickX - m_pickGrid.getX(i);
+	    double dy = pickY - m_pickGrid.getY(i);
 
 	    double centerDistanceSq = dx * dx + dy * dy;
 
@@ -225,6 +235,10 @@ public abstract class H3PickerCommon
 	    // picking experience, we pick the node that is closest to the
 	    // eye.  This prevents surprises caused by distant, but hidden,
 	    // overlapping nodes being picked over nearby nodes.
+	    //
+	    // The grid returns candidates in no particular order, so ties
+	    // are broken in favor of the lowest index, which is the node
+	    // a scan of the points in order would have picked.
 
 	    if (centerDistanceSq < pickDistance * pickDistance)
 	    {
@@ -233,9 +247,13 @@ public abstract class H3PickerCommon
 
 		if (centerDistanceSq < pickEquivalenceDistanceSq)
 		{
-		    double z0 = eye.z - pZ;
+		    double pX = m_pointsInEyeX[i];
+		    double pY = m_pointsInEyeY[i];
+		    double z0 = eye.z - m_pointsInEyeZ[i];
 		    double eyeDistanceSq = pX * pX + pY * pY + z0 * z0;
-		    if (eyeDistanceSq < closestEyeDistanceSq)
+		    if (eyeDistanceSq < closestEyeDistanceSq
+			|| (eyeDistanceSq == closestEyeDistanceSq
+			    && i < closestIndex))
 		    {
 			closestIndex = i;
 			closestEyeDistanceSq = eyeDistanceSq;
@@ -252,7 +270,9 @@ public abstract class H3PickerCommon
 			closestPickDistanceSq = 0.0;
 		    }
 		}
-		else if (centerDistanceSq < closestPickDistanceSq)
+		else if (centerDistanceSq < closestPickDistanceSq
+			 || (centerDistanceSq == closestPickDistanceSq
+			     && i < closestIndex))
 		{
 		    closestIndex = i;
 		    closestPickDistanceSq = centerDistanceSq;
@@ -262,7 +282,7 @@ public abstract class H3PickerCommon
 
 	if (closestIndex >= 0)
 	{
-	    Point3d p = new Point3d();
+	    Point3d p = m_closestPoint;
 	    p.x = eye.x + m_pointsInEyeX[closestIndex];
 	    p.y = eye.y + m_pointsInEyeY[closestIndex];
 	    p.z = m_pointsInEyeZ[closestIndex];
@@ -279,6 +299,31 @@ public abstract class H3PickerCommon
 	return (closestIndex >= 0 ? getNodeInEye(closestIndex) : -1);
     }
 
+    // Brings the grid of projected points up to date with the points in
+    // the eye computed so far.  Only the points computed since the last
+    // update are projected and added, unless the grid has been
+    // invalidated or the eye has moved.
+    private void updatePickGrid(double eyeZ, double pickRadius)
+    {
+	int numComputedPointsInEye = getNumComputedPointsInEye();
+	if (!m_isPickGridValid || eyeZ != m_pickGridEyeZ
+	    || numComputedPointsInEye < m_pickGrid.getNumPoints())
+	{
+	    m_isPickGridValid = true;
+	    m_pickGridEyeZ = eyeZ;
+	    m_pickGrid.clear(pickRadius > 0.0
+			     ? pickRadius : DEFAULT_PICK_GRID_CELL_SIZE);
+	}
+
+	for (int i = m_pickGrid.getNumPoints();
+	     i < numComputedPointsInEye; i++)
+	{
+	    double perspectiveScale = 1.0 / (1.0 - m_pointsInEyeZ[i] / eyeZ);
+	    m_pickGrid.add(m_pointsInEyeX[i] * perspectiveScale,
+			   m_pointsInEyeY[i] * perspectiveScale);
+	}
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PROTECTED FIELDS
     ////////////////////////////////////////////////////////////////////////
@@ -303,4 +348,20 @@ public abstract class H3PickerCommon
     protected double[] m_pointsInEyeX;
     protected double[] m_pointsInEyeY;
     protected double[] m_pointsInEyeZ;
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The cell size used if the pick radius is somehow not positive.
+    // This is in meters, like all image plate coordinates.
+    private static final double DEFAULT_PICK_GRID_CELL_SIZE = 0.005;
+
+    // The perspective projections of m_pointsInEye{X,Y,Z} onto the image
+    // plate (relative to the eye), indexed the same way.
+    private H3PickGrid m_pickGrid;
+    private boolean m_isPickGridValid = false;
+    private double m_pickGridEyeZ;
+
+    private Point3d m_closestPoint = new Point3d();  // scratch for pick()
 }
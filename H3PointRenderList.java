@@ -61,6 +61,11 @@ public class H3PointRenderList
 	INCLUDE_NONTREE_LINK_COLOR =
 	    includeNontreeLinks && includeNontreeLinkColor;
 
+	// Coordinates are stored as floats if the graph itself does so.
+	// Only one of m_nearNodeCoordinates and m_nearNodeFloatCoordinates,
+	// etc., is allocated.
+	m_useFloatCoordinates = graph.hasCompactCoordinates();
+
 	// Node data. - - - - - - - - - - - - - - - - - - - - - - - - - - 
 
 	if (INCLUDE_NODES)
@@ -74,22 +79,46 @@ public class H3PointRenderList
 	    int numNodes = graph.getNumNodes();
 
 	    m_nearNodes = new PointArray(numNodes, nodeFormat);
-	    m_nearNodeCoordinates = new double[numNodes * 3];
-	    m_nearNodes.setCoordRefDouble(m_nearNodeCoordinates);
+	    if (m_useFloatCoordinates)
+	    {
+		m_nearNodeFloatCoordinates = new float[numNodes * 3];
+		m_nearNodes.setCoordRefFloat(m_nearNodeFloatCoordinates);
+	    }
+	    else
+	    {
+		m_nearNodeCoordinates = new double[numNodes * 3];
+		m_nearNodes.setCoordRefDouble(m_nearNodeCoordinates);
+	    }
 	    m_nearNodes.setValidVertexCount(0);
 
 	    if (USE_NODE_SIZES)
 	    {
 		m_middleNodes = new PointArray(numNodes, nodeFormat);
-		m_middleNodeCoordinates = new double[numNodes * 3];
-		m_middleNodes.setCoordRefDouble(m_middleNodeCoordinates);
+		if (m_useFloatCoordinates)
+		{
+		    m_middleNodeFloatCoordinates = new float[numNodes * 3];
+		    m_middleNodes.setCoordRefFloat(m_middleNodeFloatCoordinates);
+		}
+		else
+		{
+		    m_middleNodeCoordinates = new double[numNodes * 3];
+		    m_middleNodes.setCoordRefDouble(m_middleNodeCoordinates);
+		}
 		m_middleNodes.setValidVertexCount(0);
 
 		// --  --  --  --  --  --  --  --  --  --  --  --  --  --  --
 
 		m_farNodes = new PointArray(numNodes, nodeFormat);
-		m_farNodeCoordinates = new double[numNodes * 3];
-		m_farNodes.setCoordRefDouble(m_farNodeCoordinates);
+		if (m_useFloatCoordinates)
+		{
+		    m_farNodeFloatCoordinates = new float[numNodes * 3];
+		    m_farNodes.setCoordRefFloat(m_farNodeFloatCoordinates);
+		}
+		else
+		{
+		    m_farNodeCoordinates = new double[numNodes * 3];
+		    m_farNodes.setCoordRefDouble(m_farNodeCoordinates);
+		}
 		m_farNodes.setValidVertexCount(0);
 	    }
 
@@ -121,8 +150,16 @@ public class H3PointRenderList
 
 	    int numLinks = graph.getNumTreeLinks();
 	    m_treeLinks = new LineArray(numLinks * 2, lineFormat);
-	    m_treeLinkCoordinates = new double[numLinks * 3 * 2];
-	    m_treeLinks.setCoordRefDouble(m_treeLinkCoordinates);
+	    if (m_useFloatCoordinates)
+	    {
+		m_treeLinkFloatCoordinates = new float[numLinks * 3 * 2];
+		m_treeLinks.setCoordRefFloat(m_treeLinkFloatCoordinates);
+	    }
+	    else
+	    {
+		m_treeLinkCoordinates = new double[numLinks * 3 * 2];
+		m_treeLinks.setCoordRefDouble(m_treeLinkCoordinates);
+	    }
 	    m_treeLinks.setValidVertexCount(0);
 
 	    if (INCLUDE_TREE_LINK_COLOR)
@@ -142,8 +179,16 @@ public class H3PointRenderList
 
 	    int numLinks = graph.getNumNontreeLinks();
 	    m_nontreeLinks = new LineArray(numLinks * 2, lineFormat);
-	    m_nontreeLinkCoordinates = new double[numLinks * 3 * 2];
-	    m_nontreeLinks.setCoordRefDouble(m_nontreeLinkCoordinates);
+	    if (m_useFloatCoordinates)
+	    {
+		m_nontreeLinkFloatCoordinates = new float[numLinks * 3 * 2];
+		m_nontreeLinks.setCoordRefFloat(m_nontreeLinkFloatCoordinates);
+	    }
+	    else
+	    {
+		m_nontreeLinkCoordinates = new double[numLinks * 3 * 2];
+		m_nontreeLinks.setCoordRefDouble(m_nontreeLinkCoordinates);
+	    }
 	    m_nontreeLinks.setValidVertexCount(0);
 
 	    if (INCLUDE_NONTREE_LINK_COLOR)
@@ -220,31 +265,31 @@ public class H3PointRenderList
 		if (radius < FAR_NODES_THRESHOLD)
 		{
 		    ++m_numFarNodesDisplayed;
-		    m_farNodeCoordinates[m_farNodeIndex++] = m_source.x;
-		    m_farNodeCoordinates[m_farNodeIndex++] = m_source.y;
-		    m_farNodeCoordinates[m_farNodeIndex++] = m_source.z;
+		    m_farNodeIndex = putCoordinates
+			(m_farNodeCoordinates, m_farNodeFloatCoordinates,
+			 m_farNodeIndex, m_source);
 		}
 		else if (radius < MIDDLE_NODES_THRESHOLD)
 		{
 		    ++m_numMiddleNodesDisplayed;
-		    m_middleNodeCoordinates[m_middleNodeIndex++] = m_source.x;
-		    m_middleNodeCoordinates[m_middleNodeIndex++] = m_source.y;
-		    m_middleNodeCoordinates[m_middleNodeIndex++] = m_source.z;
+		    m_middleNodeIndex = putCoordinates
+			(m_middleNodeCoordinates, m_middleNodeFloatCoordinates,
+			 m_middleNodeIndex, m_source);
 		}
 		else
 		{
 		    ++m_numNearNodesDisplayed;
-		    m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.x;
-		    m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.y;
-		    m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.z;
+		    m_nearNodeIndex = putCoordinates
+			(m_nearNodeCoordinates, m_nearNodeFloatCoordinates,
+			 m_nearNodeIndex, m_source);
 		}
 	    }
 	    else
 	    {
 		++m_numNearNodesDisplayed;
-		m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.x;
-		m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.y;
-		m_nearNodeCoordinates[m_nearNodeIndex++] = m_source.z;
+		m_nearNodeIndex = putCoordinates
+		    (m_nearNodeCoordinates, m_nearNodeFloatCoordinates,
+		     m_nearNodeIndex, m_source);
 	    }
 
 	    if (INCLUDE_NODE_COLOR)
@@ -299,14 +344,14 @@ public class H3PointRenderList
 		m_numTreeVerticesDisplayed += 2;
 
 		m_graph.getNodeCoordinates(sourceNode, m_source);
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_source.x;
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_source.y;
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_source.z;
+		m_treeLinkIndex = putCoordinates
+		    (m_treeLinkCoordinates, m_treeLinkFloatCoordinates,
+		     m_treeLinkIndex, m_source);
 
 		m_graph.getNodeCoordinates(targetNode, m_target);
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_target.x;
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_target.y;
-		m_treeLinkCoordinates[m_treeLinkIndex++] = m_target.z;
+		m_treeLinkIndex = putCoordinates
+		    (m_treeLinkCoordinates, m_treeLinkFloatCoordinates,
+		     m_treeLinkIndex, m_target);
 
 		if (INCLUDE_TREE_LINK_COLOR)
 		{
@@ -341,14 +386,14 @@ public class H3PointRenderList
 		m_numNontreeVerticesDisplayed += 2;
 
 		m_graph.getNodeCoordinates(sourceNode, m_source);
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_source.x;
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_source.y;
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_source.z;
+		m_nontreeLinkIndex = putCoordinates
+		    (m_nontreeLinkCoordinates, m_nontreeLinkFloatCoordinates,
+		     m_nontreeLinkIndex, m_source);
 
 		m_graph.getNodeCoordinates(targetNode, m_target);
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_target.x;
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_target.y;
-		m_nontreeLinkCoordinates[m_nontreeLinkIndex++] = m_target.z;
+		m_nontreeLinkIndex = putCoordinates
+		    (m_nontreeLinkCoordinates, m_nontreeLinkFloatCoordinates,
+		     m_nontreeLinkIndex, m_target);
 
 		if (INCLUDE_NONTREE_LINK_COLOR)
 		{
@@ -369,6 +414,30 @@ public class H3PointRenderList
 	}
     }
 
+    // See comments for m_transformedData in H3Transformer.java for details
+    // about the encoding of {data}.
+    public void addElements(long[] data, int n)
+    {
+	for (int i = 0; i < n; i++)
+	{
+	    int type = (int)(data[i] >> 32);
+	    int element = (int)data[i];
+
+	    if (type == H3RenderQueue.Element.TYPE_NODE)
+	    {
+		addNode(element);
+	    }
+	    else if (type == H3RenderQueue.Element.TYPE_TREE_LINK)
+	    {
+		addTreeLink(element);
+	    }
+	    else //(type == H3RenderQueue.Element.TYPE_NONTREE_LINK)
+	    {
+		addNontreeLink(element);
+	    }
+	}
+    }
+
     public void render(GraphicsContext3D gc)
     {
 	long startTime = 0;
@@ -464,6 +533,30 @@ public class H3PointRenderList
 	}
     }
 
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Stores {p} at {index} in whichever of {coordinates} and
+    // {floatCoordinates} is allocated, and returns the next index.
+    private int putCoordinates(double[] coordinates, float[] floatCoordinates,
+			       int index, Point3d p)
+    {
+	if (m_useFloatCoordinates)
+	{
+	    floatCoordinates[index] = (float)p.x;
+	    floatCoordinates[index + 1] = (float)p.y;
+	    floatCoordinates[index + 2] = (float)p.z;
+	}
+	else
+	{
+	    coordinates[index] = p.x;
+	    coordinates[index + 1] = p.y;
+	    coordinates[index + 2] = p.z;
+	}
+	return index + 3;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE FIELDS
     ////////////////////////////////////////////////////////////////////////
@@ -488,6 +581,8 @@ public class H3PointRenderList
     private final boolean INCLUDE_NONTREE_LINKS;
     private final boolean INCLUDE_NONTREE_LINK_COLOR;
 
+    private boolean m_useFloatCoordinates;
+
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private Appearance m_nearNodeAppearance;
@@ -527,25 +622,30 @@ public class H3PointRenderList
     // array.  The coordinates of each node appear as consecutive x, y, and
     // z values.
     private double[] m_nearNodeCoordinates; 
+    private float[] m_nearNodeFloatCoordinates; // alternative to the above
 
-    private PointArray m_nearNodes; // refs the above two arrays
+    private PointArray m_nearNodes; // refs the above arrays
 
     // - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     // See comments above for the set m_nearNodes, m_nearNodeColors, etc.
     private byte[] m_middleNodeColors;
     private double[] m_middleNodeCoordinates; 
+    private float[] m_middleNodeFloatCoordinates;
     private PointArray m_middleNodes;
 
     private byte[] m_farNodeColors;
     private double[] m_farNodeCoordinates; 
+    private float[] m_farNodeFloatCoordinates;
     private PointArray m_farNodes;
 
     private byte[] m_treeLinkColors;
     private double[] m_treeLinkCoordinates; 
+    private float[] m_treeLinkFloatCoordinates;
     private LineArray m_treeLinks;
 
     private byte[] m_nontreeLinkColors;
     private double[] m_nontreeLinkCoordinates; 
+    private float[] m_nontreeLinkFloatCoordinates;
     private LineArray m_nontreeLinks;
 }
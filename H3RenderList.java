@@ -30,5 +30,9 @@ public interface H3RenderList
     void addNode(int node);
     void addTreeLink(int link);
     void addNontreeLink(int link);
+
+    // Adds the first {n} elements of {data}, which are in the encoded form
+    // returned by H3RenderQueue.getRange().
+    void addElements(long[] data, int n);
     void render(GraphicsContext3D gc);
 }
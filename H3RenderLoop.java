@@ -26,6 +26,10 @@ public interface H3RenderLoop
 {
     void synchronizeWithRendering();
     void refreshDisplay();
+
+    // Like refreshDisplay(), but for use after the visibility of nodes or
+    // links in the graph has changed.
+    void refreshVisibility();
     void resizeDisplay();
     void rotateDisplay(H3RotationRequest request);
 
@@ -20,6 +20,19 @@
 // 
 
 
+// This queue passes the output of H3Transformer to an adaptive renderer.
+//
+// The renderer (the single consumer) never takes a lock to read elements
+// that have already been published.  The number of published elements is
+// held in a volatile field, which the producer writes only after the
+// elements themselves, so that a consumer that sees the count also sees
+// the elements.  The consumer locks the queue only when it has caught up
+// with the producer and has to wait, and the producer notifies only when
+// the consumer is in fact waiting.
+//
+// The producer methods are synchronized, since the parallel traversal in
+// H3Transformer has more than one producer.
+
 public class H3RenderQueue
 {
     ////////////////////////////////////////////////////////////////////////
@@ -35,45 +48,70 @@ public class H3RenderQueue
     // PUBLIC METHODS
     ////////////////////////////////////////////////////////////////////////
 
-    public synchronized boolean get(int index, Element element)
+    public boolean get(int index, Element element)
     {
-	boolean retval = false;
+	if (index < m_numElements)
+	{
+	    decode(m_data[index], element);
+	    return true;
+	}
 
-	boolean tryAgain;
-	do
+	while (true)
 	{
-	    tryAgain = false;
+	    // m_isComplete must be read before m_numElements, since end()
+	    // writes them in the opposite order.
+	    boolean isComplete = m_isComplete;
 	    if (index < m_numElements)
 	    {
 		decode(m_data[index], element);
-		retval = true;
+		return true;
 	    }
-	    else 
+	    else if (isComplete)
 	    {
-		if (!m_isComplete)
-		{
-		    m_isWaitingForData = true;
-		    waitIgnore();
-		    tryAgain = true;
-		}
+		return false;
 	    }
+
+	    waitForData(index);
 	}
-	while (tryAgain);
+    }
 
-	return retval;
+    // Copies up to {max} elements starting at {index} into {data}, in the
+    // encoded form described for m_transformedData in H3Transformer.java.
+    // Like get(), this waits if the element at {index} hasn't been added
+    // yet.  Returns the number of elements copied, which is zero only if
+    // the queue is complete and has no element at {index}.
+    public int getRange(int index, int max, long[] data)
+    {
+	while (true)
+	{
+	    boolean isComplete = m_isComplete;
+	    int numElements = m_numElements;
+	    if (index < numElements)
+	    {
+		int n = Math.min(max, numElements - index);
+		System.arraycopy(m_data, index, data, 0, n);
+		return n;
+	    }
+	    else if (isComplete)
+	    {
+		return 0;
+	    }
+
+	    waitForData(index);
+	}
     }
 
-    public synchronized int getMaxNumElements()
+    public int getMaxNumElements()
     {
 	return m_data.length;
     }
 
-    public synchronized int getCurrentNumElements()
+    public int getCurrentNumElements()
     {
 	return m_numElements;
     }
 
-    public synchronized boolean isComplete()
+    public boolean isComplete()
     {
 	return m_isComplete;
     }
@@ -82,8 +120,9 @@ public class H3RenderQueue
 
     public synchronized void add(int n, long[] data)
     {
-	System.arraycopy(data, 0, m_data, m_numElements, n);
-	m_numElements += n;
+	int numElements = m_numElements;
+	System.arraycopy(data, 0, m_data, numElements, n);
+	m_numElements = numElements + n;
 	notifyIfWaiting();
     }
 
@@ -113,6 +152,19 @@ public class H3RenderQueue
 	element.data = (int)(data & 0xFFFFFFFF);
     }
 
+    // Waits until the producer adds elements or ends the queue, unless it
+    // has already done so.  The producer methods hold the same lock, so
+    // they cannot slip in between the test and the wait.
+    private synchronized void waitForData(int index)
+    {
+	if (index >= m_numElements && !m_isComplete)
+	{
+	    m_isWaitingForData = true;
+	    waitIgnore();
+	    m_isWaitingForData = false;
+	}
+    }
+
     private synchronized void notifyIfWaiting()
     {
 	if (m_isWaitingForData)
@@ -132,9 +184,9 @@ public class H3RenderQueue
     ////////////////////////////////////////////////////////////////////////
 
     private long[] m_data;
-    private int m_numElements = 0;
-    private boolean m_isComplete = false;
-    private boolean m_isWaitingForData = false;
+    private volatile int m_numElements = 0;
+    private volatile boolean m_isComplete = false;
+    private boolean m_isWaitingForData = false; // guarded by this
 
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC CLASSES
@@ -0,0 +1,668 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.caida.libsea.*;
+
+//
+// This is an alternative to H3GraphLoader which builds an H3Graph while
+// a LibSea graph file is being parsed, rather than from a fully
+// constructed libsea Graph.
+//
+// An instance of this class is passed to GraphFileParser in place of the
+// GraphBuilder returned by GraphFactory.makeImmutableGraph().  Only the
+// data needed to build an H3Graph is retained: the endpoints of links,
+// the names and types of attributes, the spanning tree qualifiers, and
+// the values of boolean attributes (which are stored as bit sets, since
+// any of them may turn out to be the "root" or "tree_link" attribute of
+// a spanning tree qualifier appearing later in the file).  The values of
+// all other attributes are discarded, so the peak memory usage is a
+// fraction of that of a libsea Graph plus an H3Graph.  Users needing
+// attribute values (for coloring, say) must obtain them separately,
+// with another pass over the file by H3AttributeValueLoader.
+//
+// Nodes and links are assigned the same IDs that the libsea Graph
+// constructed from the same file would assign them; namely, the
+// consecutive integers starting at zero, in the order of appearance in
+// the file.  Likewise for attributes.  Hence the IDs in an H3Graph built
+// by this class can be used to look up attributes in such a libsea Graph.
+//
+
+public class H3StreamingGraphLoader
+    implements GraphBuilder
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3StreamingGraphLoader() {}
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Whether load() should create graphs with off-heap storage.
+    // See H3Graph(int, int, boolean).
+    public void setOffHeapStorage(boolean offHeap)
+    {
+	m_offHeapStorage = offHeap;
+    }
+
+    // This should only be called after parsing has finished.
+    public H3Graph load(String spanningTree)
+	throws H3GraphLoader.InvalidGraphDataException
+    {
+	SpanningTree tree = findSpanningTree(spanningTree);
+	int root = findSpanningTreeRootNode(tree.rootAttribute);
+	BitSet treeLinksMap = getLinkValues(tree.treeLinkAttribute);
+
+	H3Graph retval = new H3Graph(m_numNodes, m_numLinks, m_offHeapStorage);
+	for (int i = 0; i < m_numNodes; i++)
+	{
+	    retval.setNodeID(i, i);
+	}
+	retval.setRootNode(root);
+	populateLinks(retval, treeLinksMap);
+
+	return retval;
+    }
+
+    // Returns List<String>.
+    public List loadSpanningTreeQualifiers()
+    {
+	List<String> retval = new ArrayList<String>(m_spanningTrees.keySet());
+	Collections.sort(retval);
+	return retval;
+    }
+
+    // Returns List<String>.
+    public List loadAttributes(H3GraphLoader.AttributeTypeMatcher matcher)
+    {
+	List<String> retval = new ArrayList<String>();
+
+	for (int i = 0; i < m_attributes.size(); i++)
+	{
+	    AttributeDefinition definition =
+		(AttributeDefinition)m_attributes.get(i);
+	    if (matcher.match(definition.type))
+	    {
+		retval.add(definition.name);
+	    }
+	}
+
+	Collections.sort(retval);
+	return retval;
+    }
+
+    // Returns the ID the named attribute would have in a libsea Graph
+    // constructed from the same file, or -1 if there is no such attribute.
+    public int getAttributeID(String name)
+    {
+	Integer retval = (Integer)m_attributeIDs.get(name);
+	return (retval == null ? -1 : retval.intValue());
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // INTERFACE METHODS (GraphBuilder)
+    ////////////////////////////////////////////////////////////////////////
+
+    public void setGraphName(String name) {}
+    public void setGraphDescription(String description) {}
+
+    public void allocateNodes(int count)
+    {
+	m_numNodes = count;
+    }
+
+    public void allocateLinks(int count)
+    {
+	m_numLinks = count;
+	m_sources = new int[count];
+	m_destinations = new int[count];
+    }
+
+    public void allocatePaths(int count) {}
+    public void allocatePathLinks(int count) {}
+
+    public int addLink(int source, int destination)
+    {
+	int retval = m_numLinksAdded++;
+	m_sources[retval] = source;
+	m_destinations[retval] = destination;
+	return retval;
+    }
+
+    public int addPath()
+    {
+	return m_numPathsAdded++;
+    }
+
+    public void addPathLink(int link) {}
+
+    public EnumerationCreator addEnumeration(String name)
+    {
+	return new IgnoredEnumerationCreator(m_numEnumerationsAdded++);
+    }
+
+    public int addAttributeDefinition(String name, ValueType type,
+				      int enumeration, String expr)
+	throws DuplicateObjectException
+    {
+	if (m_attributeIDs.containsKey(name))
+	{
+	    throw new DuplicateObjectException(name);
+	}
+
+	int retval = m_attributes.size();
+	m_attributes.add(new AttributeDefinition(name, type));
+	m_attributeIDs.put(name, Integer.valueOf(retval));
+	return retval;
+    }
+
+    public int addMutableAttributeDefinition(String name, ValueType type,
+					     int enumeration, String expr,
+					     boolean node, boolean link,
+					     boolean path)
+	throws DuplicateObjectException
+    {
+	return addAttributeDefinition(name, type, enumeration, expr);
+    }
+
+    public AttributeCreator addNodeAttribute(int node)
+    {
+	return addObjectAttribute(ObjectType.NODE, node);
+    }
+
+    public AttributeCreator addLinkAttribute(int link)
+    {
+	return addObjectAttribute(ObjectType.LINK, link);
+    }
+
+    public AttributeCreator addPathAttribute(int path)
+    {
+	return addObjectAttribute(ObjectType.PATH, path);
+    }
+
+    // Object attributes always belong to the most recently defined
+    // attribute, since the values of an attribute are listed in the
+    // attribute definition itself.
+    public AttributeCreator addObjectAttribute(ObjectType type, int id)
+    {
+	AttributeDefinition definition =
+	    (AttributeDefinition)m_attributes.get(m_attributes.size() - 1);
+	if (definition.type != ValueType.BOOLEAN || type == ObjectType.PATH)
+	{
+	    return m_ignoredAttributeCreator;
+	}
+
+	if (type == ObjectType.NODE)
+	{
+	    if (definition.nodeValues == null)
+	    {
+		definition.nodeValues = new BitSet(m_numNodes);
+	    }
+	    m_booleanAttributeCreator.setTarget(definition.nodeValues, id);
+	}
+	else
+	{
+	    if (definition.linkValues == null)
+	    {
+		definition.linkValues = new BitSet(m_numLinks);
+	    }
+	    m_booleanAttributeCreator.setTarget(definition.linkValues, id);
+	}
+	return m_booleanAttributeCreator;
+    }
+
+    public QualifierCreator addQualifier(String type, String name,
+					 String description)
+	throws DuplicateObjectException
+    {
+	if (type.equals(SPANNING_TREE_QUALIFIER))
+	{
+	    if (m_spanningTrees.containsKey(name))
+	    {
+		throw new DuplicateObjectException(name);
+	    }
+
+	    SpanningTree retval = new SpanningTree();
+	    m_spanningTrees.put(name, retval);
+	    return retval;
+	}
+	return m_ignoredQualifierCreator;
+    }
+
+    public int addPresentation(String name, int display, int selector)
+    {
+	return m_numPresentationsAdded++;
+    }
+
+    public DisplayCreator addDisplay(String name)
+    {
+	return new IgnoredDisplayCreator(m_numDisplaysAdded++);
+    }
+
+    public SelectorCreator addSelector(String name)
+    {
+	return new IgnoredSelectorCreator(m_numSelectorsAdded++);
+    }
+
+    public int addFilter(String name, String expr)
+    {
+	return m_numFiltersAdded++;
+    }
+
+    public MenuCreator addPresentationSubmenu(String label, int presentation)
+    {
+	return m_ignoredMenuCreator;
+    }
+
+    public MenuCreator addDisplaySubmenu(String label, int display)
+    {
+	return m_ignoredMenuCreator;
+    }
+
+    public MenuCreator addSelectorSubmenu(String label, int selector)
+    {
+	return m_ignoredMenuCreator;
+    }
+
+    public MenuCreator addFilterSubmenu(String label, int filter)
+    {
+	return m_ignoredMenuCreator;
+    }
+
+    public MenuCreator addAttributeSubmenu(String label, int attribute)
+    {
+	return m_ignoredMenuCreator;
+    }
+
+    // No libsea Graph is constructed, so this always returns null.
+    // Use load() to obtain the H3Graph instead.
+    public Graph endConstruction()
+    {
+	return null;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private SpanningTree findSpanningTree(String spanningTree)
+	throws H3GraphLoader.InvalidGraphDataException
+    {
+	SpanningTree retval = (SpanningTree)m_spanningTrees.get(spanningTree);
+	if (retval == null)
+	{
+	    String msg =
+		"spanning tree qualifier `" + spanningTree + "' not found";
+	    throw new IllegalArgumentException(msg);
+	}
+
+	if (retval.rootAttribute == -1)
+	{
+	    String msg = "missing attribute `" + ROOT_ATTRIBUTE
+		+ "' of qualifier type `" + SPANNING_TREE_QUALIFIER + "'";
+	    throw new H3GraphLoader.InvalidGraphDataException(msg);
+	}
+
+	if (retval.treeLinkAttribute == -1)
+	{
+	    String msg = "missing attribute `" + TREE_LINK_ATTRIBUTE
+		+ "' of qualifier type `" + SPANNING_TREE_QUALIFIER + "'";
+	    throw new H3GraphLoader.InvalidGraphDataException(msg);
+	}
+
+	checkAttributeType(ROOT_ATTRIBUTE, retval.rootAttribute);
+	checkAttributeType(TREE_LINK_ATTRIBUTE, retval.treeLinkAttribute);
+	return retval;
+    }
+
+    private void checkAttributeType(String attributeName, int attribute)
+	throws H3GraphLoader.InvalidGraphDataException
+    {
+	AttributeDefinition definition =
+	    (AttributeDefinition)m_attributes.get(attribute);
+	if (definition.type != ValueType.BOOLEAN)
+	{
+	    String msg = "attribute `" + attributeName
+		+ "' of qualifier type `" + SPANNING_TREE_QUALIFIER
+		+ "' must have type " + ValueType.BOOLEAN.getName()
+		+ "; found " + definition.type.getName();
+	    throw new H3GraphLoader.InvalidGraphDataException(msg);
+	}
+    }
+
+    private int findSpanningTreeRootNode(int attribute)
+	throws H3GraphLoader.InvalidGraphDataException
+    {
+	AttributeDefinition definition =
+	    (AttributeDefinition)m_attributes.get(attribute);
+	int retval = (definition.nodeValues == null
+		      ? -1 : definition.nodeValues.nextSetBit(0));
+	if (retval == -1)
+	{
+	    String msg = "no root node found for spanning tree";
+	    throw new H3GraphLoader.InvalidGraphDataException(msg);
+	}
+	return retval;
+    }
+
+    private BitSet getLinkValues(int attribute)
+    {
+	AttributeDefinition definition =
+	    (AttributeDefinition)m_attributes.get(attribute);
+	return (definition.linkValues == null
+		? new BitSet() : definition.linkValues);
+    }
+
+    // H3Graph requires the links of each node to be added consecutively,
+    // but the links in a file can appear in any order.  So we first
+    // bucket the links by source node with a counting sort, and then add
+    // the tree links and the nontree links of each node in turn.
+    private void populateLinks(H3Graph graph, BitSet treeLinksMap)
+    {
+	int[] start = new int[m_numNodes + 1];
+	for (int i = 0; i < m_numLinks; i++)
+	{
+	    ++start[m_sources[i] + 1];
+	}
+	for (int i = 0; i < m_numNodes; i++)
+	{
+	    start[i + 1] += start[i];
+	}
+
+	int[] links = new int[m_numLinks];
+	{
+	    int[] next = new int[m_numNodes];
+	    System.arraycopy(start, 0, next, 0, m_numNodes);
+	    for (int i = 0; i < m_numLinks; i++)
+	    {
+		links[next[m_sources[i]]++] = i;
+	    }
+	}
+
+	for (int node = 0; node < m_numNodes; node++)
+	{
+	    int end = start[node + 1];
+
+	    graph.startChildLinks(node);
+	    for (int i = start[node]; i < end; i++)
+	    {
+		int link = links[i];
+		if (treeLinksMap.get(link))
+		{
+		    graph.addChildLink(node, m_destinations[link], link);
+		}
+	    }
+
+	    graph.startNontreeLinks(node);
+	    for (int i = start[node]; i < end; i++)
+	    {
+		int link = links[i];
+		if (!treeLinksMap.get(link))
+		{
+		    graph.addNontreeLink(node, m_destinations[link], link);
+		}
+	    }
+	    graph.endNodeLinks(node);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final String SPANNING_TREE_QUALIFIER = "spanning_tree";
+    private static final String ROOT_ATTRIBUTE = "root";
+    private static final String TREE_LINK_ATTRIBUTE = "tree_link";
+
+    private boolean m_offHeapStorage = false;
+
+    private int m_numNodes;
+    private int m_numLinks;
+    private int m_numLinksAdded = 0;
+    private int m_numPathsAdded = 0;
+    private int m_numEnumerationsAdded = 0;
+    private int m_numEnumeratorsAdded = 0;
+    private int m_numPresentationsAdded = 0;
+    private int m_numDisplaysAdded = 0;
+    private int m_numSelectorsAdded = 0;
+    private int m_numFiltersAdded = 0;
+
+    private int[] m_sources;
+    private int[] m_destinations;
+
+    private List m_attributes = new ArrayList(); // List<AttributeDefinition>
+    private Map m_attributeIDs = new HashMap();  // Map<String, Integer>
+    private Map m_spanningTrees = new HashMap(); // Map<String, SpanningTree>
+
+    private BooleanAttributeCreator m_booleanAttributeCreator =
+	new BooleanAttributeCreator();
+    private AttributeCreator m_ignoredAttributeCreator =
+	new IgnoredAttributeCreator();
+    private QualifierCreator m_ignoredQualifierCreator =
+	new IgnoredQualifierCreator();
+    private MenuCreator m_ignoredMenuCreator = new IgnoredMenuCreator();
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class AttributeDefinition
+    {
+	public AttributeDefinition(String name, ValueType type)
+	{
+	    this.name = name;
+	    this.type = type;
+	}
+
+	public String name;
+	public ValueType type;
+
+	// The objects with an explicit value of true (only for boolean
+	// attributes, and null until the first value is seen).
+	public BitSet nodeValues;
+	public BitSet linkValues;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    private class SpanningTree
+	implements QualifierCreator
+    {
+	public void associateAttribute(int attribute)
+	{
+	    AttributeDefinition definition =
+		(AttributeDefinition)m_attributes.get(attribute);
+	    associateAttribute(attribute, definition.name);
+	}
+
+	public void associateAttribute(int attribute, String alias)
+	{
+	    if (alias == null)
+	    {
+		associateAttribute(attribute);
+	    }
+	    else if (alias.equals(ROOT_ATTRIBUTE))
+	    {
+		rootAttribute = attribute;
+	    }
+	    else if (alias.equals(TREE_LINK_ATTRIBUTE))
+	    {
+		treeLinkAttribute = attribute;
+	    }
+	}
+
+	public void associateAttribute(String attribute, String alias)
+	{
+	    int id = getAttributeID(attribute);
+	    if (id == -1)
+	    {
+		String msg = "no attribute named `" + attribute + "' found";
+		throw new RuntimeException(msg);
+	    }
+	    associateAttribute(id, alias);
+	}
+
+	public int rootAttribute = -1;
+	public int treeLinkAttribute = -1;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    private static class BooleanAttributeCreator
+	implements AttributeCreator
+    {
+	public void setTarget(BitSet values, int id)
+	{
+	    m_values = values;
+	    m_id = id;
+	}
+
+	public void addBooleanValue(boolean value)
+	{
+	    if (value)
+	    {
+		m_values.set(m_id);
+	    }
+	}
+
+	public void addIntegerValue(int value) {}
+	public void addFloatValue(float value) {}
+	public void addDoubleValue(double value) {}
+	public void addStringValue(String value) {}
+	public void addFloat3Value(float x, float y, float z) {}
+	public void addFloat3Value(float[] value) {}
+	public void addDouble3Value(double x, double y, double z) {}
+	public void addDouble3Value(double[] value) {}
+	public void addEnumerationValue(String enumerator) {}
+	public void addEnumerationValue(int enumerator) {}
+
+	private BitSet m_values;
+	private int m_id;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+
+    // This is shared with H3AttributeValueLoader.
+    static class IgnoredAttributeCreator
+	implements AttributeCreator
+    {
+	public void addBooleanValue(boolean value) {}
+	public void addIntegerValue(int value) {}
+	public void addFloatValue(float value) {}
+	public void addDoubleValue(double value) {}
+	public void addStringValue(String value) {}
+	public void addFloat3Value(float x, float y, float z) {}
+	public void addFloat3Value(float[] value) {}
+	public void addDouble3Value(double x, double y, double z) {}
+	public void addDouble3Value(double[] value) {}
+	public void addEnumerationValue(String enumerator) {}
+	public void addEnumerationValue(int enumerator) {}
+    }
+
+    private static class IgnoredQualifierCreator
+	implements QualifierCreator
+    {
+	public void associateAttribute(int attribute) {}
+	public void associateAttribute(int attribute, String alias) {}
+	public void associateAttribute(String attribute, String alias) {}
+    }
+
+    private class IgnoredEnumerationCreator
+	implements EnumerationCreator
+    {
+	public IgnoredEnumerationCreator(int id)
+	{
+	    m_id = id;
+	}
+
+	public int getEnumerationID()
+	{
+	    return m_id;
+	}
+
+	// The parser expects enumerators to be numbered consecutively
+	// across all enumerations.
+	public int addEnumerator(String name, int value)
+	{
+	    return m_numEnumeratorsAdded++;
+	}
+
+	private int m_id;
+    }
+
+    private static class IgnoredDisplayCreator
+	implements DisplayCreator
+    {
+	public IgnoredDisplayCreator(int id)
+	{
+	    m_id = id;
+	}
+
+	public int getDisplayID()
+	{
+	    return m_id;
+	}
+
+	public void addDisplayMapping(String characteristic, int attribute,
+				      boolean node, boolean link,
+				      boolean path) {}
+
+	private int m_id;
+    }
+
+    private static class IgnoredSelectorCreator
+	implements SelectorCreator
+    {
+	public IgnoredSelectorCreator(int id)
+	{
+	    m_id = id;
+	}
+
+	public int getSelectorID()
+	{
+	    return m_id;
+	}
+
+	public void addSelectorMapping(String characteristic, int filter,
+				       boolean node, boolean link,
+				       boolean path) {}
+
+	private int m_id;
+    }
+
+    private static class IgnoredMenuCreator
+	implements MenuCreator
+    {
+	public MenuCreator addSubmenu(String label, int id)
+	{
+	    return this;
+	}
+    }
+}
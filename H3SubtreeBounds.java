@@ -0,0 +1,198 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// Bounding balls for the subtrees of the spanning tree of a laid-out
+// graph, which allow H3Transformer to draw a subtree that has become too
+// small to see as just its root node (a level-of-detail impostor).
+//
+// The subtree of each node is bounded by a ball in hyperbolic space
+// centered on the node.  The radius of the ball is computed bottom-up
+// from the layout coordinates:
+//
+//     radius(n) = max over children c of (d(n, c) + radius(c)),
+//
+// with radius(leaf) = 0, where d is the hyperbolic distance.  This is
+// the same information as the hemisphere radii and angles computed by
+// H3GraphLayout, but deriving it from the layout coordinates lets it
+// be computed just as well for a layout read from a file.  Because
+// hyperbolic translations and rotations are isometries, the radii stay
+// valid for every view of the graph, and only the size of the ball in
+// the Klein model, which depends on how far the node lies from the
+// origin, need be computed per view (see computeExtent()).
+//
+// The bounds must be recomputed if the graph is laid out again.
+
+import javax.vecmath.*;
+
+public class H3SubtreeBounds
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3SubtreeBounds(H3Graph graph)
+    {
+	m_radii = new double[graph.getNumNodes()];
+	if (graph.getNumNodes() > 0)
+	{
+	    computeRadii(graph);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // The hyperbolic radius of the ball bounding the subtree of {node}.
+    // This is in the units of distance of the model (the curvature is -1),
+    // which are half those of H3Math.hyperbolicDistance().
+    public double getRadius(int node)
+    {
+	return m_radii[node];
+    }
+
+    // Returns the largest semi-axis, in the Klein model, of the (Euclidean)
+    // ellipsoid that the bounding ball of the subtree of {node} appears as,
+    // given the current display coordinates {p} of {node}.  This is thus
+    // half the largest width of the subtree on the display, before the
+    // view transformation.
+    //
+    // With the node at Klein distance s = tanh(d) from the origin, the
+    // ball of hyperbolic radius r appears as an ellipsoid of revolution
+    // with the semi-axis
+    //
+    //     (tanh(d + r) - tanh(d - r)) / 2
+    //
+    // along the line to the origin, and a perpendicular semi-axis equal to
+    // the greatest y satisfying
+    //
+    //     (cosh(d) - x sinh(d))^2 = cosh(r)^2 (1 - x^2 - y^2),
+    //
+    // which is the equation of the ball in the plane containing the origin
+    // and the x-axis through the node.
+    public double computeExtent(int node, Point4d p)
+    {
+	double s2 = (p.x * p.x + p.y * p.y + p.z * p.z) / (p.w * p.w);
+	if (s2 >= 1.0)
+	{
+	    // The node lies on the sphere at infinity.
+	    return 0.0;
+	}
+
+	double r = m_radii[node];
+	double d = H3Math.atanh(Math.sqrt(s2));
+	if (d <= r)
+	{
+	    // The ball contains the origin and hence spans the display.
+	    return 1.0;
+	}
+
+	// Since d > r, and d is at most about 19 for a point in double
+	// precision, none of these overflow.
+	double coshD = H3Math.cosh(d);
+	double sinhD = H3Math.sinh(d);
+	double coshR = H3Math.cosh(r);
+	double coshR2 = coshR * coshR;
+
+	double x = sinhD * coshD / (coshR2 + sinhD * sinhD);
+	double u = coshD - x * sinhD;
+	double y2 = 1.0 - x * x - u * u / coshR2;
+
+	double radial = 0.5 * (H3Math.tanh(d + r) - H3Math.tanh(d - r));
+	double perpendicular = (y2 > 0.0 ? Math.sqrt(y2) : 0.0);
+	return Math.max(radial, perpendicular);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Computes the radii in postorder, so that the radii of the children
+    // of a node are known when the node itself is reached.
+    private void computeRadii(H3Graph graph)
+    {
+	Point4d p = new Point4d();
+	Point4d q = new Point4d();
+
+	H3TreeWalker walker = new H3TreeWalker(graph);
+	walker.start(graph.getRootNode());
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		walker.push(child);
+	    }
+	    else
+	    {
+		int node = walker.getNode();
+		graph.getNodeLayoutCoordinates(node, p);
+
+		double radius = 0.0;
+		int childIndex = graph.getNodeChildIndex(node);
+		int nontreeIndex = graph.getNodeNontreeIndex(node);
+		for (int i = childIndex; i < nontreeIndex; i++)
+		{
+		    int c = graph.getLinkDestination(i);
+		    graph.getNodeLayoutCoordinates(c, q);
+
+		    double distance = computeDistance(p, q);
+		    radius = Math.max(radius, distance + m_radii[c]);
+		}
+
+		// Math.max() propagates NaN, so the radius of any subtree
+		// containing a node whose layout failed is NaN, and such a
+		// subtree is never collapsed, since comparisons with NaN are
+		// false.
+		m_radii[node] = radius;
+		walker.pop();
+	    }
+	}
+    }
+
+    // The hyperbolic distance between {p} and {q}.  Unlike
+    // H3Math.hyperbolicDistance(), this is in the units of the model, and
+    // it gives zero rather than NaN for points so close that rounding
+    // makes the argument of acosh() slightly less than one.
+    private double computeDistance(Point4d p, Point4d q)
+    {
+	double pq = H3Math.minkowski(p, q);
+	double pp = H3Math.minkowski(p, p);
+	double qq = H3Math.minkowski(q, q);
+
+	double c = Math.abs(pq) / Math.sqrt(pp * qq);
+	if (c > 1.0)
+	{
+	    return H3Math.acosh(c);
+	}
+	else
+	{
+	    return (Double.isNaN(c) ? Double.NaN : 0.0);
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private double[] m_radii;
+}
@@ -0,0 +1,142 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+// The number of shown nodes in each subtree of the spanning tree of a
+// graph, which lets H3Transformer skip over the parts of the graph that
+// have been hidden by narrowing, pruning, or selection.
+//
+// A node is shown if it is visible, or if the tree link to it from its
+// parent is visible, since the link can't be drawn without the node
+// having been transformed.  A nontree link is only ever visible if both
+// its nodes are visible (see H3Graph.computeVisibility()), so nontree
+// links need no special treatment.
+//
+// A traversal that starts anywhere in the spanning tree reaches every
+// shown node if it goes from a node to its parent only while some shown
+// node lies outside the subtree of the node (see checkShownOutside()),
+// and goes from a node to a child only if the subtree of the child has
+// some shown node (see checkSubtreeShown()).
+//
+// The counts must be recomputed whenever the visibility of the graph
+// changes.
+
+public class H3SubtreeVisibility
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3SubtreeVisibility(H3Graph graph)
+    {
+	m_graph = graph;
+	m_numShown = new int[graph.getNumNodes()];
+	if (graph.getNumNodes() > 0)
+	{
+	    computeNumShown();
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public boolean checkNodeShown(int node)
+    {
+	if (m_graph.checkNodeVisible(node))
+	{
+	    return true;
+	}
+
+	int link = m_graph.getNodeParentLink(node);
+	return link >= 0 && m_graph.checkLinkVisible(link);
+    }
+
+    // Whether the subtree of {node}, including {node} itself, has any
+    // shown node.
+    public boolean checkSubtreeShown(int node)
+    {
+	return m_numShown[node] > 0;
+    }
+
+    // Whether any shown node lies outside the subtree of {node}.
+    public boolean checkShownOutside(int node)
+    {
+	return m_numShown[node] < m_totalNumShown;
+    }
+
+    // The number of shown nodes in the subtree of {node}, including
+    // {node} itself.
+    public int getNumShown(int node)
+    {
+	return m_numShown[node];
+    }
+
+    public int getTotalNumShown()
+    {
+	return m_totalNumShown;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Computes the counts in postorder, so that the counts of the children
+    // of a node are known when the node itself is reached.
+    private void computeNumShown()
+    {
+	H3TreeWalker walker = new H3TreeWalker(m_graph);
+	walker.start(m_graph.getRootNode());
+	while (!walker.isDone())
+	{
+	    int child = walker.nextChild();
+	    if (child >= 0)
+	    {
+		walker.push(child);
+	    }
+	    else
+	    {
+		int node = walker.getNode();
+
+		int numShown = (checkNodeShown(node) ? 1 : 0);
+		int childIndex = m_graph.getNodeChildIndex(node);
+		int nontreeIndex = m_graph.getNodeNontreeIndex(node);
+		for (int i = childIndex; i < nontreeIndex; i++)
+		{
+		    numShown += m_numShown[m_graph.getLinkDestination(i)];
+		}
+
+		m_numShown[node] = numShown;
+		walker.pop();
+	    }
+	}
+
+	m_totalNumShown = m_numShown[m_graph.getRootNode()];
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private H3Graph m_graph;
+    private int[] m_numShown;
+    private int m_totalNumShown;
+}
@@ -26,6 +26,9 @@ public class H3TransformQueue
     // CONSTRUCTORS
     ////////////////////////////////////////////////////////////////////////
 
+    // {numNodes} is the initial capacity.  The queue grows as needed, but
+    // if it will hold at most one copy of each node in a graph, then
+    // allocating it with the number of nodes avoids all growth.
     public H3TransformQueue(int numNodes)
     {
 	m_elements = new int[numNodes + 1];
@@ -86,7 +89,7 @@ public class H3TransformQueue
     {
 	if (m_numElements == m_elements.length - 1)
 	{
-	    throw new RuntimeException("Queue is full.");
+	    expandCapacity();
 	}
 
 	int i = ++m_numElements;
@@ -111,6 +114,34 @@ public class H3TransformQueue
 	return m_numElements == 0;
     }
 
+    // Returns the radius of the element that dequeue() would return.
+    public double getMaxRadius()
+    {
+	if (m_numElements == 0)
+	{
+	    throw new RuntimeException("Queue is empty.");
+	}
+
+	return m_radii[1];
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private void expandCapacity()
+    {
+	int capacity = 2 * m_elements.length;
+
+	int[] elements = new int[capacity];
+	System.arraycopy(m_elements, 0, elements, 0, m_elements.length);
+	m_elements = elements;
+
+	double[] radii = new double[capacity];
+	System.arraycopy(m_radii, 0, radii, 0, m_radii.length);
+	m_radii = radii;
+    }
+
     ////////////////////////////////////////////////////////////////////////
     // PRIVATE FIELDS
     ////////////////////////////////////////////////////////////////////////
@@ -21,6 +21,10 @@
 
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import javax.media.j3d.*;
 import javax.vecmath.*;
 
@@ -34,12 +38,44 @@ public class H3Transformer
     public H3Transformer(H3Graph graph, H3RenderQueue queue,
 			 boolean transformNontreeLinks)
     {
-	m_visited = new int[graph.getNumNodes()];
+	this(graph, queue, transformNontreeLinks, 1);
+    }
+
+    // If {parallelism} is greater than one, then the traversal is spread
+    // over that many worker threads (see transformInParallel()).
+    public H3Transformer(H3Graph graph, H3RenderQueue queue,
+			 boolean transformNontreeLinks, int parallelism)
+    {
+	int numNodes = graph.getNumNodes();
+
+	m_visited = new AtomicIntegerArray(numNodes);
+	m_order = new int[numNodes];
+	m_seed = new int[numNodes];
 	m_startingNode = graph.getRootNode();
 	m_graph = graph;
 	m_renderQueue = queue;
-	m_transformQueue = new H3TransformQueue(graph.getNumNodes());
 	m_transformNontreeLinks = transformNontreeLinks;
+	m_subtreeVisibility = createSubtreeVisibility(graph);
+
+	if (parallelism > 1)
+	{
+	    m_transformed = new AtomicIntegerArray(numNodes);
+	    m_partitions = new Partition[parallelism];
+	    m_workers = new Worker[parallelism];
+	    for (int i = 0; i < parallelism; i++)
+	    {
+		m_partitions[i] = new Partition(numNodes / parallelism);
+		m_workers[i] = new Worker(i);
+	    }
+
+	    // Requests enqueue the starting node on the first partition.
+	    m_transformQueue = m_partitions[0].queue;
+	    m_pool = new ForkJoinPool(parallelism);
+	}
+	else
+	{
+	    m_transformQueue = new H3TransformQueue(numNodes);
+	}
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -59,14 +95,64 @@ public class H3Transformer
 	    {
 		++m_iteration;
 		m_renderQueue.clear();
-		m_transformQueue.clear();
+		clearTransformQueues();
 
 		m_transformTemporary.mul(transform, m_transform);
 		m_transform.set(m_transformTemporary);
 
-		markNodeVisited(m_startingNode, m_iteration);
-		m_startingRadius = transformAndEnqueueNode(m_startingNode);
-		m_state = STATE_NODE;
+		startTraversal();
+	    }
+	    else
+	    {
+		m_renderQueue.clear();
+		m_renderQueue.end();
+		m_state = STATE_IDLE;
+	    }
+	}
+	endRequest();
+    }
+
+    // Like transform(), but seeds the new traversal with the nodes that the
+    // previous traversal processed, in the order it processed them.  This
+    // suits a small change of transform, as in the successive steps of an
+    // animated translation, after which the previous order is still
+    // nearly from the center of the display outward.  The seed nodes are
+    // all transformed at once with H3Graph.transformNodes(), and are then
+    // processed straight from the seed, without passing through the
+    // transform queue.  The traversal continues from the queue as usual
+    // once the seed is exhausted.
+    //
+    // Every node in the previous order was reached from a node before it,
+    // so processing the seed in order visits exactly what the previous
+    // traversal visited.  This isn't so with level-of-detail rendering,
+    // since whether a subtree is collapsed depends on the transform, and
+    // then this is the same as transform().
+    public synchronized void transformCoherently(Matrix4d transform)
+    {
+	startRequest();
+	{
+	    if (DEBUG_PRINT)
+	    {
+		System.out.println("Hyperbolic.transformCoherently()");
+	    }
+
+	    if (m_graph.getNumNodes() > 0)
+	    {
+		++m_iteration;
+		m_renderQueue.clear();
+		clearTransformQueues();
+
+		m_transformTemporary.mul(transform, m_transform);
+		m_transform.set(m_transformTemporary);
+
+		if (m_subtreeBounds == null && m_orderLength.get() > 0)
+		{
+		    startSeededTraversal();
+		}
+		else
+		{
+		    startTraversal();
+		}
 	    }
 	    else
 	    {
@@ -78,6 +164,41 @@ public class H3Transformer
 	endRequest();
     }
 
+    // Enables level-of-detail rendering, in which a node whose subtree
+    // (in the spanning tree) appears smaller than {minExtent} stands in
+    // for the whole subtree: the node itself is emitted, but the traversal
+    // doesn't proceed to its children.  {minExtent} is a width in the
+    // Klein model, in which the sphere at infinity has a radius of one
+    // (see H3SubtreeBounds.computeExtent()).  Passing null disables this.
+    //
+    // This must be called before the transformer is started.
+    public void setLevelOfDetail(H3SubtreeBounds bounds, double minExtent)
+    {
+	m_subtreeBounds = bounds;
+	m_minSubtreeExtent = minExtent;
+    }
+
+    // Restarts the traversal from the current position after the
+    // visibility of nodes or links in the graph has changed.  The
+    // traversal skips hidden elements, and subtrees with nothing shown,
+    // so the output of the previous traversal may lack elements that
+    // have become visible.
+    public synchronized void updateVisibility()
+    {
+	startRequest();
+	{
+	    m_subtreeVisibility = createSubtreeVisibility(m_graph);
+	    if (m_graph.getNumNodes() > 0)
+	    {
+		++m_iteration;
+		m_renderQueue.clear();
+		clearTransformQueues();
+		startTraversal();
+	    }
+	}
+	endRequest();
+    }
+
     public synchronized void transformNode(int node, Point4d p)
     {
 	m_graph.getNodeLayoutCoordinates(node, p);
@@ -116,7 +237,7 @@ public class H3Transformer
 
     public synchronized void discardPosition()
     {
-        m_savedPositions.remove(m_savedPositions.size() - 1);
+	m_savedPositions.remove(m_savedPositions.size() - 1);
     }
 
     public synchronized Position getPosition()
@@ -168,9 +289,23 @@ public class H3Transformer
 	    if (m_state == STATE_SHUTDOWN)
 	    {
 		System.out.println("H3Transformer exiting...");
+		if (m_pool != null)
+		{
+		    m_pool.shutdown();
+		}
 		return;
 	    }
 
+	    if (m_pool != null)
+	    {
+		transformInParallel();
+		if (m_state == STATE_IDLE)
+		{
+		    m_renderQueue.end();
+		}
+		continue;
+	    }
+
 	    m_numTransformed = 0;
 	    while (m_state != STATE_IDLE
 		   && m_numTransformed < NUM_PER_ITERATION)
@@ -234,12 +369,10 @@ public class H3Transformer
 	{
 	    ++m_iteration;
 	    m_renderQueue.clear();
-	    m_transformQueue.clear();
+	    clearTransformQueues();
 	    m_transform.setIdentity();
 
-	    markNodeVisited(m_startingNode, m_iteration);
-	    m_startingRadius = transformAndEnqueueNode(m_startingNode);
-	    m_state = STATE_NODE;
+	    startTraversal();
 	}
 	else
 	{
@@ -254,14 +387,62 @@ public class H3Transformer
     {
 	++m_iteration;
 	m_renderQueue.clear();
-	m_transformQueue.clear();
+	clearTransformQueues();
 
 	m_startingNode = position.startingNode;
 	m_transform.set(position.transform);
 
+	startTraversal();
+    }
+
+    // NOTE: This assumes that m_graph.getNumNodes() > 0.
+    private void startTraversal()
+    {
+	m_seedLength = 0;
+	m_seedIndex.set(0);
+	m_orderLength.set(0);
+
 	markNodeVisited(m_startingNode, m_iteration);
 	m_startingRadius = transformAndEnqueueNode(m_startingNode);
 	m_state = STATE_NODE;
+
+	// A hidden starting node gives way to the first shown node, so
+	// that the next traversal starts within the shown part of the
+	// graph.
+	if (!checkNodeShown(m_startingNode))
+	{
+	    m_startingRadius = Double.NEGATIVE_INFINITY;
+	}
+    }
+
+    // See transformCoherently().  The previous order becomes the seed, and
+    // the seed array is reused for the new order.  If the previous
+    // traversal didn't get through its own seed, then the previous order
+    // is just the start of that seed, and the seed is kept whole instead,
+    // so that a run of short traversals doesn't whittle it away.
+    //
+    // NOTE: This assumes that m_orderLength.get() > 0.
+    private void startSeededTraversal()
+    {
+	if (m_seedIndex.get() >= m_seedLength)
+	{
+	    int[] seed = m_order;
+	    m_order = m_seed;
+	    m_seed = seed;
+	    m_seedLength = m_orderLength.get();
+	}
+	m_seedIndex.set(0);
+	m_orderLength.set(0);
+
+	for (int i = 0; i < m_seedLength; i++)
+	{
+	    markNodeVisited(m_seed[i], m_iteration);
+	}
+	transformBlock(m_seed, m_seedLength, m_iteration, null);
+
+	// The emitted node of greatest radius becomes the starting node.
+	m_startingRadius = Double.NEGATIVE_INFINITY;
+	m_state = STATE_NODE;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -270,20 +451,28 @@ public class H3Transformer
 
     private void beNodeState()
     {
-	if (m_transformQueue.isEmpty())
+	int seedNode = dequeueSeed();
+	if (seedNode < 0 && m_transformQueue.isEmpty())
 	{
 	    m_state = STATE_IDLE;
 	}
 	else
 	{
-	    m_currentNode = m_transformQueue.dequeue();
-	    m_transformedData[m_numTransformed++] =
-		((long)H3RenderQueue.Element.TYPE_NODE << 32) | m_currentNode;
+	    m_currentNode = (seedNode >= 0
+			     ? seedNode : m_transformQueue.dequeue());
+	    recordNode(m_currentNode);
 
-	    checkCandidateForStarting(m_currentNode);
+	    if (checkNodeEmitted(m_currentNode))
+	    {
+		m_transformedData[m_numTransformed++] =
+		    ((long)H3RenderQueue.Element.TYPE_NODE << 32)
+		    | m_currentNode;
+
+		checkCandidateForStarting(m_currentNode);
+	    }
 
 	    int parent = m_graph.getNodeParent(m_currentNode);
-	    if (parent >= 0)
+	    if (parent >= 0 && checkShownOutside(m_currentNode))
 	    {
 		transformAndEnqueueNodeIfNotVisited(parent);
 	    }
@@ -293,7 +482,13 @@ public class H3Transformer
 	    m_currentLinksEndIndex =
 		m_graph.getNodeLinksEndIndex(m_currentNode);
 
+	    if (checkSubtreeCollapsed(m_currentNode, m_nodeCoordinates))
+	    {
+		m_currentChildIndex = m_currentNontreeIndex;
+	    }
+
 	    m_currentIndex = m_currentChildIndex;
+	    m_currentBlockEndIndex = m_currentChildIndex;
 
 	    if (m_currentChildIndex < m_currentNontreeIndex)
 	    {
@@ -315,12 +510,18 @@ public class H3Transformer
 
     private void beChildLinkState()
     {
-	m_transformedData[m_numTransformed++] =
-	    ((long)H3RenderQueue.Element.TYPE_TREE_LINK << 32)
-	    | m_currentIndex;
+	if (m_currentIndex == m_currentBlockEndIndex)
+	{
+	    transformAndEnqueueChildBlock();
+	}
 
 	int child = m_graph.getLinkDestination(m_currentIndex);
-	transformAndEnqueueNodeIfNotVisited(child);
+	if (checkSubtreeShown(child) && checkLinkEmitted(m_currentIndex))
+	{
+	    m_transformedData[m_numTransformed++] =
+		((long)H3RenderQueue.Element.TYPE_TREE_LINK << 32)
+		| m_currentIndex;
+	}
 
 	if (++m_currentIndex == m_currentNontreeIndex)
 	{
@@ -338,12 +539,17 @@ public class H3Transformer
 
     private void beNontreeLinkState()
     {
-	m_transformedData[m_numTransformed++] =
-	    ((long)H3RenderQueue.Element.TYPE_NONTREE_LINK << 32)
-	    | m_currentIndex;
+	// The target of a hidden nontree link is reached through the
+	// spanning tree if it is shown.
+	if (checkLinkEmitted(m_currentIndex))
+	{
+	    m_transformedData[m_numTransformed++] =
+		((long)H3RenderQueue.Element.TYPE_NONTREE_LINK << 32)
+		| m_currentIndex;
 
-	int target = m_graph.getLinkDestination(m_currentIndex);
-	transformAndEnqueueNodeIfNotVisited(target);
+	    int target = m_graph.getLinkDestination(m_currentIndex);
+	    transformAndEnqueueNodeIfNotVisited(target);
+	}
 
 	if (++m_currentIndex == m_currentLinksEndIndex)
 	{
@@ -352,6 +558,33 @@ public class H3Transformer
 	// else stay in STATE_NONTREE_LINK
     }
 
+    // Transforms the children of m_currentNode at the next BLOCK_SIZE
+    // child links, starting at m_currentIndex, in one call of
+    // H3Graph.transformNodes(), and enqueues them, so that
+    // beChildLinkState() only has to emit the links themselves.
+    private void transformAndEnqueueChildBlock()
+    {
+	m_currentBlockEndIndex = Math.min(m_currentIndex + BLOCK_SIZE,
+					  m_currentNontreeIndex);
+
+	int count = 0;
+	for (int i = m_currentIndex; i < m_currentBlockEndIndex; i++)
+	{
+	    int child = m_graph.getLinkDestination(i);
+	    if (checkSubtreeShown(child)
+		&& !markNodeVisited(child, m_iteration))
+	    {
+		m_blockNodes[count++] = child;
+	    }
+	}
+
+	transformBlock(m_blockNodes, count, m_iteration, m_blockRadii);
+	for (int i = 0; i < count; i++)
+	{
+	    m_transformQueue.enqueue(m_blockNodes[i], m_blockRadii[i]);
+	}
+    }
+
     private void transformAndEnqueueNodeIfNotVisited(int node)
     {
 	if (!markNodeVisited(node, m_iteration))
@@ -367,20 +600,90 @@ public class H3Transformer
 	return radius;
     }
 
-    // The same radius calculation is done in
+    // The same radius calculation (in H3Graph.transformNodes()) is done in
     // H3NonadaptiveRenderLoop.computeNodeRadius().
     // The two methods should be kept in sync to ensure a consistent display
     // when the user turns adaptive rendering on/off.
     private double transformNode(int node)
     {
-	m_graph.getNodeLayoutCoordinates(node, m_nodeCoordinates);
-	m_transform.transform(m_nodeCoordinates);
+	m_blockNodes[0] = node;
+	transformBlock(m_blockNodes, 1, m_iteration, m_blockRadii);
+	return m_blockRadii[0];
+    }
 
-	double radius = H3Math.computeRadiusEuclidean(m_nodeCoordinates);
+    // Transforms the nodes nodes[0], ..., nodes[count - 1] in a batch
+    // (see H3Graph.transformNodes(Matrix4d, int[], int, double[])),
+    // leaving their radii in {radii}.  The workers of the parallel
+    // traversal call this with their own arrays.
+    private void transformBlock(int[] nodes, int count, int iteration,
+				double[] radii)
+    {
+	m_graph.transformNodes(m_transform, nodes, count, radii);
 
-	m_graph.setNodeRadius(node, radius);
-	m_graph.setNodeCoordinates(node, m_nodeCoordinates);
-	return radius;
+	if (m_transformed != null)
+	{
+	    // Publishes the above writes to waitUntilTransformed().
+	    for (int i = 0; i < count; i++)
+	    {
+		m_transformed.lazySet(nodes[i], iteration);
+	    }
+	}
+    }
+
+    // Returns whether the subtree of {node} is too small to be worth
+    // drawing in full (see setLevelOfDetail()).  {node} must have been
+    // transformed.
+    private boolean checkSubtreeCollapsed(int node, Point4d scratch)
+    {
+	if (m_subtreeBounds == null)
+	{
+	    return false;
+	}
+
+	m_graph.getNodeCoordinates(node, scratch);
+	return m_subtreeBounds.computeExtent(node, scratch)
+	    < m_minSubtreeExtent;
+    }
+
+    // The following methods determine which parts of the graph the
+    // traversal visits and which elements it emits to the render queue,
+    // when some nodes or links are hidden (see H3SubtreeVisibility).
+
+    private H3SubtreeVisibility createSubtreeVisibility(H3Graph graph)
+    {
+	if (graph.checkNodesVisible() && graph.checkLinksVisible())
+	{
+	    return null;
+	}
+	return new H3SubtreeVisibility(graph);
+    }
+
+    private boolean checkNodeEmitted(int node)
+    {
+	return m_subtreeVisibility == null || m_graph.checkNodeVisible(node);
+    }
+
+    private boolean checkLinkEmitted(int link)
+    {
+	return m_subtreeVisibility == null || m_graph.checkLinkVisible(link);
+    }
+
+    private boolean checkNodeShown(int node)
+    {
+	return m_subtreeVisibility == null
+	    || m_subtreeVisibility.checkNodeShown(node);
+    }
+
+    private boolean checkSubtreeShown(int node)
+    {
+	return m_subtreeVisibility == null
+	    || m_subtreeVisibility.checkSubtreeShown(node);
+    }
+
+    private boolean checkShownOutside(int node)
+    {
+	return m_subtreeVisibility == null
+	    || m_subtreeVisibility.checkShownOutside(node);
     }
 
     private void checkCandidateForStarting(int node)
@@ -395,17 +698,123 @@ public class H3Transformer
 
     private boolean checkNodeVisited(int node, int iteration)
     {
-	return m_visited[node] == iteration;
+	return m_visited.get(node) == iteration;
     }
 
+    // In the parallel traversal, exactly one worker will find that a
+    // given node had not been visited, and that worker must transform
+    // the node.
     private boolean markNodeVisited(int node, int iteration)
     {
-	boolean retval = (m_visited[node] == iteration);
-	if (!retval)
+	int visited = m_visited.get(node);
+	return visited == iteration
+	    || !m_visited.compareAndSet(node, visited, iteration);
+    }
+
+    // Returns the next node of the seed of the traversal, or -1 if there
+    // are no more (see transformCoherently()).  The seed nodes have
+    // already been visited and transformed.
+    private int dequeueSeed()
+    {
+	if (m_seedIndex.get() >= m_seedLength)
 	{
-	    m_visited[node] = iteration;
+	    return -1;
+	}
+
+	int index = m_seedIndex.getAndIncrement();
+	return (index < m_seedLength ? m_seed[index] : -1);
+    }
+
+    // Appends {node} to the order in which the current traversal has
+    // processed nodes, which seeds the next traversal in
+    // transformCoherently().  A node is recorded before any of the nodes
+    // it causes to be enqueued can be dequeued.
+    private void recordNode(int node)
+    {
+	m_order[m_orderLength.getAndIncrement()] = node;
+    }
+
+    private void clearTransformQueues()
+    {
+	if (m_partitions == null)
+	{
+	    m_transformQueue.clear();
+	}
+	else
+	{
+	    for (int i = 0; i < m_partitions.length; i++)
+	    {
+		m_partitions[i].clear();
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS (parallel traversal)
+    ////////////////////////////////////////////////////////////////////////
+
+    // Performs one step of the traversal with all workers, each of which
+    // processes up to NUM_PER_PARALLEL_STEP elements.  The traversal is
+    // broken into steps, just as the serial traversal is broken into
+    // batches of NUM_PER_ITERATION elements, so that requests can be
+    // serviced in between.
+    //
+    // The transform queue is split into one partition per worker.  A
+    // worker enqueues the nodes it transforms on its own partition, and
+    // dequeues from whichever of its own partition and one other randomly
+    // chosen partition has the larger maximum radius.  Hence, no partition
+    // falls far behind the others, and the traversal as a whole proceeds
+    // approximately in order of decreasing radius (that is, from the
+    // center of the display outward) as the adaptive renderer expects.
+    // A worker whose choice of partitions are both empty steals from any
+    // other partition that isn't.
+    private void transformInParallel()
+    {
+	for (int i = 0; i < m_partitions.length; i++)
+	{
+	    m_partitions[i].updateMaxRadius();
+	}
+
+	m_numBusyWorkers.set(m_workers.length);
+	for (int i = 0; i < m_workers.length; i++)
+	{
+	    m_workers[i].reinitialize();
+	}
+	m_pool.invoke(new StepTask());
+
+	for (int i = 0; i < m_workers.length; i++)
+	{
+	    Worker worker = m_workers[i];
+	    if (worker.m_candidateRadius > m_startingRadius)
+	    {
+		m_startingNode = worker.m_candidateNode;
+		m_startingRadius = worker.m_candidateRadius;
+	    }
+	}
+
+	m_state = (m_seedIndex.get() < m_seedLength
+		   ? STATE_NODE : STATE_IDLE);
+	for (int i = 0; i < m_partitions.length; i++)
+	{
+	    if (!m_partitions[i].queue.isEmpty())
+	    {
+		m_state = STATE_NODE;
+		break;
+	    }
+	}
+    }
+
+    // Waits for the worker that claimed {node} in markNodeVisited() to
+    // finish transforming it.  A link must not be added to the render
+    // queue before both of its endpoints have been transformed.  This
+    // never waits long, since a worker transforms a node right after
+    // claiming it.
+    private void waitUntilTransformed(int node, int iteration)
+    {
+	while (m_transformed.get(node) != iteration)
+	{
+	    Thread.yield();
 	}
-	return retval;
     }
 
     ////////////////////////////////////////////////////////////////////////
@@ -470,25 +879,51 @@ public class H3Transformer
 
     private int m_iteration = 0;
     // Whether a node has been visited in "traversal iteration" t > 0.
-    private int[] m_visited; 
+    private AtomicIntegerArray m_visited;
 
     private int m_startingNode; // Will be set to the root node in constructor.
     private double m_startingRadius = 0.0;
 
     private boolean m_transformNontreeLinks;
 
+    // See setLevelOfDetail().
+    private H3SubtreeBounds m_subtreeBounds;
+
+    // This is null if all nodes and links are visible.
+    private H3SubtreeVisibility m_subtreeVisibility;
+    private double m_minSubtreeExtent;
+
     private H3Graph m_graph;
     private H3RenderQueue m_renderQueue;
+
+    // In the parallel traversal, this is the queue of the first partition.
     private H3TransformQueue m_transformQueue;
 
     private Matrix4d m_transform = new Matrix4d();
 
+    // The nodes processed so far by the current traversal, in order, and
+    // the seed of the current traversal (see transformCoherently()).  The
+    // seed nodes m_seed[i] for i < m_seedIndex have been dequeued.
+    // m_orderLength and m_seedIndex are atomic for the parallel traversal.
+    private int[] m_order;
+    private AtomicInteger m_orderLength = new AtomicInteger();
+    private int[] m_seed;
+    private int m_seedLength = 0;
+    private AtomicInteger m_seedIndex = new AtomicInteger();
+
     private List<Position> m_savedPositions =
-        new ArrayList<Position>(); // List<Position>
+	new ArrayList<Position>(); // List<Position>
 
     private Matrix4d m_transformTemporary = new Matrix4d(); // scratch
     private Point4d m_nodeCoordinates = new Point4d(); // scratch variable
 
+    // The largest number of nodes transformed in one call of
+    // transformBlock().
+    private static final int BLOCK_SIZE = 64;
+
+    private int[] m_blockNodes = new int[BLOCK_SIZE]; // scratch
+    private double[] m_blockRadii = new double[BLOCK_SIZE]; // scratch
+
     //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
 
     private static final int NUM_PER_ITERATION = 100;
@@ -516,6 +951,29 @@ public class H3Transformer
     private int m_currentNontreeIndex;
     private int m_currentLinksEndIndex;
 
+    // The end of the child links whose nodes have been transformed by
+    // transformAndEnqueueChildBlock().
+    private int m_currentBlockEndIndex;
+
+    //- - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -
+
+    // The following are used only by the parallel traversal, and are null
+    // otherwise.
+
+    private static final int NUM_PER_PARALLEL_STEP = 10 * NUM_PER_ITERATION;
+
+    private ForkJoinPool m_pool;
+    private Partition[] m_partitions;
+    private Worker[] m_workers;
+
+    // Whether a node has been transformed in "traversal iteration" t > 0.
+    // This lags m_visited while the node is being transformed.
+    private AtomicIntegerArray m_transformed;
+
+    // The number of workers that may yet add nodes to the partitions in
+    // the current step.
+    private AtomicInteger m_numBusyWorkers = new AtomicInteger();
+
     ////////////////////////////////////////////////////////////////////////
     // PUBLIC CLASSES
     ////////////////////////////////////////////////////////////////////////
@@ -525,4 +983,308 @@ public class H3Transformer
 	public int startingNode;
 	public Matrix4d transform = new Matrix4d(); // Copy of original matrix.
     }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE CLASSES
+    ////////////////////////////////////////////////////////////////////////
+
+    // A partition of the transform queue of the parallel traversal.
+    // {maxRadius} can be read without holding the lock of the partition,
+    // in which case it is only a hint.
+    private static class Partition
+    {
+	public Partition(int capacity)
+	{
+	    queue = new H3TransformQueue(capacity);
+	}
+
+	public synchronized void enqueue(int node, double radius)
+	{
+	    queue.enqueue(node, radius);
+	    updateMaxRadius();
+	}
+
+	// Returns -1 if the partition is empty.
+	public synchronized int dequeue()
+	{
+	    if (queue.isEmpty())
+	    {
+		return -1;
+	    }
+
+	    int retval = queue.dequeue();
+	    updateMaxRadius();
+	    return retval;
+	}
+
+	public synchronized void clear()
+	{
+	    queue.clear();
+	    updateMaxRadius();
+	}
+
+	public synchronized void updateMaxRadius()
+	{
+	    maxRadius = (queue.isEmpty()
+			 ? Double.NEGATIVE_INFINITY : queue.getMaxRadius());
+	}
+
+	public final H3TransformQueue queue;
+	public volatile double maxRadius = Double.NEGATIVE_INFINITY;
+    }
+
+    //======================================================================
+
+    private class StepTask
+	extends RecursiveAction
+    {
+	protected void compute()
+	{
+	    invokeAll(m_workers);
+	}
+
+	private static final long serialVersionUID = 1L;
+    }
+
+    //======================================================================
+
+    // A worker of the parallel traversal.  A worker processes a node
+    // entirely (that is, the node and all its links) at once, just as the
+    // serial traversal does across STATE_NODE, STATE_CHILD_LINK, and
+    // STATE_NONTREE_LINK, and adds its output to the render queue in
+    // batches of NUM_PER_ITERATION elements.
+    private class Worker
+	extends RecursiveAction
+    {
+	public Worker(int index)
+	{
+	    m_index = index;
+	    m_random = new Random(index);
+	}
+
+	protected void compute()
+	{
+	    m_candidateRadius = Double.NEGATIVE_INFINITY;
+
+	    int iteration = m_iteration;
+	    int numProcessed = 0;
+	    while (numProcessed < NUM_PER_PARALLEL_STEP)
+	    {
+		int node = dequeue();
+		if (node >= 0)
+		{
+		    numProcessed += processNode(node, iteration);
+		}
+		else if (!waitForWork())
+		{
+		    break;
+		}
+	    }
+
+	    if (numProcessed >= NUM_PER_PARALLEL_STEP)
+	    {
+		m_numBusyWorkers.decrementAndGet();
+	    }
+
+	    if (m_numTransformed > 0)
+	    {
+		m_renderQueue.add(m_numTransformed, m_transformedData);
+		m_numTransformed = 0;
+	    }
+	}
+
+	// Returns the number of elements added to the render queue.
+	private int processNode(int node, int iteration)
+	{
+	    recordNode(node);
+
+	    if (checkNodeEmitted(node))
+	    {
+		addElement(H3RenderQueue.Element.TYPE_NODE, node);
+
+		double radius = m_graph.getNodeRadius(node);
+		if (radius > m_candidateRadius)
+		{
+		    m_candidateNode = node;
+		    m_candidateRadius = radius;
+		}
+	    }
+
+	    int parent = m_graph.getNodeParent(node);
+	    if (parent >= 0 && checkShownOutside(node))
+	    {
+		transformAndEnqueueNodeIfNotVisited(parent, iteration);
+	    }
+
+	    int childIndex = m_graph.getNodeChildIndex(node);
+	    int nontreeIndex = m_graph.getNodeNontreeIndex(node);
+	    int linksEndIndex = (m_transformNontreeLinks
+				 ? m_graph.getNodeLinksEndIndex(node)
+				 : nontreeIndex);
+
+	    if (checkSubtreeCollapsed(node, m_coordinates))
+	    {
+		childIndex = nontreeIndex;
+	    }
+
+	    // The children are transformed in blocks, as in
+	    // H3Transformer.transformAndEnqueueChildBlock().  A child that
+	    // another worker claimed may still be in the midst of being
+	    // transformed when its link comes up.
+	    for (int i = childIndex; i < nontreeIndex; i += BLOCK_SIZE)
+	    {
+		int blockEndIndex = Math.min(i + BLOCK_SIZE, nontreeIndex);
+		transformAndEnqueueChildBlock(i, blockEndIndex, iteration);
+
+		for (int j = i; j < blockEndIndex; j++)
+		{
+		    int child = m_graph.getLinkDestination(j);
+		    if (checkSubtreeShown(child) && checkLinkEmitted(j))
+		    {
+			waitUntilTransformed(child, iteration);
+			addElement(H3RenderQueue.Element.TYPE_TREE_LINK, j);
+		    }
+		}
+	    }
+
+	    for (int i = nontreeIndex; i < linksEndIndex; i++)
+	    {
+		if (checkLinkEmitted(i))
+		{
+		    int target = m_graph.getLinkDestination(i);
+		    if (transformAndEnqueueNodeIfNotVisited(target, iteration))
+		    {
+			waitUntilTransformed(target, iteration);
+		    }
+		    addElement(H3RenderQueue.Element.TYPE_NONTREE_LINK, i);
+		}
+	    }
+
+	    return 1 + linksEndIndex - childIndex;
+	}
+
+	// Returns whether {node} had already been visited (possibly by
+	// another worker).
+	private boolean transformAndEnqueueNodeIfNotVisited
+	    (int node, int iteration)
+	{
+	    boolean retval = markNodeVisited(node, iteration);
+	    if (!retval)
+	    {
+		m_blockNodes[0] = node;
+		transformBlock(m_blockNodes, 1, iteration, m_blockRadii);
+		m_partitions[m_index].enqueue(node, m_blockRadii[0]);
+	    }
+	    return retval;
+	}
+
+	// Transforms and enqueues the children at the child links in
+	// [startIndex, endIndex) that this worker claims.
+	private void transformAndEnqueueChildBlock
+	    (int startIndex, int endIndex, int iteration)
+	{
+	    int count = 0;
+	    for (int i = startIndex; i < endIndex; i++)
+	    {
+		int child = m_graph.getLinkDestination(i);
+		if (checkSubtreeShown(child)
+		    && !markNodeVisited(child, iteration))
+		{
+		    m_blockNodes[count++] = child;
+		}
+	    }
+
+	    transformBlock(m_blockNodes, count, iteration, m_blockRadii);
+
+	    Partition partition = m_partitions[m_index];
+	    for (int i = 0; i < count; i++)
+	    {
+		partition.enqueue(m_blockNodes[i], m_blockRadii[i]);
+	    }
+	}
+
+	// Takes from the seed of the traversal before the partitions.
+	// Returns -1 if no partition is known to have any nodes.
+	private int dequeue()
+	{
+	    int seedNode = dequeueSeed();
+	    if (seedNode >= 0)
+	    {
+		return seedNode;
+	    }
+
+	    int numPartitions = m_partitions.length;
+
+	    Partition partition = m_partitions[m_index];
+	    int other = (m_index + 1 + m_random.nextInt(numPartitions - 1))
+		% numPartitions;
+	    if (m_partitions[other].maxRadius > partition.maxRadius)
+	    {
+		partition = m_partitions[other];
+	    }
+
+	    int retval = partition.dequeue();
+	    for (int i = 0; retval < 0 && i < numPartitions; i++)
+	    {
+		retval = m_partitions[(m_index + i) % numPartitions].dequeue();
+	    }
+	    return retval;
+	}
+
+	// Waits while all partitions are empty but some other worker may
+	// still add nodes to them.  Returns false if there is no more work
+	// in this step, in which case this worker is no longer counted as
+	// busy.
+	//
+	// A worker may give up early in a race with a worker that is about
+	// to enqueue nodes, but no work is lost, since the nodes stay in the
+	// partitions until the next step.
+	private boolean waitForWork()
+	{
+	    m_numBusyWorkers.decrementAndGet();
+	    while (true)
+	    {
+		for (int i = 0; i < m_partitions.length; i++)
+		{
+		    if (m_partitions[i].maxRadius != Double.NEGATIVE_INFINITY)
+		    {
+			m_numBusyWorkers.incrementAndGet();
+			return true;
+		    }
+		}
+
+		if (m_numBusyWorkers.get() == 0)
+		{
+		    return false;
+		}
+		Thread.yield();
+	    }
+	}
+
+	private void addElement(int type, int data)
+	{
+	    m_transformedData[m_numTransformed++] = ((long)type << 32) | data;
+	    if (m_numTransformed == NUM_PER_ITERATION)
+	    {
+		m_renderQueue.add(m_numTransformed, m_transformedData);
+		m_numTransformed = 0;
+	    }
+	}
+
+	private static final long serialVersionUID = 1L;
+
+	private int m_index;
+	private Random m_random;
+	private Point4d m_coordinates = new Point4d(); // scratch variable
+	private int[] m_blockNodes = new int[BLOCK_SIZE]; // scratch
+	private double[] m_blockRadii = new double[BLOCK_SIZE]; // scratch
+
+	// The node of greatest radius processed in the current step.
+	private int m_candidateNode;
+	private double m_candidateRadius;
+
+	// See the comments for the field of the same name in H3Transformer.
+	private int m_numTransformed = 0;
+	private long[] m_transformedData = new long[NUM_PER_ITERATION];
+    }
 }
@@ -0,0 +1,167 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+//
+// This class performs a depth-first traversal of the spanning tree of an
+// H3Graph with an explicit stack rather than by recursion, so that trees
+// of any depth (such as the long chains common in traceroute data) can be
+// traversed without exhausting the Java stack.
+//
+// The traversal is driven by the caller, in the following manner:
+//
+//     walker.start(root);
+//     while (!walker.isDone())
+//     {
+//         int child = walker.nextChild();
+//         if (child >= 0)
+//         {
+//             // preorder processing of {child}, whose parent is
+//             // walker.getNode()
+//             walker.push(child);  // or don't, to skip the subtree
+//         }
+//         else
+//         {
+//             // postorder processing of walker.getNode()
+//             walker.pop();
+//         }
+//     }
+//
+// The starting node is neither returned by nextChild() nor visited in
+// preorder; it is only ever the top of the stack.  The depth of the node
+// on the top of the stack, relative to the starting node, is available
+// from getDepth(), and callers may use it to index their own per-level
+// state.  The link from a node to the child just returned by nextChild()
+// is available from getChildLink().
+//
+// A walker may be reused for any number of traversals of the same graph.
+//
+
+public class H3TreeWalker
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3TreeWalker(H3Graph graph)
+    {
+	m_graph = graph;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public void start(int node)
+    {
+	m_top = -1;
+	push(node);
+    }
+
+    public boolean isDone()
+    {
+	return m_top < 0;
+    }
+
+    public int getNode()
+    {
+	return m_nodes[m_top];
+    }
+
+    public int getDepth()
+    {
+	return m_top;
+    }
+
+    // Returns the next unvisited child of the node on the top of the
+    // stack, or -1 if all of its children have been visited.
+    public int nextChild()
+    {
+	int link = m_nextChildLinks[m_top];
+	if (link < m_childLinksEnd[m_top])
+	{
+	    m_nextChildLinks[m_top] = link + 1;
+	    return m_graph.getLinkDestination(link);
+	}
+	else
+	{
+	    return -1;
+	}
+    }
+
+    // Returns the link to the child last returned by nextChild().
+    public int getChildLink()
+    {
+	return m_nextChildLinks[m_top] - 1;
+    }
+
+    public void push(int node)
+    {
+	if (++m_top == m_nodes.length)
+	{
+	    expandCapacity();
+	}
+
+	m_nodes[m_top] = node;
+	m_nextChildLinks[m_top] = m_graph.getNodeChildIndex(node);
+	m_childLinksEnd[m_top] = m_graph.getNodeNontreeIndex(node);
+    }
+
+    public void pop()
+    {
+	--m_top;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    private void expandCapacity()
+    {
+	int capacity = 2 * m_nodes.length;
+	m_nodes = copyOf(m_nodes, capacity);
+	m_nextChildLinks = copyOf(m_nextChildLinks, capacity);
+	m_childLinksEnd = copyOf(m_childLinksEnd, capacity);
+    }
+
+    private int[] copyOf(int[] array, int capacity)
+    {
+	int[] retval = new int[capacity];
+	System.arraycopy(array, 0, retval, 0, array.length);
+	return retval;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private H3Graph m_graph;
+
+    // The stack, with one frame per level.  Each frame holds a node and the
+    // range [m_nextChildLinks, m_childLinksEnd) of its child links that
+    // have yet to be visited.
+    private int m_top = -1;
+    private int[] m_nodes = new int[INITIAL_CAPACITY];
+    private int[] m_nextChildLinks = new int[INITIAL_CAPACITY];
+    private int[] m_childLinksEnd = new int[INITIAL_CAPACITY];
+}
@@ -223,6 +223,19 @@ public class H3ViewParameters
 	gc.setModelTransform(m_objectTransform);
     }
 
+    // Sets the model transform to {translation} followed by the object
+    // transform.  Hyperbolic translations in the Klein model are
+    // projective transformations, and the w-divide that they need is
+    // done by the rendering pipeline along with that of the perspective
+    // projection, so the points drawn needn't have been translated (see
+    // H3NonadaptiveRenderLoop.setMatrixTranslation()).
+    public void putModelTransform(GraphicsContext3D gc, Matrix4d translation)
+    {
+	m_modelTransform.set(translation);
+	m_modelTransform.mul(m_objectTransform, m_modelTransform);
+	gc.setModelTransform(m_modelTransform);
+    }
+
     // NOTE: The target coordinate system of the returned transform isn't
     //       the physical eye coordinate system.  It is actually just the
     //       image plate coordinate system with the origin translated to
@@ -638,6 +651,7 @@ public class H3ViewParameters
 
     private Transform3D m_objectTransform = new Transform3D();
     private Transform3D m_savedObjectTransform = new Transform3D();
+    private Transform3D m_modelTransform = new Transform3D(); // scratch
 
     private Point3d m_eye = new Point3d();
     private Transform3D m_imageToEye = new Transform3D();
@@ -0,0 +1,330 @@
+// 
+// The Walrus Graph Visualization Tool.
+// Copyright (C) 2000,2001,2002 The Regents of the University of California.
+// 
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+// 
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+// 
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+// 
+// ######END_HEADER######
+// 
+
+
+import java.util.Arrays;
+import javax.vecmath.*;
+
+// A separate, compact H3Graph holding just the part of a graph that is
+// shown after narrowing or pruning, together with the mapping between
+// the nodes and links of the two graphs.
+//
+// Narrowing only changes the visibility of nodes and links, so that
+// everything used in rendering a graph (H3Transformer, H3RenderQueue,
+// H3PointRenderList, the pickers, and so on) stays sized and indexed by
+// the whole graph.  Rendering the compact graph instead makes the cost of
+// all these structures follow the size of what is shown.
+//
+// The compact graph contains every node that is shown, in the sense of
+// H3SubtreeVisibility, along with the nodes of the spanning tree that
+// connect them, and is rooted at the deepest node whose subtree holds all
+// the shown nodes.  It contains the tree links between these nodes and
+// the visible nontree links.  Nodes on the connecting paths that aren't
+// themselves shown remain hidden in the compact graph, since the node
+// IDs, layout coordinates, colors, and visibility of nodes and links are
+// all copied from the original graph.
+//
+// The compact graph is a snapshot: it doesn't follow later changes in
+// the visibility or layout of the original graph, and must be built
+// again after them.  Nodes of the compact graph are numbered in the same
+// order as in the original graph, which makes the reverse mapping a
+// binary search.
+
+public class H3VisibleSubgraph
+{
+    ////////////////////////////////////////////////////////////////////////
+    // CONSTRUCTORS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3VisibleSubgraph(H3Graph graph)
+    {
+	long startTime = 0;
+	if (DEBUG_PRINT)
+	{
+	    startTime = System.currentTimeMillis();
+	    System.out.println("H3VisibleSubgraph.begin[" + startTime + "]");
+	}
+
+	m_originalGraph = graph;
+	if (graph.getNumNodes() > 0)
+	{
+	    int[] compactNodes = selectNodes();
+	    buildGraph(compactNodes);
+	}
+	else
+	{
+	    m_originalNodes = new int[0];
+	    m_originalLinks = new int[0];
+	    m_graph = new H3Graph(0, 0);
+	}
+
+	if (DEBUG_PRINT)
+	{
+	    long stopTime = System.currentTimeMillis();
+	    long duration = stopTime - startTime;
+	    System.out.println("H3VisibleSubgraph.end[" + stopTime + "]");
+	    System.out.println("H3VisibleSubgraph.time[" + duration + "]");
+	    System.out.println("H3VisibleSubgraph.numNodes["
+			       + m_graph.getNumNodes() + " of "
+			       + graph.getNumNodes() + "]");
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PUBLIC METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    public H3Graph getGraph()
+    {
+	return m_graph;
+    }
+
+    public H3Graph getOriginalGraph()
+    {
+	return m_originalGraph;
+    }
+
+    public int getOriginalNode(int node)
+    {
+	return m_originalNodes[node];
+    }
+
+    public int getOriginalLink(int link)
+    {
+	return m_originalLinks[link];
+    }
+
+    // Returns the node of the compact graph corresponding to the node
+    // {original} of the original graph, or -1 if it isn't in the compact
+    // graph.
+    public int getCompactNode(int original)
+    {
+	int retval = Arrays.binarySearch(m_originalNodes, original);
+	return (retval >= 0 ? retval : -1);
+    }
+
+    // Like getCompactNode(), but returns the root of the compact graph
+    // for a node that isn't in it.
+    public int getCompactNodeOrRoot(int original)
+    {
+	int retval = getCompactNode(original);
+	return (retval >= 0 ? retval : m_graph.getRootNode());
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE METHODS
+    ////////////////////////////////////////////////////////////////////////
+
+    // Returns the compact index of every node of the original graph, or -1
+    // for the nodes left out, and fills in m_originalNodes and
+    // m_compactRoot.
+    private int[] selectNodes()
+    {
+	H3Graph graph = m_originalGraph;
+	H3SubtreeVisibility visibility = new H3SubtreeVisibility(graph);
+	int total = visibility.getTotalNumShown();
+
+	// The new root is found by descending from the root while all the
+	// shown nodes lie in the subtree of a single child.  If nothing at
+	// all is shown, then the compact graph is just the root.
+	int root = graph.getRootNode();
+	if (total > 0)
+	{
+	    boolean found = true;
+	    while (found && !visibility.checkNodeShown(root))
+	    {
+		found = false;
+		int childIndex = graph.getNodeChildIndex(root);
+		int nontreeIndex = graph.getNodeNontreeIndex(root);
+		for (int i = childIndex; i < nontreeIndex; i++)
+		{
+		    int child = graph.getLinkDestination(i);
+		    if (visibility.getNumShown(child) == total)
+		    {
+			root = child;
+			found = true;
+			break;
+		    }
+		}
+	    }
+	}
+
+	// Below the new root, exactly the nodes whose subtrees have some,
+	// but not all, of the shown nodes are needed.  Above it, every
+	// node has all of them.
+	int numNodes = graph.getNumNodes();
+	int[] retval = new int[numNodes];
+	int numCompactNodes = 0;
+	for (int i = 0; i < numNodes; i++)
+	{
+	    int numShown = visibility.getNumShown(i);
+	    if (i == root || (numShown > 0 && numShown < total))
+	    {
+		retval[i] = numCompactNodes++;
+	    }
+	    else
+	    {
+		retval[i] = -1;
+	    }
+	}
+
+	m_originalNodes = new int[numCompactNodes];
+	for (int i = 0; i < numNodes; i++)
+	{
+	    if (retval[i] >= 0)
+	    {
+		m_originalNodes[retval[i]] = i;
+	    }
+	}
+
+	m_compactRoot = retval[root];
+	return retval;
+    }
+
+    private void buildGraph(int[] compactNodes)
+    {
+	H3Graph graph = m_originalGraph;
+	int numNodes = m_originalNodes.length;
+
+	// Every node but the root has a tree link from its parent.
+	int numLinks = numNodes - 1;
+	for (int i = 0; i < numNodes; i++)
+	{
+	    int node = m_originalNodes[i];
+	    int nontreeIndex = graph.getNodeNontreeIndex(node);
+	    int endIndex = graph.getNodeLinksEndIndex(node);
+	    for (int j = nontreeIndex; j < endIndex; j++)
+	    {
+		if (graph.checkLinkVisible(j))
+		{
+		    ++numLinks;
+		}
+	    }
+	}
+
+	H3Graph compact = new H3Graph(numNodes, numLinks);
+	compact.setCompactCoordinates(graph.hasCompactCoordinates());
+	compact.setRootNode(m_compactRoot);
+	m_originalLinks = new int[numLinks];
+
+	Point4d p = new Point4d();
+	int numCompactLinks = 0;
+	for (int i = 0; i < numNodes; i++)
+	{
+	    int node = m_originalNodes[i];
+	    compact.setNodeID(i, graph.getNodeID(node));
+	    compact.setNodeColor(i, graph.getNodeColor(node));
+	    graph.getNodeLayoutCoordinates(node, p);
+	    compact.setNodeLayoutCoordinates(i, p);
+
+	    compact.startChildLinks(i);
+	    int childIndex = graph.getNodeChildIndex(node);
+	    int nontreeIndex = graph.getNodeNontreeIndex(node);
+	    for (int j = childIndex; j < nontreeIndex; j++)
+	    {
+		int child = compactNodes[graph.getLinkDestination(j)];
+		if (child >= 0)
+		{
+		    compact.addChildLink(i, child, graph.getLinkID(j));
+		    compact.setLinkColor(numCompactLinks,
+					 graph.getLinkColor(j));
+		    m_originalLinks[numCompactLinks++] = j;
+		}
+	    }
+
+	    compact.startNontreeLinks(i);
+	    int endIndex = graph.getNodeLinksEndIndex(node);
+	    for (int j = nontreeIndex; j < endIndex; j++)
+	    {
+		if (graph.checkLinkVisible(j))
+		{
+		    int target = compactNodes[graph.getLinkDestination(j)];
+		    compact.addNontreeLink(i, target, graph.getLinkID(j));
+		    compact.setLinkColor(numCompactLinks,
+					 graph.getLinkColor(j));
+		    m_originalLinks[numCompactLinks++] = j;
+		}
+	    }
+	    compact.endNodeLinks(i);
+	}
+
+	copyVisibility(compact);
+	m_graph = compact;
+    }
+
+    // The visibility is copied outright rather than recomputed with
+    // H3Graph.computeVisibility(), since the nodes and links left out of
+    // the compact graph could matter to the computation.  Only the
+    // elements that aren't visible, displayable, or selected need to be
+    // set, as everything starts out so.
+    private void copyVisibility(H3Graph compact)
+    {
+	H3Graph graph = m_originalGraph;
+	for (int i = 0; i < m_originalNodes.length; i++)
+	{
+	    int node = m_originalNodes[i];
+	    if (!graph.checkNodeVisible(node))
+	    {
+		compact.setNodeVisibility(i, false);
+	    }
+	    if (!graph.checkNodeDisplayable(node))
+	    {
+		compact.setNodeDisplayability(i, false);
+	    }
+	    if (!graph.checkNodeSelected(node))
+	    {
+		compact.setNodeSelectivity(i, false);
+	    }
+	}
+
+	for (int i = 0; i < m_originalLinks.length; i++)
+	{
+	    int link = m_originalLinks[i];
+	    if (!graph.checkLinkVisible(link))
+	    {
+		compact.setLinkVisibility(i, false);
+	    }
+	    if (!graph.checkLinkDisplayable(link))
+	    {
+		compact.setLinkDisplayability(i, false);
+	    }
+	    if (!graph.checkLinkSelected(link))
+	    {
+		compact.setLinkSelectivity(i, false);
+	    }
+	}
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // PRIVATE FIELDS
+    ////////////////////////////////////////////////////////////////////////
+
+    private static final boolean DEBUG_PRINT = true;
+
+    private H3Graph m_originalGraph;
+    private H3Graph m_graph;
+    private int m_compactRoot;
+
+    // The node or link of the original graph for each node or link of the
+    // compact graph.  m_originalNodes is in increasing order.
+    private int[] m_originalNodes;
+    private int[] m_originalLinks;
+}